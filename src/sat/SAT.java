@@ -5,12 +5,16 @@ import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStreamReader;
 
+import sat.bench.Bench;
 import sat.events.Event;
 import sat.events.EventListener;
 import sat.plane.Plane;
 import sat.plane.PlaneCLI;
+import sat.tower.RouteCatalog;
+import sat.tower.Tower;
 import sat.tower.TowerCLI;
 import sat.tower.agent.RemoteTowerAgent;
+import sat.utils.routes.InvalidRouteException;
 
 /**
  * Classe principale du programme.
@@ -39,6 +43,12 @@ public final class SAT {
 		if(args[0].equals("lab")) {
 			Lab.lab(args);
 		}
+		else if(args[0].equals("bench")) {
+			Bench.bench(args);
+		}
+		else if(args[0].equals("routes")) {
+			compileRoutes(args);
+		}
 		else if(args[0].equals("plane")) {
 			initPlane(args);
 		}
@@ -81,6 +91,40 @@ public final class SAT {
 		}
 	}
 
+	/**
+	 * Compile des fichiers de route dans un catalogue, appelée avec la
+	 * commande <code>./sat routes catalog file capacity [file capacity...]</code>.
+	 * 
+	 * @param args
+	 *            Les paramètres de la ligne de commande.
+	 */
+	public static void compileRoutes(String[] args) {
+		if(args.length < 4 || args.length % 2 != 0) {
+			System.out.println("Usage: ./sat routes <catalog> <file> <capacity> [<file> <capacity>...]");
+			return;
+		}
+
+		int count = (args.length - 2) / 2;
+		String[] paths = new String[count];
+		int[] capacities = new int[count];
+
+		for(int i = 0; i < count; i++) {
+			paths[i] = args[2 + 2 * i];
+			capacities[i] = Integer.parseInt(args[3 + 2 * i]);
+		}
+
+		try {
+			RouteCatalog.compile(args[1], paths, capacities);
+			System.out.println("Compiled " + count + " routes into " + args[1]);
+		}
+		catch(InvalidRouteException e) {
+			System.out.println(e.getMessage());
+		}
+		catch(IOException e) {
+			e.printStackTrace();
+		}
+	}
+
 	/**
 	 * Main method, appelée quand SAT est executé avec la commande
 	 * <code>./sat tower</code>.
@@ -92,10 +136,9 @@ public final class SAT {
 	public static void initTower(String[] args) {
 		System.out.println("I'm a tower !");
 
-		// Tower is lazily instantiated when starting the CLI (the CLI calls getInstance())
-		//Tower tower = Tower.getInstance();
+		Tower tower = new Tower(Tower.DEFAULT_NAME);
 
-		TowerCLI cli = new TowerCLI(System.in, System.out);
+		TowerCLI cli = new TowerCLI(tower, System.in, System.out);
 
 		if(args.length > 1) {
 			// Run commands provided
@@ -224,5 +267,7 @@ public final class SAT {
 		System.out.println("    cli         |  Start a remote CLI");
 		System.out.println("    remote      |  An event dumper [debug]");
 		System.out.println("    legacyplane |  Start a plane with legacy interface");
+		System.out.println("    bench       |  Run a benchmark");
+		System.out.println("    routes      |  Compile routes into a catalog");
 	}
 }
@@ -0,0 +1,164 @@
+package sat.bench;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+import sat.utils.routes.InvalidRouteException;
+
+/**
+ * Point d'entrée des bancs d'essai, appelé par <code>./sat bench</code>.
+ * <p>
+ * Les bancs d'essai ne font pas partie de l'application elle-même: ils
+ * mesurent le comportement de certains composants de la tour à grande
+ * échelle, sans réseau.
+ */
+public final class Bench {
+	/**
+	 * Cette classe est une classe utilitaire et ne peut pas être instanciée.
+	 */
+	private Bench() {
+	}
+
+	/**
+	 * Lance le banc d'essai désigné par <code>args[1]</code>. Les arguments
+	 * suivants lui sont passés.
+	 */
+	public static void bench(String[] args) {
+		PrintStream out = System.out;
+
+		if(args.length < 2) {
+			usage(out);
+			return;
+		}
+
+		String[] params = new String[args.length - 2];
+		System.arraycopy(args, 2, params, 0, params.length);
+
+		if(args[1].equals("planestate")) {
+			PlaneStateBenchmark.run(out, params);
+		}
+		else if(args[1].equals("routing")) {
+			try {
+				RoutingBenchmark.run(out, params);
+			}
+			catch(IOException e) {
+				e.printStackTrace(out);
+			}
+		}
+		else if(args[1].equals("landing")) {
+			try {
+				LandingBenchmark.run(out, params);
+			}
+			catch(InvalidRouteException e) {
+				e.printStackTrace(out);
+			}
+		}
+		else if(args[1].equals("planner")) {
+			PlannerBenchmark.run(out, params);
+		}
+		else if(args[1].equals("sectors")) {
+			try {
+				SectorBenchmark.run(out, params);
+			}
+			catch(Exception e) {
+				e.printStackTrace(out);
+			}
+		}
+		else if(args[1].equals("keepalive")) {
+			try {
+				KeepaliveBenchmark.run(out, params);
+			}
+			catch(Exception e) {
+				e.printStackTrace(out);
+			}
+		}
+		else if(args[1].equals("journal")) {
+			try {
+				JournalBenchmark.run(out, params);
+			}
+			catch(Exception e) {
+				e.printStackTrace(out);
+			}
+		}
+		else {
+			out.println("Unknown benchmark " + args[1] + "...");
+			usage(out);
+		}
+	}
+
+	/**
+	 * Affiche la liste des bancs d'essai.
+	 */
+	private static void usage(PrintStream out) {
+		out.println("Usage: ./sat bench BENCHMARK [args]");
+		out.println("Available benchmarks:");
+		out.println("    planestate [counts] |  Memory per plane, objects vs state table");
+		out.println("    routing [counts]    |  Route sending, per-message vs pre-encoded batch");
+		out.println("    landing [counts] [runways] |  Landing simulation with each routing mode");
+		out.println("    planner [counts]    |  Parallel evaluation of the routing modes");
+		out.println("    sectors [towers] [planes] |  Several sector towers in one JVM");
+		out.println("    journal [counts]    |  Tower journal cost and restart time");
+		out.println("    keepalive [counts]  |  Keepalive decoding and dispatch cost");
+	}
+
+	// - - - Helpers - - -
+
+	/**
+	 * Force plusieurs passages du ramasse-miettes et retourne la mémoire du
+	 * tas utilisée ensuite.
+	 */
+	static long usedHeap() {
+		Runtime runtime = Runtime.getRuntime();
+
+		for(int i = 0; i < 4; i++) {
+			System.gc();
+
+			try {
+				Thread.sleep(20);
+			}
+			catch(InterruptedException e) {
+			}
+		}
+
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+
+	/**
+	 * Retourne le nombre de bytes alloués jusqu'ici par le thread courant, ou
+	 * -1 si la JVM ne fourni pas cette mesure.
+	 */
+	static long allocatedBytes() {
+		ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+
+		if(bean instanceof com.sun.management.ThreadMXBean) {
+			com.sun.management.ThreadMXBean sun = (com.sun.management.ThreadMXBean) bean;
+
+			if(sun.isThreadAllocatedMemorySupported()) {
+				return sun.getThreadAllocatedBytes(Thread.currentThread().getId());
+			}
+		}
+
+		return -1;
+	}
+
+	/**
+	 * Lit une liste d'entiers séparés par des virgules, ou retourne la valeur
+	 * par défaut si l'argument est absent.
+	 */
+	static int[] parseCounts(String[] params, int index, int[] defaults) {
+		if(params.length <= index || params[index].isEmpty()) {
+			return defaults;
+		}
+
+		String[] parts = params[index].split(",");
+		int[] counts = new int[parts.length];
+
+		for(int i = 0; i < parts.length; i++) {
+			counts[i] = Integer.parseInt(parts[i].trim());
+		}
+
+		return counts;
+	}
+}
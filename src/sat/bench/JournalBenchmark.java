@@ -0,0 +1,156 @@
+package sat.bench;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+
+import sat.events.Event;
+import sat.radio.RadioEvent;
+import sat.radio.RadioID;
+import sat.radio.message.MessageLanding;
+import sat.tower.Tower;
+import sat.utils.geo.Coordinates;
+import sat.utils.routes.InvalidRouteException;
+import sat.utils.routes.RouteParser;
+
+/**
+ * Mesure le coût du journal de la tour: durée des demandes d'atterrissage
+ * avec et sans journal, taille des lots écrits sur disque, et durée de la
+ * restauration de l'état par une tour redémarrée.
+ */
+public final class JournalBenchmark {
+	/**
+	 * Capacité du circuit d'attente, suffisante pour tous les avions.
+	 */
+	private static final int HOLDING_CAPACITY = 1000000;
+
+	/**
+	 * Cette classe est une classe utilitaire et ne peut pas être instanciée.
+	 */
+	private JournalBenchmark() {
+	}
+
+	/**
+	 * Lance le banc d'essai.
+	 *
+	 * @param params
+	 *            Liste optionnelle des nombres d'avions, séparés par des
+	 *            virgules (1000,10000 par défaut).
+	 */
+	static void run(PrintStream out, String[] params) throws IOException, InvalidRouteException {
+		int[] counts = Bench.parseCounts(params, 0, new int[] { 1000, 10000 });
+
+		out.println("Tower journal (landing requests, group commit, restart)");
+		out.println(String.format("%8s %14s %14s %10s %10s %10s %12s", "planes", "landing us", "journaled us", "records", "syncs", "per sync", "restore ms"));
+
+		for(int planes : counts) {
+			File dir = File.createTempFile("sat", ".journal");
+			dir.delete();
+
+			try {
+				// Warm-up
+				drive(null, planes);
+				drive(null, planes);
+
+				long plain = drive(null, planes);
+
+				Tower tower = newTower("bench-journal");
+				tower.openJournal(dir.getPath());
+				long journaled = drive(tower, planes);
+
+				// Waits for the pending records
+				tower.closeJournal();
+
+				long records = tower.getMetrics().getCounter("journal.records");
+				long syncs = tower.getMetrics().getCounter("journal.batches");
+				tower.shutdown();
+
+				Tower restarted = newTower("bench-restarted");
+
+				long start = System.nanoTime();
+				int restored = restarted.openJournal(dir.getPath());
+				long restore = System.nanoTime() - start;
+
+				restarted.shutdown();
+
+				if(restored != planes) {
+					out.println("Restored " + restored + " planes out of " + planes);
+				}
+
+				out.println(String.format("%8d %14.2f %14.2f %10d %10d %10.1f %12.1f", planes, plain / 1e3 / planes, journaled / 1e3 / planes, records, syncs, (double) records / Math.max(syncs, 1), restore / 1e6));
+			}
+			finally {
+				File[] files = dir.listFiles();
+
+				if(files != null) {
+					for(File file : files) {
+						file.delete();
+					}
+				}
+
+				dir.delete();
+			}
+		}
+	}
+
+	/**
+	 * Crée et initialise une tour avec une piste et un circuit d'attente.
+	 */
+	private static Tower newTower(String name) throws IOException, InvalidRouteException {
+		Tower tower = new Tower(name);
+		tower.getConfig().setProperty("radio.ciphered", "no");
+		tower.init();
+
+		tower.addRoute(RouteParser.parseString("S-200,0;L0,0;", 2));
+		tower.addRoute(RouteParser.parseString("S375,0;S400,0;C400,50,180;S350,100;C350,50,180;", HOLDING_CAPACITY));
+
+		return tower;
+	}
+
+	/**
+	 * Connecte <code>planes</code> avions à une tour puis leur fait demander
+	 * l'atterrissage.
+	 *
+	 * @param tower
+	 *            La tour, ou <code>null</code> pour une nouvelle tour sans
+	 *            journal.
+	 * @return La durée totale des demandes d'atterrissage, en nanosecondes.
+	 */
+	private static long drive(Tower tower, int planes) throws IOException, InvalidRouteException {
+		boolean owned = (tower == null);
+
+		if(owned) {
+			tower = newTower("bench-plain");
+		}
+
+		RadioID[] ids = new RadioID[planes];
+
+		for(int i = 0; i < planes; i++) {
+			ids[i] = new RadioID("PLN" + i);
+			deliver(tower, new RadioEvent.PlaneConnected(ids[i]));
+		}
+
+		long start = System.nanoTime();
+
+		for(int i = 0; i < planes; i++) {
+			deliver(tower, new MessageLanding(ids[i], new Coordinates(300, i % 500, 0)));
+		}
+
+		long duration = System.nanoTime() - start;
+
+		if(owned) {
+			tower.shutdown();
+		}
+
+		return duration;
+	}
+
+	private static void deliver(Tower tower, Event event) {
+		try {
+			event.trigger(tower);
+		}
+		catch(Exception e) {
+			// Ignore exceptions in handlers, like an emitter would
+		}
+	}
+}
@@ -0,0 +1,128 @@
+package sat.bench;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+
+import sat.events.EventListener;
+import sat.radio.RadioID;
+import sat.radio.message.Message;
+import sat.radio.message.MessageKeepalive;
+import sat.radio.message.stream.MessageInputStream;
+import sat.radio.message.stream.MessageOutputStream;
+
+/**
+ * Mesure le coût de la réception d'une position: décodage d'un message
+ * KeepAlive depuis le flux d'un avion, puis distribution à un gestionnaire
+ * <code>on(MessageKeepalive)</code>. La mémoire allouée par message doit
+ * rester proche de l'objet message lui-même.
+ */
+public final class KeepaliveBenchmark {
+	/**
+	 * Nombre de passes mesurées sur le flux.
+	 */
+	private static final int ROUNDS = 20;
+
+	/**
+	 * Cette classe est une classe utilitaire et ne peut pas être instanciée.
+	 */
+	private KeepaliveBenchmark() {
+	}
+
+	/**
+	 * Lance le banc d'essai.
+	 *
+	 * @param params
+	 *            Liste optionnelle des nombres de messages par passe, séparés
+	 *            par des virgules (10000 par défaut).
+	 */
+	static void run(PrintStream out, String[] params) throws Exception {
+		int[] counts = Bench.parseCounts(params, 0, new int[] { 10000 });
+		RadioID id = new RadioID("PLN");
+
+		out.println("Keepalive decoding and dispatch (" + ROUNDS + " rounds)");
+		out.println(String.format("%10s %10s %10s %10s %10s", "messages", "mode", "model", "ns/msg", "B/msg"));
+
+		for(int count : counts) {
+			for(boolean extended : new boolean[] { false, true }) {
+				String mode = extended ? "extended" : "legacy";
+				byte[] stream = encode(id, count, extended);
+				Receiver receiver = new Receiver();
+
+				// Warm-up
+				for(int round = 0; round < ROUNDS; round++) {
+					read(stream, count, extended, null);
+					read(stream, count, extended, receiver);
+				}
+
+				long allocated = Bench.allocatedBytes();
+				long start = System.nanoTime();
+
+				for(int round = 0; round < ROUNDS; round++) {
+					read(stream, count, extended, null);
+				}
+
+				report(out, count, mode, "decode", start, allocated);
+
+				allocated = Bench.allocatedBytes();
+				start = System.nanoTime();
+
+				for(int round = 0; round < ROUNDS; round++) {
+					read(stream, count, extended, receiver);
+				}
+
+				report(out, count, mode, "dispatch", start, allocated);
+			}
+		}
+	}
+
+	/**
+	 * Encode le flux de <code>count</code> positions d'un avion.
+	 */
+	private static byte[] encode(RadioID id, int count, boolean extended) throws IOException {
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+
+		for(int i = 0; i < count; i++) {
+			baos.write(MessageOutputStream.encode(new MessageKeepalive(id, i % 1000, i % 700, 0), extended));
+		}
+
+		return baos.toByteArray();
+	}
+
+	/**
+	 * Décode les messages d'un flux, et les distribue au gestionnaire donné
+	 * s'il n'est pas <code>null</code>.
+	 */
+	private static void read(byte[] stream, int count, boolean extended, Receiver receiver) throws Exception {
+		MessageInputStream mis = new MessageInputStream(new ByteArrayInputStream(stream));
+		mis.setExtended(extended);
+
+		for(int i = 0; i < count; i++) {
+			Message m = mis.readMessage();
+
+			if(receiver != null) {
+				m.trigger(receiver);
+			}
+		}
+	}
+
+	private static void report(PrintStream out, int count, String mode, String model, long start, long allocated) {
+		long elapsed = System.nanoTime() - start;
+		long messages = (long) count * ROUNDS;
+		long bytes = (allocated < 0) ? -1 : (Bench.allocatedBytes() - allocated) / messages;
+
+		out.println(String.format("%10d %10s %10s %10.1f %10d", count, mode, model, (double) elapsed / messages, bytes));
+	}
+
+	/**
+	 * Un gestionnaire qui lit la position de chaque message.
+	 */
+	public static final class Receiver implements EventListener {
+		private float sum;
+
+		public void on(MessageKeepalive m) {
+			sum += m.getX() + m.getY() + m.getZ();
+		}
+	}
+}
@@ -0,0 +1,437 @@
+package sat.bench;
+
+import java.io.PrintStream;
+import java.util.ArrayDeque;
+import java.util.Random;
+
+import sat.plane.PlaneType;
+import sat.radio.RadioID;
+import sat.tower.LandingQueue;
+import sat.tower.RoutingMode;
+import sat.tower.SlotScheduler;
+import sat.tower.TowerPlane;
+import sat.utils.routes.InvalidRouteException;
+import sat.utils.routes.Route;
+import sat.utils.routes.RouteGeometry;
+import sat.utils.routes.RouteParser;
+
+/**
+ * Simule l'atterrissage d'une vague d'avions avec chaque mode de routage et
+ * chaque nombre de pistes, et compare le débit des pistes, le carburant brûlé
+ * et l'attente par avion.
+ * <p>
+ * La simulation utilise la file d'attente de la tour ({@link LandingQueue})
+ * et l'estimation des temps d'arrivée ({@link SlotScheduler}), sans radio.
+ * Les avions apparaissent à intervalles aléatoires, à une distance aléatoire
+ * de la piste, et demandent aussitôt à atterrir. Ceux qui sont assignés à un
+ * circuit d'attente le rejoignent et y tournent. Tous envoient leur position
+ * chaque seconde. Les avions qui quittent leur circuit sont assignés à une
+ * piste par {@link SlotScheduler#assign} et volent droit vers elle. Sur une
+ * même piste, deux atterrissages sont séparés d'au moins {@link #SEPARATION}
+ * secondes. Les pistes sont parallèles et les circuits d'attente alimentent
+ * toutes les pistes.
+ */
+public final class LandingBenchmark {
+	/**
+	 * Distance entre deux pistes parallèles. La première piste est à
+	 * l'origine, sa route d'atterrissage commence 200 pixels avant.
+	 */
+	private static final float RUNWAY_SPACING = 300;
+
+	/**
+	 * Nombre d'avions simultanément sur chaque route d'atterrissage.
+	 */
+	private static final int LANDING_CAPACITY = 2;
+
+	/**
+	 * Séparation entre deux atterrissages, en secondes.
+	 */
+	private static final float SEPARATION = 10;
+
+	/**
+	 * Intervalle moyen entre deux apparitions, en secondes.
+	 */
+	private static final float ARRIVAL_INTERVAL = 8;
+
+	/**
+	 * Distance minimale et maximale d'apparition.
+	 */
+	private static final float MIN_DISTANCE = 500;
+	private static final float MAX_DISTANCE = 3000;
+
+	/**
+	 * Nombre de circuits d'attente, répartis autour de la piste.
+	 */
+	private static final int HOLDING_ROUTES = 4;
+
+	/**
+	 * Distance entre la piste et le centre des circuits d'attente.
+	 */
+	private static final float HOLDING_DISTANCE = 400;
+
+	/**
+	 * Rayon des circuits d'attente.
+	 */
+	private static final float HOLDING_RADIUS = 60;
+
+	/**
+	 * Pas de la simulation, en secondes.
+	 */
+	private static final float STEP = 0.5f;
+
+	/**
+	 * Graine du générateur aléatoire, identique pour tous les modes.
+	 */
+	private static final long SEED = 42;
+
+	/**
+	 * Cette classe est une classe utilitaire et ne peut pas être instanciée.
+	 */
+	private LandingBenchmark() {
+	}
+
+	/**
+	 * Lance le banc d'essai.
+	 *
+	 * @param params
+	 *            Liste optionnelle des nombres d'avions, séparés par des
+	 *            virgules (200 par défaut), puis liste optionnelle des nombres
+	 *            de pistes (1 et 2 par défaut).
+	 */
+	static void run(PrintStream out, String[] params) throws InvalidRouteException {
+		int[] counts = Bench.parseCounts(params, 0, new int[] { 200 });
+		int[] runways = Bench.parseCounts(params, 1, new int[] { 1, 2 });
+
+		out.println("Landing simulation (runway separation " + SEPARATION + " s, one arrival every " + ARRIVAL_INTERVAL + " s on average)");
+		out.println(String.format("%8s %8s %8s %10s %12s %12s %10s %12s", "planes", "runways", "mode", "landings/h", "fuel/plane", "delay/plane", "reroutes", "ns/resched"));
+
+		for(int count : counts) {
+			for(int runwayCount : runways) {
+				RouteGeometry[] geometries = new RouteGeometry[runwayCount];
+
+				for(int r = 0; r < runwayCount; r++) {
+					float y = r * RUNWAY_SPACING;
+					Route landing = RouteParser.parseString("S-200," + y + ";L0," + y + ";", LANDING_CAPACITY);
+					geometries[r] = new RouteGeometry(landing);
+				}
+
+				for(RoutingMode mode : RoutingMode.values()) {
+					Simulation simulation = new Simulation(count, mode, geometries);
+					simulation.run();
+					simulation.report(out);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Une simulation, pour un nombre d'avions et un mode de routage.
+	 */
+	private static class Simulation {
+		// Plane states
+		private static final int WAITING = 0;
+		private static final int HOLDING = 1;
+		private static final int APPROACH = 2;
+		private static final int LANDED = 3;
+
+		private final int count;
+		private final RoutingMode mode;
+
+		// Per runway
+		private final float[] entryXs;
+		private final float[] entryYs;
+		private final float[] approachLengths;
+
+		/**
+		 * L'heure à partir de laquelle chaque piste est libre.
+		 */
+		private final float[] runwayFree;
+
+		private final LandingQueue queue;
+		private final SlotScheduler scheduler = new SlotScheduler();
+		private final ArrayDeque<TowerPlane> work = new ArrayDeque<TowerPlane>();
+
+		// Per plane
+		private final TowerPlane[] planes;
+		private final int[] states;
+		private final int[] routes;
+		private final int[] runways;
+		private final float[] spawns;
+		private final float[] holdingXs;
+		private final float[] holdingYs;
+		private final float[] xs;
+		private final float[] ys;
+		private final float[] remaining;
+		private final float[] fuel;
+		private final float[] delays;
+
+		private float now = 0;
+		private float lastLanding = 0;
+		private int landed = 0;
+		private int reroutes = 0;
+		private int rescheduled = 0;
+		private long rescheduleTime = 0;
+
+		Simulation(int count, RoutingMode mode, RouteGeometry[] geometries) {
+			this.count = count;
+			this.mode = mode;
+
+			entryXs = new float[geometries.length];
+			entryYs = new float[geometries.length];
+			approachLengths = new float[geometries.length];
+			runwayFree = new float[geometries.length];
+
+			for(int r = 0; r < geometries.length; r++) {
+				entryXs[r] = geometries[r].getEndX(0);
+				entryYs[r] = geometries[r].getEndY(0);
+				approachLengths[r] = geometries[r].getRemainingLength(0);
+
+				scheduler.addRunway(r, geometries[r], LANDING_CAPACITY);
+			}
+
+			scheduler.setSeparation(SEPARATION);
+
+			// The circuits and arrivals are centered between the runways
+			float centerX = entryXs[0];
+			float centerY = (entryYs[0] + entryYs[geometries.length - 1]) / 2;
+
+			// The holding circuits take every plane: none is sent to the
+			// graveyard
+			int[] capacities = new int[1 + HOLDING_ROUTES];
+			holdingXs = new float[capacities.length];
+			holdingYs = new float[capacities.length];
+
+			capacities[0] = scheduler.getCapacity();
+
+			for(int r = 1; r < capacities.length; r++) {
+				double bearing = 2 * Math.PI * r / HOLDING_ROUTES;
+
+				capacities[r] = count / HOLDING_ROUTES + 1;
+				holdingXs[r] = centerX + (float) Math.cos(bearing) * HOLDING_DISTANCE;
+				holdingYs[r] = centerY + (float) Math.sin(bearing) * HOLDING_DISTANCE;
+			}
+
+			queue = new LandingQueue(mode);
+			queue.setCapacities(capacities, work);
+
+			planes = new TowerPlane[count];
+			states = new int[count];
+			routes = new int[count];
+			runways = new int[count];
+			spawns = new float[count];
+			xs = new float[count];
+			ys = new float[count];
+			remaining = new float[count];
+			fuel = new float[count];
+			delays = new float[count];
+
+			Random random = new Random(SEED);
+			PlaneType[] types = PlaneType.values();
+			float time = 0;
+
+			for(int i = 0; i < count; i++) {
+				time += (float) (-Math.log(1 - random.nextDouble()) * ARRIVAL_INTERVAL);
+
+				double distance = MIN_DISTANCE + random.nextDouble() * (MAX_DISTANCE - MIN_DISTANCE);
+				double bearing = random.nextDouble() * 2 * Math.PI;
+
+				planes[i] = new TowerPlane(new RadioID("SIM" + i));
+				planes[i].setSlot(i);
+				planes[i].setType(types[random.nextInt(types.length)]);
+				routes[i] = -1;
+
+				spawns[i] = time;
+				xs[i] = centerX + (float) (Math.cos(bearing) * distance);
+				ys[i] = centerY + (float) (Math.sin(bearing) * distance);
+			}
+		}
+
+		/**
+		 * Simule jusqu'à l'atterrissage du dernier avion.
+		 */
+		void run() {
+			int step = 0;
+
+			while(landed < count) {
+				now = step * STEP;
+				boolean keepalive = (step % (int) (1 / STEP)) == 0;
+
+				for(int i = 0; i < count; i++) {
+					switch(states[i]) {
+						case WAITING:
+							if(spawns[i] <= now) {
+								spawn(i);
+							}
+							break;
+
+						case HOLDING:
+							hold(i, keepalive);
+							break;
+
+						case APPROACH:
+							approach(i);
+							break;
+					}
+				}
+
+				step++;
+			}
+		}
+
+		/**
+		 * Un avion apparaît et demande à atterrir.
+		 */
+		private void spawn(int i) {
+			TowerPlane plane = planes[i];
+
+			states[i] = HOLDING;
+
+			plane.landingRequested();
+			plane.setTimeToRunway(scheduler.estimate(xs[i], ys[i], plane.getType()));
+			delays[i] = plane.getTimeToRunway();
+
+			queue.add(plane, work);
+			route();
+		}
+
+		/**
+		 * Un avion en attente rejoint son circuit ou y tourne, et envoie
+		 * éventuellement sa position.
+		 */
+		private void hold(int i, boolean keepalive) {
+			TowerPlane plane = planes[i];
+
+			fly(i, holdingXs[routes[i]], holdingYs[routes[i]]);
+			burn(i);
+
+			if(!keepalive) {
+				return;
+			}
+
+			float estimate = scheduler.estimate(xs[i], ys[i], plane.getType());
+
+			if(!scheduler.isOutdated(plane, estimate)) {
+				return;
+			}
+
+			if(mode != RoutingMode.SLOT) {
+				plane.setTimeToRunway(estimate);
+				return;
+			}
+
+			long start = System.nanoTime();
+
+			queue.remove(plane, work);
+			plane.setTimeToRunway(estimate);
+			queue.add(plane, work);
+
+			rescheduleTime += System.nanoTime() - start;
+			rescheduled++;
+
+			route();
+		}
+
+		/**
+		 * Un avion en approche vole vers sa piste et y atterrit dès qu'elle
+		 * est libre.
+		 */
+		private void approach(int i) {
+			int r = runways[i];
+
+			burn(i);
+			remaining[i] -= planes[i].getType().speedAsPxPerSec() * STEP;
+
+			if(remaining[i] > 0 || now < runwayFree[r]) {
+				return;
+			}
+
+			states[i] = LANDED;
+			runwayFree[r] = now + SEPARATION;
+			scheduler.release(r);
+			lastLanding = now;
+			landed++;
+
+			// Delay beyond the direct flight time since the request
+			delays[i] = now - spawns[i] - delays[i];
+
+			queue.remove(planes[i], work);
+			route();
+		}
+
+		/**
+		 * Applique les changements de la file d'attente, comme le fait la
+		 * tour: chaque changement de route est compté comme un envoi de
+		 * route, les avions assignés aux routes d'atterrissage reçoivent une
+		 * piste et passent en approche.
+		 */
+		private void route() {
+			while(!work.isEmpty()) {
+				TowerPlane plane = work.poll();
+				int i = plane.getSlot();
+
+				if(!queue.contains(plane) || states[i] != HOLDING || queue.getRoute(plane) == routes[i]) {
+					continue;
+				}
+
+				routes[i] = queue.getRoute(plane);
+				reroutes++;
+
+				if(routes[i] == 0) {
+					queue.remove(plane, work);
+					plane.setLanding();
+					queue.add(plane, work);
+
+					states[i] = APPROACH;
+
+					int r = scheduler.assign(xs[i], ys[i], plane.getType(), (long) (now * 1000)).getRunway().getRoute();
+					runways[i] = r;
+
+					float dx = xs[i] - entryXs[r];
+					float dy = ys[i] - entryYs[r];
+					remaining[i] = (float) Math.sqrt(dx * dx + dy * dy) + approachLengths[r];
+				}
+			}
+		}
+
+		/**
+		 * Avance un avion d'un pas vers un circuit d'attente, ou autour de
+		 * celui-ci s'il l'a atteint.
+		 */
+		private void fly(int i, float cx, float cy) {
+			float step = planes[i].getType().speedAsPxPerSec() * STEP;
+			float dx = xs[i] - cx;
+			float dy = ys[i] - cy;
+			float d = (float) Math.sqrt(dx * dx + dy * dy);
+
+			if(d > HOLDING_RADIUS + step) {
+				xs[i] -= dx / d * step;
+				ys[i] -= dy / d * step;
+			}
+			else {
+				double angle = Math.atan2(dy, dx) + step / HOLDING_RADIUS;
+
+				xs[i] = cx + (float) Math.cos(angle) * HOLDING_RADIUS;
+				ys[i] = cy + (float) Math.sin(angle) * HOLDING_RADIUS;
+			}
+		}
+
+		private void burn(int i) {
+			fuel[i] += planes[i].getType().consumption * STEP;
+		}
+
+		void report(PrintStream out) {
+			double fuelTotal = 0;
+			double delayTotal = 0;
+
+			for(int i = 0; i < count; i++) {
+				fuelTotal += fuel[i];
+				delayTotal += delays[i];
+			}
+
+			double hours = (lastLanding - spawns[0]) / 3600;
+			String resched = (rescheduled == 0) ? "-" : String.valueOf(rescheduleTime / rescheduled);
+
+			out.println(String.format("%8d %8d %8s %10.1f %12.0f %12.1f %10d %12s", count, entryXs.length, mode, landed / hours, fuelTotal / count, delayTotal / count, reroutes, resched));
+		}
+	}
+}
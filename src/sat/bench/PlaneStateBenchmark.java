@@ -0,0 +1,163 @@
+package sat.bench;
+
+import java.io.PrintStream;
+
+import sat.radio.PlaneRegistry;
+import sat.radio.RadioID;
+import sat.tower.PlaneStateTable;
+import sat.tower.TowerPlane;
+import sat.utils.geo.Coordinates;
+
+/**
+ * Mesure la mémoire occupée par avion et le coût d'une mise à jour de
+ * position, en comparant le stockage des positions dans des objets
+ * <code>Coordinates</code> à la table {@link PlaneStateTable}.
+ * <p>
+ * Les coûts d'identité (RadioID, TowerPlane, entrée du registre) sont communs
+ * aux deux modèles et mesurés à part.
+ */
+public final class PlaneStateBenchmark {
+	/**
+	 * Nombre de mises à jour de position mesurées.
+	 */
+	private static final int UPDATES = 5000000;
+
+	/**
+	 * Garde les structures mesurées atteignables pendant la mesure.
+	 */
+	private static Object[] keep;
+
+	/**
+	 * Cette classe est une classe utilitaire et ne peut pas être instanciée.
+	 */
+	private PlaneStateBenchmark() {
+	}
+
+	/**
+	 * Lance le banc d'essai.
+	 *
+	 * @param params
+	 *            Liste optionnelle des nombres d'avions, séparés par des
+	 *            virgules (10000,100000 par défaut).
+	 */
+	static void run(PrintStream out, String[] params) {
+		int[] counts = Bench.parseCounts(params, 0, new int[] { 10000, 100000 });
+
+		out.println("Memory per plane (bytes)");
+		out.println(String.format("%10s %10s %10s %10s %10s", "planes", "identity", "objects", "table", "off-heap"));
+
+		for(int count : counts) {
+			measureMemory(out, count);
+		}
+
+		out.println();
+		out.println("Position update (" + UPDATES + " updates on " + counts[counts.length - 1] + " planes)");
+		out.println(String.format("%10s %10s %10s", "model", "ns/update", "B/update"));
+
+		measureUpdates(out, counts[counts.length - 1]);
+	}
+
+	/**
+	 * Mesure la mémoire occupée par <code>count</code> avions.
+	 */
+	private static void measureMemory(PrintStream out, int count) {
+		keep = null;
+		long base = Bench.usedHeap();
+
+		// Identity: what every connected plane costs in both models
+		PlaneRegistry<TowerPlane> registry = new PlaneRegistry<TowerPlane>();
+
+		for(int i = 0; i < count; i++) {
+			RadioID id = new RadioID("PLN" + i);
+			TowerPlane plane = new TowerPlane(id);
+			plane.setSlot(registry.register(id, plane));
+		}
+
+		keep = new Object[] { registry };
+		long identity = Bench.usedHeap();
+
+		// Objects: last position and loop point as Coordinates
+		Coordinates[] positions = new Coordinates[count];
+		Coordinates[] loopPoints = new Coordinates[count];
+
+		for(int i = 0; i < count; i++) {
+			positions[i] = new Coordinates(i, i, 1000);
+			loopPoints[i] = new Coordinates(i, -i, 1000);
+		}
+
+		keep = new Object[] { registry, positions, loopPoints };
+		long objects = Bench.usedHeap();
+
+		keep = new Object[] { registry };
+		positions = null;
+		loopPoints = null;
+
+		// Table: the same state, off-heap
+		PlaneStateTable table = new PlaneStateTable();
+		Coordinates loopPoint = new Coordinates(0, 0, 1000);
+
+		for(TowerPlane plane : registry) {
+			int slot = plane.getSlot();
+
+			table.init(slot);
+			table.updatePosition(slot, slot, slot, 1000, 1);
+			table.setLoopPoint(slot, loopPoint);
+			table.store(plane);
+		}
+
+		keep = new Object[] { registry, table };
+		long tabled = Bench.usedHeap();
+
+		out.println(String.format("%10d %10d %10d %10d %10d", count, (identity - base) / count, (objects - identity) / count, (tabled - identity) / count, table.getMemoryUsage() / count));
+
+		keep = null;
+	}
+
+	/**
+	 * Mesure le coût d'une mise à jour de position dans chacun des modèles.
+	 */
+	private static void measureUpdates(PrintStream out, int count) {
+		Coordinates[] positions = new Coordinates[count];
+		PlaneStateTable table = new PlaneStateTable(count);
+
+		for(int i = 0; i < count; i++) {
+			positions[i] = new Coordinates(0, 0, 0);
+			table.init(i);
+		}
+
+		// Warm-up
+		updateObjects(positions, UPDATES);
+		updateTable(table, count, UPDATES);
+
+		long allocated = Bench.allocatedBytes();
+		long start = System.nanoTime();
+		updateObjects(positions, UPDATES);
+		report(out, "objects", start, allocated);
+
+		allocated = Bench.allocatedBytes();
+		start = System.nanoTime();
+		updateTable(table, count, UPDATES);
+		report(out, "table", start, allocated);
+	}
+
+	private static void updateObjects(Coordinates[] positions, int updates) {
+		for(int i = 0; i < updates; i++) {
+			int slot = i % positions.length;
+			positions[slot] = new Coordinates(i, slot, 1000);
+		}
+	}
+
+	private static void updateTable(PlaneStateTable table, int count, int updates) {
+		for(int i = 0; i < updates; i++) {
+			int slot = i % count;
+			table.updatePosition(slot, i, slot, 1000, i);
+		}
+	}
+
+	private static void report(PrintStream out, String model, long start, long allocated) {
+		long elapsed = System.nanoTime() - start;
+		long bytes = (allocated < 0) ? -1 : (Bench.allocatedBytes() - allocated) / UPDATES;
+
+		out.println(String.format("%10s %10.1f %10d", model, (double) elapsed / UPDATES, bytes));
+	}
+}
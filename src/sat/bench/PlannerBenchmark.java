@@ -0,0 +1,140 @@
+package sat.bench;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import sat.plane.PlaneType;
+import sat.radio.RadioID;
+import sat.tower.LandingQueue;
+import sat.tower.RoutingMode;
+import sat.tower.RoutingPlanner;
+import sat.tower.TowerPlane;
+
+/**
+ * Mesure la durée d'une évaluation des modes de routage par
+ * {@link RoutingPlanner} sur une file d'attente remplie d'avions aléatoires,
+ * avec un seul thread et avec tous les processeurs, et affiche les
+ * projections obtenues.
+ */
+public final class PlannerBenchmark {
+	/**
+	 * Nombre d'évaluations mesurées.
+	 */
+	private static final int RUNS = 50;
+
+	/**
+	 * Le temps alloué à la recherche locale, en millisecondes.
+	 */
+	private static final long BUDGET = 20;
+
+	/**
+	 * Nombre d'avions simultanément sur la route d'atterrissage.
+	 */
+	private static final int LANDING_CAPACITY = 2;
+
+	/**
+	 * Séparation entre deux atterrissages, en secondes.
+	 */
+	private static final float SEPARATION = 10;
+
+	/**
+	 * Cette classe est une classe utilitaire et ne peut pas être instanciée.
+	 */
+	private PlannerBenchmark() {
+	}
+
+	/**
+	 * Lance le banc d'essai.
+	 *
+	 * @param params
+	 *            Liste optionnelle des nombres d'avions en attente, séparés
+	 *            par des virgules (500 par défaut).
+	 */
+	static void run(PrintStream out, String[] params) {
+		int[] counts = Bench.parseCounts(params, 0, new int[] { 500 });
+		int processors = Runtime.getRuntime().availableProcessors();
+
+		RoutingPlanner sequential = new RoutingPlanner(1);
+		RoutingPlanner parallel = new RoutingPlanner(processors);
+
+		out.println("Routing plan evaluation (local search budget " + BUDGET + " ms, " + processors + " processors)");
+		out.println(String.format("%8s %12s %12s %12s %12s", "planes", "modes seq", "modes pool", "all seq", "all pool"));
+
+		List<RoutingPlanner.Plan> plans = null;
+		long now = System.currentTimeMillis();
+
+		for(int count : counts) {
+			ArrayList<TowerPlane> snapshot = fill(count);
+
+			// Projected 30 minutes after the planes connected
+			long later = now + 30 * 60 * 1000;
+
+			double modes1 = measure(sequential, snapshot, later, false);
+			double modesN = measure(parallel, snapshot, later, false);
+			double all1 = measure(sequential, snapshot, later, true);
+			double allN = measure(parallel, snapshot, later, true);
+
+			out.println(String.format("%8d %9.2f ms %9.2f ms %9.2f ms %9.2f ms", count, modes1, modesN, all1, allN));
+
+			plans = parallel.evaluate(snapshot, LANDING_CAPACITY, SEPARATION, later, BUDGET, true);
+		}
+
+		out.println();
+		out.println("Plans for " + counts[counts.length - 1] + " planes, best first");
+
+		for(RoutingPlanner.Plan plan : plans) {
+			out.println(plan);
+		}
+
+		sequential.shutdown();
+		parallel.shutdown();
+	}
+
+	/**
+	 * Crée une file d'attente de <code>count</code> avions aléatoires et
+	 * retourne sa copie.
+	 */
+	private static ArrayList<TowerPlane> fill(int count) {
+		Random random = new Random(42);
+		PlaneType[] types = PlaneType.values();
+
+		LandingQueue queue = new LandingQueue(RoutingMode.CHRONOS);
+		ArrayList<TowerPlane> changed = new ArrayList<TowerPlane>();
+		queue.setCapacities(new int[] { LANDING_CAPACITY, count }, changed);
+
+		for(int i = 0; i < count; i++) {
+			PlaneType type = types[random.nextInt(types.length)];
+			TowerPlane plane = new TowerPlane(new RadioID("PLN" + i));
+
+			plane.setSlot(i);
+			plane.setType(type);
+			plane.landingRequested();
+			plane.setTimeToRunway((500 + random.nextFloat() * 2500) / type.speedAsPxPerSec());
+			plane.setMayDay(random.nextInt(20) == 0);
+
+			queue.add(plane, changed);
+		}
+
+		return queue.snapshot();
+	}
+
+	/**
+	 * Retourne la durée moyenne d'une évaluation, en millisecondes.
+	 */
+	private static double measure(RoutingPlanner planner, ArrayList<TowerPlane> snapshot, long now, boolean reorderings) {
+		// Warm-up
+		for(int i = 0; i < RUNS / 5; i++) {
+			planner.evaluate(snapshot, LANDING_CAPACITY, SEPARATION, now, BUDGET, reorderings);
+		}
+
+		long start = System.nanoTime();
+
+		for(int i = 0; i < RUNS; i++) {
+			planner.evaluate(snapshot, LANDING_CAPACITY, SEPARATION, now, BUDGET, reorderings);
+		}
+
+		return (System.nanoTime() - start) / 1e6 / RUNS;
+	}
+}
@@ -0,0 +1,145 @@
+package sat.bench;
+
+import java.io.IOException;
+import java.io.PrintStream;
+
+import sat.radio.RadioID;
+import sat.radio.message.MessageRouting;
+import sat.radio.message.MessageRoutingBatch;
+import sat.radio.message.stream.MessageOutputStream;
+import sat.utils.routes.MoveType;
+import sat.utils.routes.Route;
+import sat.utils.routes.RoutingType;
+import sat.utils.routes.Waypoint;
+
+/**
+ * Mesure le coût de l'envoi d'une route à un ensemble d'avions: création et
+ * encodage d'un message Routing par point de la route, comparés à
+ * l'assemblage d'une suite pré-encodée ({@link MessageRoutingBatch}).
+ * <p>
+ * Seul le travail de la tour est mesuré (construction et encodage des
+ * messages), pas l'écriture sur le réseau.
+ */
+public final class RoutingBenchmark {
+	/**
+	 * Nombre de passes mesurées sur l'ensemble des avions.
+	 */
+	private static final int ROUNDS = 50;
+
+	/**
+	 * Garde le dernier encodage atteignable, pour qu'il ne soit pas éliminé.
+	 */
+	private static byte[] sink;
+
+	/**
+	 * Cette classe est une classe utilitaire et ne peut pas être instanciée.
+	 */
+	private RoutingBenchmark() {
+	}
+
+	/**
+	 * Lance le banc d'essai.
+	 *
+	 * @param params
+	 *            Liste optionnelle des nombres d'avions, séparés par des
+	 *            virgules (1000 par défaut).
+	 */
+	static void run(PrintStream out, String[] params) throws IOException {
+		int[] counts = Bench.parseCounts(params, 0, new int[] { 1000 });
+		Route route = sampleRoute();
+		MessageRoutingBatch.Template template = new MessageRoutingBatch.Template(route);
+
+		out.println("Routing a " + route.size() + " waypoints route (" + ROUNDS + " rounds)");
+		out.println(String.format("%10s %10s %10s %12s %10s %10s", "planes", "mode", "model", "us/round", "ns/plane", "B/plane"));
+
+		for(int count : counts) {
+			RadioID[] planes = new RadioID[count];
+
+			for(int i = 0; i < count; i++) {
+				planes[i] = new RadioID("PLN" + i);
+				planes[i].toLegacyID();
+				planes[i].toSerializedID();
+			}
+
+			for(boolean extended : new boolean[] { false, true }) {
+				String mode = extended ? "extended" : "legacy";
+
+				// Warm-up
+				perMessage(planes, route, extended);
+				batched(planes, template, extended);
+
+				long allocated = Bench.allocatedBytes();
+				long start = System.nanoTime();
+
+				for(int round = 0; round < ROUNDS; round++) {
+					perMessage(planes, route, extended);
+				}
+
+				report(out, count, mode, "messages", start, allocated);
+
+				allocated = Bench.allocatedBytes();
+				start = System.nanoTime();
+
+				for(int round = 0; round < ROUNDS; round++) {
+					batched(planes, template, extended);
+				}
+
+				report(out, count, mode, "batch", start, allocated);
+			}
+		}
+	}
+
+	/**
+	 * Un circuit semblable à <code>routes/medium</code>.
+	 */
+	private static Route sampleRoute() {
+		Route route = new Route(10);
+
+		route.add(new Waypoint(MoveType.STRAIGHT, new float[] { 900, 50, 0 }));
+		route.add(new Waypoint(MoveType.STRAIGHT, new float[] { 1000, 50, 0 }));
+
+		for(int i = 1; i <= 4; i++) {
+			route.add(new Waypoint(MoveType.CIRCULAR, new float[] { 1000, i * 100, 0, (i % 2 == 0) ? -180 : 180 }));
+		}
+
+		route.add(new Waypoint(MoveType.CIRCULAR, new float[] { 1000, 500, 0, 90 }));
+		route.add(new Waypoint(MoveType.CIRCULAR, new float[] { 992, 500, 0, 135 }));
+		route.add(new Waypoint(MoveType.STRAIGHT, new float[] { 592, 149, 0 }));
+		route.add(new Waypoint(MoveType.CIRCULAR, new float[] { 633, 108, 0, 135 }));
+
+		return route;
+	}
+
+	/**
+	 * L'ancien envoi: la route est copiée et chaque point est encodé dans
+	 * son propre message.
+	 */
+	private static void perMessage(RadioID[] planes, Route route, boolean extended) throws IOException {
+		for(RadioID id : planes) {
+			Route copy = (Route) route.clone();
+
+			sink = MessageOutputStream.encode(new MessageRouting(id, copy.remove(0), RoutingType.REPLACEALL), extended);
+
+			for(Waypoint waypoint : copy) {
+				sink = MessageOutputStream.encode(new MessageRouting(id, waypoint, RoutingType.LAST), extended);
+			}
+		}
+	}
+
+	/**
+	 * L'envoi par suite pré-encodée.
+	 */
+	private static void batched(RadioID[] planes, MessageRoutingBatch.Template template, boolean extended) throws IOException {
+		for(RadioID id : planes) {
+			sink = MessageOutputStream.encode(new MessageRoutingBatch(id, template, true), extended);
+		}
+	}
+
+	private static void report(PrintStream out, int count, String mode, String model, long start, long allocated) {
+		long elapsed = System.nanoTime() - start;
+		long planes = (long) count * ROUNDS;
+		long bytes = (allocated < 0) ? -1 : (Bench.allocatedBytes() - allocated) / planes;
+
+		out.println(String.format("%10d %10s %10s %12.1f %10.1f %10d", count, mode, model, elapsed / 1000.0 / ROUNDS, (double) elapsed / planes, bytes));
+	}
+}
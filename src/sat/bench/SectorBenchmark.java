@@ -0,0 +1,194 @@
+package sat.bench;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.concurrent.CountDownLatch;
+
+import sat.events.Event;
+import sat.radio.RadioEvent;
+import sat.radio.RadioID;
+import sat.radio.message.MessageKeepalive;
+import sat.radio.message.MessageLanding;
+import sat.tower.Tower;
+import sat.utils.geo.Coordinates;
+import sat.utils.routes.InvalidRouteException;
+import sat.utils.routes.RouteParser;
+
+/**
+ * Mesure le débit de plusieurs tours de contrôle fonctionnant dans la même
+ * JVM, une par secteur, chacune alimentée par son propre thread.
+ * <p>
+ * Chaque tour reçoit la même charge, sans radio: connexion de ses avions,
+ * demandes d'atterrissage puis plusieurs passes de positions, distribuées
+ * directement à la tour comme le fait le rejeu d'un journal. Le débit total
+ * doit croître avec le nombre de tours tant qu'il reste des processeurs
+ * libres.
+ */
+public final class SectorBenchmark {
+	/**
+	 * Nombre de passes de positions par avion.
+	 */
+	private static final int ROUNDS = 20;
+
+	/**
+	 * Rayon du secteur de chaque tour.
+	 */
+	private static final float RADIUS = 2000;
+
+	/**
+	 * Capacité du dernier circuit d'attente, suffisante pour tous les avions.
+	 */
+	private static final int HOLDING_CAPACITY = 1000000;
+
+	/**
+	 * Cette classe est une classe utilitaire et ne peut pas être instanciée.
+	 */
+	private SectorBenchmark() {
+	}
+
+	/**
+	 * Lance le banc d'essai.
+	 *
+	 * @param params
+	 *            Liste optionnelle des nombres de tours, séparés par des
+	 *            virgules (1,2,4 par défaut), puis nombre optionnel d'avions
+	 *            par tour (500 par défaut).
+	 */
+	static void run(PrintStream out, String[] params) throws IOException, InvalidRouteException {
+		int[] counts = Bench.parseCounts(params, 0, new int[] { 1, 2, 4 });
+		int planes = Bench.parseCounts(params, 1, new int[] { 500 })[0];
+
+		out.println("Sector towers in one JVM (" + planes + " planes per tower, " + ROUNDS + " position rounds, " + Runtime.getRuntime().availableProcessors() + " processors)");
+		out.println(String.format("%8s %12s %12s %12s %10s", "towers", "events", "ms", "events/s", "speedup"));
+
+		double base = 0;
+
+		for(int count : counts) {
+			Tower[] towers = new Tower[count];
+
+			for(int t = 0; t < count; t++) {
+				towers[t] = newTower("bench-" + count + "-" + t);
+			}
+
+			// Warm-up
+			driveAll(towers, planes);
+
+			// Connection, landing request, positions and disconnection
+			long events = (long) count * planes * (3 + ROUNDS);
+			long duration = driveAll(towers, planes);
+			double rate = events / (duration / 1e9);
+
+			if(base == 0) {
+				base = rate / count;
+			}
+
+			out.println(String.format("%8d %12d %12.1f %12.0f %9.2fx", count, events, duration / 1e6, rate, rate / base));
+
+			for(Tower tower : towers) {
+				tower.shutdown();
+			}
+		}
+	}
+
+	/**
+	 * Crée et initialise une tour, avec une piste et deux circuits
+	 * d'attente.
+	 */
+	private static Tower newTower(String name) throws IOException, InvalidRouteException {
+		Tower tower = new Tower(name);
+		tower.getConfig().setProperty("radio.ciphered", "no");
+		tower.init();
+
+		tower.addRoute(RouteParser.parseString("S-200,0;L0,0;", 2));
+		tower.addRoute(RouteParser.parseString("S375,0;S400,0;C400,50,180;S350,100;C350,50,180;", 10));
+		tower.addRoute(RouteParser.parseString("S-375,400;S-400,400;C-400,450,180;S-450,500;C-450,450,180;", HOLDING_CAPACITY));
+
+		return tower;
+	}
+
+	/**
+	 * Alimente toutes les tours en parallèle, un thread par tour, et retourne
+	 * la durée totale en nanosecondes.
+	 */
+	private static long driveAll(final Tower[] towers, final int planes) {
+		final CountDownLatch start = new CountDownLatch(1);
+		Thread[] threads = new Thread[towers.length];
+
+		for(int t = 0; t < towers.length; t++) {
+			final Tower tower = towers[t];
+
+			threads[t] = new Thread("Sector " + t) {
+				public void run() {
+					try {
+						start.await();
+					}
+					catch(InterruptedException e) {
+						return;
+					}
+
+					drive(tower, planes);
+				}
+			};
+
+			threads[t].start();
+		}
+
+		long begin = System.nanoTime();
+		start.countDown();
+
+		for(Thread thread : threads) {
+			try {
+				thread.join();
+			}
+			catch(InterruptedException e) {
+				break;
+			}
+		}
+
+		return System.nanoTime() - begin;
+	}
+
+	/**
+	 * Connecte <code>planes</code> avions à une tour, leur fait demander
+	 * l'atterrissage, envoyer leur position puis les déconnecte.
+	 */
+	private static void drive(Tower tower, int planes) {
+		RadioID[] ids = new RadioID[planes];
+
+		for(int i = 0; i < planes; i++) {
+			ids[i] = new RadioID("PLN" + i);
+			deliver(tower, new RadioEvent.PlaneConnected(ids[i]));
+			deliver(tower, new MessageLanding(ids[i], position(i, 0)));
+		}
+
+		for(int round = 1; round <= ROUNDS; round++) {
+			for(int i = 0; i < planes; i++) {
+				deliver(tower, new MessageKeepalive(ids[i], position(i, round)));
+			}
+		}
+
+		for(int i = 0; i < planes; i++) {
+			deliver(tower, new RadioEvent.PlaneDisconnected(ids[i]));
+		}
+	}
+
+	/**
+	 * La position d'un avion à une passe donnée: chaque avion tourne autour
+	 * de la tour sur son propre cercle.
+	 */
+	private static Coordinates position(int i, int round) {
+		float r = RADIUS * (i % 97 + 1) / 98;
+		double angle = i + round * 0.01;
+
+		return new Coordinates((float) (Math.cos(angle) * r), (float) (Math.sin(angle) * r), 0);
+	}
+
+	private static void deliver(Tower tower, Event event) {
+		try {
+			event.trigger(tower);
+		}
+		catch(Exception e) {
+			// Ignore exceptions in handlers, like an emitter would
+		}
+	}
+}
@@ -1,5 +1,7 @@
 package sat.events;
 
+import sat.events.metrics.EventMetrics;
+import sat.events.metrics.QueueGauge;
 import sat.events.schedulers.EventScheduler;
 import sat.events.schedulers.QueueEventScheduler;
 
@@ -21,6 +23,18 @@ public class AsyncEventEmitter extends EventEmitter {
 	private Event activeEvent;
 	private EventScheduler scheduler;
 
+	/**
+	 * La jauge de profondeur de la file d'attente, si une instrumentation est
+	 * associée à cet émetteur.
+	 */
+	private QueueGauge gauge;
+
+	/**
+	 * L'heure de mise en file de l'événement en cours de distribution
+	 * (System.nanoTime), ou 0 si aucun événement n'est distribué.
+	 */
+	private volatile long activeEnqueueTime;
+
 	public AsyncEventEmitter() {
 		this(null, null);
 	}
@@ -43,8 +57,40 @@ public class AsyncEventEmitter extends EventEmitter {
 		this.scheduler = scheduler;
 	}
 
+	/**
+	 * Associe une instrumentation à cet émetteur. La profondeur de sa file
+	 * d'attente sera publiée sous le nom de la classe de cet émetteur.
+	 */
+	public void setMetrics(EventMetrics metrics) {
+		setMetrics(metrics, getClass().getSimpleName());
+	}
+
+	/**
+	 * Associe une instrumentation à cet émetteur et publie la profondeur de
+	 * sa file d'attente sous un nom donné. L'instrumentation doit être
+	 * associée avant la première émission pour que la jauge soit exacte.
+	 * 
+	 * @param metrics
+	 *            L'instrumentation à utiliser, ou null pour la retirer.
+	 * @param queueName
+	 *            Le nom de la file d'attente de cet émetteur.
+	 */
+	public synchronized void setMetrics(EventMetrics metrics, String queueName) {
+		super.setMetrics(metrics);
+		gauge = (metrics != null) ? metrics.getQueueGauge(queueName) : null;
+	}
+
 	public synchronized void emit(Event event) {
-		scheduler.addEvent(event);
+		// The enqueue time is kept by the scheduler: the same event may be
+		// queued by several emitters at once
+		long enqueueTime = 0;
+
+		if(gauge != null) {
+			gauge.enqueued();
+			enqueueTime = System.nanoTime();
+		}
+
+		scheduler.addEvent(event, enqueueTime);
 
 		if(activeEvent == null) {
 			nextEvent();
@@ -52,6 +98,8 @@ public class AsyncEventEmitter extends EventEmitter {
 			new Thread() {
 				public void run() {
 					while(activeEvent != null) {
+						recordQueueLatency(activeEvent, activeEnqueueTime);
+
 						try {
 							AsyncEventEmitter.super.emit(activeEvent);
 						}
@@ -66,5 +114,43 @@ public class AsyncEventEmitter extends EventEmitter {
 
 	private synchronized void nextEvent() {
 		activeEvent = scheduler.nextEvent();
+
+		if(activeEvent != null && gauge != null) {
+			gauge.dequeued();
+		}
+
+		activeEnqueueTime = (activeEvent != null) ? scheduler.getEnqueueTime() : 0;
+	}
+
+	/**
+	 * Retourne le nombre d'événements en attente de distribution, ou -1 si
+	 * aucune instrumentation n'est associée à cet émetteur.
+	 */
+	public int getQueueDepth() {
+		QueueGauge gauge = this.gauge;
+		return (gauge != null) ? gauge.getDepth() : -1;
+	}
+
+	/**
+	 * Retourne le retard de distribution, en nanosecondes: le temps écoulé
+	 * depuis la mise en file de l'événement en cours de distribution. Vaut 0
+	 * si aucun événement n'est distribué ou si aucune instrumentation n'est
+	 * associée à cet émetteur.
+	 */
+	public long getDispatchLag() {
+		long enqueueTime = activeEnqueueTime;
+		return (enqueueTime == 0) ? 0 : System.nanoTime() - enqueueTime;
+	}
+
+	/**
+	 * Enregistre le temps passé par un événement dans la file d'attente, si
+	 * l'instrumentation est active.
+	 */
+	private void recordQueueLatency(Event event, long enqueueTime) {
+		EventMetrics metrics = this.metrics;
+
+		if(metrics != null && metrics.isEnabled() && enqueueTime != 0) {
+			metrics.recordQueueLatency(event.getClass(), System.nanoTime() - enqueueTime);
+		}
 	}
 }
@@ -3,6 +3,7 @@ package sat.events;
 import java.io.Serializable;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Un événement. Cette classe représente un événement pouvant être émit par un
@@ -12,16 +13,34 @@ import java.lang.reflect.Method;
 @SuppressWarnings("serial")
 public class Event implements Cloneable, Serializable {
 	/**
-	 * L'émetteur qui a émit cet événement. Cet attribut n'est pas sérialisé
-	 * avec l'événement, dans un tel cas, l'émetteur original est perdu.
+	 * Contexte de distribution propre à chaque thread. Il contient l'émetteur
+	 * de l'événement en cours de distribution, ce qui permet de partager une
+	 * même instance d'événement entre tous les listeners sans la copier.
 	 */
-	transient private EventEmitterInterface emitter;
+	private static final ThreadLocal<DispatchContext> context = new ThreadLocal<DispatchContext>() {
+		protected DispatchContext initialValue() {
+			return new DispatchContext();
+		}
+	};
+
+	/**
+	 * Cache des gestionnaires résolus, indexé par classe de listener puis par
+	 * classe d'événement. Évite de parcourir la hiérarchie de classes par
+	 * introspection à chaque distribution.
+	 */
+	private static final ConcurrentHashMap<Class<?>, ConcurrentHashMap<Class<?>, Handler>> handlers = new ConcurrentHashMap<Class<?>, ConcurrentHashMap<Class<?>, Handler>>();
 
 	/**
 	 * Retourne l'émetteur de cet événement.
+	 * <p>
+	 * L'émetteur n'est pas stocké dans l'événement lui-même mais dans le
+	 * contexte de distribution du thread courant. Cette méthode n'a donc de
+	 * sens qu'à l'intérieur d'un gestionnaire, pendant la distribution de
+	 * l'événement. En dehors, elle retourne <code>null</code>.
 	 */
 	public EventEmitterInterface getEmitter() {
-		return emitter;
+		DispatchContext ctx = context.get();
+		return (ctx.event == this) ? ctx.emitter : null;
 	}
 
 	/**
@@ -54,37 +73,89 @@ public class Event implements Cloneable, Serializable {
 	 *             Si l'execution du listener a provoqué une exception.
 	 */
 	public final void trigger(EventListener listener, EventEmitterInterface emitter) throws UnhandledEventException, InvocationTargetException {
-		// Event itself is not modified
-		Event event = (Event) this.clone();
+		Method on = getHandler(listener.getClass(), getClass()).method;
+
+		if(on == null) {
+			// Event has not be catched
+			throw new UnhandledEventException();
+		}
+
+		DispatchContext ctx = context.get();
+
+		// Save the outer context, a handler may trigger another event
+		Event previousEvent = ctx.event;
+		EventEmitterInterface previousEmitter = ctx.emitter;
+		Object previousArg = ctx.args[0];
+
+		ctx.event = this;
+		ctx.emitter = emitter;
+		ctx.args[0] = this;
+
+		try {
+			// Invoke!
+			on.invoke(listener, ctx.args);
+		}
+		catch(IllegalAccessException e) {
+			throw new UnhandledEventException();
+		}
+		catch(IllegalArgumentException e) {
+			throw new UnhandledEventException();
+		}
+		finally {
+			ctx.event = previousEvent;
+			ctx.emitter = previousEmitter;
+			ctx.args[0] = previousArg;
+		}
+	}
 
-		// Set the emitter
-		event.emitter = emitter;
+	/**
+	 * Retourne le gestionnaire d'un listener pour une classe d'événement
+	 * donnée. Le résultat, même négatif, est mis en cache.
+	 */
+	private static Handler getHandler(Class<?> listenerClass, Class<?> eventClass) {
+		ConcurrentHashMap<Class<?>, Handler> listenerHandlers = handlers.get(listenerClass);
+
+		if(listenerHandlers == null) {
+			listenerHandlers = new ConcurrentHashMap<Class<?>, Handler>();
+			ConcurrentHashMap<Class<?>, Handler> existing = handlers.putIfAbsent(listenerClass, listenerHandlers);
+
+			if(existing != null) {
+				listenerHandlers = existing;
+			}
+		}
 
+		Handler handler = listenerHandlers.get(eventClass);
+
+		if(handler == null) {
+			handler = new Handler(resolveHandler(listenerClass, eventClass));
+			listenerHandlers.putIfAbsent(eventClass, handler);
+		}
+
+		return handler;
+	}
+
+	/**
+	 * Recherche la méthode <code>on()</code> la plus spécifique d'un listener
+	 * pour une classe d'événement donnée.
+	 * 
+	 * @return La méthode trouvée, ou <code>null</code> si le listener ne gère
+	 *         pas cet événement.
+	 */
+	private static Method resolveHandler(Class<?> listenerClass, Class<?> eventClass) {
 		// --------------------------------------
 		// In memoriam of Generics-powered events
 		//     "Because *this*, doesnt work"
 		// --------------------------------------
 
-		// The class of the event
-		Class<?> eventClass = event.getClass();
-
 		while(eventClass != null) {
 			try {
 				// Try to get a handler for the exact class of this event
-				Method on = listener.getClass().getMethod("on", eventClass);
+				Method on = listenerClass.getMethod("on", eventClass);
 
 				// Ensure accessibility
 				on.setAccessible(true); // Inner-class are otherwise unavailable
 
-				// Invoke!
-				on.invoke(listener, event);
-
-				// Done
-				return;
-			}
-			catch(InvocationTargetException e) {
-				// Invocation throwed an exception, rethrow it
-				throw e;
+				return on;
 			}
 			catch(Exception e) {
 				// Exception when getting the handler, handler is probably undefined
@@ -99,8 +170,7 @@ public class Event implements Cloneable, Serializable {
 			}
 		}
 
-		// Event has not be catched
-		throw new UnhandledEventException();
+		return null;
 	}
 
 	public Object clone() {
@@ -112,4 +182,26 @@ public class Event implements Cloneable, Serializable {
 			return this;
 		}
 	}
+
+	/**
+	 * Un gestionnaire résolu. La méthode est <code>null</code> si le listener
+	 * ne gère pas la classe d'événement associée.
+	 */
+	private static final class Handler {
+		private final Method method;
+
+		private Handler(Method method) {
+			this.method = method;
+		}
+	}
+
+	/**
+	 * Contexte de distribution d'un thread. Le tableau d'arguments est
+	 * réutilisé d'un appel à l'autre pour éviter une allocation par listener.
+	 */
+	private static final class DispatchContext {
+		private Event event;
+		private EventEmitterInterface emitter;
+		private final Object[] args = new Object[1];
+	}
 }
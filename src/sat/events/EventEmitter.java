@@ -1,7 +1,6 @@
 package sat.events;
 
-import java.util.HashSet;
-import java.util.Set;
+import sat.events.metrics.EventMetrics;
 
 /**
  * Un émetteur d'événement. Cette classe fourni les méthodes de bases pour
@@ -12,10 +11,25 @@ import java.util.Set;
  * terminée.
  */
 public abstract class EventEmitter implements EventEmitterInterface {
+	/**
+	 * Tableau vide partagé, utilisé comme liste initiale des listeners.
+	 */
+	private static final EventListener[] NO_LISTENERS = new EventListener[0];
+
 	/**
 	 * La liste des EventListeners associés à cet émetteur.
+	 * <p>
+	 * Ce tableau n'est jamais modifié: chaque ajout ou retrait d'un listener
+	 * crée une nouvelle copie (copy-on-write). L'émission peut donc parcourir
+	 * le tableau sans verrou ni itérateur, même si un listener est ajouté ou
+	 * retiré depuis un autre thread pendant la distribution.
 	 */
-	protected Set<EventListener> listeners = new HashSet<EventListener>();
+	private volatile EventListener[] listeners = NO_LISTENERS;
+
+	/**
+	 * Verrou sérialisant les modifications de la liste des listeners.
+	 */
+	private final Object listenersLock = new Object();
 
 	/**
 	 * L'objet qui sera associé comme émetteur pour les événements émis par cet
@@ -25,6 +39,11 @@ public abstract class EventEmitter implements EventEmitterInterface {
 	 */
 	protected EventEmitterInterface emitter;
 
+	/**
+	 * L'instrumentation associée à cet émetteur, ou null.
+	 */
+	protected volatile EventMetrics metrics;
+
 	/**
 	 * Crée un nouveau émetteur d'événement.
 	 */
@@ -48,8 +67,25 @@ public abstract class EventEmitter implements EventEmitterInterface {
 	 * Ajoute un gestionnaire aux événements de cet émétteur.
 	 */
 	public void addListener(EventListener listener) {
-		if(listener != null) {
-			listeners.add(listener);
+		if(listener == null) {
+			return;
+		}
+
+		synchronized(listenersLock) {
+			EventListener[] current = listeners;
+
+			for(EventListener l : current) {
+				if(l.equals(listener)) {
+					// Already registered
+					return;
+				}
+			}
+
+			EventListener[] updated = new EventListener[current.length + 1];
+			System.arraycopy(current, 0, updated, 0, current.length);
+			updated[current.length] = listener;
+
+			listeners = updated;
 		}
 	}
 
@@ -57,20 +93,108 @@ public abstract class EventEmitter implements EventEmitterInterface {
 	 * Retire un gestionnaire de cet émetteur.
 	 */
 	public void removeListener(EventListener listener) {
-		listeners.remove(listener);
+		if(listener == null) {
+			return;
+		}
+
+		synchronized(listenersLock) {
+			EventListener[] current = listeners;
+
+			for(int i = 0; i < current.length; i++) {
+				if(current[i].equals(listener)) {
+					if(current.length == 1) {
+						listeners = NO_LISTENERS;
+						return;
+					}
+
+					EventListener[] updated = new EventListener[current.length - 1];
+					System.arraycopy(current, 0, updated, 0, i);
+					System.arraycopy(current, i + 1, updated, i, current.length - i - 1);
+
+					listeners = updated;
+					return;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Indique si au moins un gestionnaire est associé à cet émetteur. Permet
+	 * d'éviter de construire un événement que personne ne recevra.
+	 */
+	public boolean hasListeners() {
+		return listeners.length > 0;
+	}
+
+	/**
+	 * Associe une instrumentation à cet émetteur. Les mesures ne sont
+	 * collectées que si cette instrumentation est active.
+	 * 
+	 * @param metrics
+	 *            L'instrumentation à utiliser, ou null pour la retirer.
+	 */
+	public void setMetrics(EventMetrics metrics) {
+		this.metrics = metrics;
+	}
+
+	/**
+	 * Retourne l'instrumentation associée à cet émetteur, ou null.
+	 */
+	public EventMetrics getMetrics() {
+		return metrics;
 	}
 
 	/**
 	 * Emet un événement.
 	 */
 	public void emit(Event event) {
-		for(EventListener listener : listeners) {
+		EventMetrics metrics = this.metrics;
+
+		if(metrics != null && metrics.isEnabled()) {
+			emitInstrumented(event, metrics);
+			return;
+		}
+
+		// Snapshot: later modifications do not affect this distribution
+		EventListener[] listeners = this.listeners;
+
+		for(int i = 0; i < listeners.length; i++) {
+			EventListener listener = listeners[i];
+
+			try {
+				event.trigger(listener, emitter);
+			}
+			catch(Exception e) {
+				// Ignore exceptions when emitting events
+			}
+		}
+	}
+
+	/**
+	 * Version instrumentée de la distribution. Mesure la durée de traitement
+	 * de chaque listener et la durée totale de distribution.
+	 */
+	private void emitInstrumented(Event event, EventMetrics metrics) {
+		EventListener[] listeners = this.listeners;
+
+		long start = System.nanoTime();
+		long last = start;
+
+		for(int i = 0; i < listeners.length; i++) {
+			EventListener listener = listeners[i];
+
 			try {
 				event.trigger(listener, emitter);
 			}
 			catch(Exception e) {
 				// Ignore exceptions when emitting events
 			}
+
+			long now = System.nanoTime();
+			metrics.recordHandler(listener.getClass(), now - last);
+			last = now;
 		}
+
+		metrics.recordDispatch(event.getClass(), last - start);
 	}
 }
@@ -0,0 +1,219 @@
+package sat.events.metrics;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Instrumentation d'un pipeline d'événements.
+ * <p>
+ * Un objet EventMetrics peut être associé à un ou plusieurs EventEmitter. Il
+ * enregistre alors, pour chaque classe d'événement, le temps passé dans la
+ * file d'attente (entre l'émission et le début de la distribution) et la durée
+ * de la distribution, ainsi que la durée de traitement pour chaque classe de
+ * listener. Les émetteurs asynchrones y publient également la profondeur de
+ * leur file d'attente.
+ * <p>
+ * Lorsque l'instrumentation est désactivée, les émetteurs n'effectuent qu'une
+ * lecture de champ supplémentaire par événement.
+ * <p>
+ * Des compteurs nommés peuvent également être publiés par les composants
+ * utilisant l'émetteur. Contrairement aux histogrammes, ils sont toujours
+ * actifs et doivent donc être réservés aux opérations peu fréquentes.
+ */
+public class EventMetrics {
+	/**
+	 * Indique si les mesures sont actives.
+	 */
+	private volatile boolean enabled = false;
+
+	/**
+	 * Temps d'attente en file, par classe d'événement.
+	 */
+	private final ConcurrentHashMap<Class<?>, Histogram> queueLatency = new ConcurrentHashMap<Class<?>, Histogram>();
+
+	/**
+	 * Durée de distribution complète, par classe d'événement.
+	 */
+	private final ConcurrentHashMap<Class<?>, Histogram> dispatchDuration = new ConcurrentHashMap<Class<?>, Histogram>();
+
+	/**
+	 * Durée de traitement, par classe de listener.
+	 */
+	private final ConcurrentHashMap<Class<?>, Histogram> handlerDuration = new ConcurrentHashMap<Class<?>, Histogram>();
+
+	/**
+	 * Jauges des files d'attente des émetteurs asynchrones, par nom.
+	 */
+	private final ConcurrentHashMap<String, QueueGauge> queues = new ConcurrentHashMap<String, QueueGauge>();
+
+	/**
+	 * Compteurs nommés.
+	 */
+	private final ConcurrentHashMap<String, AtomicLong> counters = new ConcurrentHashMap<String, AtomicLong>();
+
+	/**
+	 * Indique si les mesures sont actives.
+	 */
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	/**
+	 * Active ou désactive les mesures. Les données déjà collectées sont
+	 * conservées.
+	 */
+	public void setEnabled(boolean enabled) {
+		this.enabled = enabled;
+	}
+
+	/**
+	 * Retourne la jauge de file d'attente portant le nom donné, en la créant
+	 * au besoin.
+	 */
+	public QueueGauge getQueueGauge(String name) {
+		QueueGauge gauge = queues.get(name);
+
+		if(gauge == null) {
+			gauge = new QueueGauge();
+			QueueGauge existing = queues.putIfAbsent(name, gauge);
+
+			if(existing != null) {
+				gauge = existing;
+			}
+		}
+
+		return gauge;
+	}
+
+	/**
+	 * Enregistre le temps d'attente en file d'un événement.
+	 */
+	public void recordQueueLatency(Class<?> eventClass, long nanos) {
+		histogram(queueLatency, eventClass).record(nanos);
+	}
+
+	/**
+	 * Enregistre la durée de distribution d'un événement à tous les
+	 * listeners d'un émetteur.
+	 */
+	public void recordDispatch(Class<?> eventClass, long nanos) {
+		histogram(dispatchDuration, eventClass).record(nanos);
+	}
+
+	/**
+	 * Enregistre la durée de traitement d'un événement par un listener.
+	 */
+	public void recordHandler(Class<?> listenerClass, long nanos) {
+		histogram(handlerDuration, listenerClass).record(nanos);
+	}
+
+	/**
+	 * Ajoute une valeur à un compteur nommé.
+	 */
+	public void count(String name, long delta) {
+		counter(name).addAndGet(delta);
+	}
+
+	/**
+	 * Met à jour un compteur nommé conservant la valeur maximale observée.
+	 */
+	public void countMax(String name, long value) {
+		AtomicLong counter = counter(name);
+
+		long current;
+		while(value > (current = counter.get())) {
+			if(counter.compareAndSet(current, value)) {
+				break;
+			}
+		}
+	}
+
+	/**
+	 * Retourne la valeur actuelle d'un compteur nommé.
+	 */
+	public long getCounter(String name) {
+		AtomicLong counter = counters.get(name);
+		return (counter == null) ? 0 : counter.get();
+	}
+
+	/**
+	 * Remet toutes les mesures à zéro.
+	 */
+	public void reset() {
+		queueLatency.clear();
+		dispatchDuration.clear();
+		handlerDuration.clear();
+		counters.clear();
+
+		for(QueueGauge gauge : queues.values()) {
+			gauge.reset();
+		}
+	}
+
+	/**
+	 * Retourne une copie instantanée et sérialisable des mesures.
+	 */
+	public MetricsSnapshot snapshot() {
+		MetricsSnapshot snapshot = new MetricsSnapshot(enabled);
+
+		for(Map.Entry<Class<?>, Histogram> e : queueLatency.entrySet()) {
+			snapshot.queueLatency.put(e.getKey().getName(), e.getValue().snapshot());
+		}
+
+		for(Map.Entry<Class<?>, Histogram> e : dispatchDuration.entrySet()) {
+			snapshot.dispatchDuration.put(e.getKey().getName(), e.getValue().snapshot());
+		}
+
+		for(Map.Entry<Class<?>, Histogram> e : handlerDuration.entrySet()) {
+			snapshot.handlerDuration.put(e.getKey().getName(), e.getValue().snapshot());
+		}
+
+		for(Map.Entry<String, QueueGauge> e : queues.entrySet()) {
+			QueueGauge gauge = e.getValue();
+			snapshot.queues.put(e.getKey(), new int[] { gauge.getDepth(), gauge.getMaxDepth() });
+		}
+
+		for(Map.Entry<String, AtomicLong> e : counters.entrySet()) {
+			snapshot.counters.put(e.getKey(), e.getValue().get());
+		}
+
+		return snapshot;
+	}
+
+	/**
+	 * Retourne le compteur portant le nom donné, en le créant au besoin.
+	 */
+	private AtomicLong counter(String name) {
+		AtomicLong counter = counters.get(name);
+
+		if(counter == null) {
+			counter = new AtomicLong();
+			AtomicLong existing = counters.putIfAbsent(name, counter);
+
+			if(existing != null) {
+				counter = existing;
+			}
+		}
+
+		return counter;
+	}
+
+	/**
+	 * Retourne l'histogramme associé à une classe, en le créant au besoin.
+	 */
+	private static Histogram histogram(ConcurrentHashMap<Class<?>, Histogram> map, Class<?> key) {
+		Histogram histogram = map.get(key);
+
+		if(histogram == null) {
+			histogram = new Histogram();
+			Histogram existing = map.putIfAbsent(key, histogram);
+
+			if(existing != null) {
+				histogram = existing;
+			}
+		}
+
+		return histogram;
+	}
+}
@@ -0,0 +1,167 @@
+package sat.events.metrics;
+
+import java.io.Serializable;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Un histogramme de durées à faible coût.
+ * <p>
+ * Les valeurs (en nanosecondes) sont réparties dans des classes de taille
+ * exponentielle (puissances de 2). L'enregistrement d'une valeur ne demande
+ * aucun verrou ni allocation: seulement quelques incréments atomiques. La
+ * précision des percentiles est en contrepartie limitée à un facteur 2.
+ */
+public class Histogram {
+	/**
+	 * Nombre de classes de l'histogramme, une par bit d'un long.
+	 */
+	private static final int BUCKETS = 64;
+
+	/**
+	 * Nombre de valeurs par classe.
+	 */
+	private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+
+	/**
+	 * Nombre total de valeurs enregistrées.
+	 */
+	private final AtomicLong count = new AtomicLong();
+
+	/**
+	 * Somme des valeurs enregistrées.
+	 */
+	private final AtomicLong sum = new AtomicLong();
+
+	/**
+	 * Plus grande valeur enregistrée.
+	 */
+	private final AtomicLong max = new AtomicLong();
+
+	/**
+	 * Enregistre une valeur.
+	 * 
+	 * @param nanos
+	 *            La durée à enregistrer, en nanosecondes. Les valeurs
+	 *            négatives sont ramenées à 0.
+	 */
+	public void record(long nanos) {
+		if(nanos < 0) {
+			nanos = 0;
+		}
+
+		// Bucket i holds values in [2^i, 2^(i+1)[, 0 goes with 1
+		int bucket = BUCKETS - 1 - Long.numberOfLeadingZeros(nanos);
+		buckets.incrementAndGet(bucket < 0 ? 0 : bucket);
+		count.incrementAndGet();
+		sum.addAndGet(nanos);
+
+		long current;
+		while(nanos > (current = max.get())) {
+			if(max.compareAndSet(current, nanos)) {
+				break;
+			}
+		}
+	}
+
+	/**
+	 * Remet l'histogramme à zéro. Les valeurs enregistrées pendant la remise à
+	 * zéro peuvent être partiellement perdues.
+	 */
+	public void reset() {
+		for(int i = 0; i < BUCKETS; i++) {
+			buckets.set(i, 0);
+		}
+
+		count.set(0);
+		sum.set(0);
+		max.set(0);
+	}
+
+	/**
+	 * Retourne une copie instantanée et sérialisable de cet histogramme.
+	 */
+	public Snapshot snapshot() {
+		long[] copy = new long[BUCKETS];
+
+		for(int i = 0; i < BUCKETS; i++) {
+			copy[i] = buckets.get(i);
+		}
+
+		return new Snapshot(copy, count.get(), sum.get(), max.get());
+	}
+
+	/**
+	 * Une copie figée d'un histogramme, pouvant être transmise à un agent
+	 * distant.
+	 */
+	public static class Snapshot implements Serializable {
+		private long[] buckets;
+		private long count;
+		private long sum;
+		private long max;
+
+		private Snapshot(long[] buckets, long count, long sum, long max) {
+			this.buckets = buckets;
+			this.count = count;
+			this.sum = sum;
+			this.max = max;
+		}
+
+		/**
+		 * Nombre de valeurs enregistrées.
+		 */
+		public long getCount() {
+			return count;
+		}
+
+		/**
+		 * Moyenne des valeurs enregistrées, en nanosecondes.
+		 */
+		public long getMean() {
+			return (count == 0) ? 0 : sum / count;
+		}
+
+		/**
+		 * Plus grande valeur enregistrée, en nanosecondes.
+		 */
+		public long getMax() {
+			return max;
+		}
+
+		/**
+		 * Retourne une borne supérieure du percentile demandé, en
+		 * nanosecondes.
+		 * 
+		 * @param percentile
+		 *            Le percentile, entre 0 et 100.
+		 */
+		public long getPercentile(double percentile) {
+			long total = 0;
+			for(long bucket : buckets) {
+				total += bucket;
+			}
+
+			if(total == 0) {
+				return 0;
+			}
+
+			long threshold = (long) Math.ceil(total * percentile / 100);
+			long seen = 0;
+
+			for(int i = 0; i < buckets.length; i++) {
+				seen += buckets[i];
+
+				if(seen >= threshold) {
+					// Upper bound of the bucket, capped by the real maximum
+					long bound = (i >= 62) ? Long.MAX_VALUE : (2L << i) - 1;
+					return Math.min(bound, max);
+				}
+			}
+
+			return max;
+		}
+
+		private static final long serialVersionUID = 2848431853417651602L;
+	}
+}
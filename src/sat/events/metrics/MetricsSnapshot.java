@@ -0,0 +1,115 @@
+package sat.events.metrics;
+
+import java.io.PrintStream;
+import java.io.Serializable;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Copie figée des mesures d'un EventMetrics. Cet objet est sérialisable afin
+ * de pouvoir être transmis à un agent distant.
+ */
+public class MetricsSnapshot implements Serializable {
+	/**
+	 * Indique si les mesures étaient actives au moment de la copie.
+	 */
+	private boolean enabled;
+
+	/**
+	 * Temps d'attente en file, par nom de classe d'événement.
+	 */
+	final TreeMap<String, Histogram.Snapshot> queueLatency = new TreeMap<String, Histogram.Snapshot>();
+
+	/**
+	 * Durée de distribution, par nom de classe d'événement.
+	 */
+	final TreeMap<String, Histogram.Snapshot> dispatchDuration = new TreeMap<String, Histogram.Snapshot>();
+
+	/**
+	 * Durée de traitement, par nom de classe de listener.
+	 */
+	final TreeMap<String, Histogram.Snapshot> handlerDuration = new TreeMap<String, Histogram.Snapshot>();
+
+	/**
+	 * Profondeur actuelle et maximale des files, par nom de file.
+	 */
+	final TreeMap<String, int[]> queues = new TreeMap<String, int[]>();
+
+	/**
+	 * Valeur des compteurs, par nom.
+	 */
+	final TreeMap<String, Long> counters = new TreeMap<String, Long>();
+
+	MetricsSnapshot(boolean enabled) {
+		this.enabled = enabled;
+	}
+
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	public Map<String, Histogram.Snapshot> getQueueLatency() {
+		return queueLatency;
+	}
+
+	public Map<String, Histogram.Snapshot> getDispatchDuration() {
+		return dispatchDuration;
+	}
+
+	public Map<String, Histogram.Snapshot> getHandlerDuration() {
+		return handlerDuration;
+	}
+
+	/**
+	 * Retourne la profondeur actuelle et maximale des files d'attente, sous
+	 * la forme d'un tableau <code>{ actuelle, maximale }</code> par file.
+	 */
+	public Map<String, int[]> getQueues() {
+		return queues;
+	}
+
+	/**
+	 * Retourne la valeur des compteurs nommés.
+	 */
+	public Map<String, Long> getCounters() {
+		return counters;
+	}
+
+	/**
+	 * Affiche les mesures sur le flux donné, de façon similaire à
+	 * <code>Properties.list()</code>.
+	 */
+	public void list(PrintStream out) {
+		out.println("-- metrics " + (enabled ? "enabled" : "disabled") + " --");
+
+		out.println("Queues (depth / max):");
+		for(Map.Entry<String, int[]> e : queues.entrySet()) {
+			out.println("  " + e.getKey() + ": " + e.getValue()[0] + " / " + e.getValue()[1]);
+		}
+
+		out.println("Counters:");
+		for(Map.Entry<String, Long> e : counters.entrySet()) {
+			out.println("  " + e.getKey() + ": " + e.getValue());
+		}
+
+		list(out, "Queue latency by event", queueLatency);
+		list(out, "Dispatch duration by event", dispatchDuration);
+		list(out, "Handler duration by listener", handlerDuration);
+	}
+
+	private static void list(PrintStream out, String title, Map<String, Histogram.Snapshot> histograms) {
+		out.println(title + " (count, mean / p50 / p99 / max in us):");
+
+		for(Map.Entry<String, Histogram.Snapshot> e : histograms.entrySet()) {
+			Histogram.Snapshot h = e.getValue();
+
+			out.println("  " + e.getKey() + ": " + h.getCount() + ", " + micros(h.getMean()) + " / " + micros(h.getPercentile(50)) + " / " + micros(h.getPercentile(99)) + " / " + micros(h.getMax()));
+		}
+	}
+
+	private static String micros(long nanos) {
+		return String.valueOf(nanos / 1000);
+	}
+
+	private static final long serialVersionUID = -1571393420574693410L;
+}
@@ -0,0 +1,61 @@
+package sat.events.metrics;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Jauge de profondeur d'une file d'attente d'événements. Elle maintient la
+ * profondeur actuelle de la file ainsi que la profondeur maximale atteinte.
+ */
+public class QueueGauge {
+	/**
+	 * Nombre d'événements actuellement en attente.
+	 */
+	private final AtomicInteger depth = new AtomicInteger();
+
+	/**
+	 * Profondeur maximale observée.
+	 */
+	private final AtomicInteger maxDepth = new AtomicInteger();
+
+	/**
+	 * Signale l'ajout d'un événement dans la file.
+	 */
+	public void enqueued() {
+		int current = depth.incrementAndGet();
+
+		int max;
+		while(current > (max = maxDepth.get())) {
+			if(maxDepth.compareAndSet(max, current)) {
+				break;
+			}
+		}
+	}
+
+	/**
+	 * Signale le retrait d'un événement de la file.
+	 */
+	public void dequeued() {
+		depth.decrementAndGet();
+	}
+
+	/**
+	 * Retourne la profondeur actuelle de la file.
+	 */
+	public int getDepth() {
+		return depth.get();
+	}
+
+	/**
+	 * Retourne la profondeur maximale atteinte par la file.
+	 */
+	public int getMaxDepth() {
+		return maxDepth.get();
+	}
+
+	/**
+	 * Remet la profondeur maximale à la profondeur actuelle.
+	 */
+	public void reset() {
+		maxDepth.set(depth.get());
+	}
+}
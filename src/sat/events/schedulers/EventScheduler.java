@@ -14,8 +14,24 @@ public interface EventScheduler {
 	 */
 	public abstract void addEvent(Event event);
 
+	/**
+	 * Ajoute un nouvel événement à cet ordonnanceur, avec son heure de mise
+	 * en file. L'heure est conservée avec l'entrée de la file et non dans
+	 * l'événement, qui peut être partagé entre plusieurs files.
+	 * 
+	 * @param enqueueTime
+	 *            L'heure de mise en file (System.nanoTime), ou 0.
+	 */
+	public abstract void addEvent(Event event, long enqueueTime);
+
 	/**
 	 * Demande le prochain événement selon l'ordre imposé par cet ordonnanceur.
 	 */
 	public abstract Event nextEvent();
+
+	/**
+	 * Retourne l'heure de mise en file du dernier événement retourné par
+	 * <code>nextEvent()</code>, ou 0 si elle est inconnue.
+	 */
+	public abstract long getEnqueueTime();
 }
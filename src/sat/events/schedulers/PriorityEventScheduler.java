@@ -24,24 +24,24 @@ import sat.events.PriorityEvent;
  * peuvent être mélangés sans problèmes.
  */
 public class PriorityEventScheduler extends QueueEventScheduler {
-	PriorityQueue<PriorityEvent<?>> priorityQueue;
+	PriorityQueue<Entry> priorityQueue;
 
 	/**
 	 * Crée un nouvel ordonnanceur avec gestion de priorité.
 	 */
 	public PriorityEventScheduler() {
-		priorityQueue = new PriorityQueue<PriorityEvent<?>>();
+		priorityQueue = new PriorityQueue<Entry>();
 	}
 
 	/**
 	 * Ajoute un événement.
 	 */
-	public synchronized void addEvent(Event event) {
+	public synchronized void addEvent(Event event, long enqueueTime) {
 		if(event instanceof PriorityEvent<?>) {
-			priorityQueue.offer((PriorityEvent<?>) event);
+			priorityQueue.offer(new Entry((PriorityEvent<?>) event, enqueueTime));
 		}
 		else {
-			super.addEvent(event);
+			super.addEvent(event, enqueueTime);
 		}
 	}
 
@@ -54,6 +54,33 @@ public class PriorityEventScheduler extends QueueEventScheduler {
 			return event;
 		}
 
-		return priorityQueue.poll();
+		Entry entry = priorityQueue.poll();
+
+		if(entry == null) {
+			return null;
+		}
+
+		enqueueTime = entry.enqueueTime;
+
+		return entry.event;
+	}
+
+	/**
+	 * Un événement prioritaire en attente et son heure de mise en file,
+	 * ordonnés selon l'ordre naturel des événements.
+	 */
+	private static final class Entry implements Comparable<Entry> {
+		private final PriorityEvent<?> event;
+		private final long enqueueTime;
+
+		private Entry(PriorityEvent<?> event, long enqueueTime) {
+			this.event = event;
+			this.enqueueTime = enqueueTime;
+		}
+
+		@SuppressWarnings({ "unchecked", "rawtypes" })
+		public int compareTo(Entry other) {
+			return ((Comparable) event).compareTo(other.event);
+		}
 	}
 }
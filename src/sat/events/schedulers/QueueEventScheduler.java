@@ -15,6 +15,24 @@ public class QueueEventScheduler implements EventScheduler {
 	 */
 	private Queue<Event> queue;
 
+	/**
+	 * Les heures de mise en file des événements de la queue, dans le même
+	 * ordre. Tampon circulaire dont la taille est une puissance de deux.
+	 */
+	private long[] times = new long[16];
+
+	/**
+	 * L'index de l'heure du premier événement de la queue dans
+	 * <code>times</code>, et le nombre d'heures stockées.
+	 */
+	private int head = 0;
+	private int count = 0;
+
+	/**
+	 * L'heure de mise en file du dernier événement retourné.
+	 */
+	protected long enqueueTime = 0;
+
 	/**
 	 * Crée un nouvel ordonnanceur avec une queue simple de type ArrayDeque.
 	 */
@@ -23,7 +41,8 @@ public class QueueEventScheduler implements EventScheduler {
 	}
 
 	/**
-	 * Crée un nouvel ordonnanceur avec une queue spécifique.
+	 * Crée un nouvel ordonnanceur avec une queue spécifique. La queue doit
+	 * restituer les événements dans leur ordre d'insertion.
 	 */
 	public QueueEventScheduler(Queue<Event> queue) {
 		this.queue = queue;
@@ -33,13 +52,52 @@ public class QueueEventScheduler implements EventScheduler {
 	 * Retourne le prochain événement dans la queue.
 	 */
 	public synchronized Event nextEvent() {
-		return queue.poll();
+		Event event = queue.poll();
+
+		if(event == null) {
+			enqueueTime = 0;
+			return null;
+		}
+
+		enqueueTime = times[head];
+		head = (head + 1) & (times.length - 1);
+		count--;
+
+		return event;
 	}
 
 	/**
 	 * Ajoute un événement à la fin de la queue.
 	 */
-	public synchronized void addEvent(Event event) {
-		queue.offer(event);
+	public void addEvent(Event event) {
+		addEvent(event, 0);
+	}
+
+	/**
+	 * Ajoute un événement à la fin de la queue, avec son heure de mise en
+	 * file.
+	 */
+	public synchronized void addEvent(Event event, long enqueueTime) {
+		if(!queue.offer(event)) {
+			return;
+		}
+
+		if(count == times.length) {
+			long[] grown = new long[times.length * 2];
+
+			for(int i = 0; i < count; i++) {
+				grown[i] = times[(head + i) & (times.length - 1)];
+			}
+
+			times = grown;
+			head = 0;
+		}
+
+		times[(head + count) & (times.length - 1)] = enqueueTime;
+		count++;
+	}
+
+	public synchronized long getEnqueueTime() {
+		return enqueueTime;
 	}
 }
@@ -6,7 +6,9 @@ import java.awt.event.ActionListener;
 
 import javax.swing.Box;
 import javax.swing.JButton;
+import javax.swing.JLabel;
 import javax.swing.JPanel;
+import javax.swing.JTextField;
 
 import sat.tower.agent.TowerAgent;
 
@@ -14,6 +16,7 @@ public class ChokerPanel extends JPanel implements ActionListener {
 	private static final long serialVersionUID = 1L;
 
 	private JButton choke;
+	private JTextField tfRegion;
 	private TowerAgent agent;
 	private boolean choked;
 
@@ -26,7 +29,14 @@ public class ChokerPanel extends JPanel implements ActionListener {
 		choke.setPreferredSize(new Dimension(100, 25));
 		choke.addActionListener(this);
 
+		// Region "x,y,radius", empty for every plane
+		tfRegion = new JTextField();
+		tfRegion.setPreferredSize(new Dimension(120, 25));
+		tfRegion.setToolTipText("x,y,radius (empty: all planes)");
+
 		add(Box.createHorizontalStrut(20));
+		add(new JLabel("Region "));
+		add(tfRegion);
 		add(choke);
 		add(Box.createHorizontalStrut(20));
 	}
@@ -35,15 +45,52 @@ public class ChokerPanel extends JPanel implements ActionListener {
 	public void actionPerformed(ActionEvent e) {
 		Object obj = e.getSource();
 		if(obj == choke) {
+			float[] region = parseRegion();
+
 			if(!choked) {
-				agent.requestChoke();
+				if(region == null) {
+					agent.requestChoke();
+				}
+				else {
+					agent.requestChoke(region[0], region[1], region[2], null);
+				}
 				choke.setText("Unchoke");
 			}
 			else {
-				agent.requestUnchoke();
+				if(region == null) {
+					agent.requestUnchoke();
+				}
+				else {
+					agent.requestUnchoke(region[0], region[1], region[2], null);
+				}
 				choke.setText("Choke");
 			}
 			choked = !choked;
 		}
 	}
+
+	/**
+	 * Lit la région saisie, ou retourne <code>null</code> si elle est vide ou
+	 * invalide.
+	 */
+	private float[] parseRegion() {
+		String[] parts = tfRegion.getText().trim().split("\\s*,\\s*");
+
+		if(parts.length != 3) {
+			return null;
+		}
+
+		try {
+			float[] region = new float[3];
+
+			for(int i = 0; i < 3; i++) {
+				region[i] = Float.parseFloat(parts[i]);
+			}
+
+			return (region[2] > 0) ? region : null;
+		}
+		catch(NumberFormatException e) {
+			return null;
+		}
+	}
 }
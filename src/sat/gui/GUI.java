@@ -4,6 +4,7 @@ import java.awt.Dimension;
 import java.awt.Toolkit;
 import java.io.File;
 import java.util.ArrayList;
+import java.util.Date;
 import java.util.HashMap;
 import java.util.Vector;
 
@@ -252,15 +253,37 @@ public class GUI extends JFrame implements EventListener {
 
 	}
 
+	/**
+	 * Ajoute les décisions du contrôleur de congestion au JournalPanel.
+	 */
+	public void on(TowerEvent.CongestionChoked e) {
+		Vector<Object> v = new Vector<Object>();
+		v.add(0);
+		v.add("CHOKE (auto, " + e.getReason() + ")");
+		v.add("Tower");
+		v.add(e.getPlanes() + " planes");
+		v.add(new Date());
+		journalPanel.addEvent(v);
+	}
+
+	public void on(TowerEvent.CongestionUnchoked e) {
+		Vector<Object> v = new Vector<Object>();
+		v.add(0);
+		v.add("UNCHOKE (auto)");
+		v.add("Tower");
+		v.add(e.getPlanes() + " planes");
+		v.add(new Date());
+		journalPanel.addEvent(v);
+	}
+
 	/**
 	 * Ajoute les Messages au JournalPanel.
 	 * 
 	 * @param m
 	 */
-	@SuppressWarnings("unchecked")
 	public void on(RadioEvent.MessageReceived e) {
 		Message m = e.getMessage();
-		Vector v = new Vector();
+		Vector<Object> v = new Vector<Object>();
 		v.add(m.getPriority());
 		v.add(m.getType().toString());
 		v.add(m.getID().toString());
@@ -274,10 +297,9 @@ public class GUI extends JFrame implements EventListener {
 	 * 
 	 * @param m
 	 */
-	@SuppressWarnings("unchecked")
 	public void on(RadioEvent.MessageSent e) {
 		Message m = e.getMessage();
-		Vector v = new Vector();
+		Vector<Object> v = new Vector<Object>();
 		v.add(m.getPriority());
 		v.add(m.getType().toString());
 		v.add("Tower");
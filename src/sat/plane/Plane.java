@@ -5,6 +5,7 @@ import java.io.FileInputStream;
 import java.io.IOException;
 import java.lang.reflect.InvocationTargetException;
 import java.math.BigInteger;
+import java.net.InetAddress;
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
 import java.util.Date;
@@ -21,7 +22,9 @@ import sat.radio.RadioID;
 import sat.radio.client.RadioClient;
 import sat.radio.client.RadioClientDelegate;
 import sat.radio.engine.client.RadioClientEngine;
+import sat.radio.engine.client.RadioClientTCPEngine;
 import sat.radio.message.MessageChoke;
+import sat.radio.message.MessageRedirect;
 import sat.radio.message.MessageRouting;
 import sat.radio.message.MessageUnchoke;
 import sat.utils.cli.Config;
@@ -65,7 +68,15 @@ public class Plane extends EventEmitter implements EventListener, RadioClientDel
 
 	private PlaneType type;
 
-	private RadioClient radio;
+	/**
+	 * La radio de l'avion, remplacée lorsqu'une tour le confie à une autre.
+	 */
+	private volatile RadioClient radio;
+
+	/**
+	 * Le moteur de la dernière connexion, réutilisé pour se reconnecter.
+	 */
+	private RadioClientEngine engine;
 
 	private PlaneSimulator simulator;
 
@@ -103,6 +114,7 @@ public class Plane extends EventEmitter implements EventListener, RadioClientDel
 		defaults.setProperty("plane.update", "100");
 		defaults.setProperty("plane.fuel", "200000");
 		defaults.setProperty("plane.datainterval", "100");
+		defaults.setProperty("plane.reconnect", "0");
 
 		defaults.setProperty("legacy.towerkey", "tower.key");
 
@@ -163,17 +175,69 @@ public class Plane extends EventEmitter implements EventListener, RadioClientDel
 		id = new RadioID(config.getString("plane.prefix"));
 
 		// Radio
-		radio = new RadioClient(this, id);
+		radio = createRadio();
+
+		initDone = true;
+	}
+
+	/**
+	 * Crée une radio configurée pour cet avion.
+	 */
+	private RadioClient createRadio() {
+		RadioClient radio = new RadioClient(this, id);
 		radio.addListener(this);
 
 		radio.setCiphered(config.getBoolean("radio.ciphered"));
 		radio.setLegacy(config.getBoolean("radio.legacy"));
 
-		initDone = true;
+		return radio;
 	}
 
 	public void connect(RadioClientEngine engine) throws IOException {
 		radio.connect(engine);
+		this.engine = engine;
+	}
+
+	/**
+	 * Tente de se reconnecter à la tour perdue, ou à sa tour de secours qui a
+	 * repris son port, pendant <code>plane.reconnect</code> millisecondes.
+	 * L'avion continue de suivre sa route pendant ce temps.
+	 */
+	private void reconnect(final RadioClient old) {
+		old.removeListener(this);
+
+		final long deadline = System.currentTimeMillis() + config.getInt("plane.reconnect");
+
+		Thread thread = new Thread("Plane " + id + " reconnect") {
+			public void run() {
+				while(System.currentTimeMillis() < deadline) {
+					synchronized(Plane.this) {
+						try {
+							RadioClient next = createRadio();
+							next.connect(engine);
+							radio = next;
+
+							emitDebug("Reconnected");
+							return;
+						}
+						catch(IOException e) {
+						}
+					}
+
+					try {
+						sleep(100);
+					}
+					catch(InterruptedException e) {
+						break;
+					}
+				}
+
+				crash("Tower lost, crashing");
+			}
+		};
+
+		thread.setDaemon(true);
+		thread.start();
 	}
 
 	public void crash(String message) {
@@ -188,15 +252,54 @@ public class Plane extends EventEmitter implements EventListener, RadioClientDel
 	// - - - Events - - -
 
 	public void on(RadioEvent.TowerDisconnected e) {
+		if(engine != null && config.getInt("plane.reconnect") > 0) {
+			reconnect(radio);
+			return;
+		}
+
 		radio.sendLandingRequest();
 		radio.sendText("PLANE_TYPE=" + type + ";");
 		simulator.quit();
 	}
 
-	public void on(RadioEvent.TowerConnected e) {
+	public synchronized void on(RadioEvent.TowerConnected e) {
 		radio.sendLandingRequest();
 		radio.sendText("PLANE_TYPE=" + type + ";");
-		simulator.start();
+
+		// Already flying when connecting to a new tower
+		if(simulator.getState() == Thread.State.NEW) {
+			simulator.start();
+		}
+	}
+
+	/**
+	 * Quitte la tour actuelle pour se connecter à celle indiquée, qui a reçu
+	 * l'état de l'avion de la tour actuelle. L'ancienne radio n'est fermée
+	 * qu'une fois la nouvelle connectée.
+	 */
+	public synchronized void on(MessageRedirect m) {
+		RadioClient old = radio;
+		old.removeListener(this);
+
+		emitDebug("Redirected to " + m.getHost() + ":" + m.getPort());
+
+		// The new tower's TowerConnected waits for this method to return,
+		// the radio is then replaced
+		try {
+			RadioClient next = createRadio();
+			RadioClientEngine redirected = new RadioClientTCPEngine(InetAddress.getByName(m.getHost()), m.getPort());
+			next.connect(redirected);
+			radio = next;
+			engine = redirected;
+		}
+		catch(IOException e) {
+			// Stay with the current tower
+			emitDebug("Redirect failed: " + e.getMessage());
+			old.addListener(this);
+			return;
+		}
+
+		old.quit();
 	}
 
 	public void on(MessageRouting m) throws UnhandledEventException, InvocationTargetException {
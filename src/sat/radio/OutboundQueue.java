@@ -0,0 +1,95 @@
+package sat.radio;
+
+import java.util.Iterator;
+import java.util.concurrent.PriorityBlockingQueue;
+
+import sat.radio.message.Message;
+import sat.radio.message.MessageRouting;
+import sat.radio.message.MessageType;
+import sat.utils.routes.RoutingType;
+
+/**
+ * File d'attente des messages à envoyer sur une connexion.
+ * <p>
+ * Les messages sont ordonnés par priorité, puis par ordre d'envoi. La file
+ * retire les messages rendus obsolètes par un nouveau message avant qu'ils ne
+ * soient envoyés:
+ * <ul>
+ * <li>un message Routing de type <code>REPLACEALL</code> ouvre une nouvelle
+ * route: les messages Routing encore en attente appartiennent à une route
+ * précédente et sont retirés;</li>
+ * <li>un message Choke ou Unchoke remplace le Choke ou Unchoke encore en
+ * attente, seul le dernier état demandé est envoyé.</li>
+ * </ul>
+ */
+public class OutboundQueue {
+	/**
+	 * Les messages en attente.
+	 */
+	private final PriorityBlockingQueue<Message> queue = new PriorityBlockingQueue<Message>();
+
+	/**
+	 * Ajoute un message à la file, en retirant les messages qu'il rend
+	 * obsolètes.
+	 *
+	 * @return Le nombre de messages retirés.
+	 */
+	public synchronized int put(Message m) {
+		int superseded = 0;
+
+		switch(m.getType()) {
+			case ROUTING:
+				if(((MessageRouting) m).getRoutingType() == RoutingType.REPLACEALL) {
+					superseded = removeAll(MessageType.ROUTING, MessageType.ROUTING);
+				}
+				break;
+
+			case CHOKE:
+			case UNCHOKE:
+				superseded = removeAll(MessageType.CHOKE, MessageType.UNCHOKE);
+				break;
+
+			default:
+				break;
+		}
+
+		queue.put(m);
+
+		return superseded;
+	}
+
+	/**
+	 * Retire et retourne le prochain message à envoyer, en attendant qu'il y
+	 * en ait un.
+	 */
+	public Message take() throws InterruptedException {
+		return queue.take();
+	}
+
+	/**
+	 * Retourne le nombre de messages en attente.
+	 */
+	public int size() {
+		return queue.size();
+	}
+
+	/**
+	 * Retire les messages en attente de l'un des deux types donnés.
+	 */
+	private int removeAll(MessageType a, MessageType b) {
+		int removed = 0;
+
+		Iterator<Message> it = queue.iterator();
+
+		while(it.hasNext()) {
+			MessageType type = it.next().getType();
+
+			if(type == a || type == b) {
+				it.remove();
+				removed++;
+			}
+		}
+
+		return removed;
+	}
+}
@@ -0,0 +1,215 @@
+package sat.radio;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Un registre concurrent des avions connectés.
+ * <p>
+ * Chaque avion enregistré reçoit un emplacement (<code>slot</code>), un
+ * entier dense qui reste valide jusqu'à sa désinscription et qui est
+ * réutilisé ensuite. Les emplacements permettent d'indexer des tableaux
+ * plutôt que de passer par le hashcode du RadioID.
+ * <p>
+ * Les lectures (<code>get()</code>, itération) ne prennent aucun verrou.
+ * Seules les inscriptions et désinscriptions, beaucoup plus rares, sont
+ * synchronisées.
+ *
+ * @param <T>
+ *            Le type des valeurs enregistrées.
+ */
+public class PlaneRegistry<T> implements Iterable<T> {
+	/**
+	 * Nombre d'emplacements alloués initialement.
+	 */
+	private static final int INITIAL_CAPACITY = 64;
+
+	/**
+	 * Les emplacements actuellement attribués, par RadioID.
+	 */
+	private ConcurrentHashMap<RadioID, Integer> slotsByID = new ConcurrentHashMap<RadioID, Integer>();
+
+	/**
+	 * Les valeurs, par emplacement. Le tableau est remplacé par une copie
+	 * lors de son agrandissement, il peut donc être parcouru sans verrou.
+	 */
+	private volatile AtomicReferenceArray<T> values = new AtomicReferenceArray<T>(INITIAL_CAPACITY);
+
+	/**
+	 * Pile des emplacements libérés, à réutiliser en priorité.
+	 */
+	private int[] freeSlots = new int[INITIAL_CAPACITY];
+
+	/**
+	 * Nombre d'emplacements dans la pile <code>freeSlots</code>.
+	 */
+	private int freeCount = 0;
+
+	/**
+	 * Le premier emplacement jamais attribué.
+	 */
+	private int highWater = 0;
+
+	/**
+	 * Inscrit une valeur dans le registre. Un identifiant déjà inscrit est
+	 * refusé: sa valeur n'est pas remplacée.
+	 *
+	 * @return L'emplacement attribué, ou -1 si l'identifiant est déjà
+	 *         inscrit.
+	 */
+	public synchronized int register(RadioID id, T value) {
+		if(slotsByID.containsKey(id)) {
+			return -1;
+		}
+
+		int slot;
+
+		if(freeCount > 0) {
+			slot = freeSlots[--freeCount];
+		}
+		else {
+			slot = highWater++;
+
+			if(slot >= values.length()) {
+				grow();
+			}
+		}
+
+		values.set(slot, value);
+		slotsByID.put(id, slot);
+
+		return slot;
+	}
+
+	/**
+	 * Désinscrit un identifiant et libère son emplacement.
+	 *
+	 * @return La valeur associée à cet identifiant, ou <code>null</code> s'il
+	 *         n'était pas inscrit.
+	 */
+	public synchronized T unregister(RadioID id) {
+		Integer slot = slotsByID.remove(id);
+
+		if(slot == null) {
+			return null;
+		}
+
+		T value = values.getAndSet(slot, null);
+
+		if(freeCount == freeSlots.length) {
+			freeSlots = Arrays.copyOf(freeSlots, freeSlots.length * 2);
+		}
+
+		freeSlots[freeCount++] = slot;
+
+		return value;
+	}
+
+	/**
+	 * Retourne la valeur associée à un identifiant, ou <code>null</code>.
+	 */
+	public T get(RadioID id) {
+		Integer slot = slotsByID.get(id);
+		return (slot == null) ? null : get(slot);
+	}
+
+	/**
+	 * Retourne la valeur enregistrée à un emplacement, ou <code>null</code>
+	 * si cet emplacement est libre ou invalide.
+	 */
+	public T get(int slot) {
+		AtomicReferenceArray<T> values = this.values;
+
+		if(slot < 0 || slot >= values.length()) {
+			return null;
+		}
+
+		return values.get(slot);
+	}
+
+	/**
+	 * Retourne l'emplacement d'un identifiant, ou -1 s'il n'est pas inscrit.
+	 */
+	public int getSlot(RadioID id) {
+		Integer slot = slotsByID.get(id);
+		return (slot == null) ? -1 : slot;
+	}
+
+	/**
+	 * Retourne le nombre d'identifiants inscrits.
+	 */
+	public int size() {
+		return slotsByID.size();
+	}
+
+	/**
+	 * Retourne la borne supérieure (exclue) des emplacements attribués
+	 * jusqu'à présent. Permet de dimensionner les tableaux indexés par
+	 * emplacement.
+	 */
+	public synchronized int getCapacity() {
+		return highWater;
+	}
+
+	/**
+	 * Double la taille du tableau des valeurs.
+	 */
+	private void grow() {
+		AtomicReferenceArray<T> grown = new AtomicReferenceArray<T>(values.length() * 2);
+
+		for(int i = 0; i < values.length(); i++) {
+			grown.set(i, values.get(i));
+		}
+
+		values = grown;
+	}
+
+	/**
+	 * Parcourt les valeurs inscrites, dans l'ordre des emplacements. Le
+	 * parcours se fait sur l'état du registre au moment de l'appel; les
+	 * inscriptions concurrentes peuvent ne pas être vues.
+	 */
+	public Iterator<T> iterator() {
+		final AtomicReferenceArray<T> snapshot = values;
+
+		return new Iterator<T>() {
+			private int index = 0;
+
+			private T next = advance();
+
+			private T advance() {
+				while(index < snapshot.length()) {
+					T value = snapshot.get(index++);
+
+					if(value != null) {
+						return value;
+					}
+				}
+
+				return null;
+			}
+
+			public boolean hasNext() {
+				return next != null;
+			}
+
+			public T next() {
+				if(next == null) {
+					throw new NoSuchElementException();
+				}
+
+				T value = next;
+				next = advance();
+
+				return value;
+			}
+
+			public void remove() {
+				throw new UnsupportedOperationException();
+			}
+		};
+	}
+}
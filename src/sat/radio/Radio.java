@@ -5,11 +5,11 @@ import java.io.IOException;
 import java.lang.reflect.InvocationTargetException;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
-import java.util.concurrent.PriorityBlockingQueue;
 
 import sat.events.AsyncEventEmitter;
 import sat.events.Event;
 import sat.events.UnhandledEventException;
+import sat.events.metrics.EventMetrics;
 import sat.events.schedulers.PriorityEventScheduler;
 import sat.radio.message.Message;
 import sat.radio.message.MessageData;
@@ -316,7 +316,7 @@ public abstract class Radio extends AsyncEventEmitter {
 			/**
 			 * La file d'attente de messages à envoyer.
 			 */
-			private PriorityBlockingQueue<Message> queue = new PriorityBlockingQueue<Message>();
+			private OutboundQueue queue = new OutboundQueue();
 
 			/**
 			 * État du thread.
@@ -359,13 +359,19 @@ public abstract class Radio extends AsyncEventEmitter {
 			 * Envoie un message. Le message est placé dans la file d'attente
 			 * d'envoi et son envoi effectif sera différé. Si la file d'attente
 			 * contient plusieurs messages, ceux de la priorité la plus élevée
-			 * seront envoyés en premiers.
+			 * seront envoyés en premiers. Les messages encore en attente que ce
+			 * message rend obsolètes sont retirés (voir {@link OutboundQueue}).
 			 * 
 			 * @param m
 			 *            Le message à envoyer.
 			 */
 			public void send(Message m) {
-				queue.put(m);
+				int superseded = queue.put(m);
+
+				EventMetrics metrics = Radio.this.metrics;
+				if(superseded > 0 && metrics != null) {
+					metrics.count("radio.superseded", superseded);
+				}
 			}
 
 			public void upgrade() {
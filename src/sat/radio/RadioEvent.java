@@ -77,8 +77,28 @@ public abstract class RadioEvent extends Event {
 	}
 
 	public static class PlaneConnected extends PlaneRadioEvent {
+		/**
+		 * L'emplacement du gestionnaire de l'avion dans le registre de la
+		 * radio, ou -1 si l'événement ne provient pas de la radio (rejeu).
+		 */
+		int slot;
+
 		public PlaneConnected(RadioID id) {
+			this(id, -1);
+		}
+
+		public PlaneConnected(RadioID id, int slot) {
 			super(id);
+			this.slot = slot;
+		}
+
+		/**
+		 * Retourne l'emplacement du gestionnaire de l'avion dans le registre
+		 * de la radio, ou -1. L'emplacement peut avoir été réattribué si
+		 * l'avion s'est déconnecté depuis.
+		 */
+		public int getSlot() {
+			return slot;
 		}
 	}
 
@@ -1,64 +1,82 @@
 package sat.radio;
 
 import java.io.Serializable;
-import java.util.Arrays;
-import java.util.Date;
+import java.security.SecureRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+import sat.radio.message.stream.Serializer;
 
 /**
  * L'identifiant d'un pair dans un réseau radio SAT.
  * <p>
- * Cette classe supporte les méthodes nécessaire à son utilisation de façon
- * transparente dans des objets de type <code>HashMap</code>.
+ * L'identité d'un RadioID est une clé de 64 bits (<code>getKey()</code>),
+ * seule utilisée par <code>equals()</code> et <code>hashCode()</code>. Les
+ * identifiants créés localement reçoivent le préfixe de 32 bits de la JVM,
+ * tiré au hasard au premier identifiant, suivi d'un compteur de 32 bits: deux
+ * identifiants d'une même JVM ne sont jamais égaux, même créés dans la même
+ * milliseconde. Un identifiant reçu d'un avion ITP a pour clé ses 8 bytes.
+ * <p>
+ * Les avions s'exécutant dans des processus distincts, deux avions peuvent
+ * tirer le même préfixe, et deux avions ITP peuvent annoncer le même
+ * identifiant. L'unicité au sein d'une tour est garantie à la connexion: la
+ * radio refuse un avion dont l'identifiant est déjà connecté (voir
+ * {@link PlaneRegistry#register(RadioID, Object)}).
+ * <p>
+ * La forme de 8 bytes du protocole ITP (<code>toLegacyID()</code>) n'est
+ * utilisée qu'à la frontière du protocole. Celle d'un identifiant local est
+ * dérivée de sa clé et reste distincte pour tous les identifiants d'une même
+ * JVM.
  */
 public final class RadioID implements Serializable {
 	/**
-	 * Nombre de chiffres de la partie horraire de l'identifiant.
+	 * Longueur en byte des identifants classiques. Ces identifiants sont
+	 * compatible avec les identifiants du protocole officiel de l'ITP.
 	 */
-	static private final int TIME_DIGIT = 3;
+	static private final int LEGACYID_LENGHT = 8;
 
 	/**
-	 * Nombre de chiffres de la partie aléatoire de l'identifiant.
+	 * Nombre de valeurs distinctes de la partie variable (7 caractères en base
+	 * 36) de la forme ITP d'un identifiant local.
 	 */
-	static private final int RAND_DIGIT = 2;
+	static private final long LEGACY_VALUES = 78364164096L;
 
-	static private final long TIME_POW = (long) Math.pow(10L, TIME_DIGIT);
-	static private final long RAND_POW = (long) Math.pow(10L, RAND_DIGIT);
-	static private final long GLOB_POW = (long) Math.pow(10L, TIME_DIGIT + RAND_DIGIT);
+	/**
+	 * Le préfixe des identifiants créés par cette JVM.
+	 */
+	static private final long NODE = new SecureRandom().nextInt() & 0xFFFFFFFFL;
 
 	/**
-	 * Longueur en byte des identifants classiques. Ces identifiants sont
-	 * compatible avec les identifiants du protocole officiel de l'ITP.
+	 * Le compteur des identifiants créés par cette JVM.
 	 */
-	static private final int LEGACYID_LENGHT = 8;
+	static private final AtomicLong counter = new AtomicLong();
 
 	/**
 	 * Le label d'un identifiant. Le label préfixe le code du pair et permet de
 	 * différencier les différents types d'appareils plus facilement.
 	 */
-	private String label;
+	private final String label;
 
 	/**
-	 * L'heure à laquel l'identifiant a été créé. Cette heure forme le premier
-	 * morceau de la partie numérique de l'identifiant.
+	 * La clé de l'identifiant: préfixe de la JVM et compteur, ou les 8 bytes
+	 * d'un identifiant ITP.
 	 */
-	private long time;
+	private final long key;
 
 	/**
-	 * Un identifiant généré aléatoirement. Cet identifiant forme le deuxième
-	 * morceau de la partie numérique de l'identifiant.
+	 * Indique si cet identifiant a été créé à partir d'un identifiant Legacy.
 	 */
-	private long id;
+	private final boolean legacy;
 
 	/**
-	 * Indique si cet identifiant a été créé à partir d'un identifiant Legacy.
+	 * La forme ITP de cet identifiant, calculée à la première utilisation.
 	 */
-	private boolean legacy = false;
+	private transient byte[] legacyID;
 
 	/**
-	 * Garde en mémoire l'ancien identifiant LegacyID s'il ce RadioID a été créé
-	 * à partir d'un LegacyID.
+	 * La forme sérialisée de cet identifiant (protocole étendu), calculée à la
+	 * première utilisation.
 	 */
-	private byte[] legacyID;
+	private transient byte[] serializedID;
 
 	/**
 	 * Création d'un identifiant.
@@ -69,7 +87,8 @@ public final class RadioID implements Serializable {
 	 */
 	public RadioID(String label) {
 		this.label = label;
-		generateCode();
+		this.key = (NODE << 32) | (counter.getAndIncrement() & 0xFFFFFFFFL);
+		this.legacy = false;
 	}
 
 	/**
@@ -79,7 +98,7 @@ public final class RadioID implements Serializable {
 	 *            L'identifiant ITP-compliant à la base de ce RadioID.
 	 */
 	public RadioID(byte[] legacyID) {
-		this("L:" + new String(legacyID));
+		this.label = "L:" + new String(legacyID);
 
 		// Store the original legacy ID
 		this.legacyID = new byte[LEGACYID_LENGHT];
@@ -87,17 +106,21 @@ public final class RadioID implements Serializable {
 		int length = (legacyID.length > LEGACYID_LENGHT) ? LEGACYID_LENGHT : legacyID.length;
 		System.arraycopy(legacyID, 0, this.legacyID, 0, length);
 
-		legacy = true;
+		long packed = 0;
+		for(byte b : this.legacyID) {
+			packed = (packed << 8) | (b & 0xFF);
+		}
+
+		this.key = packed;
+		this.legacy = true;
 	}
 
 	/**
-	 * Génère la partie variable de l'identifiant.
+	 * Retourne la clé de 64 bits de cet identifiant. Deux identifiants de même
+	 * type (ITP ou non) sont égaux si et seulement si leurs clés sont égales.
 	 */
-	private void generateCode() {
-		Date now = new Date();
-		time = (int) ((now.getTime() / 1000) % TIME_POW);
-
-		id = (int) (Math.round(Math.random() * RAND_POW) % RAND_POW);
+	public long getKey() {
+		return key;
 	}
 
 	/**
@@ -121,18 +144,8 @@ public final class RadioID implements Serializable {
 			return label;
 		}
 
-		// Construction d'un grand nombre intégrant les informations de
-		// l'identifiant (heure / id). Ceci simplifie la conversion en chaine
-		// de caractères des ces informations si celles-ci débutent par un
-		// ou plusieurs 0. (ex: 0042)
-		String asString = new Long(GLOB_POW + time * RAND_POW + id).toString();
-
-		// Découpage du nombre pour en extraire les parties intéressantes.
-		String timeString = asString.substring(1, TIME_DIGIT + 1);
-		String randString = asString.substring(TIME_DIGIT + 1);
-
-		// Recomposition de l'identifiant sous forme de chaine de caractères.
-		return label + "-" + timeString + "-" + randString;
+		// Préfixe de la JVM puis compteur
+		return label + "-" + Long.toString(key >>> 32, 36).toUpperCase() + "-" + (key & 0xFFFFFFFFL);
 	}
 
 	/**
@@ -149,37 +162,37 @@ public final class RadioID implements Serializable {
 		if(legacyID != null)
 			return legacyID;
 
-		legacyID = new byte[LEGACYID_LENGHT];
-
-		// "X:000-00" the LegacyPrefix
-		legacyID[0] = 'X';
-		legacyID[1] = ':';
-
-		int available = LEGACYID_LENGHT - 3;
-
-		// Computing the rand size first give a small advantage to the
-		// time size. (division floors)
-		int randSize = available / 2; // Length of the random segment
-		String randSeg = String.valueOf(id);
+		byte[] legacyID = new byte[LEGACYID_LENGHT];
 
-		int timeSize = available - randSize; // Lenght of the time segment
-		String timeSeg = String.valueOf(time);
+		// "X" followed by 7 base-36 digits. The counter is added to an offset
+		// drawn from the JVM prefix: distinct for every ID of this JVM, and
+		// unlikely to match the IDs of another JVM.
+		long offset = ((key >>> 32) * 0x9E3779B97F4A7C15L) >>> 28;
+		long value = (offset + (key & 0xFFFFFFFFL)) % LEGACY_VALUES;
 
-		// Computing the ID
+		legacyID[0] = 'X';
 
-		// Time part
-		for(int i = 0, j = timeSeg.length(); i < timeSize; i++, j--) {
-			legacyID[i + 2] = (byte) ((j <= 0) ? '0' : timeSeg.charAt(i));
+		for(int i = LEGACYID_LENGHT - 1; i > 0; i--) {
+			legacyID[i] = (byte) Character.toUpperCase(Character.forDigit((int) (value % 36), 36));
+			value /= 36;
 		}
 
-		legacyID[timeSize + 2] = '-';
+		this.legacyID = legacyID;
+
+		return legacyID;
+	}
 
-		// Rand part
-		for(int i = 0, j = randSeg.length(); i < randSize; i++, j--) {
-			legacyID[i + timeSize + 3] = (byte) ((j <= 0) ? '0' : randSeg.charAt(i));
+	/**
+	 * Retourne la forme sérialisée de cet identifiant, utilisée par le
+	 * protocole étendu. Elle n'est calculée qu'une fois: le tableau retourné
+	 * ne doit pas être modifié.
+	 */
+	public byte[] toSerializedID() {
+		if(serializedID == null) {
+			serializedID = Serializer.serialize(this);
 		}
 
-		return legacyID;
+		return serializedID;
 	}
 
 	/**
@@ -196,23 +209,7 @@ public final class RadioID implements Serializable {
 
 		RadioID rid = (RadioID) o;
 
-		// Two ID are legacy
-		if(isLegacy() && rid.isLegacy()) {
-			return Arrays.equals(legacyID, rid.legacyID);
-		}
-		// One ID is legacy
-		else if(isLegacy() || rid.isLegacy()) {
-			if(isLegacy()) {
-				return Arrays.equals(legacyID, rid.toLegacyID());
-			}
-			else {
-				return Arrays.equals(toLegacyID(), rid.legacyID);
-			}
-		}
-		// Two are not legacy
-		else {
-			return (label.equals(rid.label) && time == rid.time && id == rid.id);
-		}
+		return key == rid.key && legacy == rid.legacy;
 	}
 
 	/**
@@ -223,8 +220,8 @@ public final class RadioID implements Serializable {
 	 * hashcode, il n'indique donc pas l'égalité de façon sûr.
 	 */
 	public int hashCode() {
-		return Arrays.hashCode(toLegacyID());
+		return (int) (key ^ (key >>> 32));
 	}
 
-	private static final long serialVersionUID = 6714099615154964027L;
+	private static final long serialVersionUID = 2855263309125347121L;
 }
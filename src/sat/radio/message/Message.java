@@ -1,6 +1,7 @@
 package sat.radio.message;
 
 import java.util.Date;
+import java.util.concurrent.atomic.AtomicLong;
 
 import sat.events.PriorityEvent;
 import sat.radio.RadioID;
@@ -20,16 +21,18 @@ public abstract class Message extends PriorityEvent<Message> {
 
 	/**
 	 * Les coordonnées actuelles de l'émetteur, sauf dans le cas d'un
-	 * MessageRouting où ce champ défini les coordonnées de routage.
+	 * MessageRouting où ces champs définissent les coordonnées de routage.
+	 * Conservées sous forme de primitives pour ne pas allouer d'objet
+	 * Coordinates par message.
 	 * 
 	 * [ITP is funny]
 	 */
-	private Coordinates coords;
+	private float x, y, z;
 
 	/**
-	 * Horodatage de la réception du message.
+	 * Horodatage de la création du message (System.currentTimeMillis).
 	 */
-	private Date date;
+	private long timestamp;
 
 	/**
 	 * La longueur du payload du packet. En général non-utilisée sauf pour les
@@ -48,6 +51,21 @@ public abstract class Message extends PriorityEvent<Message> {
 	 */
 	protected MessageType type = MessageType.INVALID;
 
+	/**
+	 * L'emplacement de l'émetteur dans le registre des avions de la radio qui
+	 * a reçu ce message, ou -1 s'il est inconnu. Cette valeur n'a de sens que
+	 * localement et n'est pas conservée par la sérialisation.
+	 */
+	private transient int slot = -1;
+
+	/**
+	 * Les encodages de ce message, en mode ITP et en mode étendu, conservés
+	 * pour qu'un message diffusé à plusieurs avions ne soit encodé qu'une
+	 * fois. Non conservés par la sérialisation.
+	 */
+	private transient byte[] legacyEncoding;
+	private transient byte[] extendedEncoding;
+
 	/**
 	 * Construit un nouveau message.
 	 * 
@@ -58,11 +76,24 @@ public abstract class Message extends PriorityEvent<Message> {
 	 *            dans le cas d'un message Routing. [lawl]
 	 */
 	public Message(RadioID i, Coordinates c) {
+		this(i, c.getX(), c.getY(), c.getZ());
+	}
+
+	/**
+	 * Construit un nouveau message sans objet Coordinates.
+	 * 
+	 * @param i
+	 *            L'identifiant RadioID de l'émetteur.
+	 */
+	public Message(RadioID i, float x, float y, float z) {
 		id = i;
-		coords = c;
 
-		messageID = getNextMessageID();
-		date = new Date();
+		this.x = x;
+		this.y = y;
+		this.z = z;
+
+		messageID = nextMessageID.getAndIncrement();
+		timestamp = System.currentTimeMillis();
 	}
 
 	/**
@@ -73,10 +104,24 @@ public abstract class Message extends PriorityEvent<Message> {
 	}
 
 	/**
-	 * Retourne les coordonnées de l'émetteur du message.
+	 * Retourne les coordonnées de l'émetteur du message. Un nouvel objet est
+	 * créé à chaque appel, <code>getX()</code>, <code>getY()</code> et
+	 * <code>getZ()</code> n'allouent rien.
 	 */
 	public Coordinates getCoordinates() {
-		return coords;
+		return new Coordinates(x, y, z);
+	}
+
+	public float getX() {
+		return x;
+	}
+
+	public float getY() {
+		return y;
+	}
+
+	public float getZ() {
+		return z;
 	}
 
 	/**
@@ -101,10 +146,55 @@ public abstract class Message extends PriorityEvent<Message> {
 	}
 
 	/**
-	 * Retourne l'horodatage de réception du message.
+	 * Retourne l'emplacement de l'émetteur dans le registre de la radio qui a
+	 * reçu ce message, ou -1.
+	 */
+	public int getSlot() {
+		return slot;
+	}
+
+	/**
+	 * Défini l'emplacement de l'émetteur. Appelé par la radio à la réception.
+	 */
+	public void setSlot(int slot) {
+		this.slot = slot;
+	}
+
+	/**
+	 * Retourne l'encodage de ce message déjà calculé pour un mode, ou
+	 * <code>null</code>.
+	 */
+	public byte[] getEncoding(boolean extended) {
+		return extended ? extendedEncoding : legacyEncoding;
+	}
+
+	/**
+	 * Conserve l'encodage de ce message pour un mode. Le message ne doit plus
+	 * être modifié ensuite.
+	 */
+	public void setEncoding(boolean extended, byte[] encoding) {
+		if(extended) {
+			extendedEncoding = encoding;
+		}
+		else {
+			legacyEncoding = encoding;
+		}
+	}
+
+	/**
+	 * Retourne l'horodatage de création du message, en millisecondes depuis
+	 * l'epoch.
+	 */
+	public long getTimestamp() {
+		return timestamp;
+	}
+
+	/**
+	 * Retourne l'horodatage de création du message sous forme de date. Un
+	 * nouvel objet est créé à chaque appel.
 	 */
 	public Date getDate() {
-		return date;
+		return new Date(timestamp);
 	}
 
 	/**
@@ -128,19 +218,13 @@ public abstract class Message extends PriorityEvent<Message> {
 
 	/**
 	 * L'ID de séquence du prochain message. Utilisé pour ordonner les messages
-	 * de façon FIFO dans le cas d'une égalité de priorité.
+	 * de façon FIFO dans le cas d'une égalité de priorité. Incrémenté sans
+	 * verrou.
 	 */
-	private static long nextMessageID = 0;
+	private static final AtomicLong nextMessageID = new AtomicLong();
 
 	/**
 	 * L'ID de séquence de ce message.
 	 */
 	private long messageID;
-
-	/**
-	 * Génère le prochain numéro de séquence.
-	 */
-	private synchronized static long getNextMessageID() {
-		return nextMessageID++;
-	}
 }
@@ -12,6 +12,13 @@ public class MessageKeepalive extends Message {
 		priority = 3;
 	}
 
+	public MessageKeepalive(RadioID id, float x, float y, float z) {
+		super(id, x, y, z);
+
+		type = MessageType.KEEPALIVE;
+		priority = 3;
+	}
+
 	public String toString() {
 		return "I'm a Keepalive!";
 	}
@@ -0,0 +1,41 @@
+package sat.radio.message;
+
+import sat.radio.RadioID;
+import sat.utils.geo.Coordinates;
+
+/**
+ * Demande à un avion de quitter la tour et de se connecter à une autre tour,
+ * typiquement celle du secteur dans lequel il entre. Ce message n'existe que
+ * dans le protocole étendu.
+ */
+@SuppressWarnings("serial")
+public class MessageRedirect extends Message {
+	/**
+	 * L'adresse et le port radio de la nouvelle tour.
+	 */
+	private String host;
+	private int port;
+
+	public MessageRedirect(RadioID id, Coordinates c, String host, int port) {
+		super(id, c);
+
+		type = MessageType.REDIRECT;
+		priority = 1;
+
+		this.host = host;
+		this.port = port;
+		length = host.getBytes().length;
+	}
+
+	public String getHost() {
+		return host;
+	}
+
+	public int getPort() {
+		return port;
+	}
+
+	public String toString() {
+		return "I'm a Redirect to " + host + ":" + port;
+	}
+}
@@ -0,0 +1,234 @@
+package sat.radio.message;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.List;
+
+import sat.radio.RadioID;
+import sat.radio.message.stream.MessageOutputStream;
+import sat.utils.routes.RoutingType;
+import sat.utils.routes.Waypoint;
+
+/**
+ * Une suite de messages Routing envoyée d'un bloc à un avion: la route
+ * complète d'un circuit.
+ * <p>
+ * Pour le protocole, ce message est strictement équivalent à la suite de
+ * messages Routing qu'il représente: un premier message
+ * <code>REPLACEALL</code> (ou <code>LAST</code>) suivi d'un message
+ * <code>LAST</code> par point de la route. Son encodage est cependant
+ * assemblé à partir d'un {@link Template}, calculé une fois pour chaque route:
+ * seul l'identifiant de l'avion, en tête de chaque message, est propre à
+ * l'avion.
+ */
+@SuppressWarnings("serial")
+public class MessageRoutingBatch extends MessageRouting {
+	/**
+	 * Le modèle de la route. Non transmis par la sérialisation: une copie
+	 * distante ne sert qu'à l'affichage.
+	 */
+	private transient Template template;
+
+	/**
+	 * Indique si le premier message remplace la route actuelle de l'avion.
+	 */
+	private boolean replace;
+
+	/**
+	 * Crée la suite de messages envoyant une route à un avion.
+	 *
+	 * @param id
+	 *            L'identifiant de l'avion.
+	 * @param template
+	 *            Le modèle de la route.
+	 * @param replace
+	 *            Si la route remplace la route actuelle de l'avion.
+	 */
+	public MessageRoutingBatch(RadioID id, Template template, boolean replace) {
+		super(id, template.getFirst(), replace ? RoutingType.REPLACEALL : RoutingType.LAST);
+
+		this.template = template;
+		this.replace = replace;
+	}
+
+	/**
+	 * Retourne le nombre de messages Routing représentés.
+	 */
+	public int getCount() {
+		return template.size();
+	}
+
+	/**
+	 * Retourne l'encodage de la suite de messages, assemblé à la première
+	 * demande pour chaque mode.
+	 */
+	public byte[] getEncoding(boolean extended) {
+		byte[] encoding = super.getEncoding(extended);
+
+		if(encoding == null && template != null) {
+			encoding = template.assemble(getID(), extended, replace);
+			setEncoding(extended, encoding);
+		}
+
+		return encoding;
+	}
+
+	public String toString() {
+		return "I'm " + getCount() + " routings!";
+	}
+
+	/**
+	 * Le modèle pré-encodé des messages Routing d'une route, dans les deux
+	 * modes du protocole. Immuable une fois créé.
+	 * <p>
+	 * Le modèle contient, pour chaque message, son encodage privé de
+	 * l'identifiant de l'avion qui le précède.
+	 */
+	public static class Template {
+		/**
+		 * L'identifiant utilisé pour encoder les messages. Retiré ensuite.
+		 */
+		private static final RadioID PLACEHOLDER = new RadioID("TPL");
+
+		/**
+		 * Le premier point de la route.
+		 */
+		private final Waypoint first;
+
+		/**
+		 * Le nombre de points de la route.
+		 */
+		private final int size;
+
+		/**
+		 * Les corps des messages, concaténés: le premier point en
+		 * <code>REPLACEALL</code>, puis chaque point en <code>LAST</code>.
+		 */
+		private final byte[] legacyBodies;
+		private final byte[] extendedBodies;
+
+		/**
+		 * Les débuts des corps dans les tableaux précédents (un de plus que de
+		 * corps, le dernier marquant la fin).
+		 */
+		private final int[] legacyOffsets;
+		private final int[] extendedOffsets;
+
+		/**
+		 * Pré-encode les messages d'une route.
+		 *
+		 * @param waypoints
+		 *            Les points de la route, qui ne doit pas être vide.
+		 * @throws IOException
+		 *             Si un point ne peut pas être encodé.
+		 */
+		public Template(List<Waypoint> waypoints) throws IOException {
+			if(waypoints.isEmpty()) {
+				throw new IOException("Empty route");
+			}
+
+			this.first = waypoints.get(0);
+			this.size = waypoints.size();
+
+			this.legacyOffsets = new int[size + 2];
+			this.extendedOffsets = new int[size + 2];
+
+			this.legacyBodies = encodeBodies(waypoints, false, legacyOffsets);
+			this.extendedBodies = encodeBodies(waypoints, true, extendedOffsets);
+		}
+
+		/**
+		 * Encode les corps des messages dans un mode.
+		 */
+		private static byte[] encodeBodies(List<Waypoint> waypoints, boolean extended, int[] offsets) throws IOException {
+			ByteArrayOutputStream bodies = new ByteArrayOutputStream();
+			int header = headerLength(PLACEHOLDER, extended);
+
+			for(int i = -1; i < waypoints.size(); i++) {
+				Waypoint waypoint = waypoints.get(Math.max(i, 0));
+				RoutingType type = (i < 0) ? RoutingType.REPLACEALL : RoutingType.LAST;
+
+				MessageRouting m = new MessageRouting(PLACEHOLDER, waypoint, type);
+				byte[] encoding = MessageOutputStream.encode(m, extended);
+
+				offsets[i + 1] = bodies.size();
+				bodies.write(encoding, header, encoding.length - header);
+			}
+
+			offsets[waypoints.size() + 1] = bodies.size();
+
+			return bodies.toByteArray();
+		}
+
+		/**
+		 * Retourne la longueur de l'identifiant encodé en tête d'un message.
+		 */
+		private static int headerLength(RadioID id, boolean extended) {
+			return extended ? 4 + id.toSerializedID().length : id.toLegacyID().length;
+		}
+
+		/**
+		 * Retourne le premier point de la route.
+		 */
+		public Waypoint getFirst() {
+			return first;
+		}
+
+		/**
+		 * Retourne le nombre de messages d'une route.
+		 */
+		public int size() {
+			return size;
+		}
+
+		/**
+		 * Assemble l'encodage de la route pour un avion.
+		 *
+		 * @param id
+		 *            L'identifiant de l'avion.
+		 * @param extended
+		 *            Le mode du protocole.
+		 * @param replace
+		 *            Si le premier message est un <code>REPLACEALL</code>.
+		 */
+		public byte[] assemble(RadioID id, boolean extended, boolean replace) {
+			byte[] bodies = extended ? extendedBodies : legacyBodies;
+			int[] offsets = extended ? extendedOffsets : legacyOffsets;
+
+			byte[] header = extended ? id.toSerializedID() : id.toLegacyID();
+			int headerLength = extended ? 4 + header.length : header.length;
+
+			// Replace: REPLACEALL body then LAST bodies 1..n-1
+			// Otherwise: LAST bodies 0..n-1
+			int firstBody = replace ? 0 : 1;
+			int total = size * headerLength + (offsets[size + 1] - offsets[1]);
+
+			if(replace) {
+				total += (offsets[1] - offsets[0]) - (offsets[2] - offsets[1]);
+			}
+
+			byte[] out = new byte[total];
+			int pos = 0;
+
+			for(int i = 0; i < size; i++) {
+				int body = (i == 0) ? firstBody : i + 1;
+
+				if(extended) {
+					out[pos++] = (byte) (header.length >>> 24);
+					out[pos++] = (byte) (header.length >>> 16);
+					out[pos++] = (byte) (header.length >>> 8);
+					out[pos++] = (byte) header.length;
+				}
+
+				System.arraycopy(header, 0, out, pos, header.length);
+				pos += header.length;
+
+				int length = offsets[body + 1] - offsets[body];
+				System.arraycopy(bodies, offsets[body], out, pos, length);
+				pos += length;
+			}
+
+			return out;
+		}
+	}
+}
@@ -13,5 +13,5 @@ public enum MessageType {
 	ITP_RESERVED_1, ITP_RESERVED_2, ITP_RESERVED_3, ITP_RESERVED_4, ITP_RESERVED_5,
 
 	// ITP Extensions
-	INVALID, UPGRADE
+	INVALID, UPGRADE, REDIRECT
 }
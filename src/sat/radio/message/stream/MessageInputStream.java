@@ -5,6 +5,7 @@ import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.math.BigInteger;
+import java.util.Arrays;
 
 import sat.radio.RadioID;
 import sat.radio.message.*;
@@ -35,6 +36,25 @@ public class MessageInputStream extends FilterInputStream {
 	 */
 	private static final int MAX_VARLENGTH_INPUT = 2048;
 
+	/**
+	 * Les types de message, par numéro. <code>values()</code> retourne une
+	 * nouvelle copie à chaque appel.
+	 */
+	private static final MessageType[] TYPES = MessageType.values();
+
+	/**
+	 * Le dernier identifiant lu et sa forme sérialisée. Un flux ne reçoit en
+	 * général que les messages d'un seul pair: l'identifiant n'est décodé
+	 * qu'une fois puis réutilisé tant que ses bytes ne changent pas.
+	 */
+	private RadioID lastID;
+	private byte[] lastIDBytes;
+
+	/**
+	 * Buffer de lecture des identifiants, réutilisé d'un message à l'autre.
+	 */
+	private byte[] idBuffer;
+
 	/**
 	 * Crée un nouveau flux d'entrée de message ITP-compliant.
 	 * 
@@ -58,14 +78,7 @@ public class MessageInputStream extends FilterInputStream {
 		// Attention, l'ordre de lecture est important ! (obviously)
 
 		// PlaneID
-		RadioID id;
-		if(extended) {
-			int idLength = dis.readInt();
-			id = (RadioID) Serializer.deserialize(fill(idLength));
-		}
-		else {
-			id = new RadioID(fill(8));
-		}
+		RadioID id = readID(extended ? dis.readInt() : 8);
 
 		int length = dis.readInt();
 		int priority = dis.readInt(); // Not used...
@@ -82,18 +95,20 @@ public class MessageInputStream extends FilterInputStream {
 			pz = -1f;
 		}
 
-		Coordinates c = new Coordinates(px, py, -1);
-
 		// Le type du message
 		MessageType type;
 		try {
-			type = MessageType.values()[dis.readInt()];
+			type = TYPES[dis.readInt()];
 		}
 		catch(RuntimeException e) {
 			// Error with type deserialization
 			throw new IOException("Invalid message type");
 		}
 
+		// Keepalives are the bulk of the traffic: they are built without a
+		// Coordinates object
+		Coordinates c = (type == MessageType.KEEPALIVE) ? null : new Coordinates(px, py, -1);
+
 		// Message qui sera retourné.
 		Message message = null;
 
@@ -189,7 +204,7 @@ public class MessageInputStream extends FilterInputStream {
 				break;
 
 			case KEEPALIVE:
-				message = new MessageKeepalive(id, c);
+				message = new MessageKeepalive(id, px, py, -1);
 				break;
 
 			case LANDINGREQUEST:
@@ -199,6 +214,17 @@ public class MessageInputStream extends FilterInputStream {
 			case UPGRADE:
 				message = new MessageUpgrade(id, c);
 				break;
+
+			case REDIRECT:
+				if(!this.extended) {
+					throw new IOException("Redirect is not available in ITP mode");
+				}
+
+				String host = new String(fill(length));
+				int port = dis.readInt();
+
+				message = new MessageRedirect(id, c, host, port);
+				break;
 		}
 
 		if(message == null)
@@ -207,6 +233,40 @@ public class MessageInputStream extends FilterInputStream {
 		return message;
 	}
 
+	/**
+	 * Lit l'identifiant de l'émetteur d'un message. Si ses bytes sont ceux de
+	 * l'identifiant précédent, la même instance est retournée.
+	 * 
+	 * @param length
+	 *            La longueur de l'identifiant: 8 en mode ITP, la longueur de
+	 *            sa forme sérialisée en mode étendu.
+	 */
+	private RadioID readID(int length) throws IOException {
+		if(length > MAX_VARLENGTH_INPUT) {
+			throw new IOException("Varlength data block is too big");
+		}
+
+		if(idBuffer == null || idBuffer.length != length) {
+			idBuffer = new byte[length];
+		}
+
+		fill(idBuffer);
+
+		if(lastID != null && Arrays.equals(idBuffer, lastIDBytes)) {
+			return lastID;
+		}
+
+		byte[] bytes = idBuffer.clone();
+		RadioID id = extended ? (RadioID) Serializer.deserialize(bytes) : new RadioID(bytes);
+
+		if(id != null) {
+			lastID = id;
+			lastIDBytes = bytes;
+		}
+
+		return id;
+	}
+
 	/**
 	 * Replis un buffer donné.
 	 * 
@@ -254,5 +314,9 @@ public class MessageInputStream extends FilterInputStream {
 	 */
 	public synchronized void setExtended(boolean extended) {
 		this.extended = extended;
+
+		// The forms of an ID differ between modes
+		lastID = null;
+		lastIDBytes = null;
 	}
 }
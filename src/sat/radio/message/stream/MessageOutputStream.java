@@ -8,7 +8,6 @@ import java.io.OutputStream;
 
 import sat.radio.message.*;
 import sat.utils.crypto.RSAKey;
-import sat.utils.geo.Coordinates;
 import sat.utils.routes.Waypoint;
 
 /**
@@ -53,11 +52,56 @@ public class MessageOutputStream extends FilterOutputStream {
 	 *             exception.
 	 */
 	public synchronized void writeMessage(Message m) throws IOException {
+		byte[] encoding = m.getEncoding(extended);
+
+		if(encoding == null) {
+			encoding = encodeMessage(m);
+			m.setEncoding(extended, encoding);
+		}
+
+		out.write(encoding);
+		out.flush();
+	}
+
+	/**
+	 * Encode un message sans l'écrire dans le flux sous-jacent. L'encodage est
+	 * conservé dans le message: les flux qui l'écriront ensuite dans le même
+	 * mode ne l'encoderont pas à nouveau.
+	 * <p>
+	 * Utilisé pour encoder une seule fois un message diffusé à plusieurs
+	 * avions.
+	 *
+	 * @param m
+	 *            Le message à encoder.
+	 * @param extended
+	 *            Le mode d'encodage.
+	 * @return L'encodage du message.
+	 * @throws IOException
+	 *             Si le message est invalide.
+	 */
+	public static byte[] encode(Message m, boolean extended) throws IOException {
+		byte[] encoding = m.getEncoding(extended);
+
+		if(encoding == null) {
+			MessageOutputStream mos = new MessageOutputStream(null);
+			mos.setExtended(extended);
+
+			encoding = mos.encodeMessage(m);
+			m.setEncoding(extended, encoding);
+		}
+
+		return encoding;
+	}
+
+	/**
+	 * Encode un message dans le buffer interne et retourne le résultat.
+	 */
+	private byte[] encodeMessage(Message m) throws IOException {
 		// Clear the previous output buffer
 		baos.reset();
 
 		if(extended) {
-			byte[] id = Serializer.serialize(m.getID());
+			byte[] id = m.getID().toSerializedID();
 			dos.writeInt(id.length);
 			dos.write(id);
 		}
@@ -68,16 +112,14 @@ public class MessageOutputStream extends FilterOutputStream {
 		dos.writeInt(m.getLength());
 		dos.writeInt(m.getPriority());
 
-		Coordinates c = m.getCoordinates();
-
 		if(extended) { // Extended mode use floats for coordinates
-			dos.writeFloat(c.getX());
-			dos.writeFloat(c.getY());
-			dos.writeFloat(c.getZ());
+			dos.writeFloat(m.getX());
+			dos.writeFloat(m.getY());
+			dos.writeFloat(m.getZ());
 		}
 		else {
-			dos.writeInt((int) c.getX());
-			dos.writeInt((int) c.getY());
+			dos.writeInt((int) m.getX());
+			dos.writeInt((int) m.getY());
 		}
 
 		dos.writeInt(m.getType().ordinal());
@@ -103,6 +145,14 @@ public class MessageOutputStream extends FilterOutputStream {
 				writeMessageAttributes((MessageRouting) m);
 				break;
 
+			case REDIRECT:
+				if(!extended) {
+					throw new IOException("Redirect is not available in ITP mode");
+				}
+
+				writeMessageAttributes((MessageRedirect) m);
+				break;
+
 			case CHOKE:
 			case UNCHOKE:
 			case BYE:
@@ -118,8 +168,7 @@ public class MessageOutputStream extends FilterOutputStream {
 		}
 
 		dos.flush(); // useful ?
-		out.write(baos.toByteArray());
-		out.flush();
+		return baos.toByteArray();
 	}
 
 	/**
@@ -202,6 +251,14 @@ public class MessageOutputStream extends FilterOutputStream {
 		}
 	}
 
+	/**
+	 * Ecrit les attributs spécifiques à un message Redirect.
+	 */
+	private void writeMessageAttributes(MessageRedirect m) throws IOException {
+		dos.write(m.getHost().getBytes());
+		dos.writeInt(m.getPort());
+	}
+
 	/**
 	 * Indique si le flux est étendu.
 	 */
@@ -0,0 +1,80 @@
+package sat.radio.record;
+
+import java.io.File;
+
+/**
+ * Format d'un journal binaire d'événements radio.
+ * <p>
+ * Un journal est un dossier contenant une suite de fichiers segments de
+ * taille fixe (<code>00000.seg</code>, <code>00001.seg</code>, ...). Ces
+ * fichiers sont projetés en mémoire lors de l'écriture et de la lecture.
+ * <p>
+ * Chaque segment débute par un en-tête (magic, version, index du segment,
+ * heure de début de l'enregistrement), suivi d'une séquence
+ * d'enregistrements:
+ * 
+ * <pre>
+ * int   longueur (0 = fin du segment)
+ * long  temps écoulé depuis le début de l'enregistrement (ns)
+ * byte  type d'enregistrement
+ * int   numéro de l'avion dans la table des identifiants
+ * ...   données spécifiques au type
+ * </pre>
+ * 
+ * Les RadioID ne sont écrits qu'une seule fois (enregistrement
+ * <code>DEFINE_ID</code>), les enregistrements suivants y font référence par
+ * leur numéro.
+ */
+public final class EventLog {
+	/**
+	 * Signature des fichiers segments ("SATR").
+	 */
+	static final int MAGIC = 0x53415452;
+
+	/**
+	 * Version du format.
+	 */
+	static final short VERSION = 1;
+
+	/**
+	 * Taille de l'en-tête d'un segment.
+	 */
+	static final int HEADER_SIZE = 4 + 2 + 4 + 8;
+
+	/**
+	 * Taille par défaut d'un segment.
+	 */
+	static final int DEFAULT_SEGMENT_SIZE = 8 * 1024 * 1024;
+
+	// - - - Record types - - -
+
+	/**
+	 * Association d'un numéro à un RadioID sérialisé.
+	 */
+	static final byte DEFINE_ID = 0;
+
+	/**
+	 * Connexion d'un avion.
+	 */
+	static final byte PLANE_CONNECTED = 1;
+
+	/**
+	 * Déconnexion d'un avion.
+	 */
+	static final byte PLANE_DISCONNECTED = 2;
+
+	/**
+	 * Message reçu d'un avion.
+	 */
+	static final byte MESSAGE = 3;
+
+	private EventLog() {
+	}
+
+	/**
+	 * Retourne le fichier correspondant au segment d'index donné.
+	 */
+	static File segmentFile(File dir, int index) {
+		return new File(dir, String.format("%05d.seg", index));
+	}
+}
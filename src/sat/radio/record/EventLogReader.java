@@ -0,0 +1,250 @@
+package sat.radio.record;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+
+import sat.events.Event;
+import sat.radio.RadioEvent;
+import sat.radio.RadioID;
+import sat.radio.message.*;
+import sat.radio.message.stream.Serializer;
+import sat.utils.geo.Coordinates;
+
+/**
+ * Lit un journal binaire d'événements radio écrit par un
+ * {@link EventLogWriter}. Les événements sont reconstruits tels que la radio
+ * les avait émis.
+ */
+public class EventLogReader {
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	/**
+	 * Le dossier du journal.
+	 */
+	private File dir;
+
+	/**
+	 * Index du segment actuel.
+	 */
+	private int segmentIndex = -1;
+
+	/**
+	 * Projection en mémoire du segment actuel.
+	 */
+	private MappedByteBuffer segment;
+
+	/**
+	 * Heure de début de l'enregistrement.
+	 */
+	private long startMillis;
+
+	/**
+	 * Temps du dernier événement lu, relatif au début de l'enregistrement.
+	 */
+	private long time;
+
+	/**
+	 * Table des identifiants définis dans le journal.
+	 */
+	private ArrayList<RadioID> ids = new ArrayList<RadioID>();
+
+	/**
+	 * Ouvre un journal existant.
+	 * 
+	 * @throws IOException
+	 *             Si le journal n'existe pas ou est invalide.
+	 */
+	public EventLogReader(String path) throws IOException {
+		dir = new File(path);
+
+		if(!nextSegment()) {
+			throw new IOException("No log found in " + path);
+		}
+	}
+
+	/**
+	 * Retourne l'heure de début de l'enregistrement (epoch, en ms).
+	 */
+	public long getStartMillis() {
+		return startMillis;
+	}
+
+	/**
+	 * Retourne le temps du dernier événement lu, en nanosecondes depuis le
+	 * début de l'enregistrement.
+	 */
+	public long getTime() {
+		return time;
+	}
+
+	/**
+	 * Lit le prochain événement du journal.
+	 * 
+	 * @return L'événement lu, ou <code>null</code> à la fin du journal.
+	 * 
+	 * @throws IOException
+	 *             Si le journal est corrompu.
+	 */
+	public Event next() throws IOException {
+		while(segment != null) {
+			int length = (segment.remaining() >= 4) ? segment.getInt() : 0;
+
+			if(length == 0) {
+				// End of this segment
+				nextSegment();
+				continue;
+			}
+
+			if(length < 13 || length > segment.remaining()) {
+				throw new IOException("Corrupted log record");
+			}
+
+			time = segment.getLong();
+			byte type = segment.get();
+			int handle = segment.getInt();
+
+			switch(type) {
+				case EventLog.DEFINE_ID:
+					RadioID id = (RadioID) Serializer.deserialize(getBytes());
+
+					if(id == null || handle != ids.size()) {
+						throw new IOException("Corrupted identifier record");
+					}
+
+					ids.add(id);
+					continue;
+
+				case EventLog.PLANE_CONNECTED:
+					return new RadioEvent.PlaneConnected(id(handle));
+
+				case EventLog.PLANE_DISCONNECTED:
+					return new RadioEvent.PlaneDisconnected(id(handle));
+
+				case EventLog.MESSAGE:
+					return readMessage(id(handle));
+
+				default:
+					throw new IOException("Unknown log record type " + type);
+			}
+		}
+
+		return null;
+	}
+
+	/**
+	 * Reconstruit un message.
+	 */
+	private Message readMessage(RadioID id) throws IOException {
+		MessageType type;
+		try {
+			type = MessageType.values()[segment.get()];
+		}
+		catch(RuntimeException e) {
+			throw new IOException("Invalid message type");
+		}
+
+		Coordinates c = new Coordinates(segment.getFloat(), segment.getFloat(), segment.getFloat());
+
+		switch(type) {
+			case MAYDAY:
+				return new MessageMayDay(id, c, new String(getBytes(), UTF8));
+
+			case DATA:
+				byte[] hash = getBytes();
+				int continuation = segment.getInt();
+				String format = new String(getBytes(), UTF8);
+				int fileSize = segment.getInt();
+				byte[] payload = getBytes();
+				return new MessageData(id, c, hash, continuation, format, fileSize, payload);
+
+			case KEEPALIVE:
+				return new MessageKeepalive(id, c);
+
+			case LANDINGREQUEST:
+				return new MessageLanding(id, c);
+
+			case BYE:
+				return new MessageBye(id, c);
+
+			case CHOKE:
+				return new MessageChoke(id, c);
+
+			case UNCHOKE:
+				return new MessageUnchoke(id, c);
+
+			default:
+				throw new IOException("Unsupported message type " + type);
+		}
+	}
+
+	/**
+	 * Lit un bloc de taille variable.
+	 */
+	private byte[] getBytes() throws IOException {
+		int length = segment.getInt();
+
+		if(length < 0 || length > segment.remaining()) {
+			throw new IOException("Corrupted log record");
+		}
+
+		byte[] bytes = new byte[length];
+		segment.get(bytes);
+		return bytes;
+	}
+
+	/**
+	 * Retourne l'identifiant associé à un numéro.
+	 */
+	private RadioID id(int handle) throws IOException {
+		if(handle < 0 || handle >= ids.size()) {
+			throw new IOException("Undefined identifier " + handle);
+		}
+
+		return ids.get(handle);
+	}
+
+	/**
+	 * Ouvre le segment suivant.
+	 * 
+	 * @return <code>false</code> s'il n'y a plus de segment.
+	 */
+	private boolean nextSegment() throws IOException {
+		segment = null;
+
+		File file = EventLog.segmentFile(dir, segmentIndex + 1);
+		if(!file.exists()) {
+			return false;
+		}
+
+		segmentIndex++;
+
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		try {
+			segment = raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, raf.length());
+		}
+		finally {
+			// The mapping remains valid after closing the file
+			raf.close();
+		}
+
+		if(segment.remaining() < EventLog.HEADER_SIZE || segment.getInt() != EventLog.MAGIC) {
+			throw new IOException("Invalid log segment " + file);
+		}
+
+		if(segment.getShort() != EventLog.VERSION) {
+			throw new IOException("Unsupported log version in " + file);
+		}
+
+		if(segment.getInt() != segmentIndex) {
+			throw new IOException("Unexpected log segment " + file);
+		}
+
+		startMillis = segment.getLong();
+		return true;
+	}
+}
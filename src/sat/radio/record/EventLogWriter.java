@@ -0,0 +1,267 @@
+package sat.radio.record;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.HashMap;
+
+import sat.radio.RadioID;
+import sat.radio.message.Message;
+import sat.radio.message.MessageData;
+import sat.radio.message.MessageMayDay;
+import sat.radio.message.stream.Serializer;
+
+/**
+ * Écrit un journal binaire d'événements radio. Voir {@link EventLog} pour le
+ * format.
+ */
+public class EventLogWriter {
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	/**
+	 * Le dossier du journal.
+	 */
+	private File dir;
+
+	/**
+	 * Taille de chaque segment.
+	 */
+	private int segmentSize;
+
+	/**
+	 * Heure de début de l'enregistrement.
+	 */
+	private long startMillis;
+
+	/**
+	 * Index du segment actuel.
+	 */
+	private int segmentIndex = -1;
+
+	/**
+	 * Le fichier du segment actuel.
+	 */
+	private RandomAccessFile file;
+
+	/**
+	 * Projection en mémoire du segment actuel.
+	 */
+	private MappedByteBuffer segment;
+
+	/**
+	 * Buffer réutilisé pour construire chaque enregistrement.
+	 */
+	private ByteBuffer record = ByteBuffer.allocate(4096);
+
+	/**
+	 * Table des identifiants déjà écrits.
+	 */
+	private HashMap<RadioID, Integer> ids = new HashMap<RadioID, Integer>();
+
+	/**
+	 * Crée un nouveau journal dans le dossier donné, avec des segments de
+	 * taille par défaut.
+	 * 
+	 * @throws IOException
+	 *             Si le dossier ne peut être créé ou contient déjà un journal.
+	 */
+	public EventLogWriter(String path) throws IOException {
+		this(path, EventLog.DEFAULT_SEGMENT_SIZE);
+	}
+
+	/**
+	 * Crée un nouveau journal dans le dossier donné.
+	 * 
+	 * @param path
+	 *            Le dossier du journal.
+	 * @param segmentSize
+	 *            La taille de chaque fichier segment.
+	 * 
+	 * @throws IOException
+	 *             Si le dossier ne peut être créé ou contient déjà un journal.
+	 */
+	public EventLogWriter(String path, int segmentSize) throws IOException {
+		this.dir = new File(path);
+		this.segmentSize = segmentSize;
+		this.startMillis = System.currentTimeMillis();
+
+		if(!dir.isDirectory() && !dir.mkdirs()) {
+			throw new IOException("Unable to create log directory " + path);
+		}
+
+		if(EventLog.segmentFile(dir, 0).exists()) {
+			throw new IOException("A log already exists in " + path);
+		}
+
+		nextSegment();
+	}
+
+	/**
+	 * Enregistre la connexion d'un avion.
+	 */
+	public synchronized void writeConnected(long time, RadioID id) throws IOException {
+		int handle = handle(time, id);
+		begin(time, EventLog.PLANE_CONNECTED, handle);
+		commit();
+	}
+
+	/**
+	 * Enregistre la déconnexion d'un avion.
+	 */
+	public synchronized void writeDisconnected(long time, RadioID id) throws IOException {
+		int handle = handle(time, id);
+		begin(time, EventLog.PLANE_DISCONNECTED, handle);
+		commit();
+	}
+
+	/**
+	 * Enregistre un message reçu d'un avion.
+	 */
+	public synchronized void writeMessage(long time, Message m) throws IOException {
+		int handle = handle(time, m.getID());
+		begin(time, EventLog.MESSAGE, handle);
+
+		ensure(13);
+		record.put((byte) m.getType().ordinal());
+		record.putFloat(m.getX());
+		record.putFloat(m.getY());
+		record.putFloat(m.getZ());
+
+		switch(m.getType()) {
+			case MAYDAY:
+				putBytes(((MessageMayDay) m).getCause().getBytes(UTF8));
+				break;
+
+			case DATA:
+				MessageData data = (MessageData) m;
+				putBytes(data.getHash());
+				ensure(4);
+				record.putInt(data.getContinuation());
+				putBytes(data.getFormat().getBytes(UTF8));
+				ensure(4);
+				record.putInt(data.getFileSize());
+				putBytes(data.getPayload());
+				break;
+
+			default:
+				// No additionnal data
+				break;
+		}
+
+		commit();
+	}
+
+	/**
+	 * Termine le journal et libère le segment actuel.
+	 */
+	public synchronized void close() throws IOException {
+		if(file == null) {
+			return;
+		}
+
+		segment.force();
+		file.close();
+
+		file = null;
+		segment = null;
+	}
+
+	/**
+	 * Retourne le numéro associé à un identifiant, en écrivant sa définition
+	 * s'il n'est pas encore connu.
+	 */
+	private int handle(long time, RadioID id) throws IOException {
+		Integer handle = ids.get(id);
+
+		if(handle == null) {
+			handle = ids.size();
+			ids.put(id, handle);
+
+			begin(time, EventLog.DEFINE_ID, handle);
+			putBytes(Serializer.serialize(id));
+			commit();
+		}
+
+		return handle;
+	}
+
+	/**
+	 * Débute un nouvel enregistrement dans le buffer d'enregistrement.
+	 */
+	private void begin(long time, byte type, int handle) {
+		record.clear();
+		record.putInt(0); // Length, set by commit()
+		record.putLong(time);
+		record.put(type);
+		record.putInt(handle);
+	}
+
+	/**
+	 * Écrit un bloc de taille variable, précédé de sa longueur.
+	 */
+	private void putBytes(byte[] bytes) {
+		ensure(bytes.length + 4);
+		record.putInt(bytes.length);
+		record.put(bytes);
+	}
+
+	/**
+	 * Agrandit le buffer d'enregistrement si moins de <code>n</code> bytes y
+	 * sont disponibles. Doit précéder toute écriture dans le buffer après le
+	 * début de l'enregistrement.
+	 */
+	private void ensure(int n) {
+		if(record.remaining() < n) {
+			ByteBuffer larger = ByteBuffer.allocate(record.capacity() * 2 + n);
+			record.flip();
+			larger.put(record);
+			record = larger;
+		}
+	}
+
+	/**
+	 * Copie l'enregistrement construit dans le segment actuel, en passant au
+	 * segment suivant si nécessaire.
+	 */
+	private void commit() throws IOException {
+		if(file == null) {
+			throw new IOException("Log is closed");
+		}
+
+		record.putInt(0, record.position() - 4);
+		record.flip();
+
+		// Keep room for the end-of-segment marker
+		if(segment.remaining() < record.remaining() + 4) {
+			if(EventLog.HEADER_SIZE + record.remaining() + 4 > segmentSize) {
+				throw new IOException("Record too large for log segment");
+			}
+
+			nextSegment();
+		}
+
+		segment.put(record);
+	}
+
+	/**
+	 * Ferme le segment actuel et en ouvre un nouveau.
+	 */
+	private void nextSegment() throws IOException {
+		close();
+
+		segmentIndex++;
+
+		file = new RandomAccessFile(EventLog.segmentFile(dir, segmentIndex), "rw");
+		file.setLength(segmentSize);
+
+		segment = file.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+		segment.putInt(EventLog.MAGIC);
+		segment.putShort(EventLog.VERSION);
+		segment.putInt(segmentIndex);
+		segment.putLong(startMillis);
+	}
+}
@@ -0,0 +1,105 @@
+package sat.radio.record;
+
+import java.io.IOException;
+
+import sat.events.Event;
+import sat.events.EventListener;
+import sat.radio.RadioEvent;
+import sat.radio.message.Message;
+
+/**
+ * Enregistre les événements émis par un serveur radio dans un journal
+ * binaire: connexions, déconnexions et messages transmis à la tour.
+ * <p>
+ * Cet objet doit être ajouté comme listener de la radio. Les événements
+ * purement protocolaires (handshake, chiffrement) ne sont pas transmis par la
+ * radio et ne sont donc pas enregistrés.
+ */
+public class EventRecorder implements EventListener {
+	/**
+	 * Le journal dans lequel écrire.
+	 */
+	private EventLogWriter log;
+
+	/**
+	 * Début de l'enregistrement (System.nanoTime).
+	 */
+	private long start;
+
+	/**
+	 * Indique si une erreur d'écriture a interrompu l'enregistrement.
+	 */
+	private IOException error;
+
+	/**
+	 * Crée un nouvel enregistreur écrivant dans le journal donné.
+	 */
+	public EventRecorder(EventLogWriter log) {
+		this.log = log;
+		this.start = System.nanoTime();
+	}
+
+	/**
+	 * Retourne l'erreur ayant interrompu l'enregistrement, ou null.
+	 */
+	public IOException getError() {
+		return error;
+	}
+
+	/**
+	 * Termine l'enregistrement et ferme le journal.
+	 */
+	public void close() throws IOException {
+		log.close();
+	}
+
+	public void on(RadioEvent.PlaneConnected e) {
+		try {
+			log.writeConnected(elapsed(), e.getID());
+		}
+		catch(IOException ex) {
+			fail(ex);
+		}
+	}
+
+	public void on(RadioEvent.PlaneDisconnected e) {
+		try {
+			log.writeDisconnected(elapsed(), e.getID());
+		}
+		catch(IOException ex) {
+			fail(ex);
+		}
+	}
+
+	public void on(Message m) {
+		try {
+			log.writeMessage(elapsed(), m);
+		}
+		catch(IOException ex) {
+			fail(ex);
+		}
+	}
+
+	public void on(Event e) {
+		// Other radio events are not recorded
+	}
+
+	private long elapsed() {
+		return System.nanoTime() - start;
+	}
+
+	/**
+	 * Interrompt l'enregistrement après une erreur d'écriture.
+	 */
+	private void fail(IOException e) {
+		if(error == null) {
+			error = e;
+		}
+
+		try {
+			log.close();
+		}
+		catch(IOException ex) {
+		}
+	}
+}
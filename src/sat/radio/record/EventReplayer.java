@@ -0,0 +1,136 @@
+package sat.radio.record;
+
+import java.io.IOException;
+
+import sat.events.Event;
+import sat.events.EventEmitterInterface;
+import sat.events.EventListener;
+import sat.events.UnhandledEventException;
+
+/**
+ * Rejoue un journal d'événements radio vers un listener (en général une tour
+ * de contrôle), sans passer par les sockets ni le chiffrement.
+ * <p>
+ * Les événements sont délivrés séquentiellement depuis un thread dédié, comme
+ * le ferait le thread de distribution de la radio. La vitesse de lecture est
+ * un multiple du temps réel, une vitesse nulle ou négative rejouant le
+ * journal aussi vite que possible.
+ */
+public class EventReplayer extends Thread {
+	/**
+	 * Le journal à rejouer.
+	 */
+	private EventLogReader log;
+
+	/**
+	 * Le destinataire des événements.
+	 */
+	private EventListener target;
+
+	/**
+	 * L'émetteur associé aux événements rejoués.
+	 */
+	private EventEmitterInterface emitter;
+
+	/**
+	 * Facteur de vitesse par rapport au temps réel.
+	 */
+	private float speed;
+
+	/**
+	 * Nombre d'événements délivrés.
+	 */
+	private volatile long count = 0;
+
+	/**
+	 * Durée effective du dernier rejeu, en nanosecondes.
+	 */
+	private volatile long duration = 0;
+
+	/**
+	 * Erreur ayant interrompu le rejeu, ou null.
+	 */
+	private volatile IOException error;
+
+	/**
+	 * Crée un nouveau rejeu.
+	 * 
+	 * @param log
+	 *            Le journal à rejouer.
+	 * @param target
+	 *            Le listener auquel délivrer les événements.
+	 * @param emitter
+	 *            L'émetteur à associer aux événements (peut être null).
+	 * @param speed
+	 *            Facteur de vitesse (1 pour temps réel, 0 pour le plus vite
+	 *            possible).
+	 */
+	public EventReplayer(EventLogReader log, EventListener target, EventEmitterInterface emitter, float speed) {
+		this.log = log;
+		this.target = target;
+		this.emitter = emitter;
+		this.speed = speed;
+	}
+
+	public void run() {
+		long start = System.nanoTime();
+
+		try {
+			Event event;
+
+			while((event = log.next()) != null && !isInterrupted()) {
+				if(speed > 0) {
+					long due = start + (long) (log.getTime() / speed);
+					long wait = due - System.nanoTime();
+
+					if(wait > 0) {
+						try {
+							Thread.sleep(wait / 1000000, (int) (wait % 1000000));
+						}
+						catch(InterruptedException e) {
+							break;
+						}
+					}
+				}
+
+				try {
+					event.trigger(target, emitter);
+				}
+				catch(UnhandledEventException e) {
+					// Not handled by target, ignore
+				}
+				catch(Exception e) {
+					// Ignore exceptions in handlers, like an emitter would
+				}
+
+				count++;
+			}
+		}
+		catch(IOException e) {
+			error = e;
+		}
+
+		duration = System.nanoTime() - start;
+	}
+
+	/**
+	 * Retourne le nombre d'événements délivrés.
+	 */
+	public long getCount() {
+		return count;
+	}
+
+	/**
+	 * Retourne la durée effective du rejeu, une fois celui-ci terminé.
+	 */
+	public long getDuration() {
+		return duration;
+	}
+
+	/**
+	 * Retourne l'erreur ayant interrompu le rejeu, ou null.
+	 */
+	public IOException getError() {
+		return error;
+	}
+}
@@ -2,19 +2,24 @@ package sat.radio.server;
 
 import java.io.IOException;
 import java.lang.reflect.InvocationTargetException;
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 
+import sat.DebugEvent;
 import sat.events.Event;
 import sat.events.EventListener;
 import sat.events.UnhandledEventException;
 import sat.radio.Radio;
 import sat.radio.RadioDelegate;
+import sat.radio.PlaneRegistry;
 import sat.radio.RadioEvent;
 import sat.radio.RadioID;
 import sat.radio.RadioProtocolException;
 import sat.radio.engine.server.RadioServerEngine;
 import sat.radio.engine.server.RadioServerEngineDelegate;
 import sat.radio.message.*;
+import sat.radio.message.stream.MessageOutputStream;
 import sat.radio.socket.RadioSocket;
 import sat.radio.socket.RadioSocketState;
 import sat.utils.crypto.RSAInputStream;
@@ -45,11 +50,29 @@ public class RadioServer extends Radio {
 	private RadioServerEngine engine;
 
 	/**
-	 * Liste des pairs connectés avec le gestionnaire associé. Chaque Manager a
-	 * la responsabilité de s'ajouter dans cette liste lorsqu'il devient prêt à
+	 * Registre des pairs connectés avec le gestionnaire associé. Chaque
+	 * Manager a la responsabilité de s'y inscrire lorsqu'il devient prêt à
 	 * être utilisé.
 	 */
-	private HashMap<RadioID, PlaneAgent> agents;
+	private PlaneRegistry<PlaneAgent> agents;
+
+	/**
+	 * La roue surveillant l'inactivité des avions connectés.
+	 */
+	private TimingWheel timeouts = new TimingWheel("Radio timeouts", 100, 512);
+
+	/**
+	 * Délai d'inactivité, en millisecondes, après lequel un avion utilisant
+	 * le protocole étendu est déconnecté. 0 pour aucun délai.
+	 */
+	private int timeout = 5000;
+
+	/**
+	 * Délai d'inactivité, en millisecondes, après lequel un avion utilisant
+	 * le protocole ITP (ou n'ayant pas encore terminé le handshake) est
+	 * déconnecté. 0 pour aucun délai.
+	 */
+	private int legacyTimeout = 10000;
 
 	/**
 	 * Crée un nouveau serveur radio qui dépend du délégué spécifié.
@@ -61,7 +84,38 @@ public class RadioServer extends Radio {
 	public RadioServer(RadioDelegate delegate, RadioID id) {
 		super(delegate, id);
 		this.delegate = delegate; // TODO: useful ?
-		this.agents = new HashMap<RadioID, PlaneAgent>();
+		this.agents = new PlaneRegistry<PlaneAgent>();
+	}
+
+	public int getTimeout() {
+		return timeout;
+	}
+
+	/**
+	 * Défini le délai d'inactivité des avions utilisant le protocole étendu.
+	 * Le nouveau délai est appliqué à chaque avion lors de son prochain
+	 * message.
+	 * 
+	 * @param timeout
+	 *            Le délai en millisecondes, 0 pour aucun délai.
+	 */
+	public void setTimeout(int timeout) {
+		this.timeout = timeout;
+	}
+
+	public int getLegacyTimeout() {
+		return legacyTimeout;
+	}
+
+	/**
+	 * Défini le délai d'inactivité des avions utilisant le protocole ITP.
+	 * Ce délai s'applique aussi à tous les avions pendant le handshake.
+	 * 
+	 * @param legacyTimeout
+	 *            Le délai en millisecondes, 0 pour aucun délai.
+	 */
+	public void setLegacyTimeout(int legacyTimeout) {
+		this.legacyTimeout = legacyTimeout;
 	}
 
 	/**
@@ -83,7 +137,15 @@ public class RadioServer extends Radio {
 			return;
 
 		this.engine = engine;
-		this.engine.init(new Delegate());
+
+		try {
+			this.engine.init(new Delegate());
+		}
+		catch(IOException e) {
+			// Allows another attempt
+			this.engine = null;
+			throw e;
+		}
 	}
 
 	/**
@@ -95,17 +157,32 @@ public class RadioServer extends Radio {
 	 *            Le RadioID du client à déconnecter.
 	 */
 	public void kick(RadioID id) {
-		synchronized(agents) {
-			if(agents.containsKey(id)) {
-				agents.get(id).kick();
-			}
+		PlaneAgent agent = agents.get(id);
+		if(agent != null) {
+			agent.kick();
 		}
 	}
 
+	/**
+	 * Retourne le nombre d'avions connectés.
+	 */
+	public int getAgentsCount() {
+		return agents.size();
+	}
+
 	public PlaneAgent getAgentForId(RadioID id) {
-		synchronized(agents) {
-			return agents.get(id);
-		}
+		return agents.get(id);
+	}
+
+	/**
+	 * Retourne le gestionnaire enregistré à un emplacement donné du registre,
+	 * typiquement celui indiqué par <code>Message.getSlot()</code>.
+	 * 
+	 * @return Le gestionnaire, ou <code>null</code> si l'emplacement est
+	 *         libre.
+	 */
+	public PlaneAgent getAgent(int slot) {
+		return agents.get(slot);
 	}
 
 	public void send(RadioID id, Message m) {
@@ -115,12 +192,78 @@ public class RadioServer extends Radio {
 		}
 	}
 
+	/**
+	 * Envoie un message à tous les avions connectés.
+	 */
 	public void broadcast(Message m) {
-		synchronized(agents) {
-			for(PlaneAgent plane : agents.values()) {
-				plane.send(m);
+		broadcast(m, agents);
+	}
+
+	/**
+	 * Envoie un message à un ensemble d'avions. Le message est encodé une
+	 * seule fois par mode (ITP ou étendu) avant d'être placé dans la file
+	 * d'envoi de chaque destinataire; aucun verrou n'est pris.
+	 *
+	 * @param m
+	 *            Le message, qui ne doit plus être modifié.
+	 * @param recipients
+	 *            Les destinataires.
+	 * @return Le nombre de destinataires.
+	 */
+	public int broadcast(Message m, Iterable<PlaneAgent> recipients) {
+		int count = 0;
+
+		for(PlaneAgent plane : recipients) {
+			try {
+				MessageOutputStream.encode(m, plane.isExtended());
+			}
+			catch(IOException e) {
+				// Invalid message, reported by the writer
+			}
+
+			plane.send(m);
+			count++;
+		}
+
+		return count;
+	}
+
+	/**
+	 * Échantillonne le nombre de messages envoyés par chaque avion depuis
+	 * l'échantillon précédent. Doit être appelé périodiquement pour que
+	 * <code>getHeaviestSenders()</code> reflète l'activité récente.
+	 */
+	public synchronized void sampleSendRates() {
+		for(PlaneAgent agent : agents) {
+			long received = agent.received;
+
+			agent.sendRate = received - agent.receivedAtSample;
+			agent.receivedAtSample = received;
+		}
+	}
+
+	/**
+	 * Retourne les <code>count</code> avions ayant envoyé le plus de messages
+	 * entre les deux derniers échantillons, du plus actif au moins actif.
+	 */
+	public synchronized ArrayList<PlaneAgent> getHeaviestSenders(int count) {
+		ArrayList<PlaneAgent> senders = new ArrayList<PlaneAgent>();
+
+		for(PlaneAgent agent : agents) {
+			senders.add(agent);
+		}
+
+		Collections.sort(senders, new Comparator<PlaneAgent>() {
+			public int compare(PlaneAgent a, PlaneAgent b) {
+				return (a.sendRate < b.sendRate) ? 1 : ((a.sendRate > b.sendRate) ? -1 : 0);
 			}
+		});
+
+		if(senders.size() > count) {
+			senders.subList(count, senders.size()).clear();
 		}
+
+		return senders;
 	}
 
 	public void sendFile(RadioID id, DataFile file) {
@@ -156,6 +299,24 @@ public class RadioServer extends Radio {
 		broadcast(new MessageUnchoke(id, delegate.getLocation()));
 	}
 
+	/**
+	 * Envoie un message Choke à un ensemble d'avions.
+	 *
+	 * @return Le nombre de destinataires.
+	 */
+	public int sendChoke(Iterable<PlaneAgent> recipients) {
+		return broadcast(new MessageChoke(id, delegate.getLocation()), recipients);
+	}
+
+	/**
+	 * Envoie un message Unchoke à un ensemble d'avions.
+	 *
+	 * @return Le nombre de destinataires.
+	 */
+	public int sendUnchoke(Iterable<PlaneAgent> recipients) {
+		return broadcast(new MessageUnchoke(id, delegate.getLocation()), recipients);
+	}
+
 	// - - - Engine Events Delegate - - -
 
 	/**
@@ -221,6 +382,36 @@ public class RadioServer extends Radio {
 		 */
 		private MessageHandler messageHandler;
 
+		/**
+		 * L'emplacement de ce gestionnaire dans le registre de la radio, ou
+		 * -1 s'il n'est pas encore prêt.
+		 */
+		private volatile int slot = -1;
+
+		/**
+		 * Objet attaché à ce gestionnaire par la tour.
+		 */
+		private volatile Object attachment;
+
+		/**
+		 * Le délai d'inactivité de cet avion.
+		 */
+		private TimingWheel.Timeout idle;
+
+		/**
+		 * Nombre de messages reçus de cet avion. Uniquement incrémenté par le
+		 * thread d'écoute.
+		 */
+		private volatile long received = 0;
+
+		/**
+		 * Valeur de <code>received</code> lors de l'échantillon précédent et
+		 * nombre de messages reçus entre les deux derniers échantillons.
+		 * Protégés par le verrou de <code>sampleSendRates()</code>.
+		 */
+		private long receivedAtSample = 0;
+		private long sendRate = 0;
+
 		/**
 		 * Crée un gestionnaire de socket.
 		 * 
@@ -232,6 +423,14 @@ public class RadioServer extends Radio {
 
 			messageHandler = new MessageHandler();
 
+			idle = timeouts.newTimeout(new Runnable() {
+				public void run() {
+					emitEvent(new DebugEvent("[RADIO] Plane " + socketID + " timed out"));
+					kick();
+				}
+			});
+
+			resetTimeout();
 			start();
 		}
 
@@ -243,14 +442,65 @@ public class RadioServer extends Radio {
 			return extended;
 		}
 
-		protected void ready() {
-			super.ready();
+		/**
+		 * Retourne l'identifiant de l'avion géré.
+		 */
+		public RadioID getID() {
+			return socketID;
+		}
+
+		/**
+		 * Retourne l'emplacement de ce gestionnaire dans le registre de la
+		 * radio, ou -1 s'il n'est pas encore prêt.
+		 */
+		public int getSlot() {
+			return slot;
+		}
+
+		/**
+		 * Attache un objet à ce gestionnaire, ce qui permet à la tour de
+		 * retrouver ses propres données sur l'avion sans recherche.
+		 */
+		public void attach(Object attachment) {
+			this.attachment = attachment;
+		}
+
+		/**
+		 * Retourne l'objet attaché à ce gestionnaire, ou <code>null</code>.
+		 */
+		public Object attachment() {
+			return attachment;
+		}
+
+		/**
+		 * Repousse l'échéance du délai d'inactivité, selon le protocole
+		 * utilisé par l'avion.
+		 */
+		private void resetTimeout() {
+			int delay = extended ? timeout : legacyTimeout;
 
-			synchronized(agents) {
-				agents.put(socketID, this);
+			if(delay > 0) {
+				idle.reset(delay);
+			}
+			else {
+				idle.cancel();
 			}
+		}
 
-			RadioServer.this.emit(new RadioEvent.PlaneConnected(socketID));
+		protected void ready() {
+			slot = agents.register(socketID, this);
+
+			if(slot < 0) {
+				// Another connected plane uses this identifier: the newcomer
+				// is refused rather than replacing it
+				emitEvent(new DebugEvent("[RADIO] Plane " + socketID + " refused: identifier already connected"));
+				kick();
+				return;
+			}
+
+			super.ready();
+
+			RadioServer.this.emit(new RadioEvent.PlaneConnected(socketID, slot));
 		}
 
 		protected void quit() {
@@ -261,15 +511,15 @@ public class RadioServer extends Radio {
 					return;
 				}
 
+				idle.cancel();
+
 				// Unregister
 				if(state == RadioSocketState.READY) {
 					// Disconnect notification
 					// Notification must be the first thing done.
 					RadioServer.this.emit(new RadioEvent.PlaneDisconnected(socketID));
 
-					synchronized(agents) {
-						agents.remove(socketID);
-					}
+					agents.unregister(socketID);
 				}
 
 				// Call super-fail
@@ -278,6 +528,10 @@ public class RadioServer extends Radio {
 		}
 
 		protected void handleMessage(Message message) throws UnhandledEventException, InvocationTargetException {
+			resetTimeout();
+			received++;
+
+			message.setSlot(slot);
 			emit(new RadioEvent.MessageReceived(message));
 			message.trigger(messageHandler);
 		}
@@ -358,14 +612,11 @@ public class RadioServer extends Radio {
 			}
 
 			/**
-			 * Gestion du message KeepAlive. Remet à zéro le timeout de
-			 * déconnexion de l'avion en cas d'inactivité. [NYI]
+			 * Gestion du message KeepAlive. Le délai d'inactivité a déjà été
+			 * repoussé à la réception du message, comme pour tout message.
 			 */
 			public void on(MessageKeepalive m) {
-				// Keepalive is used to reset socket timeout, handle it.
-				// TODO: handle it
-
-				// But is also used for updating plane position, so tower
+				// Keepalive is also used for updating plane position, so tower
 				// must receive it.
 				RadioServer.this.emit(m);
 			}
@@ -0,0 +1,339 @@
+package sat.radio.server;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+
+/**
+ * Une roue temporelle hachée (<i>hashed timing wheel</i>) utilisée pour
+ * surveiller l'inactivité d'un grand nombre de connexions.
+ * <p>
+ * Chaque délai est représenté par un objet {@link Timeout} réutilisable, créé
+ * une fois par connexion. Sa remise à zéro (<code>reset()</code>) ne fait
+ * qu'écrire la nouvelle échéance, sans verrou ni déplacement dans la roue:
+ * c'est le thread de la roue qui, en atteignant le compartiment de l'ancienne
+ * échéance, déplace le délai vers celui de la nouvelle. Chaque délai actif est
+ * ainsi examiné environ une fois par période, quel que soit le nombre de
+ * remises à zéro.
+ * <p>
+ * Un seul thread (démarré au premier délai armé) parcourt la roue et exécute
+ * les tâches des délais expirés. Ces tâches doivent donc être courtes.
+ */
+public class TimingWheel {
+	/**
+	 * Durée d'un tick, en millisecondes.
+	 */
+	private final long tickMillis;
+
+	/**
+	 * Premier délai de chaque compartiment. Uniquement accédé par le thread de
+	 * la roue.
+	 */
+	private final Timeout[] buckets;
+
+	/**
+	 * Masque appliqué au numéro d'un tick pour obtenir son compartiment.
+	 */
+	private final int mask;
+
+	/**
+	 * Délais armés depuis d'autres threads, en attente d'être placés dans la
+	 * roue.
+	 */
+	private final ConcurrentLinkedQueue<Timeout> incoming = new ConcurrentLinkedQueue<Timeout>();
+
+	/**
+	 * Le prochain tick à traiter.
+	 */
+	private long cursor;
+
+	/**
+	 * Le thread de la roue.
+	 */
+	private Thread ticker;
+
+	/**
+	 * Nom donné au thread de la roue.
+	 */
+	private final String name;
+
+	/**
+	 * Crée une roue.
+	 *
+	 * @param name
+	 *            Le nom du thread de la roue.
+	 * @param tickMillis
+	 *            La précision de la roue, en millisecondes.
+	 * @param size
+	 *            Le nombre de compartiments, arrondi à la puissance de 2
+	 *            supérieure.
+	 */
+	public TimingWheel(String name, long tickMillis, int size) {
+		this.name = name;
+		this.tickMillis = Math.max(tickMillis, 1);
+
+		int n = Integer.highestOneBit(Math.max(size, 1));
+		if(n < size) {
+			n <<= 1;
+		}
+
+		this.buckets = new Timeout[n];
+		this.mask = n - 1;
+	}
+
+	/**
+	 * Crée un nouveau délai, non armé, qui exécutera la tâche donnée à son
+	 * expiration.
+	 */
+	public Timeout newTimeout(Runnable task) {
+		return new Timeout(this, task);
+	}
+
+	/**
+	 * L'horloge de la roue, en millisecondes (monotone).
+	 */
+	private static long now() {
+		return System.nanoTime() / 1000000;
+	}
+
+	/**
+	 * Prend en charge un délai armé depuis un autre thread.
+	 */
+	private void submit(Timeout timeout) {
+		incoming.add(timeout);
+
+		synchronized(this) {
+			if(ticker == null) {
+				cursor = now() / tickMillis;
+
+				ticker = new Thread(name) {
+					public void run() {
+						tick();
+					}
+				};
+
+				ticker.setDaemon(true);
+				ticker.start();
+			}
+		}
+	}
+
+	/**
+	 * Boucle du thread de la roue.
+	 */
+	private void tick() {
+		while(true) {
+			long wait = (cursor + 1) * tickMillis - now();
+
+			if(wait > 0) {
+				try {
+					Thread.sleep(wait);
+				}
+				catch(InterruptedException e) {
+					return;
+				}
+			}
+
+			Timeout timeout;
+			while((timeout = incoming.poll()) != null) {
+				if(timeout.armed == 0) {
+					release(timeout);
+				}
+				else {
+					link(timeout);
+				}
+			}
+
+			long now = now();
+			long nowTick = now / tickMillis;
+
+			while(cursor <= nowTick) {
+				expire((int) (cursor & mask), now);
+				cursor++;
+			}
+		}
+	}
+
+	/**
+	 * Examine les délais d'un compartiment: les délais désarmés sont retirés,
+	 * les délais échus exécutés et les délais remis à zéro déplacés.
+	 */
+	private void expire(int bucket, long now) {
+		Timeout timeout = buckets[bucket];
+
+		while(timeout != null) {
+			Timeout next = timeout.next;
+
+			if(timeout.armed == 0) {
+				unlink(timeout);
+				release(timeout);
+			}
+			else if(timeout.deadline <= now) {
+				unlink(timeout);
+
+				if(Timeout.ARMED.compareAndSet(timeout, 1, 0)) {
+					if(timeout.deadline > now) {
+						// Reset while expiring
+						timeout.armed = 1;
+						release(timeout);
+						timeout = next;
+						continue;
+					}
+
+					release(timeout);
+
+					try {
+						timeout.task.run();
+					}
+					catch(RuntimeException e) {
+						// Do not let a faulty task stop the wheel
+						e.printStackTrace();
+					}
+				}
+				else {
+					release(timeout);
+				}
+			}
+			else if(timeout.bucket != bucketFor(timeout.deadline)) {
+				unlink(timeout);
+				link(timeout);
+			}
+
+			timeout = next;
+		}
+	}
+
+	/**
+	 * Retourne le compartiment correspondant à une échéance. Une échéance
+	 * dont le tick est déjà en cours de traitement est reportée au tick
+	 * suivant.
+	 */
+	private int bucketFor(long deadline) {
+		long tick = Math.max(deadline / tickMillis, cursor + 1);
+		return (int) (tick & mask);
+	}
+
+	/**
+	 * Insère un délai dans le compartiment de son échéance.
+	 */
+	private void link(Timeout timeout) {
+		int bucket = bucketFor(timeout.deadline);
+
+		timeout.bucket = bucket;
+		timeout.prev = null;
+		timeout.next = buckets[bucket];
+
+		if(timeout.next != null) {
+			timeout.next.prev = timeout;
+		}
+
+		buckets[bucket] = timeout;
+	}
+
+	/**
+	 * Retire un délai de son compartiment.
+	 */
+	private void unlink(Timeout timeout) {
+		if(timeout.prev != null) {
+			timeout.prev.next = timeout.next;
+		}
+		else {
+			buckets[timeout.bucket] = timeout.next;
+		}
+
+		if(timeout.next != null) {
+			timeout.next.prev = timeout.prev;
+		}
+
+		timeout.prev = null;
+		timeout.next = null;
+		timeout.bucket = -1;
+	}
+
+	/**
+	 * Rend un délai retiré de la roue à son propriétaire. Si le délai a été
+	 * réarmé entre-temps, il est immédiatement replacé.
+	 */
+	private void release(Timeout timeout) {
+		timeout.owned = 0;
+
+		if(timeout.armed != 0 && Timeout.OWNED.compareAndSet(timeout, 0, 1)) {
+			link(timeout);
+		}
+	}
+
+	/**
+	 * Un délai de la roue, réutilisable.
+	 */
+	public static final class Timeout {
+		private static final AtomicIntegerFieldUpdater<Timeout> ARMED = AtomicIntegerFieldUpdater.newUpdater(Timeout.class, "armed");
+		private static final AtomicIntegerFieldUpdater<Timeout> OWNED = AtomicIntegerFieldUpdater.newUpdater(Timeout.class, "owned");
+
+		/**
+		 * La roue de ce délai.
+		 */
+		private final TimingWheel wheel;
+
+		/**
+		 * La tâche exécutée à l'expiration.
+		 */
+		private final Runnable task;
+
+		/**
+		 * L'échéance, selon l'horloge de la roue.
+		 */
+		private volatile long deadline;
+
+		/**
+		 * 1 si le délai est armé.
+		 */
+		private volatile int armed = 0;
+
+		/**
+		 * 1 si le délai est pris en charge par la roue (dans la file
+		 * d'entrée ou dans un compartiment).
+		 */
+		private volatile int owned = 0;
+
+		// Wheel thread only
+		private Timeout prev;
+		private Timeout next;
+		private int bucket = -1;
+
+		private Timeout(TimingWheel wheel, Runnable task) {
+			this.wheel = wheel;
+			this.task = task;
+		}
+
+		/**
+		 * Arme ce délai, ou repousse son échéance s'il est déjà armé. Cette
+		 * méthode ne prend aucun verrou et n'alloue rien lorsque le délai est
+		 * déjà armé.
+		 *
+		 * @param delay
+		 *            Le délai avant expiration, en millisecondes.
+		 */
+		public void reset(long delay) {
+			deadline = now() + delay;
+			armed = 1;
+
+			if(OWNED.compareAndSet(this, 0, 1)) {
+				wheel.submit(this);
+			}
+		}
+
+		/**
+		 * Désarme ce délai. Sa tâche ne sera pas exécutée, sauf si elle est
+		 * déjà en cours d'exécution.
+		 */
+		public void cancel() {
+			armed = 0;
+		}
+
+		/**
+		 * Indique si ce délai est armé.
+		 */
+		public boolean isArmed() {
+			return armed != 0;
+		}
+	}
+}
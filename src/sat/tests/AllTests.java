@@ -6,9 +6,10 @@ import org.junit.runners.Suite.SuiteClasses;
 
 import sat.tests.crypto.AllCryptoTests;
 import sat.tests.radio.AllRadioTests;
+import sat.tests.tower.AllTowerTests;
 
 @RunWith(Suite.class)
-@SuiteClasses({ AllCryptoTests.class, AllRadioTests.class })
+@SuiteClasses({ AllCryptoTests.class, AllRadioTests.class, AllTowerTests.class })
 public class AllTests {
 }
 
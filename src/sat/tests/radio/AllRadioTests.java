@@ -8,6 +8,6 @@ import org.junit.runners.Suite.SuiteClasses;
  * Execute tous les tests des objets Radio.
  */
 @RunWith(Suite.class)
-@SuiteClasses({ RadioIDTest.class })
+@SuiteClasses({ RadioIDTest.class, PlaneRegistryTest.class, TimingWheelTest.class, MessageEncodingTest.class, OutboundQueueTest.class, EventLogWriterTest.class })
 public class AllRadioTests {
 }
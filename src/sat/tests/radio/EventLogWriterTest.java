@@ -0,0 +1,62 @@
+package sat.tests.radio;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+
+import org.junit.Test;
+
+import sat.radio.RadioID;
+import sat.radio.message.MessageData;
+import sat.radio.record.EventLogReader;
+import sat.radio.record.EventLogWriter;
+import sat.utils.geo.Coordinates;
+
+/**
+ * Test l'écriture du journal binaire d'événements radio.
+ */
+public class EventLogWriterTest {
+	/**
+	 * Vérifie qu'un message de données dont un bloc remplit exactement le
+	 * buffer d'enregistrement est écrit puis relu sans perte.
+	 */
+	@Test
+	public void testDataFillingRecord() throws Exception {
+		File dir = File.createTempFile("sat", ".log");
+		dir.delete();
+
+		try {
+			RadioID id = new RadioID("PLN");
+
+			// 30 bytes of record and message headers, then the hash and its
+			// length fill the initial 4096 bytes
+			byte[] hash = new byte[4062];
+			byte[] payload = new byte[] { 1, 2, 3 };
+
+			EventLogWriter writer = new EventLogWriter(dir.getPath());
+			writer.writeMessage(0, new MessageData(id, new Coordinates(1, 2, 3), hash, 7, "txt", 42, payload));
+			writer.close();
+
+			EventLogReader reader = new EventLogReader(dir.getPath());
+			MessageData data = (MessageData) reader.next();
+
+			assertEquals(id, data.getID());
+			assertEquals(hash.length, data.getHash().length);
+			assertEquals(7, data.getContinuation());
+			assertEquals("txt", data.getFormat());
+			assertEquals(42, data.getFileSize());
+			assertArrayEquals(payload, data.getPayload());
+		}
+		finally {
+			File[] files = dir.listFiles();
+
+			if(files != null) {
+				for(File file : files) {
+					file.delete();
+				}
+			}
+
+			dir.delete();
+		}
+	}
+}
@@ -0,0 +1,149 @@
+package sat.tests.radio;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+
+import org.junit.Test;
+
+import sat.radio.RadioID;
+import sat.radio.message.Message;
+import sat.radio.message.MessageChoke;
+import sat.radio.message.MessageKeepalive;
+import sat.radio.message.MessageRedirect;
+import sat.radio.message.MessageRouting;
+import sat.radio.message.MessageRoutingBatch;
+import sat.radio.message.stream.MessageInputStream;
+import sat.radio.message.stream.MessageOutputStream;
+import sat.utils.geo.Coordinates;
+import sat.utils.routes.MoveType;
+import sat.utils.routes.RoutingType;
+import sat.utils.routes.Waypoint;
+
+/**
+ * Test l'encodage unique des messages diffusés.
+ */
+public class MessageEncodingTest {
+	private static byte[] write(Message m, boolean extended) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		MessageOutputStream mos = new MessageOutputStream(out);
+		mos.setExtended(extended);
+		mos.writeMessage(m);
+		return out.toByteArray();
+	}
+
+	/**
+	 * Vérifie que l'encodage conservé est identique à un encodage direct, et
+	 * qu'il est réutilisé par les flux du même mode.
+	 */
+	@Test
+	public void testEncodeOnce() throws IOException {
+		RadioID id = new RadioID("TWR");
+
+		for(boolean extended : new boolean[] { false, true }) {
+			Message shared = new MessageChoke(id, new Coordinates(10, 20, 0));
+			byte[] encoding = MessageOutputStream.encode(shared, extended);
+
+			assertArrayEquals(write(new MessageChoke(id, new Coordinates(10, 20, 0)), extended), encoding);
+			assertSame(encoding, MessageOutputStream.encode(shared, extended));
+			assertArrayEquals(encoding, write(shared, extended));
+			assertNull(shared.getEncoding(!extended));
+		}
+	}
+
+	/**
+	 * Vérifie qu'une suite pré-encodée est identique, octet par octet, aux
+	 * messages Routing qu'elle remplace.
+	 */
+	@Test
+	public void testRoutingBatch() throws IOException {
+		RadioID id = new RadioID("PLN");
+
+		ArrayList<Waypoint> route = new ArrayList<Waypoint>();
+		route.add(new Waypoint(MoveType.STRAIGHT, new float[] { 900, 50, 0 }));
+		route.add(new Waypoint(MoveType.CIRCULAR, new float[] { 1000, 100, 0, 180 }));
+		route.add(new Waypoint(MoveType.LANDING, new float[] { 592, 149, 0 }));
+
+		MessageRoutingBatch.Template template = new MessageRoutingBatch.Template(route);
+
+		for(boolean extended : new boolean[] { false, true }) {
+			for(boolean replace : new boolean[] { false, true }) {
+				ByteArrayOutputStream expected = new ByteArrayOutputStream();
+
+				for(int i = 0; i < route.size(); i++) {
+					RoutingType type = (i == 0 && replace) ? RoutingType.REPLACEALL : RoutingType.LAST;
+					expected.write(write(new MessageRouting(id, route.get(i), type), extended));
+				}
+
+				MessageRoutingBatch batch = new MessageRoutingBatch(id, template, replace);
+
+				assertEquals(3, batch.getCount());
+				assertArrayEquals(expected.toByteArray(), write(batch, extended));
+			}
+		}
+	}
+
+	/**
+	 * Vérifie l'encodage d'une redirection, qui n'existe qu'en mode étendu.
+	 */
+	@Test
+	public void testRedirect() throws IOException {
+		RadioID id = new RadioID("TWR");
+		byte[] encoding = write(new MessageRedirect(id, new Coordinates(0, 0, 0), "localhost", 6970), true);
+
+		MessageInputStream in = new MessageInputStream(new ByteArrayInputStream(encoding));
+		in.setExtended(true);
+
+		MessageRedirect m = (MessageRedirect) in.readMessage();
+		assertEquals(id, m.getID());
+		assertEquals("localhost", m.getHost());
+		assertEquals(6970, m.getPort());
+
+		try {
+			write(new MessageRedirect(id, new Coordinates(0, 0, 0), "localhost", 6970), false);
+			fail("Redirect must be refused in ITP mode");
+		}
+		catch(IOException e) {
+		}
+	}
+
+	/**
+	 * Vérifie que les positions décodées sont conservées, et que les messages
+	 * successifs d'un même pair partagent son identifiant.
+	 */
+	@Test
+	public void testKeepalive() throws IOException {
+		RadioID plane = new RadioID("PLN");
+		RadioID other = new RadioID("PLN");
+
+		for(boolean extended : new boolean[] { false, true }) {
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			out.write(write(new MessageKeepalive(plane, 12, 34, 0), extended));
+			out.write(write(new MessageKeepalive(plane, 56, 78, 0), extended));
+			out.write(write(new MessageKeepalive(other, 90, 12, 0), extended));
+
+			MessageInputStream mis = new MessageInputStream(new ByteArrayInputStream(out.toByteArray()));
+			mis.setExtended(extended);
+
+			Message first = mis.readMessage();
+			Message second = mis.readMessage();
+			Message third = mis.readMessage();
+
+			assertTrue(first instanceof MessageKeepalive);
+			assertEquals(12, first.getX(), 0);
+			assertEquals(34, first.getY(), 0);
+			assertEquals(56, second.getCoordinates().getX(), 0);
+
+			assertSame(first.getID(), second.getID());
+			assertFalse(second.getID().equals(third.getID()));
+
+			if(extended) {
+				assertEquals(plane, first.getID());
+				assertEquals(other, third.getID());
+			}
+		}
+	}
+}
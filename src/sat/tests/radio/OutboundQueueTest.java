@@ -0,0 +1,70 @@
+package sat.tests.radio;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import sat.radio.OutboundQueue;
+import sat.radio.RadioID;
+import sat.radio.message.MessageChoke;
+import sat.radio.message.MessageKeepalive;
+import sat.radio.message.MessageRouting;
+import sat.radio.message.MessageType;
+import sat.radio.message.MessageUnchoke;
+import sat.utils.geo.Coordinates;
+import sat.utils.routes.MoveType;
+import sat.utils.routes.RoutingType;
+import sat.utils.routes.Waypoint;
+
+/**
+ * Test la file d'envoi et le retrait des messages obsolètes.
+ */
+public class OutboundQueueTest {
+	private RadioID id = new RadioID("TWR");
+
+	private MessageRouting routing(RoutingType type, float x) {
+		return new MessageRouting(id, new Waypoint(MoveType.STRAIGHT, new float[] { x, 0, 0 }), type);
+	}
+
+	/**
+	 * Un REPLACEALL retire les messages Routing de la route précédente, mais
+	 * pas les autres messages.
+	 */
+	@Test
+	public void testReplaceAllSupersedes() throws InterruptedException {
+		OutboundQueue queue = new OutboundQueue();
+
+		assertEquals(0, queue.put(routing(RoutingType.REPLACEALL, 1)));
+		assertEquals(0, queue.put(routing(RoutingType.LAST, 2)));
+		assertEquals(0, queue.put(routing(RoutingType.LAST, 3)));
+		assertEquals(0, queue.put(new MessageKeepalive(id, new Coordinates(0, 0, 0))));
+
+		MessageRouting replace = routing(RoutingType.REPLACEALL, 10);
+		MessageRouting last = routing(RoutingType.LAST, 11);
+
+		assertEquals(3, queue.put(replace));
+		assertEquals(0, queue.put(last));
+		assertEquals(3, queue.size());
+
+		assertSame(replace, queue.take());
+		assertSame(last, queue.take());
+		assertEquals(MessageType.KEEPALIVE, queue.take().getType());
+	}
+
+	/**
+	 * Seul le dernier Choke ou Unchoke demandé est envoyé.
+	 */
+	@Test
+	public void testChokeCollapse() throws InterruptedException {
+		OutboundQueue queue = new OutboundQueue();
+
+		queue.put(new MessageUnchoke(id, new Coordinates(0, 0, 0)));
+		assertEquals(1, queue.put(new MessageChoke(id, new Coordinates(0, 0, 0))));
+
+		MessageUnchoke unchoke = new MessageUnchoke(id, new Coordinates(0, 0, 0));
+		assertEquals(1, queue.put(unchoke));
+
+		assertEquals(1, queue.size());
+		assertSame(unchoke, queue.take());
+	}
+}
@@ -0,0 +1,85 @@
+package sat.tests.radio;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import sat.radio.PlaneRegistry;
+import sat.radio.RadioID;
+
+/**
+ * Test le registre des avions.
+ */
+public class PlaneRegistryTest {
+	/**
+	 * Vérifie que les emplacements sont denses et que ceux libérés sont
+	 * réutilisés.
+	 */
+	@Test
+	public void testSlotsReused() {
+		PlaneRegistry<String> registry = new PlaneRegistry<String>();
+
+		RadioID id1 = new RadioID(new byte[] { 'P', '1' });
+		RadioID id2 = new RadioID(new byte[] { 'P', '2' });
+		RadioID id3 = new RadioID(new byte[] { 'P', '3' });
+
+		assertEquals(0, registry.register(id1, "one"));
+		assertEquals(1, registry.register(id2, "two"));
+
+		assertEquals("one", registry.unregister(id1));
+		assertNull(registry.get(0));
+		assertEquals(-1, registry.getSlot(id1));
+
+		assertEquals(0, registry.register(id3, "three"));
+		assertEquals("three", registry.get(id3));
+		assertEquals(2, registry.size());
+		assertEquals(2, registry.getCapacity());
+	}
+
+	/**
+	 * Vérifie qu'un identifiant déjà inscrit est refusé sans remplacer la
+	 * valeur existante.
+	 */
+	@Test
+	public void testDuplicateRefused() {
+		PlaneRegistry<String> registry = new PlaneRegistry<String>();
+		RadioID id = new RadioID(new byte[] { 'P', '1' });
+
+		assertEquals(0, registry.register(id, "one"));
+		assertEquals(-1, registry.register(new RadioID(new byte[] { 'P', '1' }), "other"));
+
+		assertEquals("one", registry.get(id));
+		assertEquals(1, registry.size());
+
+		registry.unregister(id);
+		assertEquals(0, registry.register(id, "other"));
+	}
+
+	/**
+	 * Vérifie que le registre s'agrandit sans perdre de valeurs et que le
+	 * parcours ignore les emplacements libres.
+	 */
+	@Test
+	public void testGrowAndIterate() {
+		PlaneRegistry<Integer> registry = new PlaneRegistry<Integer>();
+		RadioID[] ids = new RadioID[200];
+
+		for(int i = 0; i < ids.length; i++) {
+			ids[i] = new RadioID(String.valueOf(i).getBytes());
+			assertEquals(i, registry.register(ids[i], i));
+		}
+
+		for(int i = 0; i < ids.length; i += 2) {
+			registry.unregister(ids[i]);
+		}
+
+		int count = 0;
+		for(Integer value : registry) {
+			assertTrue(value % 2 == 1);
+			assertEquals(value, registry.get(ids[value]));
+			count++;
+		}
+
+		assertEquals(ids.length / 2, count);
+	}
+}
@@ -6,6 +6,9 @@ import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.junit.Test;
 
@@ -66,4 +69,60 @@ public class RadioIDTest {
 		assertFalse(id1.hashCode() == id2.hashCode());
 		assertFalse(id1.equals(id2));
 	}
+
+	/**
+	 * Vérifie que des identifiants créés en rafale, depuis plusieurs threads,
+	 * ont tous une clé et une forme ITP distinctes.
+	 */
+	@Test
+	public void testUniqueness() throws Exception {
+		final ConcurrentHashMap<Long, RadioID> keys = new ConcurrentHashMap<Long, RadioID>();
+		final ConcurrentHashMap<String, RadioID> legacyIDs = new ConcurrentHashMap<String, RadioID>();
+
+		Thread[] threads = new Thread[4];
+
+		for(int i = 0; i < threads.length; i++) {
+			threads[i] = new Thread() {
+				public void run() {
+					for(int j = 0; j < 25000; j++) {
+						RadioID id = new RadioID("PLN");
+
+						keys.put(id.getKey(), id);
+						legacyIDs.put(new String(id.toLegacyID()), id);
+					}
+				}
+			};
+
+			threads[i].start();
+		}
+
+		for(Thread thread : threads) {
+			thread.join();
+		}
+
+		assertEquals(100000, keys.size());
+		assertEquals(100000, legacyIDs.size());
+		assertEquals(100000, new HashSet<RadioID>(keys.values()).size());
+	}
+
+	/**
+	 * Vérifie que la forme ITP d'un identifiant reçue par la tour donne un
+	 * identifiant stable, distinct de l'identifiant d'origine.
+	 */
+	@Test
+	public void testLegacyBoundary() {
+		RadioID id = new RadioID("PLN");
+		byte[] legacyID = id.toLegacyID();
+
+		assertEquals(8, legacyID.length);
+		assertEquals('X', legacyID[0]);
+		assertTrue(Arrays.equals(legacyID, id.toLegacyID()));
+
+		RadioID received = new RadioID(legacyID);
+
+		assertTrue(received.isLegacy());
+		assertEquals(received, new RadioID(legacyID.clone()));
+		assertTrue(Arrays.equals(legacyID, received.toLegacyID()));
+		assertFalse(received.equals(id));
+	}
 }
@@ -0,0 +1,73 @@
+package sat.tests.radio;
+
+import static org.junit.Assert.*;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import sat.radio.server.TimingWheel;
+
+/**
+ * Test la roue temporelle utilisée pour les délais d'inactivité.
+ */
+public class TimingWheelTest {
+	/**
+	 * Vérifie qu'un délai armé expire une seule fois.
+	 */
+	@Test
+	public void testExpires() throws Exception {
+		TimingWheel wheel = new TimingWheel("Test wheel", 5, 16);
+		final CountDownLatch latch = new CountDownLatch(1);
+		final AtomicInteger runs = new AtomicInteger();
+
+		TimingWheel.Timeout timeout = wheel.newTimeout(new Runnable() {
+			public void run() {
+				runs.incrementAndGet();
+				latch.countDown();
+			}
+		});
+
+		timeout.reset(50);
+
+		assertTrue(latch.await(2, TimeUnit.SECONDS));
+		Thread.sleep(100);
+
+		assertEquals(1, runs.get());
+		assertFalse(timeout.isArmed());
+	}
+
+	/**
+	 * Vérifie que les remises à zéro repoussent l'expiration, y compris
+	 * au-delà d'un tour de roue, et qu'un délai désarmé n'expire pas.
+	 */
+	@Test
+	public void testResetAndCancel() throws Exception {
+		TimingWheel wheel = new TimingWheel("Test wheel", 5, 4);
+		final AtomicInteger runs = new AtomicInteger();
+
+		Runnable task = new Runnable() {
+			public void run() {
+				runs.incrementAndGet();
+			}
+		};
+
+		TimingWheel.Timeout reset = wheel.newTimeout(task);
+		TimingWheel.Timeout cancelled = wheel.newTimeout(task);
+
+		cancelled.reset(40);
+		cancelled.cancel();
+
+		for(int i = 0; i < 10; i++) {
+			reset.reset(80);
+			Thread.sleep(20);
+		}
+
+		assertEquals(0, runs.get());
+
+		Thread.sleep(300);
+		assertEquals(1, runs.get());
+	}
+}
@@ -0,0 +1,13 @@
+package sat.tests.tower;
+
+import org.junit.runner.RunWith;
+import org.junit.runners.Suite;
+import org.junit.runners.Suite.SuiteClasses;
+
+/**
+ * Execute tous les tests des objets de la tour.
+ */
+@RunWith(Suite.class)
+@SuiteClasses({ LandingQueueTest.class, SpatialIndexTest.class, ConflictDetectorTest.class, CongestionControllerTest.class, RouteCatalogTest.class, SlotSchedulerTest.class, RoutingPlannerTest.class, TowerTest.class, TowerJournalTest.class })
+public class AllTowerTests {
+}
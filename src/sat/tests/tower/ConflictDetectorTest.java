@@ -0,0 +1,107 @@
+package sat.tests.tower;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+
+import org.junit.Test;
+
+import sat.radio.PlaneRegistry;
+import sat.radio.RadioID;
+import sat.tower.ConflictDetector;
+import sat.tower.SpatialIndex;
+import sat.tower.TowerEvent;
+import sat.tower.TowerPlane;
+
+/**
+ * Test la détection des conflits entre avions.
+ */
+public class ConflictDetectorTest {
+	private PlaneRegistry<TowerPlane> planes = new PlaneRegistry<TowerPlane>();
+	private SpatialIndex grid = new SpatialIndex(100, 64);
+	private ConflictDetector detector = new ConflictDetector(planes, grid);
+	private ArrayList<TowerEvent> events = new ArrayList<TowerEvent>();
+
+	private TowerPlane plane(String name) {
+		RadioID id = new RadioID(name);
+		TowerPlane plane = new TowerPlane(id);
+		plane.setSlot(planes.register(id, plane));
+		return plane;
+	}
+
+	private void move(TowerPlane plane, float x, float y, long time) {
+		boolean cellChanged = grid.update(plane.getSlot(), x, y);
+		detector.update(plane, null, x, y, time, cellChanged, events);
+	}
+
+	/**
+	 * Deux avions face à face: le conflit est prévu, puis la séparation est
+	 * perdue, puis le conflit disparaît lorsqu'ils se sont éloignés.
+	 */
+	@Test
+	public void testHeadOn() {
+		detector.setLimits(20, 5);
+
+		TowerPlane a = plane("A");
+		TowerPlane b = plane("B");
+
+		float xa = 0, xb = 200;
+		long time = 1000;
+
+		ArrayList<Class<?>> seen = new ArrayList<Class<?>>();
+
+		for(int i = 0; i < 100; i++) {
+			move(a, xa, 0, time);
+			move(b, xb, 0, time);
+
+			for(TowerEvent event : events) {
+				seen.add(event.getClass());
+			}
+
+			events.clear();
+
+			xa += 2;
+			xb -= 2;
+			time += 100;
+		}
+
+		assertEquals(3, seen.size());
+		assertEquals(TowerEvent.ConflictPredicted.class, seen.get(0));
+		assertEquals(TowerEvent.SeparationLost.class, seen.get(1));
+		assertEquals(TowerEvent.ConflictResolved.class, seen.get(2));
+		assertEquals(0, detector.getConflictCount());
+	}
+
+	/**
+	 * Deux avions sur des trajectoires parallèles éloignées ne sont jamais en
+	 * conflit, et la déconnexion d'un avion résout ses conflits.
+	 */
+	@Test
+	public void testParallelAndRemove() {
+		detector.setLimits(20, 5);
+
+		TowerPlane a = plane("A");
+		TowerPlane b = plane("B");
+		TowerPlane c = plane("C");
+
+		long time = 1000;
+
+		for(int i = 0; i < 50; i++) {
+			move(a, i * 2, 0, time);
+			move(b, i * 2, 50, time);
+			move(c, i * 2, 10, time);
+			time += 100;
+		}
+
+		// Only A and C are too close
+		assertEquals(1, detector.getConflictCount());
+
+		events.clear();
+		planes.unregister(c.getID());
+		detector.remove(c, events);
+
+		assertEquals(1, events.size());
+		assertTrue(events.get(0) instanceof TowerEvent.ConflictResolved);
+		assertEquals(0, detector.getConflictCount());
+	}
+}
@@ -0,0 +1,60 @@
+package sat.tests.tower;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import sat.tower.CongestionController;
+import sat.tower.CongestionController.Decision;
+
+/**
+ * Test le contrôleur de congestion.
+ */
+public class CongestionControllerTest {
+	/**
+	 * Vérifie l'hystérésis: l'étouffement a lieu au seuil, la libération
+	 * seulement sous le seuil bas et après le délai de maintien.
+	 */
+	@Test
+	public void testHysteresis() {
+		CongestionController controller = new CongestionController();
+		controller.setThresholds(100, 500, 0, 1000);
+
+		assertEquals(Decision.NONE, controller.update(0, 99, 0, -1));
+		assertEquals(Decision.CHOKE, controller.update(100, 100, 0, -1));
+		assertEquals("queue", controller.getReason());
+		assertTrue(controller.isCongested());
+
+		// Below the threshold but above the low watermark
+		assertEquals(Decision.NONE, controller.update(200, 80, 0, -1));
+		assertEquals(Decision.NONE, controller.update(5000, 80, 0, -1));
+
+		// Calm, but not long enough
+		assertEquals(Decision.NONE, controller.update(6000, 10, 0, -1));
+		assertEquals(Decision.NONE, controller.update(6500, 10, 0, -1));
+
+		// A spike restarts the hold period
+		assertEquals(Decision.NONE, controller.update(6800, 10, 400, -1));
+		assertEquals(Decision.NONE, controller.update(7000, 10, 0, -1));
+		assertEquals(Decision.NONE, controller.update(7900, 10, 0, -1));
+		assertEquals(Decision.UNCHOKE, controller.update(8000, 10, 0, -1));
+		assertFalse(controller.isCongested());
+	}
+
+	/**
+	 * Vérifie que les seuils nuls sont ignorés et que chaque indicateur peut
+	 * provoquer l'étouffement.
+	 */
+	@Test
+	public void testIndicators() {
+		CongestionController controller = new CongestionController();
+		controller.setThresholds(0, 500, 0.9f, 0);
+
+		assertEquals(Decision.NONE, controller.update(0, 1000000, 0, 0.5f));
+		assertEquals(Decision.CHOKE, controller.update(0, 0, 0, 0.95f));
+		assertEquals("cpu", controller.getReason());
+		assertEquals(Decision.UNCHOKE, controller.update(0, 0, 0, -1));
+		assertEquals(Decision.CHOKE, controller.update(0, 0, 600, -1));
+		assertEquals("lag", controller.getReason());
+	}
+}
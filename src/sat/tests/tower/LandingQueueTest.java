@@ -0,0 +1,135 @@
+package sat.tests.tower;
+
+import static org.junit.Assert.*;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import sat.radio.RadioID;
+import sat.tower.LandingQueue;
+import sat.tower.RoutingMode;
+import sat.tower.TowerPlane;
+
+/**
+ * Test de la file d'attente d'atterrissage.
+ */
+public class LandingQueueTest {
+	private LandingQueue queue;
+	private ArrayList<TowerPlane> changed;
+
+	@Before
+	public void setUp() {
+		queue = new LandingQueue(RoutingMode.CHRONOS);
+		changed = new ArrayList<TowerPlane>();
+		queue.setCapacities(new int[] { 1, 2 }, changed);
+	}
+
+	private TowerPlane newPlane() {
+		TowerPlane plane = new TowerPlane(new RadioID("PLN"));
+		plane.landingRequested();
+		return plane;
+	}
+
+	/**
+	 * Vérifie que les avions remplissent les routes dans l'ordre des demandes
+	 * et que les avions en surplus sont envoyés au cimetière.
+	 */
+	@Test
+	public void testFillInOrder() {
+		TowerPlane[] planes = new TowerPlane[4];
+
+		for(int i = 0; i < planes.length; i++) {
+			planes[i] = newPlane();
+			queue.add(planes[i], changed);
+		}
+
+		assertEquals(0, queue.getRoute(planes[0]));
+		assertEquals(1, queue.getRoute(planes[1]));
+		assertEquals(1, queue.getRoute(planes[2]));
+		assertEquals(LandingQueue.GRAVEYARD, queue.getRoute(planes[3]));
+	}
+
+	/**
+	 * Vérifie que le retrait d'un avion fait avancer les suivants et que
+	 * seuls les avions ayant changé de route sont signalés.
+	 */
+	@Test
+	public void testRemoveShiftsOnlyBoundaries() {
+		TowerPlane[] planes = new TowerPlane[4];
+
+		for(int i = 0; i < planes.length; i++) {
+			planes[i] = newPlane();
+			queue.add(planes[i], changed);
+		}
+
+		changed.clear();
+		queue.remove(planes[0], changed);
+
+		assertFalse(queue.contains(planes[0]));
+		assertEquals(0, queue.getRoute(planes[1]));
+		assertEquals(1, queue.getRoute(planes[2]));
+		assertEquals(1, queue.getRoute(planes[3]));
+
+		assertEquals(2, changed.size());
+		assertTrue(changed.contains(planes[1]));
+		assertTrue(changed.contains(planes[3]));
+	}
+
+	/**
+	 * Vérifie qu'un avion en MayDay passe devant les autres.
+	 */
+	@Test
+	public void testMayDayPriority() {
+		TowerPlane first = newPlane();
+		TowerPlane second = newPlane();
+
+		queue.add(first, changed);
+		queue.add(second, changed);
+
+		queue.remove(second, changed);
+		second.setMayDay(true);
+		queue.add(second, changed);
+
+		assertEquals(0, queue.getRoute(second));
+		assertEquals(1, queue.getRoute(first));
+	}
+
+	/**
+	 * Vérifie que deux avions ayant le même numéro d'atterrissage (ticket
+	 * transmis par une tour voisine) sont ordonnés et retirés correctement.
+	 */
+	@Test
+	public void testEqualTickets() throws Exception {
+		TowerPlane first = newPlane();
+		TowerPlane second = new TowerPlane(new RadioID("PLN"));
+
+		Field landingID = TowerPlane.class.getDeclaredField("landingID");
+		landingID.setAccessible(true);
+		landingID.setInt(second, first.getLandingID());
+
+		queue.add(first, changed);
+		queue.add(second, changed);
+
+		assertEquals(2, queue.size());
+		assertTrue(queue.contains(first));
+		assertTrue(queue.contains(second));
+
+		int order = LandingQueue.getOrder(RoutingMode.CHRONOS).compare(first, second);
+		assertTrue(order != 0);
+		assertEquals(-order, LandingQueue.getOrder(RoutingMode.CHRONOS).compare(second, first));
+
+		queue.remove(first, changed);
+
+		assertEquals(1, queue.size());
+		assertFalse(queue.contains(first));
+		assertEquals(0, queue.getRoute(second));
+
+		queue.remove(second, changed);
+
+		assertEquals(0, queue.size());
+		assertTrue(queue.snapshot().isEmpty());
+	}
+}
@@ -0,0 +1,136 @@
+package sat.tests.tower;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+
+import org.junit.Test;
+
+import sat.plane.PlaneType;
+import sat.tower.RouteCatalog;
+import sat.utils.routes.InvalidRouteException;
+import sat.utils.routes.Route;
+import sat.utils.routes.RouteGeometry;
+import sat.utils.routes.RouteParser;
+
+/**
+ * Test la validation des routes et le catalogue compilé.
+ */
+public class RouteCatalogTest {
+	/**
+	 * Vérifie la géométrie d'un circuit: deux droites et deux demi-cercles.
+	 */
+	@Test
+	public void testGeometry() throws Exception {
+		Route route = RouteParser.parseString("S0,0;S100,0;C100,50,180;S0,100;C0,50,180;", 3);
+		RouteGeometry geometry = new RouteGeometry(route);
+
+		assertTrue(geometry.isCyclic());
+		assertEquals(5, geometry.size());
+
+		// Back from the end of the last arc (0, 0) to the first point
+		assertEquals(0, geometry.getLength(0), 0.01);
+		assertEquals(100, geometry.getLength(1), 0.01);
+		assertEquals(Math.PI * 50, geometry.getLength(2), 0.01);
+		assertEquals(100, geometry.getLength(3), 0.01);
+		assertEquals(Math.PI * 50, geometry.getLength(4), 0.01);
+
+		assertEquals(200 + Math.PI * 100, geometry.getTotalLength(), 0.1);
+		assertEquals(geometry.getTotalLength() / 10, geometry.getTime(10), 0.01);
+	}
+
+	/**
+	 * Vérifie que les routes invalides sont refusées.
+	 */
+	@Test
+	public void testInvalidRoutes() {
+		String[] invalid = { "S0;", "X1,2;", "C0,0,0;", "S1,NaN;", "L0,0;S1,1;", " ; " };
+
+		for(String data : invalid) {
+			try {
+				RouteParser.parseString(data, 1);
+				fail("Accepted " + data);
+			}
+			catch(InvalidRouteException e) {
+				// Expected
+			}
+		}
+	}
+
+	/**
+	 * Compile un catalogue et vérifie qu'il restitue les routes et leurs
+	 * données dérivées.
+	 */
+	@Test
+	public void testCompile() throws Exception {
+		File source = write("S275,100;S300,100;C300,150,180;S250,200;C250,150,180;");
+		File catalogFile = File.createTempFile("sat", ".catalog");
+
+		try {
+			RouteCatalog.compile(catalogFile.getPath(), new String[] { source.getPath() }, new int[] { 4 });
+
+			RouteCatalog catalog = new RouteCatalog(catalogFile.getPath());
+			Route expected = RouteParser.parse(source.getPath(), 4);
+			RouteGeometry geometry = new RouteGeometry(expected);
+
+			assertEquals(1, catalog.size());
+			assertFalse(catalog.isStale(0));
+
+			Route route = catalog.getRoute(0);
+			assertEquals(4, route.getCapacity());
+			assertEquals(expected.size(), route.size());
+			assertTrue(expected.getLoopPoint().equals(route.getLoopPoint()));
+
+			for(int i = 0; i < route.size(); i++) {
+				assertEquals(expected.get(i).getType(), route.get(i).getType());
+				assertTrue(expected.get(i).getCoordiates().equals(route.get(i).getCoordiates()));
+				assertEquals(geometry.getLength(i), catalog.getGeometry(0).getLength(i), 0);
+			}
+
+			for(PlaneType type : PlaneType.values()) {
+				assertEquals(geometry.getTime(type.speedAsPxPerSec()), catalog.getTime(0, type), 0.001);
+			}
+
+			// The source changes after the compilation
+			write(source, "S0,0;S10,10;S20,20;");
+			assertTrue(catalog.isStale(0));
+		}
+		finally {
+			source.delete();
+			catalogFile.delete();
+		}
+	}
+
+	/**
+	 * Vérifie qu'un fichier qui n'est pas un catalogue est refusé.
+	 */
+	@Test
+	public void testNotACatalog() throws Exception {
+		File file = write("S0,0;");
+
+		try {
+			new RouteCatalog(file.getPath());
+			fail("Accepted a route file");
+		}
+		catch(IOException e) {
+			// Expected
+		}
+		finally {
+			file.delete();
+		}
+	}
+
+	private static File write(String data) throws IOException {
+		File file = File.createTempFile("sat", ".route");
+		write(file, data);
+		return file;
+	}
+
+	private static void write(File file, String data) throws IOException {
+		FileWriter writer = new FileWriter(file);
+		writer.write(data);
+		writer.close();
+	}
+}
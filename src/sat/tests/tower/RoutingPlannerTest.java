@@ -0,0 +1,76 @@
+package sat.tests.tower;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import sat.plane.PlaneType;
+import sat.radio.RadioID;
+import sat.tower.LandingQueue;
+import sat.tower.RoutingMode;
+import sat.tower.RoutingPlanner;
+import sat.tower.TowerPlane;
+
+/**
+ * Test de l'évaluation des modes de routage.
+ */
+public class RoutingPlannerTest {
+	private static TowerPlane newPlane(PlaneType type, float timeToRunway) {
+		TowerPlane plane = new TowerPlane(new RadioID("PLN"));
+		plane.setType(type);
+		plane.landingRequested();
+		plane.setTimeToRunway(timeToRunway);
+		return plane;
+	}
+
+	/**
+	 * Un avion proche de la piste et presque à sec a demandé à atterrir
+	 * après un avion éloigné: seul le mode SLOT le fait atterrir à temps.
+	 */
+	@Test
+	public void testExhaustion() {
+		LandingQueue queue = new LandingQueue(RoutingMode.CHRONOS);
+		ArrayList<TowerPlane> changed = new ArrayList<TowerPlane>();
+		queue.setCapacities(new int[] { 1, 10 }, changed);
+
+		TowerPlane far = newPlane(PlaneType.B787, 200);
+		TowerPlane near = newPlane(PlaneType.A320, 20);
+
+		queue.add(far, changed);
+		queue.add(near, changed);
+
+		// An A320 burns 1 unit per second: 50 seconds of fuel left
+		long now = near.getConnectionTime() + (PlaneType.A320.fuel - 50) * 1000L;
+
+		RoutingPlanner planner = new RoutingPlanner(2);
+		List<RoutingPlanner.Plan> plans = planner.evaluate(queue.snapshot(), 1, 10, now, 10, true);
+		planner.shutdown();
+
+		assertEquals(RoutingMode.values().length + 2, plans.size());
+		assertEquals(RoutingMode.SLOT, RoutingPlanner.getBestMode(plans));
+
+		for(int i = 0; i < plans.size(); i++) {
+			RoutingPlanner.Plan plan = plans.get(i);
+
+			if(i > 0) {
+				assertTrue(plans.get(i - 1).compareTo(plan) <= 0);
+			}
+
+			if(plan.getMode() == RoutingMode.CHRONOS) {
+				assertEquals(1, plan.getExhausted());
+				assertEquals(1, plan.getLanded());
+			}
+			else if(plan.getMode() == RoutingMode.SLOT) {
+				assertEquals(0, plan.getExhausted());
+				assertEquals(2, plan.getLanded());
+
+				// The far plane leaves its circuit once the near one has
+				// landed: landings at 20 s and 220 s
+				assertEquals(2 / 220f * 3600, plan.getThroughput(), 0.01);
+			}
+		}
+	}
+}
@@ -0,0 +1,138 @@
+package sat.tests.tower;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+
+import org.junit.Test;
+
+import sat.plane.PlaneType;
+import sat.radio.RadioID;
+import sat.tower.LandingQueue;
+import sat.tower.RoutingMode;
+import sat.tower.SlotScheduler;
+import sat.tower.TowerPlane;
+import sat.utils.routes.RouteGeometry;
+import sat.utils.routes.RouteParser;
+
+/**
+ * Test l'estimation des temps d'arrivée et le mode de routage SLOT.
+ */
+public class SlotSchedulerTest {
+	private static SlotScheduler newScheduler() throws Exception {
+		SlotScheduler scheduler = new SlotScheduler();
+		scheduler.addRunway(0, new RouteGeometry(RouteParser.parseString("S0,0;L100,0;", 1)), 1);
+		scheduler.setSeparation(10);
+		return scheduler;
+	}
+
+	private static TowerPlane newPlane(PlaneType type, float timeToRunway) {
+		TowerPlane plane = new TowerPlane(new RadioID("PLN"));
+		plane.landingRequested();
+		plane.setType(type);
+		plane.setTimeToRunway(timeToRunway);
+		return plane;
+	}
+
+	/**
+	 * Vérifie l'estimation: distance au premier point de la route
+	 * d'atterrissage puis longueur de la route, à la vitesse de l'avion.
+	 */
+	@Test
+	public void testEstimate() throws Exception {
+		SlotScheduler scheduler = newScheduler();
+		float speed = PlaneType.A320.speedAsPxPerSec();
+
+		assertEquals((300 + 100) / speed, scheduler.estimate(0, 300, PlaneType.A320), 0.001);
+		assertTrue(Float.isInfinite(scheduler.estimate(0, 300, null)));
+		assertTrue(Float.isInfinite(new SlotScheduler().estimate(0, 300, PlaneType.A320)));
+
+		// Reclassified only beyond half a separation
+		TowerPlane plane = newPlane(PlaneType.A320, 20);
+		assertFalse(scheduler.isOutdated(plane, 24));
+		assertTrue(scheduler.isOutdated(plane, 26));
+		assertTrue(scheduler.isOutdated(newPlane(null, Float.POSITIVE_INFINITY), 26));
+	}
+
+	/**
+	 * Vérifie la répartition des avions entre deux pistes: la plus proche
+	 * tant qu'elle a un créneau libre, puis celle qui a encore de la place.
+	 */
+	@Test
+	public void testRunways() throws Exception {
+		SlotScheduler scheduler = new SlotScheduler();
+		scheduler.addRunway(0, new RouteGeometry(RouteParser.parseString("S0,0;L100,0;", 1)), 1);
+		scheduler.addRunway(3, new RouteGeometry(RouteParser.parseString("S0,1000;L100,1000;", 2)), 2);
+		scheduler.setSeparation(1000);
+
+		float speed = PlaneType.A320.speedAsPxPerSec();
+
+		assertEquals(3, scheduler.getCapacity());
+		assertEquals((100 + 100) / speed, scheduler.estimate(0, 900, PlaneType.A320), 0.001);
+
+		// Nearest runway first
+		assertEquals(3, scheduler.assign(0, 900, PlaneType.A320, 0).getRunway().getRoute());
+
+		// Its next slot is too late: the other runway lands earlier
+		assertEquals(0, scheduler.assign(0, 900, PlaneType.A320, 0).getRunway().getRoute());
+
+		// The only runway with room left
+		assertEquals(3, scheduler.assign(0, 0, PlaneType.A320, 0).getRunway().getRoute());
+		assertNull(scheduler.assign(0, 0, PlaneType.A320, 0));
+
+		scheduler.release(0);
+		assertEquals(2, scheduler.getRunway(1).getLoad());
+		assertEquals(0, scheduler.assign(Float.NaN, Float.NaN, null, 0).getRunway().getRoute());
+	}
+
+	/**
+	 * Vérifie qu'un second avion sur une même piste reçoit un créneau une
+	 * séparation plus tard, et ne doit quitter son circuit qu'à ce moment.
+	 */
+	@Test
+	public void testDeparture() throws Exception {
+		SlotScheduler scheduler = newScheduler();
+		long flight = (long) (scheduler.estimate(0, 300, PlaneType.A320) * 1000);
+
+		SlotScheduler.Slot first = scheduler.assign(0, 300, PlaneType.A320, 0);
+		assertEquals(flight, first.getTime());
+		assertEquals(0, first.getDeparture());
+
+		scheduler.release(0);
+
+		SlotScheduler.Slot second = scheduler.assign(0, 300, PlaneType.A320, 0);
+		assertEquals(flight + 10000, second.getTime());
+		assertEquals(10000, second.getDeparture());
+	}
+
+	/**
+	 * Vérifie que la route d'atterrissage revient aux avions les plus
+	 * proches, et qu'un avion qui s'approche prend la place d'un avion plus
+	 * éloigné.
+	 */
+	@Test
+	public void testNearestFirst() {
+		LandingQueue queue = new LandingQueue(RoutingMode.SLOT);
+		ArrayList<TowerPlane> changed = new ArrayList<TowerPlane>();
+		queue.setCapacities(new int[] { 1, 10 }, changed);
+
+		TowerPlane far = newPlane(PlaneType.A320, 120);
+		TowerPlane near = newPlane(PlaneType.A320, 40);
+
+		queue.add(far, changed);
+		queue.add(near, changed);
+
+		assertEquals(0, queue.getRoute(near));
+		assertEquals(1, queue.getRoute(far));
+
+		// The far plane reports a new position, now closer to the runway
+		changed.clear();
+		queue.remove(far, changed);
+		far.setTimeToRunway(30);
+		queue.add(far, changed);
+
+		assertEquals(0, queue.getRoute(far));
+		assertEquals(1, queue.getRoute(near));
+		assertTrue(changed.contains(near));
+	}
+}
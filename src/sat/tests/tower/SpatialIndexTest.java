@@ -0,0 +1,88 @@
+package sat.tests.tower;
+
+import static org.junit.Assert.*;
+
+import java.util.HashSet;
+import java.util.Random;
+
+import org.junit.Test;
+
+import sat.tower.SpatialIndex;
+
+/**
+ * Test l'index spatial des positions.
+ */
+public class SpatialIndexTest {
+	/**
+	 * Vérifie que le changement de cellule est correctement signalé.
+	 */
+	@Test
+	public void testCellChange() {
+		SpatialIndex index = new SpatialIndex(100, 64);
+
+		assertTrue(index.update(0, 10, 10));
+		assertFalse(index.update(0, 90, 90));
+		assertTrue(index.update(0, 110, 90));
+		assertTrue(index.update(0, -10, 90));
+
+		index.remove(0);
+		assertFalse(index.contains(0));
+		assertEquals(0, index.size());
+	}
+
+	/**
+	 * Compare les requêtes de rayon et de plus proche voisin avec un
+	 * parcours complet, sur des positions aléatoires qui se déplacent.
+	 */
+	@Test
+	public void testQueriesMatchScan() {
+		Random random = new Random(42);
+		SpatialIndex index = new SpatialIndex(50, 256);
+
+		int count = 500;
+		float[] xs = new float[count];
+		float[] ys = new float[count];
+
+		for(int step = 0; step < 5; step++) {
+			for(int slot = 0; slot < count; slot++) {
+				xs[slot] = random.nextFloat() * 2000 - 1000;
+				ys[slot] = random.nextFloat() * 2000 - 1000;
+				index.update(slot, xs[slot], ys[slot]);
+			}
+
+			for(int q = 0; q < 50; q++) {
+				final float x = random.nextFloat() * 2400 - 1200;
+				final float y = random.nextFloat() * 2400 - 1200;
+				float radius = random.nextFloat() * 300;
+
+				HashSet<Integer> expected = new HashSet<Integer>();
+				int nearest = -1;
+				float nearestDistance = Float.POSITIVE_INFINITY;
+
+				for(int slot = 0; slot < count; slot++) {
+					float d = (float) Math.sqrt((xs[slot] - x) * (xs[slot] - x) + (ys[slot] - y) * (ys[slot] - y));
+
+					if(d <= radius) {
+						expected.add(slot);
+					}
+
+					if(d < nearestDistance) {
+						nearestDistance = d;
+						nearest = slot;
+					}
+				}
+
+				final HashSet<Integer> found = new HashSet<Integer>();
+
+				index.query(x, y, radius, new SpatialIndex.Visitor() {
+					public void visit(int slot, float distance) {
+						found.add(slot);
+					}
+				});
+
+				assertEquals(expected, found);
+				assertEquals(nearest, index.nearest(x, y, -1));
+			}
+		}
+	}
+}
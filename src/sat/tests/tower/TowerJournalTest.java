@@ -0,0 +1,203 @@
+package sat.tests.tower;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import org.junit.Test;
+
+import sat.radio.RadioEvent;
+import sat.radio.RadioID;
+import sat.radio.message.MessageLanding;
+import sat.radio.message.MessageMayDay;
+import sat.tower.Tower;
+import sat.tower.TowerPlane;
+import sat.utils.geo.Coordinates;
+import sat.utils.routes.RouteParser;
+
+/**
+ * Test le journal de l'état de la tour.
+ */
+public class TowerJournalTest {
+	/**
+	 * Vérifie qu'une tour redémarrée retrouve sa configuration, ses routes et
+	 * l'état de ses avions.
+	 */
+	@Test
+	public void testRestart() throws Exception {
+		File dir = newDirectory();
+
+		try {
+			RadioID[] ids = run(dir, "0");
+			Tower restarted = new Tower("test-restarted");
+
+			try {
+				assertEquals(2, restarted.openJournal(dir.getPath()));
+				assertEquals("JRN", restarted.getConfig().getString("tower.prefix"));
+				assertNotNull(restarted.getGeometry(1));
+
+				restarted.init();
+				checkRestored(restarted, ids);
+			}
+			finally {
+				restarted.shutdown();
+			}
+		}
+		finally {
+			delete(dir);
+		}
+	}
+
+	/**
+	 * Vérifie qu'une modification partiellement écrite est ignorée.
+	 */
+	@Test
+	public void testTruncatedRecord() throws Exception {
+		File dir = newDirectory();
+
+		try {
+			RadioID[] ids = run(dir, "0");
+
+			// An interrupted write at the end of the current log
+			for(File log : dir.listFiles()) {
+				if(log.getName().endsWith(".log")) {
+					FileOutputStream fos = new FileOutputStream(log, true);
+					fos.write(new byte[] { 0, 0, 0, 40, 1, 2, 3, 4, 0, 0 });
+					fos.close();
+				}
+			}
+
+			Tower restarted = new Tower("test-restarted");
+
+			try {
+				assertEquals(2, restarted.openJournal(dir.getPath()));
+				restarted.init();
+				checkRestored(restarted, ids);
+			}
+			finally {
+				restarted.shutdown();
+			}
+		}
+		finally {
+			delete(dir);
+		}
+	}
+
+	/**
+	 * Vérifie que les instantanés remplacent les anciens fichiers de journal
+	 * sans perdre de modification.
+	 */
+	@Test
+	public void testSnapshots() throws Exception {
+		File dir = newDirectory();
+
+		try {
+			RadioID[] ids = run(dir, "3");
+
+			int logs = 0;
+			for(File file : dir.listFiles()) {
+				if(file.getName().endsWith(".log")) {
+					logs++;
+				}
+			}
+
+			assertTrue("Logs covered by a snapshot must be deleted", logs <= 2);
+			assertFalse("No snapshot written while running", new File(dir, "00000.log").exists());
+
+			Tower restarted = new Tower("test-restarted");
+
+			try {
+				assertEquals(2, restarted.openJournal(dir.getPath()));
+				restarted.init();
+				checkRestored(restarted, ids);
+			}
+			finally {
+				restarted.shutdown();
+			}
+		}
+		finally {
+			delete(dir);
+		}
+	}
+
+	/**
+	 * Fait fonctionner une tour journalisée: trois avions demandent à
+	 * atterrir, le troisième se déconnecte, le second envoie un MayDay.
+	 *
+	 * @return Les identifiants des avions.
+	 */
+	private static RadioID[] run(File dir, String snapshot) throws Exception {
+		Tower tower = new Tower("test-journal");
+		RadioID[] ids = { new RadioID("PLN"), new RadioID("PLN"), new RadioID("PLN") };
+
+		try {
+			tower.getConfig().setProperty("tower.routing.window", "0");
+			tower.getConfig().setProperty("tower.journal.snapshot", snapshot);
+			tower.openJournal(dir.getPath());
+			tower.setConfig("tower.prefix", "JRN");
+			tower.init();
+
+			tower.addRoute(RouteParser.parseString("S-200,0;L0,0;", 1));
+			tower.addRoute(RouteParser.parseString("S375,0;S400,0;C400,50,180;S350,100;C350,50,180;", 10));
+
+			for(RadioID id : ids) {
+				new RadioEvent.PlaneConnected(id).trigger(tower);
+				new MessageLanding(id, new Coordinates(300, 0, 0)).trigger(tower);
+			}
+
+			new RadioEvent.PlaneDisconnected(ids[2]).trigger(tower);
+			new MessageMayDay(ids[1], new Coordinates(300, 0, 0), "Test").trigger(tower);
+
+			assertTrue(tower.getPlane(ids[0]).isLanding());
+			assertEquals(tower.getPlane(ids[0]).getLandingID() + 1, tower.getPlane(ids[1]).getLandingID());
+		}
+		finally {
+			tower.shutdown();
+		}
+
+		return ids;
+	}
+
+	/**
+	 * Reconnecte les avions à la tour redémarrée et vérifie leur état.
+	 */
+	private static void checkRestored(Tower tower, RadioID[] ids) throws Exception {
+		for(RadioID id : ids) {
+			new RadioEvent.PlaneConnected(id).trigger(tower);
+		}
+
+		TowerPlane first = tower.getPlane(ids[0]);
+		TowerPlane second = tower.getPlane(ids[1]);
+
+		assertTrue(first.isLanding());
+		assertEquals(0, first.getCurrentRoute());
+		assertEquals(first.getLandingID() + 1, second.getLandingID());
+		assertTrue(second.isMayDay());
+		assertEquals(1, second.getCurrentRoute());
+
+		// Disconnected before the restart
+		assertEquals(-1, tower.getPlane(ids[2]).getLandingID());
+
+		// New tickets follow the restored ones
+		new MessageLanding(ids[2], new Coordinates(300, 0, 0)).trigger(tower);
+		assertTrue(tower.getPlane(ids[2]).getLandingID() > second.getLandingID());
+	}
+
+	private static File newDirectory() throws IOException {
+		File dir = File.createTempFile("sat", ".journal");
+		dir.delete();
+		dir.mkdirs();
+
+		return dir;
+	}
+
+	private static void delete(File dir) {
+		for(File file : dir.listFiles()) {
+			file.delete();
+		}
+
+		dir.delete();
+	}
+}
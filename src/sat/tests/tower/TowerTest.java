@@ -0,0 +1,340 @@
+package sat.tests.tower;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+
+import org.junit.Test;
+
+import sat.radio.RadioEvent;
+import sat.radio.RadioID;
+import sat.plane.PlaneType;
+import sat.radio.engine.server.RadioServerEngine;
+import sat.radio.engine.server.RadioServerEngineDelegate;
+import sat.radio.message.MessageKeepalive;
+import sat.radio.message.MessageLanding;
+import sat.tower.Sector;
+import sat.tower.SectorLink;
+import sat.tower.Tower;
+import sat.tower.TowerPlane;
+import sat.utils.geo.Coordinates;
+import sat.utils.routes.RouteParser;
+
+/**
+ * Test le fonctionnement de plusieurs tours dans la même JVM.
+ */
+public class TowerTest {
+	/**
+	 * Vérifie le registre des tours: recherche par nom, nom unique, retrait.
+	 */
+	@Test
+	public void testRegistry() {
+		Tower north = new Tower("test-north");
+		Tower south = new Tower("test-south");
+
+		try {
+			assertSame(north, Tower.get("test-north"));
+			assertSame(south, Tower.get("test-south"));
+			assertTrue(Tower.getTowers().contains(north));
+
+			try {
+				new Tower("test-north");
+				fail("A second tower with the same name must be refused");
+			}
+			catch(IllegalArgumentException e) {
+			}
+
+			assertSame(north, Tower.get("test-north"));
+		}
+		finally {
+			north.shutdown();
+			south.shutdown();
+		}
+
+		assertNull(Tower.get("test-north"));
+		assertFalse(Tower.getTowers().contains(south));
+	}
+
+	/**
+	 * Vérifie que deux tours ont leur propre configuration et leurs propres
+	 * avions.
+	 */
+	@Test
+	public void testIndependentTowers() throws Exception {
+		Tower north = new Tower("test-north");
+		Tower south = new Tower("test-south");
+
+		try {
+			north.getConfig().setProperty("tower.prefix", "NTH");
+			assertEquals("TWR", south.getConfig().getString("tower.prefix"));
+
+			north.init();
+			south.init();
+
+			RadioID id = new RadioID("PLN");
+			new RadioEvent.PlaneConnected(id).trigger(north);
+			new MessageKeepalive(id, new Coordinates(100, 100, 0)).trigger(north);
+
+			assertTrue(north.getNearestPlane(100, 100).containsKey(id));
+			assertTrue(south.getNearestPlane(100, 100).isEmpty());
+		}
+		finally {
+			north.shutdown();
+			south.shutdown();
+		}
+	}
+
+	/**
+	 * Vérifie le secteur d'une tour.
+	 */
+	@Test
+	public void testSector() {
+		assertNull(Sector.parse(""));
+
+		Sector sector = Sector.parse("500, 400, -100, 0");
+		assertTrue(sector.contains(0, 0));
+		assertTrue(sector.contains(500, 400));
+		assertFalse(sector.contains(-101, 200));
+		assertFalse(sector.contains(200, 401));
+
+		try {
+			Sector.parse("1,2,3");
+			fail("A sector needs four values");
+		}
+		catch(IllegalArgumentException e) {
+		}
+	}
+
+	/**
+	 * Vérifie qu'un avion confié par une tour voisine conserve son type et
+	 * son ticket d'atterrissage, et retrouve sa place dans la file d'attente.
+	 */
+	@Test
+	public void testHandoff() throws Exception {
+		Tower south = new Tower("test-south");
+
+		try {
+			south.init();
+			south.listenLink(0);
+			south.addRoute(RouteParser.parseString("S375,0;S400,0;C400,50,180;S350,100;C350,50,180;", 10));
+
+			// The plane as known by the north tower
+			RadioID id = new RadioID("PLN");
+			TowerPlane plane = new TowerPlane(id);
+			plane.setType(PlaneType.getPlaneTypeByName("A380"));
+			plane.landingRequested();
+			plane.setMayDay(true);
+
+			new RadioEvent.PlaneConnected(id).trigger(south);
+
+			SectorLink.Neighbour neighbour = new SectorLink.Neighbour(Sector.parse("0,0,100,100"), "localhost", 6969, south.getLinkPort());
+			neighbour.send(new SectorLink.Handoff(plane));
+
+			TowerPlane received = south.getPlane(id);
+			for(int i = 0; i < 200 && received.getLandingID() != plane.getLandingID(); i++) {
+				Thread.sleep(10);
+			}
+
+			assertEquals(plane.getLandingID(), received.getLandingID());
+			assertSame(plane.getType(), received.getType());
+			assertTrue(received.isMayDay());
+			assertEquals(plane.getConnectionTime(), received.getConnectionTime());
+
+			// A landing request to the new tower keeps the ticket
+			new MessageLanding(id, new Coordinates(50, 50, 0)).trigger(south);
+			assertEquals(plane.getLandingID(), received.getLandingID());
+		}
+		finally {
+			south.shutdown();
+		}
+	}
+
+	/**
+	 * Vérifie que la transmission à un voisin injoignable ne bloque pas
+	 * l'appelant, et que le voisin refuse ensuite les avions pendant un
+	 * délai.
+	 */
+	@Test
+	public void testHandoffUnreachable() throws Exception {
+		ServerSocket closed = new ServerSocket(0);
+		int port = closed.getLocalPort();
+		closed.close();
+
+		SectorLink.Neighbour neighbour = new SectorLink.Neighbour(Sector.parse("0,0,100,100"), "localhost", 6969, port);
+		TowerPlane plane = new TowerPlane(new RadioID("PLN"));
+
+		assertTrue(neighbour.handOff(plane));
+
+		for(int i = 0; i < 200 && neighbour.isAvailable(); i++) {
+			Thread.sleep(10);
+		}
+
+		assertFalse(neighbour.isAvailable());
+		assertFalse(neighbour.handOff(plane));
+	}
+
+	/**
+	 * Vérifie qu'un second avion admis sur une piste attend son créneau sur
+	 * son circuit d'attente avant de recevoir la route d'atterrissage.
+	 */
+	@Test
+	public void testRunwaySeparation() throws Exception {
+		Tower tower = new Tower("test-runway");
+
+		try {
+			tower.getConfig().setProperty("tower.routing.window", "0");
+			tower.getConfig().setProperty("tower.runway.separation", "1");
+			tower.init();
+			tower.addRoute(RouteParser.parseString("S-200,0;L0,0;", 2));
+			tower.addRoute(RouteParser.parseString("S375,0;S400,0;C400,50,180;S350,100;C350,50,180;", 10));
+
+			RadioID first = new RadioID("PLN");
+			RadioID second = new RadioID("PLN");
+
+			for(RadioID id : new RadioID[] { first, second }) {
+				new RadioEvent.PlaneConnected(id).trigger(tower);
+				new MessageLanding(id, new Coordinates(300, 0, 0)).trigger(tower);
+			}
+
+			assertTrue(tower.getPlane(first).isLanding());
+			assertEquals(0, tower.getPlane(first).getCurrentRoute());
+
+			// Same runway, one separation later: the second plane holds
+			TowerPlane held = tower.getPlane(second);
+			assertFalse(held.isLanding());
+			assertEquals(0, held.getRunway());
+			assertEquals(1, held.getCurrentRoute());
+
+			for(int i = 0; i < 300 && !held.isLanding(); i++) {
+				Thread.sleep(10);
+			}
+
+			assertTrue(held.isLanding());
+			assertEquals(0, held.getCurrentRoute());
+		}
+		finally {
+			tower.shutdown();
+		}
+	}
+
+	/**
+	 * Vérifie qu'une tour de secours reprend les avions de la tour
+	 * principale avec leur ticket d'atterrissage et leur route, et que la
+	 * prise de relais prend moins d'une seconde.
+	 */
+	@Test
+	public void testFailover() throws Exception {
+		Tower primary = new Tower("test-primary");
+		Tower standby = new Tower("test-standby");
+
+		final long[] listening = { -1 };
+
+		try {
+			for(Tower tower : new Tower[] { primary, standby }) {
+				tower.getConfig().setProperty("tower.routing.window", "0");
+				tower.init();
+				tower.addRoute(RouteParser.parseString("S-200,0;L0,0;", 1));
+				tower.addRoute(RouteParser.parseString("S375,0;S400,0;C400,50,180;S350,100;C350,50,180;", 10));
+			}
+
+			primary.replicate(0);
+
+			// Records the time the standby starts listening on the radio port
+			standby.follow("localhost", primary.getStandbyPort(), new RadioServerEngine() {
+				public void init(RadioServerEngineDelegate delegate) {
+					listening[0] = System.nanoTime();
+				}
+			});
+
+			RadioID first = new RadioID("PLN");
+			RadioID second = new RadioID("PLN");
+			RadioID gone = new RadioID("PLN");
+
+			for(RadioID id : new RadioID[] { first, second, gone }) {
+				new RadioEvent.PlaneConnected(id).trigger(primary);
+				new MessageLanding(id, new Coordinates(300, 0, 0)).trigger(primary);
+			}
+
+			new RadioEvent.PlaneDisconnected(gone).trigger(primary);
+
+			TowerPlane landing = primary.getPlane(first);
+			TowerPlane holding = primary.getPlane(second);
+			assertTrue(landing.isLanding());
+			assertEquals(1, holding.getCurrentRoute());
+
+			// The primary dies
+			long lost = System.nanoTime();
+			primary.shutdown();
+
+			for(int i = 0; i < 200 && standby.getFailoverTime() < 0; i++) {
+				Thread.sleep(5);
+			}
+
+			assertTrue("The standby did not take over", standby.getFailoverTime() >= 0);
+
+			long failover = (listening[0] - lost) / 1000000;
+			assertTrue("Failover took " + failover + " ms", failover < 1000);
+
+			// The planes reconnect to the standby
+			for(RadioID id : new RadioID[] { first, second, gone }) {
+				new RadioEvent.PlaneConnected(id).trigger(standby);
+			}
+
+			TowerPlane resumed = standby.getPlane(first);
+			assertEquals(landing.getLandingID(), resumed.getLandingID());
+			assertTrue(resumed.isLanding());
+			assertEquals(landing.getCurrentRoute(), resumed.getCurrentRoute());
+
+			resumed = standby.getPlane(second);
+			assertEquals(holding.getLandingID(), resumed.getLandingID());
+			assertEquals(1, resumed.getCurrentRoute());
+
+			// Disconnected before the failure: a new plane for the standby
+			assertEquals(-1, standby.getPlane(gone).getLandingID());
+		}
+		finally {
+			primary.shutdown();
+			standby.shutdown();
+		}
+	}
+
+	/**
+	 * Vérifie qu'une tour de secours qui ne peut pas encore écouter sur le
+	 * port de la tour principale réessaie jusqu'à y parvenir.
+	 */
+	@Test
+	public void testTakeOverRetry() throws Exception {
+		Tower primary = new Tower("test-primary");
+		Tower standby = new Tower("test-standby");
+
+		final int[] attempts = { 0 };
+
+		try {
+			primary.init();
+			primary.replicate(0);
+
+			// The primary's port is released after two attempts
+			standby.follow("localhost", primary.getStandbyPort(), new RadioServerEngine() {
+				public void init(RadioServerEngineDelegate delegate) throws IOException {
+					if(++attempts[0] <= 2) {
+						throw new IOException("Address already in use");
+					}
+				}
+			});
+
+			primary.shutdown();
+
+			for(int i = 0; i < 400 && standby.getFailoverTime() < 0; i++) {
+				Thread.sleep(5);
+			}
+
+			assertTrue("The standby did not take over", standby.getFailoverTime() >= 0);
+			assertEquals(3, attempts[0]);
+		}
+		finally {
+			primary.shutdown();
+			standby.shutdown();
+		}
+	}
+}
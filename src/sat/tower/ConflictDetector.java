@@ -0,0 +1,547 @@
+package sat.tower;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+
+import sat.plane.PlaneType;
+import sat.radio.PlaneRegistry;
+import sat.utils.geo.Coordinates;
+import sat.utils.routes.MoveType;
+import sat.utils.routes.Route;
+import sat.utils.routes.Waypoint;
+
+/**
+ * Détecteur de conflits entre avions.
+ * <p>
+ * Une paire d'avions est en conflit lorsque leur distance horizontale est
+ * inférieure à la séparation minimale, ou lorsque leurs trajectoires
+ * projetées la rendront inférieure dans les <code>horizon</code> prochaines
+ * secondes. La trajectoire d'un avion est projetée à partir de sa vitesse
+ * ({@link PlaneType#speedAsPxPerSec()}) et de l'étape de sa route qu'il est
+ * en train de suivre: en ligne droite vers le point de l'étape, ou selon la
+ * tangente d'un cercle. Si l'étape n'est pas connue, la vitesse observée
+ * entre les deux dernières positions est utilisée.
+ * <p>
+ * La détection est incrémentale. Chaque avion garde une liste de candidats,
+ * les avions assez proches pour entrer en conflit avec lui, recalculée par une
+ * requête sur l'index spatial uniquement lorsqu'il change de cellule. À chaque
+ * position reçue, seules les paires formées avec ses candidats sont évaluées.
+ * Le rayon de la requête inclut une marge de deux diagonales de cellule, ce
+ * qui garantit qu'une paire en conflit figure toujours dans la liste d'au
+ * moins l'un des deux avions.
+ * <p>
+ * Cette classe n'est pas synchronisée: elle est utilisée par le thread de
+ * dispatch de la tour.
+ */
+public class ConflictDetector {
+	private static final int NONE = 0;
+	private static final int PREDICTED = 1;
+	private static final int LOST = 2;
+
+	/**
+	 * Nombre d'emplacements alloués initialement.
+	 */
+	private static final int INITIAL_CAPACITY = 64;
+
+	/**
+	 * Vitesse du plus rapide des types d'avions, utilisée pour les avions
+	 * dont le type n'est pas connu.
+	 */
+	private static final float MAX_SPEED;
+
+	static {
+		float max = 0;
+
+		for(PlaneType type : PlaneType.values()) {
+			max = Math.max(max, type.speedAsPxPerSec());
+		}
+
+		MAX_SPEED = max;
+	}
+
+	/**
+	 * Les avions de la tour.
+	 */
+	private PlaneRegistry<TowerPlane> planes;
+
+	/**
+	 * L'index des positions, tenu à jour par la tour.
+	 */
+	private SpatialIndex grid;
+
+	/**
+	 * La séparation minimale. 0 désactive la détection.
+	 */
+	private float separation = 0;
+
+	/**
+	 * L'horizon de projection, en secondes.
+	 */
+	private float horizon = 0;
+
+	// Per slot
+	private float[] xs = new float[INITIAL_CAPACITY];
+	private float[] ys = new float[INITIAL_CAPACITY];
+	private float[] vxs = new float[INITIAL_CAPACITY];
+	private float[] vys = new float[INITIAL_CAPACITY];
+	private long[] times = new long[INITIAL_CAPACITY];
+	private int[] waypoints = new int[INITIAL_CAPACITY];
+	private float[] swept = new float[INITIAL_CAPACITY];
+	private float[] thetas = new float[INITIAL_CAPACITY];
+	private int[][] candidates = new int[INITIAL_CAPACITY][];
+	private int[] candidateCounts = new int[INITIAL_CAPACITY];
+
+	/**
+	 * Paires actuellement en conflit, par clé de paire.
+	 */
+	private HashMap<Long, Integer> conflicts = new HashMap<Long, Integer>();
+
+	/**
+	 * Collecte les résultats d'une requête sur l'index.
+	 */
+	private CandidateCollector collector = new CandidateCollector();
+
+	/**
+	 * Crée un détecteur.
+	 *
+	 * @param planes
+	 *            Le registre des avions de la tour.
+	 * @param grid
+	 *            L'index des positions, que la tour doit mettre à jour avant
+	 *            d'appeler <code>update()</code>.
+	 */
+	public ConflictDetector(PlaneRegistry<TowerPlane> planes, SpatialIndex grid) {
+		this.planes = planes;
+		this.grid = grid;
+
+		Arrays.fill(thetas, Float.NaN);
+	}
+
+	/**
+	 * Défini la séparation minimale et l'horizon de projection.
+	 *
+	 * @param separation
+	 *            La séparation, 0 pour désactiver la détection.
+	 * @param horizon
+	 *            L'horizon, en secondes.
+	 */
+	public void setLimits(float separation, float horizon) {
+		this.separation = Math.max(separation, 0);
+		this.horizon = Math.max(horizon, 0);
+	}
+
+	/**
+	 * Indique si la détection est active.
+	 */
+	public boolean isEnabled() {
+		return separation > 0;
+	}
+
+	/**
+	 * Signale que la route d'un avion a été remplacée: il recommence à sa
+	 * première étape.
+	 */
+	public void resetRoute(int slot) {
+		if(slot < waypoints.length) {
+			waypoints[slot] = 0;
+			thetas[slot] = Float.NaN;
+		}
+	}
+
+	/**
+	 * Traite une nouvelle position d'un avion et évalue ses paires
+	 * candidates.
+	 *
+	 * @param plane
+	 *            L'avion.
+	 * @param route
+	 *            La route qu'il suit, ou <code>null</code> si elle n'est pas
+	 *            connue.
+	 * @param time
+	 *            L'heure de réception de la position, en millisecondes.
+	 * @param cellChanged
+	 *            Si l'avion a changé de cellule dans l'index.
+	 * @param events
+	 *            Les événements de conflit générés y sont ajoutés.
+	 */
+	public void update(TowerPlane plane, Route route, float x, float y, long time, boolean cellChanged, Collection<TowerEvent> events) {
+		if(!isEnabled()) {
+			return;
+		}
+
+		int slot = plane.getSlot();
+		boolean known = ensureCapacity(slot);
+
+		float speed = (plane.getType() == null) ? 0 : plane.getType().speedAsPxPerSec();
+
+		if(!project(slot, route, x, y, speed)) {
+			// Unknown waypoint: observed velocity
+			float dt = (time - times[slot]) / 1000f;
+
+			if(known && dt > 0) {
+				vxs[slot] = (x - xs[slot]) / dt;
+				vys[slot] = (y - ys[slot]) / dt;
+			}
+			else {
+				vxs[slot] = 0;
+				vys[slot] = 0;
+			}
+		}
+
+		xs[slot] = x;
+		ys[slot] = y;
+		times[slot] = time;
+
+		if(cellChanged || !known) {
+			refreshCandidates(slot, speed, events);
+		}
+
+		int[] list = candidates[slot];
+
+		for(int i = 0; i < candidateCounts[slot]; i++) {
+			evaluate(slot, list[i], time, events);
+		}
+	}
+
+	/**
+	 * Retire un avion déconnecté, déjà retiré du registre. Ses conflits sont
+	 * résolus.
+	 */
+	public void remove(TowerPlane plane, Collection<TowerEvent> events) {
+		int slot = plane.getSlot();
+
+		if(slot < 0 || slot >= candidateCounts.length) {
+			return;
+		}
+
+		candidateCounts[slot] = 0;
+		times[slot] = 0;
+		waypoints[slot] = 0;
+		thetas[slot] = Float.NaN;
+
+		Iterator<Long> it = conflicts.keySet().iterator();
+
+		while(it.hasNext()) {
+			long key = it.next();
+			int a = (int) (key >>> 32);
+			int b = (int) key;
+
+			if(a == slot || b == slot) {
+				it.remove();
+
+				TowerPlane other = planes.get((a == slot) ? b : a);
+
+				if(other != null) {
+					events.add(new TowerEvent.ConflictResolved(plane.getID(), other.getID()));
+				}
+			}
+		}
+	}
+
+	/**
+	 * Retourne le nombre de paires actuellement en conflit.
+	 */
+	public int getConflictCount() {
+		return conflicts.size();
+	}
+
+	// - - - Projection - - -
+
+	/**
+	 * Calcule la vitesse d'un avion à partir de l'étape de sa route qu'il
+	 * suit, en passant aux étapes suivantes s'il a atteint l'étape courante.
+	 *
+	 * @return <code>false</code> si l'étape n'a pas pu être déterminée.
+	 */
+	private boolean project(int slot, Route route, float x, float y, float speed) {
+		if(route == null || route.isEmpty() || speed <= 0) {
+			return false;
+		}
+
+		// Each step either consumes a waypoint or stops: at most one lap
+		for(int step = 0; step <= route.size(); step++) {
+			Waypoint waypoint = route.get(waypoints[slot] % route.size());
+			Coordinates target = waypoint.getCoordiates();
+
+			float dx = target.getX() - x;
+			float dy = target.getY() - y;
+
+			if(waypoint.getType() == MoveType.CIRCULAR) {
+				float r = (float) Math.sqrt(dx * dx + dy * dy);
+				float theta = (float) Math.atan2(-dy, -dx);
+				float angle = (float) Math.toRadians(waypoint.getAngle());
+
+				if(Float.isNaN(thetas[slot])) {
+					swept[slot] = 0;
+				}
+				else {
+					float delta = theta - thetas[slot];
+
+					while(delta > Math.PI) {
+						delta -= 2 * Math.PI;
+					}
+
+					while(delta < -Math.PI) {
+						delta += 2 * Math.PI;
+					}
+
+					swept[slot] += delta * Math.signum(angle);
+				}
+
+				thetas[slot] = theta;
+
+				if(swept[slot] >= Math.abs(angle) || r == 0) {
+					nextWaypoint(slot);
+					continue;
+				}
+
+				// Tangent to the circle, in the direction of rotation
+				vxs[slot] = Math.signum(angle) * dy / r * speed;
+				vys[slot] = -Math.signum(angle) * dx / r * speed;
+
+				return true;
+			}
+			else if(waypoint.getType() == MoveType.NONE) {
+				return false;
+			}
+			else {
+				float d = (float) Math.sqrt(dx * dx + dy * dy);
+
+				// Arrived (within a fraction of a second of flight)
+				if(d <= Math.max(10, speed * 0.2f)) {
+					nextWaypoint(slot);
+					continue;
+				}
+
+				vxs[slot] = dx / d * speed;
+				vys[slot] = dy / d * speed;
+
+				return true;
+			}
+		}
+
+		return false;
+	}
+
+	/**
+	 * Passe à l'étape suivante de la route d'un avion.
+	 */
+	private void nextWaypoint(int slot) {
+		waypoints[slot]++;
+		thetas[slot] = Float.NaN;
+	}
+
+	// - - - Pairs - - -
+
+	/**
+	 * Recalcule la liste des candidats d'un avion.
+	 */
+	private void refreshCandidates(int slot, float speed, Collection<TowerEvent> events) {
+		float cell = grid.getCellSize();
+		float reach = separation + (Math.max(speed, MAX_SPEED) + MAX_SPEED) * horizon + 2 * 1.415f * cell;
+
+		collector.reset(slot);
+		grid.query(xs[slot], ys[slot], reach, collector);
+
+		int[] previous = candidates[slot];
+		int previousCount = candidateCounts[slot];
+
+		candidates[slot] = collector.take(previous);
+		candidateCounts[slot] = collector.count;
+
+		// Planes no longer candidates of each other cannot be in conflict
+		for(int i = 0; i < previousCount; i++) {
+			int other = previous[i];
+
+			if(!isCandidate(slot, other) && !isCandidate(other, slot)) {
+				Integer state = conflicts.remove(key(slot, other));
+
+				if(state != null) {
+					resolved(slot, other, events);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Indique si <code>other</code> figure dans la liste des candidats de
+	 * <code>slot</code>.
+	 */
+	private boolean isCandidate(int slot, int other) {
+		int[] list = candidates[slot];
+
+		for(int i = 0; i < candidateCounts[slot]; i++) {
+			if(list[i] == other) {
+				return true;
+			}
+		}
+
+		return false;
+	}
+
+	/**
+	 * Évalue une paire et génère un événement si son état a changé.
+	 */
+	private void evaluate(int a, int b, long now, Collection<TowerEvent> events) {
+		if(times[b] == 0) {
+			return;
+		}
+
+		// Extrapolate the other plane to the current time
+		float lag = (now - times[b]) / 1000f;
+
+		float dx = xs[b] + vxs[b] * lag - xs[a];
+		float dy = ys[b] + vys[b] * lag - ys[a];
+		float dvx = vxs[b] - vxs[a];
+		float dvy = vys[b] - vys[a];
+
+		float distance = (float) Math.sqrt(dx * dx + dy * dy);
+
+		int state;
+		float when = 0;
+
+		if(distance < separation) {
+			state = LOST;
+		}
+		else {
+			// First t in [0, horizon] with |d + dv * t| = separation
+			float qa = dvx * dvx + dvy * dvy;
+			float qb = 2 * (dx * dvx + dy * dvy);
+			float qc = dx * dx + dy * dy - separation * separation;
+			float disc = qb * qb - 4 * qa * qc;
+
+			state = NONE;
+
+			if(qa > 0 && qb < 0 && disc >= 0) {
+				when = (float) ((-qb - Math.sqrt(disc)) / (2 * qa));
+
+				if(when <= horizon) {
+					state = PREDICTED;
+				}
+			}
+		}
+
+		long key = key(a, b);
+		Integer previous = conflicts.get(key);
+		int old = (previous == null) ? NONE : previous;
+
+		if(state == old) {
+			return;
+		}
+
+		TowerPlane pa = planes.get(a);
+		TowerPlane pb = planes.get(b);
+
+		if(pa == null || pb == null) {
+			return;
+		}
+
+		if(state == NONE) {
+			conflicts.remove(key);
+			events.add(new TowerEvent.ConflictResolved(pa.getID(), pb.getID()));
+		}
+		else {
+			conflicts.put(key, state);
+
+			if(state == LOST) {
+				events.add(new TowerEvent.SeparationLost(pa.getID(), pb.getID(), distance));
+			}
+			else {
+				events.add(new TowerEvent.ConflictPredicted(pa.getID(), pb.getID(), distance, when));
+			}
+		}
+	}
+
+	/**
+	 * Génère l'événement de résolution d'une paire.
+	 */
+	private void resolved(int a, int b, Collection<TowerEvent> events) {
+		TowerPlane pa = planes.get(a);
+		TowerPlane pb = planes.get(b);
+
+		if(pa != null && pb != null) {
+			events.add(new TowerEvent.ConflictResolved(pa.getID(), pb.getID()));
+		}
+	}
+
+	/**
+	 * Clé d'une paire, indépendante de l'ordre.
+	 */
+	private static long key(int a, int b) {
+		int min = Math.min(a, b);
+		int max = Math.max(a, b);
+
+		return ((long) min << 32) | (max & 0xFFFFFFFFL);
+	}
+
+	/**
+	 * Agrandit les tableaux pour pouvoir traiter <code>slot</code>.
+	 *
+	 * @return <code>true</code> si l'avion avait déjà une position connue.
+	 */
+	private boolean ensureCapacity(int slot) {
+		if(slot >= times.length) {
+			int capacity = times.length;
+			while(capacity <= slot) {
+				capacity *= 2;
+			}
+
+			int previous = times.length;
+
+			xs = Arrays.copyOf(xs, capacity);
+			ys = Arrays.copyOf(ys, capacity);
+			vxs = Arrays.copyOf(vxs, capacity);
+			vys = Arrays.copyOf(vys, capacity);
+			times = Arrays.copyOf(times, capacity);
+			waypoints = Arrays.copyOf(waypoints, capacity);
+			swept = Arrays.copyOf(swept, capacity);
+			thetas = Arrays.copyOf(thetas, capacity);
+			candidates = Arrays.copyOf(candidates, capacity);
+			candidateCounts = Arrays.copyOf(candidateCounts, capacity);
+
+			Arrays.fill(thetas, previous, capacity, Float.NaN);
+		}
+
+		return times[slot] != 0;
+	}
+
+	/**
+	 * Collecte les emplacements trouvés par une requête sur l'index, en
+	 * réutilisant son tableau.
+	 */
+	private static class CandidateCollector implements SpatialIndex.Visitor {
+		private int self;
+		private int[] found = new int[16];
+		private int count;
+
+		void reset(int self) {
+			this.self = self;
+			this.count = 0;
+		}
+
+		public void visit(int slot, float distance) {
+			if(slot == self) {
+				return;
+			}
+
+			if(count == found.length) {
+				found = Arrays.copyOf(found, count * 2);
+			}
+
+			found[count++] = slot;
+		}
+
+		/**
+		 * Retourne les emplacements collectés. Le tableau <code>spare</code>
+		 * (l'ancienne liste) est repris comme tampon pour la requête
+		 * suivante.
+		 */
+		int[] take(int[] spare) {
+			int[] result = found;
+			found = (spare != null && spare.length >= 16) ? spare : new int[16];
+			return result;
+		}
+	}
+}
@@ -0,0 +1,174 @@
+package sat.tower;
+
+/**
+ * Contrôleur de congestion de la tour.
+ * <p>
+ * Le contrôleur reçoit périodiquement la charge de la tour (profondeur des
+ * files d'événements, retard de distribution et utilisation processeur) et
+ * décide quand étouffer (<i>choke</i>) les avions et quand les libérer. Pour éviter
+ * les oscillations, la libération n'a lieu que lorsque tous les indicateurs
+ * sont redescendus sous une fraction (<code>LOW_WATERMARK</code>) de leur
+ * seuil et y sont restés pendant un délai minimal.
+ * <p>
+ * Un seuil nul désactive l'indicateur correspondant.
+ */
+public class CongestionController {
+	/**
+	 * Décision prise après un échantillon.
+	 */
+	public enum Decision {
+		NONE, CHOKE, UNCHOKE
+	}
+
+	/**
+	 * Fraction des seuils sous laquelle la charge doit redescendre avant la
+	 * libération des avions.
+	 */
+	public static final float LOW_WATERMARK = 0.6f;
+
+	/**
+	 * Seuil de profondeur des files d'événements.
+	 */
+	private int queueThreshold = 0;
+
+	/**
+	 * Seuil de retard de distribution, en millisecondes.
+	 */
+	private long lagThreshold = 0;
+
+	/**
+	 * Seuil d'utilisation processeur, entre 0 et 1.
+	 */
+	private float cpuThreshold = 0;
+
+	/**
+	 * Durée minimale pendant laquelle la charge doit rester basse avant la
+	 * libération, en millisecondes.
+	 */
+	private long hold = 0;
+
+	/**
+	 * Indique si les avions sont actuellement étouffés.
+	 */
+	private boolean congested = false;
+
+	/**
+	 * Début de la période de charge basse en cours, ou -1.
+	 */
+	private long calmSince = -1;
+
+	/**
+	 * L'indicateur ayant provoqué le dernier étouffement.
+	 */
+	private String reason = "";
+
+	/**
+	 * Défini les seuils du contrôleur.
+	 *
+	 * @param queue
+	 *            Le seuil de profondeur des files.
+	 * @param lag
+	 *            Le seuil de retard de distribution, en millisecondes.
+	 * @param cpu
+	 *            Le seuil d'utilisation processeur, entre 0 et 1.
+	 * @param hold
+	 *            La durée de charge basse avant libération, en millisecondes.
+	 */
+	public synchronized void setThresholds(int queue, long lag, float cpu, long hold) {
+		this.queueThreshold = Math.max(queue, 0);
+		this.lagThreshold = Math.max(lag, 0);
+		this.cpuThreshold = Math.max(cpu, 0);
+		this.hold = Math.max(hold, 0);
+	}
+
+	/**
+	 * Indique si les avions sont actuellement étouffés.
+	 */
+	public synchronized boolean isCongested() {
+		return congested;
+	}
+
+	/**
+	 * Retourne l'indicateur ayant provoqué le dernier étouffement ("queue",
+	 * "lag" ou "cpu").
+	 */
+	public synchronized String getReason() {
+		return reason;
+	}
+
+	/**
+	 * Traite un échantillon de charge.
+	 *
+	 * @param now
+	 *            L'heure de l'échantillon, en millisecondes.
+	 * @param depth
+	 *            La profondeur des files d'événements.
+	 * @param lag
+	 *            Le retard de distribution, en millisecondes.
+	 * @param cpu
+	 *            L'utilisation processeur entre 0 et 1, ou une valeur
+	 *            négative si elle n'est pas disponible.
+	 * @return La décision à appliquer.
+	 */
+	public synchronized Decision update(long now, int depth, long lag, float cpu) {
+		if(!congested) {
+			String crossed = crossed(depth, lag, cpu, 1);
+
+			if(crossed == null) {
+				return Decision.NONE;
+			}
+
+			congested = true;
+			calmSince = -1;
+			reason = crossed;
+
+			return Decision.CHOKE;
+		}
+
+		if(crossed(depth, lag, cpu, LOW_WATERMARK) != null) {
+			calmSince = -1;
+			return Decision.NONE;
+		}
+
+		if(calmSince < 0) {
+			calmSince = now;
+		}
+
+		if(now - calmSince < hold) {
+			return Decision.NONE;
+		}
+
+		congested = false;
+		calmSince = -1;
+
+		return Decision.UNCHOKE;
+	}
+
+	/**
+	 * Réinitialise le contrôleur à l'état non étouffé.
+	 */
+	public synchronized void reset() {
+		congested = false;
+		calmSince = -1;
+	}
+
+	/**
+	 * Retourne le premier indicateur dépassant sa fraction de seuil
+	 * <code>factor</code>, ou <code>null</code>.
+	 */
+	private String crossed(int depth, long lag, float cpu, float factor) {
+		if(queueThreshold > 0 && depth >= queueThreshold * factor) {
+			return "queue";
+		}
+
+		if(lagThreshold > 0 && lag >= lagThreshold * factor) {
+			return "lag";
+		}
+
+		if(cpuThreshold > 0 && cpu >= 0 && cpu >= cpuThreshold * factor) {
+			return "cpu";
+		}
+
+		return null;
+	}
+}
@@ -0,0 +1,358 @@
+package sat.tower;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.TreeSet;
+
+/**
+ * La file d'attente d'atterrissage de la tour.
+ * <p>
+ * Les avions ayant demandé à atterrir sont répartis dans une suite de
+ * compartiments, un par route, chacun trié selon le mode de routage. Le
+ * premier compartiment contient les avions les plus prioritaires, jusqu'à la
+ * capacité de sa route, le suivant les avions suivants, etc. Un dernier
+ * compartiment, sans limite de capacité, contient les avions envoyés au
+ * cimetière.
+ * <p>
+ * Les opérations d'ajout et de retrait ne reconstruisent pas la file: elles
+ * déplacent au plus un avion par frontière de compartiment, soit
+ * O(r log n) pour r routes et n avions. Les avions déplacés sont ajoutés à une
+ * collection fournie par l'appelant, qui peut ainsi ne mettre à jour que ces
+ * avions.
+ * <p>
+ * L'ordre des avions dépend de leur état (atterrissage, MayDay, type, temps
+ * d'arrivée estimé). Un avion doit donc être retiré de la file avant toute
+ * modification de cet état puis y être ajouté à nouveau.
+ */
+public class LandingQueue {
+	/**
+	 * Index de compartiment d'un avion absent de la file.
+	 */
+	static final int NOT_QUEUED = -2;
+
+	/**
+	 * Le numéro de route associé au cimetière.
+	 */
+	public static final int GRAVEYARD = -1;
+
+	/**
+	 * Le mode de routage actuel.
+	 */
+	private RoutingMode mode;
+
+	/**
+	 * Capacité de chaque route.
+	 */
+	private int[] capacities = new int[0];
+
+	/**
+	 * Les compartiments, un par route plus le cimetière en dernière position.
+	 */
+	private ArrayList<TreeSet<TowerPlane>> buckets = new ArrayList<TreeSet<TowerPlane>>();
+
+	/**
+	 * Crée une nouvelle file d'attente vide, sans route.
+	 */
+	public LandingQueue(RoutingMode mode) {
+		this.mode = mode;
+		refill(new ArrayList<TowerPlane>(), null);
+	}
+
+	/**
+	 * Retourne le mode de routage de cette file.
+	 */
+	public RoutingMode getMode() {
+		return mode;
+	}
+
+	/**
+	 * Modifie le mode de routage. La file est entièrement reconstruite.
+	 * 
+	 * @param changed
+	 *            Collection à laquelle sont ajoutés les avions déplacés.
+	 */
+	public void setMode(RoutingMode mode, Collection<TowerPlane> changed) {
+		ArrayList<TowerPlane> planes = drain();
+		this.mode = mode;
+		refill(planes, changed);
+	}
+
+	/**
+	 * Modifie la capacité des routes. La file est entièrement reconstruite.
+	 * 
+	 * @param capacities
+	 *            La capacité de chaque route, dans l'ordre des routes. Une
+	 *            capacité nulle ou négative est traitée comme une capacité de
+	 *            1.
+	 * @param changed
+	 *            Collection à laquelle sont ajoutés les avions déplacés.
+	 */
+	public void setCapacities(int[] capacities, Collection<TowerPlane> changed) {
+		ArrayList<TowerPlane> planes = drain();
+
+		this.capacities = new int[capacities.length];
+		for(int i = 0; i < capacities.length; i++) {
+			this.capacities[i] = Math.max(capacities[i], 1);
+		}
+
+		refill(planes, changed);
+	}
+
+	/**
+	 * Indique si un avion est dans la file.
+	 */
+	public boolean contains(TowerPlane plane) {
+		return plane.queueIndex != NOT_QUEUED;
+	}
+
+	/**
+	 * Retourne la route assignée à un avion: l'index de la route,
+	 * <code>GRAVEYARD</code> s'il est envoyé au cimetière ou
+	 * <code>NOT_QUEUED</code> s'il n'est pas dans la file.
+	 */
+	public int getRoute(TowerPlane plane) {
+		int index = plane.queueIndex;
+
+		if(index == capacities.length) {
+			return GRAVEYARD;
+		}
+
+		return index;
+	}
+
+	/**
+	 * Retourne le nombre d'avions dans la file.
+	 */
+	public int size() {
+		int size = 0;
+
+		for(TreeSet<TowerPlane> bucket : buckets) {
+			size += bucket.size();
+		}
+
+		return size;
+	}
+
+	/**
+	 * Ajoute un avion dans la file.
+	 * 
+	 * @param changed
+	 *            Collection à laquelle sont ajoutés l'avion ainsi que les
+	 *            avions repoussés vers la route suivante.
+	 */
+	public void add(TowerPlane plane, Collection<TowerPlane> changed) {
+		if(contains(plane)) {
+			return;
+		}
+
+		int last = capacities.length;
+
+		// Buckets are filled in order: the first non-full bucket is followed
+		// only by empty buckets.
+		int i = 0;
+		while(i < last) {
+			TreeSet<TowerPlane> bucket = buckets.get(i);
+
+			if(bucket.size() < capacities[i] || bucket.comparator().compare(plane, bucket.last()) < 0) {
+				break;
+			}
+
+			i++;
+		}
+
+		// Insert, then cascade the overflow to the next buckets
+		TowerPlane carry = plane;
+		while(true) {
+			TreeSet<TowerPlane> bucket = buckets.get(i);
+
+			bucket.add(carry);
+			carry.queueIndex = i;
+			changed.add(carry);
+
+			if(i == last || bucket.size() <= capacities[i]) {
+				break;
+			}
+
+			carry = bucket.pollLast();
+			i++;
+		}
+	}
+
+	/**
+	 * Retire un avion de la file.
+	 * 
+	 * @param changed
+	 *            Collection à laquelle sont ajoutés les avions avancés vers
+	 *            la route précédente.
+	 */
+	public void remove(TowerPlane plane, Collection<TowerPlane> changed) {
+		if(!contains(plane)) {
+			return;
+		}
+
+		int i = plane.queueIndex;
+
+		buckets.get(i).remove(plane);
+		plane.queueIndex = NOT_QUEUED;
+
+		// Pull the first plane of each following bucket up
+		while(i < capacities.length) {
+			TreeSet<TowerPlane> next = buckets.get(i + 1);
+
+			if(next.isEmpty()) {
+				break;
+			}
+
+			TowerPlane carry = next.pollFirst();
+			buckets.get(i).add(carry);
+			carry.queueIndex = i;
+			changed.add(carry);
+
+			i++;
+		}
+	}
+
+	/**
+	 * Retourne une copie des avions de la file qui ne sont pas envoyés au
+	 * cimetière, dans l'ordre de la file. Les copies sont indépendantes de la
+	 * file et peuvent être lues sans verrou.
+	 */
+	public ArrayList<TowerPlane> snapshot() {
+		ArrayList<TowerPlane> copies = new ArrayList<TowerPlane>();
+
+		for(int i = 0; i < capacities.length; i++) {
+			for(TowerPlane plane : buckets.get(i)) {
+				copies.add(new TowerPlane(plane));
+			}
+		}
+
+		return copies;
+	}
+
+	/**
+	 * Vide la file et retourne ses avions.
+	 */
+	private ArrayList<TowerPlane> drain() {
+		ArrayList<TowerPlane> planes = new ArrayList<TowerPlane>();
+
+		for(TreeSet<TowerPlane> bucket : buckets) {
+			for(TowerPlane plane : bucket) {
+				plane.queueIndex = NOT_QUEUED;
+				planes.add(plane);
+			}
+		}
+
+		buckets.clear();
+
+		return planes;
+	}
+
+	/**
+	 * Remplit la file avec les avions donnés.
+	 */
+	private void refill(ArrayList<TowerPlane> planes, Collection<TowerPlane> changed) {
+		// One bucket per route, plus the graveyard
+		for(int i = 0; i <= capacities.length; i++) {
+			buckets.add(newBucket());
+		}
+
+		for(TowerPlane plane : planes) {
+			add(plane, changed);
+		}
+	}
+
+	/**
+	 * Crée un compartiment vide trié selon le mode de routage actuel.
+	 */
+	private TreeSet<TowerPlane> newBucket() {
+		return new TreeSet<TowerPlane>(comparator);
+	}
+
+	/**
+	 * L'ordre de priorité des avions dans le mode de routage actuel.
+	 */
+	private final Comparator<TowerPlane> comparator = new Comparator<TowerPlane>() {
+		public int compare(TowerPlane p1, TowerPlane p2) {
+			return LandingQueue.compare(mode, p1, p2);
+		}
+	};
+
+	/**
+	 * Retourne l'ordre de priorité des avions dans un mode de routage donné.
+	 */
+	public static Comparator<TowerPlane> getOrder(final RoutingMode mode) {
+		return new Comparator<TowerPlane>() {
+			public int compare(TowerPlane p1, TowerPlane p2) {
+				return LandingQueue.compare(mode, p1, p2);
+			}
+		};
+	}
+
+	/**
+	 * L'ordre de priorité des avions. Cet ordre est total: deux avions
+	 * distincts ne sont jamais égaux, leur numéro d'atterrissage puis la clé
+	 * de leur identifiant servant à départager les égalités.
+	 */
+	private static int compare(RoutingMode mode, TowerPlane p1, TowerPlane p2) {
+		if(p1 == p2) {
+			return 0;
+		}
+
+		if(p1.isLanding() != p2.isLanding()) {
+			return (p1.isLanding()) ? -1 : 1;
+		}
+
+		if(p1.isMayDay() != p2.isMayDay()) {
+			return (p1.isMayDay()) ? -1 : 1;
+		}
+
+		RoutingMode localRoutingMode = mode;
+
+		if(p1.getType() == null && p2.getType() == null) {
+			localRoutingMode = RoutingMode.CHRONOS;
+		}
+		else if(p1.getType() == null || p2.getType() == null) {
+			return (p1.getType() == null) ? 1 : -1;
+		}
+		else if(p1.isMayDay()) { // and p2.isMayDay()
+			if(p1.getType().passengers == p2.getType().passengers) {
+				localRoutingMode = RoutingMode.CHRONOS; // Saving passengers
+			}
+			else {
+				localRoutingMode = RoutingMode.TIME; // Saving passengers
+			}
+		}
+
+		switch(localRoutingMode) {
+			case FUEL:
+				if(p1.getType().consumption != p2.getType().consumption) {
+					return (p1.getType().consumption > p2.getType().consumption) ? -1 : 1;
+				}
+				break;
+
+			case TIME:
+				if(p1.getType().passengers != p2.getType().passengers) {
+					return (p1.getType().passengers > p2.getType().passengers) ? -1 : 1;
+				}
+				break;
+
+			case SLOT:
+				if(p1.getTimeToRunway() != p2.getTimeToRunway()) {
+					return (p1.getTimeToRunway() < p2.getTimeToRunway()) ? -1 : 1;
+				}
+				break;
+
+			default: // CHRONOS
+				break;
+		}
+
+		if(p1.getLandingID() != p2.getLandingID()) {
+			return (p1.getLandingID() < p2.getLandingID()) ? -1 : 1;
+		}
+
+		// A ticket received from a neighbouring tower may already be used
+		// here: the identifier keeps the order total
+		return Long.compare(p1.getID().getKey(), p2.getID().getKey());
+	}
+}
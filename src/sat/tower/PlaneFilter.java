@@ -0,0 +1,17 @@
+package sat.tower;
+
+/**
+ * Un filtre sur les avions d'une tour, utilisé pour cibler les diffusions
+ * restreintes à une région.
+ */
+public interface PlaneFilter {
+	/**
+	 * Indique si un avion doit être retenu.
+	 *
+	 * @param plane
+	 *            L'avion.
+	 * @param distance
+	 *            Sa distance au centre de la région.
+	 */
+	boolean accept(TowerPlane plane, float distance);
+}
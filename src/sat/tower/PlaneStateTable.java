@@ -0,0 +1,283 @@
+package sat.tower;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import sat.plane.PlaneType;
+import sat.utils.geo.Coordinates;
+
+/**
+ * Table de l'état des avions d'une tour, stockée hors du tas Java.
+ * <p>
+ * Chaque avion occupe un enregistrement de taille fixe dans un
+ * <code>ByteBuffer</code> direct, à l'index donné par son emplacement dans le
+ * registre de la tour ({@link TowerPlane#getSlot()}). Les champs sont lus et
+ * écrits en place: la mise à jour de la position d'un avion n'alloue aucun
+ * objet, et la table entière ne représente qu'un seul objet pour le ramasse
+ * miettes, quel que soit le nombre d'avions.
+ * <p>
+ * La table n'est pas synchronisée. <code>init()</code>, qui peut agrandir la
+ * table, doit être appelé par le thread qui écrit les positions (le thread de
+ * dispatch de la tour) et sous le verrou qui protège <code>store()</code>.
+ */
+public class PlaneStateTable {
+	// - - - Record layout - - -
+
+	private static final int X = 0;
+	private static final int Y = 4;
+	private static final int Z = 8;
+	private static final int LANDING_ID = 12;
+	private static final int CURRENT_ROUTE = 16;
+	private static final int FLAGS = 20;
+	private static final int TYPE = 24;
+	private static final int LOOP_X = 28;
+	private static final int LOOP_Y = 32;
+	private static final int LOOP_Z = 36;
+	private static final int LAST_SEEN = 40;
+
+	/**
+	 * Taille en bytes d'un enregistrement.
+	 */
+	public static final int RECORD_SIZE = 48;
+
+	// - - - Flags - - -
+
+	/**
+	 * L'emplacement est occupé par un avion connecté.
+	 */
+	public static final int CONNECTED = 1;
+
+	/**
+	 * L'avion est en situation de MayDay.
+	 */
+	public static final int MAYDAY = 2;
+
+	/**
+	 * L'avion est en cours d'atterrissage.
+	 */
+	public static final int LANDING = 4;
+
+	/**
+	 * La boucle du circuit actuel a déjà été envoyée à l'avion.
+	 */
+	public static final int LOOP_SENT = 8;
+
+	/**
+	 * L'avion a été confié à la tour d'un secteur voisin.
+	 */
+	public static final int HANDED_OFF = 16;
+
+	/**
+	 * Les types d'avions, indexés par le champ <code>TYPE</code>.
+	 */
+	private static final PlaneType[] TYPES = PlaneType.values();
+
+	/**
+	 * Nombre d'enregistrements alloués initialement.
+	 */
+	private static final int INITIAL_CAPACITY = 64;
+
+	/**
+	 * Les enregistrements.
+	 */
+	private ByteBuffer buffer;
+
+	/**
+	 * Le nombre d'enregistrements que peut contenir <code>buffer</code>.
+	 */
+	private int capacity;
+
+	/**
+	 * Crée une table vide.
+	 */
+	public PlaneStateTable() {
+		this(INITIAL_CAPACITY);
+	}
+
+	/**
+	 * Crée une table pouvant contenir <code>capacity</code> avions avant
+	 * d'être agrandie.
+	 */
+	public PlaneStateTable(int capacity) {
+		this.capacity = Math.max(capacity, 1);
+		this.buffer = allocate(this.capacity);
+	}
+
+	/**
+	 * Alloue un buffer pour <code>records</code> enregistrements.
+	 */
+	private static ByteBuffer allocate(int records) {
+		return ByteBuffer.allocateDirect(records * RECORD_SIZE).order(ByteOrder.nativeOrder());
+	}
+
+	/**
+	 * Initialise l'enregistrement d'un avion nouvellement connecté, en
+	 * agrandissant la table si nécessaire.
+	 */
+	public void init(int slot) {
+		if(slot >= capacity) {
+			int grown = capacity;
+
+			while(grown <= slot) {
+				grown *= 2;
+			}
+
+			ByteBuffer larger = allocate(grown);
+			buffer.clear();
+			larger.put(buffer);
+
+			buffer = larger;
+			capacity = grown;
+		}
+
+		int base = slot * RECORD_SIZE;
+
+		buffer.putFloat(base + X, Float.NaN);
+		buffer.putFloat(base + Y, Float.NaN);
+		buffer.putFloat(base + Z, Float.NaN);
+		buffer.putInt(base + LANDING_ID, -1);
+		buffer.putInt(base + CURRENT_ROUTE, LandingQueue.NOT_QUEUED);
+		buffer.putInt(base + FLAGS, CONNECTED);
+		buffer.putInt(base + TYPE, -1);
+		buffer.putFloat(base + LOOP_X, Float.NaN);
+		buffer.putFloat(base + LOOP_Y, Float.NaN);
+		buffer.putFloat(base + LOOP_Z, Float.NaN);
+		buffer.putLong(base + LAST_SEEN, 0);
+	}
+
+	/**
+	 * Libère l'enregistrement d'un avion déconnecté.
+	 */
+	public void release(int slot) {
+		if(slot < capacity) {
+			buffer.putInt(slot * RECORD_SIZE + FLAGS, 0);
+		}
+	}
+
+	/**
+	 * Retourne le nombre d'enregistrements alloués.
+	 */
+	public int getCapacity() {
+		return capacity;
+	}
+
+	/**
+	 * Retourne la mémoire occupée par la table, en bytes.
+	 */
+	public long getMemoryUsage() {
+		return (long) capacity * RECORD_SIZE;
+	}
+
+	// - - - Position - - -
+
+	/**
+	 * Met à jour la position d'un avion et l'heure à laquelle elle a été
+	 * reçue.
+	 */
+	public void updatePosition(int slot, float x, float y, float z, long time) {
+		int base = slot * RECORD_SIZE;
+
+		buffer.putFloat(base + X, x);
+		buffer.putFloat(base + Y, y);
+		buffer.putFloat(base + Z, z);
+		buffer.putLong(base + LAST_SEEN, time);
+	}
+
+	public float getX(int slot) {
+		return buffer.getFloat(slot * RECORD_SIZE + X);
+	}
+
+	public float getY(int slot) {
+		return buffer.getFloat(slot * RECORD_SIZE + Y);
+	}
+
+	public float getZ(int slot) {
+		return buffer.getFloat(slot * RECORD_SIZE + Z);
+	}
+
+	/**
+	 * Retourne l'heure de la dernière position reçue, 0 si aucune.
+	 */
+	public long getLastSeen(int slot) {
+		return buffer.getLong(slot * RECORD_SIZE + LAST_SEEN);
+	}
+
+	// - - - Loop point - - -
+
+	/**
+	 * Défini le point de boucle du circuit actuel de l'avion.
+	 *
+	 * @param loopPoint
+	 *            Le point de boucle, ou <code>null</code> si le circuit n'en a
+	 *            pas.
+	 */
+	public void setLoopPoint(int slot, Coordinates loopPoint) {
+		int base = slot * RECORD_SIZE;
+
+		buffer.putFloat(base + LOOP_X, (loopPoint == null) ? Float.NaN : loopPoint.getX());
+		buffer.putFloat(base + LOOP_Y, (loopPoint == null) ? Float.NaN : loopPoint.getY());
+		buffer.putFloat(base + LOOP_Z, (loopPoint == null) ? Float.NaN : loopPoint.getZ());
+	}
+
+	/**
+	 * Retourne la distance entre la dernière position connue de l'avion et le
+	 * point de boucle de son circuit, ou NaN si l'un des deux est inconnu.
+	 */
+	public float distanceToLoopPoint(int slot) {
+		int base = slot * RECORD_SIZE;
+
+		float dx = buffer.getFloat(base + X) - buffer.getFloat(base + LOOP_X);
+		float dy = buffer.getFloat(base + Y) - buffer.getFloat(base + LOOP_Y);
+		float dz = buffer.getFloat(base + Z) - buffer.getFloat(base + LOOP_Z);
+
+		return (float) Math.sqrt(dx * dx + dy * dy + dz * dz);
+	}
+
+	// - - - Flags - - -
+
+	public boolean hasFlag(int slot, int flag) {
+		return (buffer.getInt(slot * RECORD_SIZE + FLAGS) & flag) != 0;
+	}
+
+	public void setFlag(int slot, int flag, boolean value) {
+		int index = slot * RECORD_SIZE + FLAGS;
+		int flags = buffer.getInt(index);
+
+		buffer.putInt(index, value ? (flags | flag) : (flags & ~flag));
+	}
+
+	// - - - Routing state - - -
+
+	public int getLandingID(int slot) {
+		return buffer.getInt(slot * RECORD_SIZE + LANDING_ID);
+	}
+
+	public int getCurrentRoute(int slot) {
+		return buffer.getInt(slot * RECORD_SIZE + CURRENT_ROUTE);
+	}
+
+	/**
+	 * Retourne le type de l'avion, ou <code>null</code> s'il n'est pas encore
+	 * identifié.
+	 */
+	public PlaneType getType(int slot) {
+		int type = buffer.getInt(slot * RECORD_SIZE + TYPE);
+		return (type < 0) ? null : TYPES[type];
+	}
+
+	/**
+	 * Recopie dans la table l'état de routage d'un avion (numéro
+	 * d'atterrissage, route actuelle, type, MayDay et atterrissage).
+	 */
+	public void store(TowerPlane plane) {
+		int slot = plane.getSlot();
+		int base = slot * RECORD_SIZE;
+
+		buffer.putInt(base + LANDING_ID, plane.getLandingID());
+		buffer.putInt(base + CURRENT_ROUTE, plane.getCurrentRoute());
+		buffer.putInt(base + TYPE, (plane.getType() == null) ? -1 : plane.getType().ordinal());
+
+		setFlag(slot, MAYDAY, plane.isMayDay());
+		setFlag(slot, LANDING, plane.isLanding());
+	}
+}
@@ -0,0 +1,314 @@
+package sat.tower;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+
+import sat.plane.PlaneType;
+import sat.utils.geo.Coordinates;
+import sat.utils.routes.InvalidRouteException;
+import sat.utils.routes.MoveType;
+import sat.utils.routes.Route;
+import sat.utils.routes.RouteGeometry;
+import sat.utils.routes.RouteParser;
+import sat.utils.routes.Waypoint;
+
+/**
+ * Un catalogue de routes compilé.
+ * <p>
+ * Le compilateur lit et valide des fichiers de route une fois pour toutes, et
+ * écrit dans un fichier binaire versionné les routes et les données qui en
+ * dérivent: point de boucle, géométrie de chaque étape ({@link RouteGeometry})
+ * et durée d'un parcours de la route pour chaque type d'avion. La tour
+ * projette ce fichier en mémoire au démarrage au lieu de relire et d'analyser
+ * chaque fichier de route.
+ * <p>
+ * Le catalogue conserve la taille et la date de modification de chaque
+ * fichier source: un catalogue dont une source a changé depuis la compilation
+ * est signalé comme périmé.
+ * <p>
+ * Format (big-endian):
+ * 
+ * <pre>
+ * int magic, short version, short typeCount, int routeCount
+ * route*:
+ *   short sourceLength, byte[] source (UTF-8), long modified, long size
+ *   int capacity, byte landing, int waypointCount
+ *   float loopX, loopY, loopZ (NaN sans point de boucle)
+ *   float[typeCount] time (secondes, par PlaneType)
+ *   waypoint*: byte type, byte argCount, float[argCount] args
+ *   géométrie (RouteGeometry.write)
+ * </pre>
+ */
+public class RouteCatalog {
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	/**
+	 * Identifiant des catalogues ("SATC").
+	 */
+	public static final int MAGIC = 0x53415443;
+
+	/**
+	 * Version du format.
+	 */
+	public static final short VERSION = 1;
+
+	private static final MoveType[] MOVE_TYPES = MoveType.values();
+	private static final PlaneType[] PLANE_TYPES = PlaneType.values();
+
+	// Entries
+	private ArrayList<String> sources = new ArrayList<String>();
+	private ArrayList<Route> routes = new ArrayList<Route>();
+	private ArrayList<RouteGeometry> geometries = new ArrayList<RouteGeometry>();
+	private ArrayList<float[]> times = new ArrayList<float[]>();
+	private ArrayList<long[]> stamps = new ArrayList<long[]>();
+
+	/**
+	 * Ouvre un catalogue compilé.
+	 *
+	 * @throws IOException
+	 *             Si le fichier n'existe pas ou n'est pas un catalogue valide.
+	 */
+	public RouteCatalog(String path) throws IOException {
+		RandomAccessFile raf = new RandomAccessFile(new File(path), "r");
+		MappedByteBuffer buffer;
+
+		try {
+			buffer = raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, raf.length());
+		}
+		finally {
+			// The mapping remains valid after closing the file
+			raf.close();
+		}
+
+		try {
+			read(buffer);
+		}
+		catch(RuntimeException e) {
+			// Truncated or corrupted
+			throw new IOException("Invalid route catalog " + path, e);
+		}
+	}
+
+	private void read(ByteBuffer buffer) throws IOException {
+		if(buffer.remaining() < 12 || buffer.getInt() != MAGIC) {
+			throw new IOException("Not a route catalog");
+		}
+
+		if(buffer.getShort() != VERSION) {
+			throw new IOException("Unsupported route catalog version");
+		}
+
+		if(buffer.getShort() != PLANE_TYPES.length) {
+			throw new IOException("Route catalog compiled for other plane types, recompile it");
+		}
+
+		int count = buffer.getInt();
+
+		for(int r = 0; r < count; r++) {
+			byte[] source = new byte[buffer.getShort()];
+			buffer.get(source);
+
+			sources.add(new String(source, UTF8));
+			stamps.add(new long[] { buffer.getLong(), buffer.getLong() });
+
+			Route route = new Route(buffer.getInt());
+
+			if(buffer.get() != 0) {
+				route.setLanding();
+			}
+
+			int size = buffer.getInt();
+
+			// Loop point, derived from the waypoints
+			buffer.position(buffer.position() + 12);
+
+			float[] time = new float[PLANE_TYPES.length];
+			for(int t = 0; t < time.length; t++) {
+				time[t] = buffer.getFloat();
+			}
+
+			for(int w = 0; w < size; w++) {
+				MoveType type = MOVE_TYPES[buffer.get()];
+				float[] args = new float[buffer.get()];
+
+				for(int a = 0; a < args.length; a++) {
+					args[a] = buffer.getFloat();
+				}
+
+				route.add(new Waypoint(type, args));
+			}
+
+			routes.add(route);
+			geometries.add(RouteGeometry.read(buffer, size));
+			times.add(time);
+		}
+	}
+
+	/**
+	 * Retourne le nombre de routes du catalogue.
+	 */
+	public int size() {
+		return routes.size();
+	}
+
+	/**
+	 * Retourne le chemin du fichier source d'une route, tel que donné au
+	 * compilateur.
+	 */
+	public String getSource(int i) {
+		return sources.get(i);
+	}
+
+	/**
+	 * Retourne une route. La route ne doit pas être modifiée.
+	 */
+	public Route getRoute(int i) {
+		return routes.get(i);
+	}
+
+	/**
+	 * Retourne la géométrie pré-calculée d'une route.
+	 */
+	public RouteGeometry getGeometry(int i) {
+		return geometries.get(i);
+	}
+
+	/**
+	 * Retourne la durée d'un parcours de la route pour un type d'avion, en
+	 * secondes.
+	 */
+	public float getTime(int i, PlaneType type) {
+		return times.get(i)[type.ordinal()];
+	}
+
+	/**
+	 * Indique si le fichier source d'une route a changé depuis la
+	 * compilation. Une source absente n'est pas considérée comme changée.
+	 */
+	public boolean isStale(int i) {
+		File source = new File(sources.get(i));
+		long[] stamp = stamps.get(i);
+
+		return source.exists() && (source.lastModified() != stamp[0] || source.length() != stamp[1]);
+	}
+
+	// - - - Compiler - - -
+
+	/**
+	 * Compile des fichiers de route dans un catalogue.
+	 *
+	 * @param output
+	 *            Le fichier du catalogue.
+	 * @param paths
+	 *            Les fichiers de route.
+	 * @param capacities
+	 *            La capacité de chaque route.
+	 * @throws InvalidRouteException
+	 *             Si une route est invalide. Aucun catalogue n'est écrit.
+	 */
+	public static void compile(String output, String[] paths, int[] capacities) throws IOException, InvalidRouteException {
+		ArrayList<byte[]> entries = new ArrayList<byte[]>();
+		int total = 12;
+
+		for(int r = 0; r < paths.length; r++) {
+			Route route = RouteParser.parse(paths[r], capacities[r]);
+			byte[] entry = encode(paths[r], new File(paths[r]), route);
+
+			entries.add(entry);
+			total += entry.length;
+		}
+
+		ByteBuffer buffer = ByteBuffer.allocate(total);
+
+		buffer.putInt(MAGIC);
+		buffer.putShort(VERSION);
+		buffer.putShort((short) PLANE_TYPES.length);
+		buffer.putInt(entries.size());
+
+		for(byte[] entry : entries) {
+			buffer.put(entry);
+		}
+
+		RandomAccessFile file = new RandomAccessFile(output, "rw");
+
+		try {
+			file.setLength(0);
+			file.write(buffer.array());
+		}
+		finally {
+			file.close();
+		}
+	}
+
+	/**
+	 * Encode une route et ses données dérivées.
+	 */
+	private static byte[] encode(String path, File source, Route route) {
+		RouteGeometry geometry = new RouteGeometry(route);
+		byte[] name = path.getBytes(UTF8);
+
+		int size = 2 + name.length + 16 + 9 + 12 + 4 * PLANE_TYPES.length + geometry.getBinarySize();
+		for(Waypoint waypoint : route) {
+			size += 2 + 4 * argsOf(waypoint).length;
+		}
+
+		ByteBuffer buffer = ByteBuffer.allocate(size);
+
+		buffer.putShort((short) name.length);
+		buffer.put(name);
+		buffer.putLong(source.lastModified());
+		buffer.putLong(source.length());
+
+		buffer.putInt(route.getCapacity());
+		buffer.put((byte) (route.isLanding() ? 1 : 0));
+		buffer.putInt(route.size());
+
+		Coordinates loop = route.getLoopPoint();
+		buffer.putFloat((loop == null) ? Float.NaN : loop.getX());
+		buffer.putFloat((loop == null) ? Float.NaN : loop.getY());
+		buffer.putFloat((loop == null) ? Float.NaN : loop.getZ());
+
+		for(PlaneType type : PLANE_TYPES) {
+			buffer.putFloat(geometry.getTime(type.speedAsPxPerSec()));
+		}
+
+		for(Waypoint waypoint : route) {
+			float[] args = argsOf(waypoint);
+
+			buffer.put((byte) waypoint.getType().ordinal());
+			buffer.put((byte) args.length);
+
+			for(float arg : args) {
+				buffer.putFloat(arg);
+			}
+		}
+
+		geometry.write(buffer);
+
+		return buffer.array();
+	}
+
+	/**
+	 * Retourne les arguments d'une étape.
+	 */
+	static float[] argsOf(Waypoint waypoint) {
+		switch(waypoint.getType()) {
+			case NONE:
+				return new float[0];
+
+			case CIRCULAR:
+				Coordinates c = waypoint.getCoordiates();
+				return new float[] { c.getX(), c.getY(), c.getZ(), waypoint.getAngle() };
+
+			default:
+				c = waypoint.getCoordiates();
+				return new float[] { c.getX(), c.getY(), c.getZ() };
+		}
+	}
+}
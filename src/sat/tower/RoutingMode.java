@@ -19,5 +19,11 @@ public enum RoutingMode {
 	 * Limite le temps d'attente en faisant atterir les avions les plus remplis
 	 * en premier.
 	 */
-	TIME
+	TIME,
+
+	/**
+	 * Limite le temps d'attente total en attribuant les créneaux de piste
+	 * dans l'ordre des heures d'arrivée estimées (voir {@link SlotScheduler}).
+	 */
+	SLOT
 }
@@ -0,0 +1,496 @@
+package sat.tower;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+
+import sat.plane.PlaneType;
+
+/**
+ * Évalue les modes de routage sur une copie de la file d'attente.
+ * <p>
+ * Pour chaque mode de routage, et pour quelques ordres d'atterrissage qui ne
+ * correspondent à aucun mode, le planificateur projette dans le temps
+ * l'atterrissage des avions en attente et mesure le carburant brûlé, le nombre
+ * d'avions qui tomberaient en panne sèche, l'attente cumulée des passagers et
+ * le débit de la piste. Les projections sont indépendantes et calculées en
+ * parallèle sur un pool fork-join.
+ * <p>
+ * Le modèle est celui de la file d'attente: au plus <code>capacity</code>
+ * avions sont sur la route d'atterrissage. Un avion quitte son circuit
+ * d'attente lorsque l'avion situé <code>capacity</code> places devant lui a
+ * atterri, rejoint la piste en son temps d'arrivée estimé
+ * ({@link TowerPlane#getTimeToRunway()}) et atterrit au plus tôt
+ * <code>separation</code> secondes après le précédent. La tour ne connait pas
+ * le carburant restant des avions: chaque avion est supposé avoir eu un
+ * réservoir plein ({@link PlaneType#fuel}) à sa connexion, et moins de 20%
+ * en cas de MayDay. La consommation est celle de
+ * {@link PlaneType#consumption}, par minute.
+ * <p>
+ * Les avions dont le type ou le temps d'arrivée est inconnu ne sont pas
+ * projetés.
+ */
+public class RoutingPlanner {
+	/**
+	 * Nom de l'ordre « autonomie restante croissante ».
+	 */
+	public static final String ENDURANCE = "ENDURANCE";
+
+	/**
+	 * Nom de l'ordre obtenu par recherche locale depuis le meilleur des ordres
+	 * SLOT et ENDURANCE.
+	 */
+	public static final String LOCAL = "LOCAL";
+
+	/**
+	 * Le pool sur lequel les projections sont calculées.
+	 */
+	private final ForkJoinPool pool;
+
+	/**
+	 * Crée un planificateur.
+	 *
+	 * @param parallelism
+	 *            Le nombre de projections calculées simultanément.
+	 */
+	public RoutingPlanner(int parallelism) {
+		this.pool = new ForkJoinPool(Math.max(parallelism, 1));
+	}
+
+	/**
+	 * Évalue chaque mode de routage, et optionnellement d'autres ordres
+	 * d'atterrissage, sur une copie de la file d'attente.
+	 *
+	 * @param planes
+	 *            Les avions en attente, copiés par
+	 *            {@link LandingQueue#snapshot()}.
+	 * @param capacity
+	 *            Le nombre d'avions simultanément sur la route
+	 *            d'atterrissage.
+	 * @param separation
+	 *            La séparation entre deux atterrissages, en secondes.
+	 * @param now
+	 *            L'heure actuelle, pour l'estimation du carburant restant.
+	 * @param budget
+	 *            Le temps alloué à la recherche locale, en millisecondes.
+	 * @param reorderings
+	 *            Si <code>true</code>, évalue aussi les ordres qui ne
+	 *            correspondent à aucun mode.
+	 *
+	 * @return Les projections, de la meilleure à la moins bonne.
+	 */
+	public List<Plan> evaluate(List<TowerPlane> planes, int capacity, float separation, long now, long budget, boolean reorderings) {
+		final Scenario scenario = new Scenario(planes, Math.max(capacity, 1), separation, now);
+		final long deadline = System.nanoTime() + budget * 1000000;
+
+		final ArrayList<RecursiveTask<Plan>> tasks = new ArrayList<RecursiveTask<Plan>>();
+
+		for(final RoutingMode mode : RoutingMode.values()) {
+			tasks.add(new RecursiveTask<Plan>() {
+				protected Plan compute() {
+					return scenario.project(mode.name(), mode, scenario.order(LandingQueue.getOrder(mode)));
+				}
+			});
+		}
+
+		if(reorderings) {
+			tasks.add(new RecursiveTask<Plan>() {
+				protected Plan compute() {
+					return scenario.project(ENDURANCE, null, scenario.orderByEndurance());
+				}
+			});
+
+			tasks.add(new RecursiveTask<Plan>() {
+				protected Plan compute() {
+					int[] order = scenario.order(LandingQueue.getOrder(RoutingMode.SLOT));
+					int[] endurance = scenario.orderByEndurance();
+
+					if(scenario.cost(endurance) < scenario.cost(order)) {
+						order = endurance;
+					}
+
+					return scenario.project(LOCAL, null, scenario.improve(order, deadline));
+				}
+			});
+		}
+
+		pool.invoke(new RecursiveAction() {
+			protected void compute() {
+				invokeAll(tasks);
+			}
+		});
+
+		ArrayList<Plan> plans = new ArrayList<Plan>();
+
+		for(RecursiveTask<Plan> task : tasks) {
+			plans.add(task.join());
+		}
+
+		Collections.sort(plans);
+
+		return plans;
+	}
+
+	/**
+	 * Retourne le meilleur mode de routage parmi des projections.
+	 *
+	 * @return Le mode, ou <code>null</code> si aucune projection ne
+	 *         correspond à un mode.
+	 */
+	public static RoutingMode getBestMode(List<Plan> plans) {
+		for(Plan plan : plans) {
+			if(plan.getMode() != null) {
+				return plan.getMode();
+			}
+		}
+
+		return null;
+	}
+
+	/**
+	 * Exécute une tâche sur le pool du planificateur, par exemple une
+	 * évaluation demandée par un appelant qui ne peut pas l'attendre.
+	 */
+	public void execute(Runnable task) {
+		pool.execute(task);
+	}
+
+	/**
+	 * Arrête le pool du planificateur.
+	 */
+	public void shutdown() {
+		pool.shutdown();
+	}
+
+	// - - - Projection - - -
+
+	/**
+	 * Les données figées d'une projection, partagées en lecture seule par
+	 * toutes les tâches.
+	 */
+	private static class Scenario {
+		private final List<TowerPlane> planes;
+		private final int capacity;
+		private final float separation;
+
+		// Per plane, in the order of planes
+		private final boolean[] projected;
+		private final boolean[] landing;
+		private final float[] arrivals;
+		private final float[] rates;
+		private final float[] fuels;
+		private final int[] passengers;
+
+		/**
+		 * Le nombre d'avions en approche, qui restent en tête de tous les
+		 * ordres.
+		 */
+		private int approaching = 0;
+
+		Scenario(List<TowerPlane> planes, int capacity, float separation, long now) {
+			int count = planes.size();
+
+			this.planes = planes;
+			this.capacity = capacity;
+			this.separation = separation;
+
+			projected = new boolean[count];
+			landing = new boolean[count];
+			arrivals = new float[count];
+			rates = new float[count];
+			fuels = new float[count];
+			passengers = new int[count];
+
+			for(int i = 0; i < count; i++) {
+				TowerPlane plane = planes.get(i);
+				PlaneType type = plane.getType();
+
+				if(plane.isLanding()) {
+					landing[i] = true;
+					approaching++;
+				}
+
+				if(type == null || Float.isInfinite(plane.getTimeToRunway())) {
+					continue;
+				}
+
+				float rate = type.consumption / 60f;
+				float fuel = type.fuel - rate * (now - plane.getConnectionTime()) / 1000f;
+
+				if(plane.isMayDay()) {
+					fuel = Math.min(fuel, type.fuel * 0.2f);
+				}
+
+				projected[i] = true;
+				arrivals[i] = plane.getTimeToRunway();
+				rates[i] = rate;
+				fuels[i] = Math.max(fuel, 0);
+				passengers[i] = type.passengers;
+			}
+		}
+
+		/**
+		 * Retourne l'ordre des avions selon un ordre de priorité.
+		 */
+		int[] order(final Comparator<TowerPlane> comparator) {
+			return sort(new Comparator<Integer>() {
+				public int compare(Integer i1, Integer i2) {
+					return comparator.compare(planes.get(i1), planes.get(i2));
+				}
+			});
+		}
+
+		/**
+		 * Trie les index des avions.
+		 */
+		private int[] sort(Comparator<Integer> comparator) {
+			Integer[] order = new Integer[planes.size()];
+
+			for(int i = 0; i < order.length; i++) {
+				order[i] = i;
+			}
+
+			Arrays.sort(order, comparator);
+
+			int[] result = new int[order.length];
+
+			for(int i = 0; i < order.length; i++) {
+				result[i] = order[i];
+			}
+
+			return result;
+		}
+
+		/**
+		 * Retourne l'ordre par autonomie restante croissante, les avions en
+		 * approche restant en tête.
+		 */
+		int[] orderByEndurance() {
+			return sort(new Comparator<Integer>() {
+				public int compare(Integer i1, Integer i2) {
+					if(landing[i1] != landing[i2]) {
+						return landing[i1] ? -1 : 1;
+					}
+
+					float e1 = projected[i1] ? fuels[i1] / rates[i1] : Float.POSITIVE_INFINITY;
+					float e2 = projected[i2] ? fuels[i2] / rates[i2] : Float.POSITIVE_INFINITY;
+
+					if(e1 != e2) {
+						return (e1 < e2) ? -1 : 1;
+					}
+
+					return i1.compareTo(i2);
+				}
+			});
+		}
+
+		/**
+		 * Améliore un ordre en échangeant des avions voisins tant que le
+		 * résultat s'améliore et que l'échéance n'est pas atteinte. Les
+		 * avions en approche ne sont pas déplacés.
+		 */
+		int[] improve(int[] order, long deadline) {
+			double best = cost(order);
+			boolean improved = true;
+
+			while(improved && System.nanoTime() < deadline) {
+				improved = false;
+
+				for(int k = approaching; k < order.length - 1; k++) {
+					swap(order, k);
+					double cost = cost(order);
+
+					if(cost < best) {
+						best = cost;
+						improved = true;
+					}
+					else {
+						swap(order, k);
+					}
+
+					if((k & 63) == 0 && System.nanoTime() >= deadline) {
+						break;
+					}
+				}
+			}
+
+			return order;
+		}
+
+		private static void swap(int[] order, int k) {
+			int tmp = order[k];
+			order[k] = order[k + 1];
+			order[k + 1] = tmp;
+		}
+
+		/**
+		 * Le coût d'un ordre: les pannes sèches d'abord, puis l'attente des
+		 * passagers.
+		 */
+		double cost(int[] order) {
+			float[] result = simulate(order);
+			return result[EXHAUSTED] * 1e12 + result[PASSENGER_MINUTES];
+		}
+
+		// simulate() results
+		private static final int LANDED = 0;
+		private static final int EXHAUSTED = 1;
+		private static final int PASSENGER_MINUTES = 2;
+		private static final int FUEL = 3;
+		private static final int MAKESPAN = 4;
+
+		/**
+		 * Projette l'atterrissage des avions dans un ordre donné.
+		 */
+		private float[] simulate(int[] order) {
+			// End of the approach of the last planes, to know when the
+			// landing route has room for the next one
+			float[] ends = new float[capacity];
+			float previous = -separation;
+			int simulated = 0;
+
+			float[] result = new float[5];
+
+			for(int i : order) {
+				if(!projected[i]) {
+					continue;
+				}
+
+				float start = (landing[i] || simulated < capacity) ? 0 : ends[simulated % capacity];
+				float time = Math.max(start + arrivals[i], previous + separation);
+				float dry = fuels[i] / rates[i];
+
+				if(dry < time) {
+					// Out of fuel before landing: the plane leaves the route
+					time = dry;
+					result[EXHAUSTED]++;
+					result[FUEL] += fuels[i];
+				}
+				else {
+					previous = time;
+					result[LANDED]++;
+					result[FUEL] += rates[i] * time;
+					result[MAKESPAN] = time;
+				}
+
+				result[PASSENGER_MINUTES] += passengers[i] * time / 60;
+				ends[simulated % capacity] = time;
+				simulated++;
+			}
+
+			return result;
+		}
+
+		Plan project(String name, RoutingMode mode, int[] order) {
+			float[] result = simulate(order);
+			float throughput = (result[MAKESPAN] > 0) ? result[LANDED] / result[MAKESPAN] * 3600 : 0;
+
+			return new Plan(name, mode, planes.size(), (int) result[LANDED], (int) result[EXHAUSTED], result[PASSENGER_MINUTES], result[FUEL], throughput);
+		}
+	}
+
+	/**
+	 * Le résultat de la projection d'un ordre d'atterrissage. Les
+	 * projections sont classées par nombre de pannes sèches croissant, puis
+	 * par attente des passagers croissante.
+	 */
+	@SuppressWarnings("serial")
+	public static class Plan implements Serializable, Comparable<Plan> {
+		private String name;
+		private RoutingMode mode;
+		private int planes;
+		private int landed;
+		private int exhausted;
+		private float passengerMinutes;
+		private float fuel;
+		private float throughput;
+
+		Plan(String name, RoutingMode mode, int planes, int landed, int exhausted, float passengerMinutes, float fuel, float throughput) {
+			this.name = name;
+			this.mode = mode;
+			this.planes = planes;
+			this.landed = landed;
+			this.exhausted = exhausted;
+			this.passengerMinutes = passengerMinutes;
+			this.fuel = fuel;
+			this.throughput = throughput;
+		}
+
+		/**
+		 * Le nom de l'ordre évalué: le nom d'un mode ou d'un autre ordre.
+		 */
+		public String getName() {
+			return name;
+		}
+
+		/**
+		 * Le mode de routage évalué, ou <code>null</code> pour un ordre qui
+		 * ne correspond à aucun mode.
+		 */
+		public RoutingMode getMode() {
+			return mode;
+		}
+
+		/**
+		 * Le nombre d'avions en attente.
+		 */
+		public int getPlanes() {
+			return planes;
+		}
+
+		/**
+		 * Le nombre d'avions projetés qui atterrissent.
+		 */
+		public int getLanded() {
+			return landed;
+		}
+
+		/**
+		 * Le nombre d'avions projetés qui tombent en panne sèche avant leur
+		 * atterrissage.
+		 */
+		public int getExhausted() {
+			return exhausted;
+		}
+
+		/**
+		 * L'attente cumulée des passagers jusqu'à leur atterrissage, en
+		 * minutes.
+		 */
+		public float getPassengerMinutes() {
+			return passengerMinutes;
+		}
+
+		/**
+		 * Le carburant brûlé jusqu'à l'atterrissage.
+		 */
+		public float getFuel() {
+			return fuel;
+		}
+
+		/**
+		 * Le débit de la piste, en atterrissages par heure.
+		 */
+		public float getThroughput() {
+			return throughput;
+		}
+
+		public int compareTo(Plan other) {
+			if(exhausted != other.exhausted) {
+				return (exhausted < other.exhausted) ? -1 : 1;
+			}
+
+			return Float.compare(passengerMinutes, other.passengerMinutes);
+		}
+
+		public String toString() {
+			return String.format("%-10s %6d landed %4d dry %12.0f pax-min %12.0f fuel %8.1f/h", name, landed, exhausted, passengerMinutes, fuel, throughput);
+		}
+	}
+}
@@ -0,0 +1,66 @@
+package sat.tower;
+
+/**
+ * Le secteur d'une tour: un rectangle de l'espace aérien, aligné sur les axes.
+ * Un avion dont la position sort du secteur de sa tour est confié à la tour du
+ * secteur voisin qui le contient (voir {@link SectorLink}).
+ */
+public class Sector {
+	private final float minX;
+	private final float minY;
+	private final float maxX;
+	private final float maxY;
+
+	/**
+	 * Crée un secteur à partir de deux coins opposés.
+	 */
+	public Sector(float x1, float y1, float x2, float y2) {
+		minX = Math.min(x1, x2);
+		minY = Math.min(y1, y2);
+		maxX = Math.max(x1, x2);
+		maxY = Math.max(y1, y2);
+	}
+
+	/**
+	 * Crée un secteur depuis sa description textuelle "x1,y1,x2,y2".
+	 *
+	 * @return Le secteur, ou <code>null</code> si la description est vide.
+	 * @throws IllegalArgumentException
+	 *             Si la description est invalide.
+	 */
+	public static Sector parse(String sector) {
+		if(sector == null || sector.trim().isEmpty()) {
+			return null;
+		}
+
+		String[] parts = sector.split(",");
+
+		if(parts.length != 4) {
+			throw new IllegalArgumentException("Invalid sector " + sector + ", expected x1,y1,x2,y2");
+		}
+
+		float[] values = new float[4];
+
+		for(int i = 0; i < 4; i++) {
+			try {
+				values[i] = Float.parseFloat(parts[i].trim());
+			}
+			catch(NumberFormatException e) {
+				throw new IllegalArgumentException("Invalid sector " + sector + ", expected x1,y1,x2,y2");
+			}
+		}
+
+		return new Sector(values[0], values[1], values[2], values[3]);
+	}
+
+	/**
+	 * Indique si un point est dans le secteur, bords compris.
+	 */
+	public boolean contains(float x, float y) {
+		return x >= minX && x <= maxX && y >= minY && y <= maxY;
+	}
+
+	public String toString() {
+		return minX + "," + minY + "," + maxX + "," + maxY;
+	}
+}
@@ -0,0 +1,488 @@
+package sat.tower;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.concurrent.LinkedBlockingQueue;
+
+import sat.plane.PlaneType;
+import sat.radio.RadioID;
+
+/**
+ * Le lien entre la tour d'un secteur et les tours des secteurs voisins.
+ * <p>
+ * Lorsqu'un avion sort du secteur de sa tour, celle-ci transmet son état
+ * ({@link Handoff}: type, ticket d'atterrissage, MayDay) à la tour du secteur
+ * voisin qui contient sa position, puis lui demande de s'y connecter. La tour
+ * voisine conserve cet état jusqu'à la connexion de l'avion, qui retrouve
+ * ainsi sa place dans la file d'attente.
+ * <p>
+ * Les états sont transmis par des objets sérialisés sur TCP, comme les
+ * requêtes des TowerAgent distants. Le lien n'a pas de sécurité intégrée et
+ * n'écoute donc que sur localhost.
+ */
+public class SectorLink {
+	/**
+	 * La tour qui reçoit les avions transmis par ses voisines.
+	 */
+	private final Tower tower;
+
+	/**
+	 * Les secteurs voisins, dans l'ordre de déclaration.
+	 */
+	private final ArrayList<Neighbour> neighbours = new ArrayList<Neighbour>();
+
+	/**
+	 * Le serveur recevant les avions des tours voisines, s'il est actif.
+	 */
+	private ServerSocket server;
+
+	SectorLink(Tower tower) {
+		this.tower = tower;
+	}
+
+	/**
+	 * Démarre la réception des avions transmis par les tours voisines.
+	 *
+	 * @param port
+	 *            Le port d'écoute, 0 pour un port libre quelconque.
+	 * @throws IOException
+	 *             Si le port ne peut pas être ouvert ou si la réception est
+	 *             déjà active.
+	 */
+	public synchronized void listen(int port) throws IOException {
+		if(server != null) {
+			throw new IOException("Sector link is already listening on port " + server.getLocalPort());
+		}
+
+		final ServerSocket server = new ServerSocket(port, 50, InetAddress.getByName("localhost"));
+		this.server = server;
+
+		Thread thread = new Thread("Sector link " + tower.getName()) {
+			public void run() {
+				while(!server.isClosed()) {
+					try {
+						receive(server.accept());
+					}
+					catch(IOException e) {
+						// Closed, or bad neighbour: ignore
+					}
+				}
+			}
+		};
+
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	/**
+	 * Lit les avions transmis par une tour voisine jusqu'à la fermeture de
+	 * sa connexion.
+	 */
+	private void receive(final Socket socket) {
+		Thread thread = new Thread("Sector link " + tower.getName() + " " + socket.getRemoteSocketAddress()) {
+			public void run() {
+				try {
+					ObjectInputStream ois = new ObjectInputStream(socket.getInputStream());
+
+					while(true) {
+						tower.receiveHandoff((Handoff) ois.readObject());
+					}
+				}
+				catch(Exception e) {
+				}
+
+				try {
+					socket.close();
+				}
+				catch(IOException e) {
+				}
+			}
+		};
+
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	/**
+	 * Retourne le port de réception, ou -1 si la réception n'est pas active.
+	 */
+	public synchronized int getPort() {
+		return (server == null) ? -1 : server.getLocalPort();
+	}
+
+	/**
+	 * Déclare un secteur voisin.
+	 */
+	public synchronized void addNeighbour(Neighbour neighbour) {
+		neighbour.attach(tower);
+		neighbours.add(neighbour);
+	}
+
+	/**
+	 * Retourne le premier secteur voisin contenant un point, ou
+	 * <code>null</code>.
+	 */
+	public synchronized Neighbour getNeighbour(float x, float y) {
+		for(Neighbour neighbour : neighbours) {
+			if(neighbour.sector.contains(x, y)) {
+				return neighbour;
+			}
+		}
+
+		return null;
+	}
+
+	/**
+	 * Arrête la réception et ferme les connexions vers les tours voisines.
+	 */
+	public synchronized void close() {
+		if(server != null) {
+			try {
+				server.close();
+			}
+			catch(IOException e) {
+			}
+
+			server = null;
+		}
+
+		for(Neighbour neighbour : neighbours) {
+			neighbour.close();
+		}
+	}
+
+	// - - - Neighbour - - -
+
+	/**
+	 * Un secteur voisin: son étendue, l'adresse radio de sa tour (transmise
+	 * aux avions) et le port de son lien (pour transmettre leur état). La
+	 * connexion au lien est ouverte au premier avion transmis, et rouverte
+	 * après une erreur.
+	 * <p>
+	 * Les avions confiés par <code>handOff()</code> sont transmis par un
+	 * thread propre à ce voisin: le thread de distribution de la tour ne
+	 * bloque jamais sur le réseau. Après un échec, le voisin refuse les
+	 * avions pendant un délai qui double à chaque nouvel échec.
+	 */
+	public static class Neighbour {
+		/**
+		 * Délai maximal d'ouverture de la connexion, en millisecondes.
+		 */
+		private static final int CONNECT_TIMEOUT = 1000;
+
+		/**
+		 * Délais minimal et maximal avant une nouvelle tentative après un
+		 * échec, en millisecondes.
+		 */
+		private static final long MIN_BACKOFF = 100;
+		private static final long MAX_BACKOFF = 10000;
+
+		/**
+		 * Objet placé dans la file pour arrêter le thread d'envoi.
+		 */
+		private static final Pending CLOSE = new Pending(null, null);
+
+		private final Sector sector;
+		private final String host;
+		private final int radioPort;
+		private final int linkPort;
+
+		private Socket socket;
+		private ObjectOutputStream oos;
+
+		/**
+		 * La tour notifiée du résultat de chaque transmission, ou
+		 * <code>null</code>.
+		 */
+		private Tower tower;
+
+		/**
+		 * Les avions en attente de transmission, et le thread qui les
+		 * transmet, démarré au premier avion. La file sert aussi de verrou
+		 * pour le démarrage du thread.
+		 */
+		private final LinkedBlockingQueue<Pending> queue = new LinkedBlockingQueue<Pending>();
+		private Thread sender;
+
+		/**
+		 * L'heure (System.currentTimeMillis) avant laquelle aucun avion n'est
+		 * accepté, et le délai appliqué au dernier échec.
+		 */
+		private volatile long retryAt = 0;
+		private long backoff = 0;
+
+		public Neighbour(Sector sector, String host, int radioPort, int linkPort) {
+			this.sector = sector;
+			this.host = host;
+			this.radioPort = radioPort;
+			this.linkPort = linkPort;
+		}
+
+		public Sector getSector() {
+			return sector;
+		}
+
+		public String getHost() {
+			return host;
+		}
+
+		public int getRadioPort() {
+			return radioPort;
+		}
+
+		/**
+		 * Défini la tour notifiée du résultat des transmissions.
+		 */
+		void attach(Tower tower) {
+			this.tower = tower;
+		}
+
+		/**
+		 * Indique si le voisin accepte des avions, c'est à dire si aucun échec
+		 * récent n'impose d'attendre.
+		 */
+		public boolean isAvailable() {
+			return System.currentTimeMillis() >= retryAt;
+		}
+
+		/**
+		 * Place l'état d'un avion dans la file de transmission, sans attendre.
+		 * La tour attachée est notifiée du résultat depuis le thread d'envoi.
+		 *
+		 * @return <code>false</code> si le voisin n'accepte pas d'avion après
+		 *         un échec récent.
+		 */
+		public boolean handOff(TowerPlane plane) {
+			if(!isAvailable()) {
+				return false;
+			}
+
+			// Not the neighbour lock: it is held during a send
+			synchronized(queue) {
+				if(sender == null) {
+					sender = new Thread("Sector link to " + host + ":" + linkPort) {
+						public void run() {
+							drain();
+						}
+					};
+
+					sender.setDaemon(true);
+					sender.start();
+				}
+			}
+
+			queue.offer(new Pending(plane, new Handoff(plane)));
+
+			return true;
+		}
+
+		/**
+		 * Transmet les avions de la file jusqu'à l'arrêt du voisin.
+		 */
+		private void drain() {
+			while(true) {
+				Pending pending;
+
+				try {
+					pending = queue.take();
+				}
+				catch(InterruptedException e) {
+					return;
+				}
+
+				if(pending == CLOSE) {
+					return;
+				}
+
+				IOException error = null;
+
+				if(isAvailable()) {
+					try {
+						send(pending.handoff);
+						backoff = 0;
+					}
+					catch(IOException e) {
+						backoff = Math.min(Math.max(backoff * 2, MIN_BACKOFF), MAX_BACKOFF);
+						retryAt = System.currentTimeMillis() + backoff;
+						error = e;
+					}
+				}
+				else {
+					// Queued before the last failure: do not wait again
+					error = new IOException("Neighbour unavailable after a failure");
+				}
+
+				Tower tower = this.tower;
+
+				if(tower != null) {
+					tower.handoffDone(pending.plane, this, error);
+				}
+			}
+		}
+
+		/**
+		 * Transmet l'état d'un avion à la tour voisine, en attendant la fin
+		 * de l'envoi.
+		 *
+		 * @throws IOException
+		 *             Si la tour voisine n'est pas joignable.
+		 */
+		public synchronized void send(Handoff handoff) throws IOException {
+			try {
+				if(oos == null) {
+					socket = new Socket();
+					socket.connect(new InetSocketAddress(host, linkPort), CONNECT_TIMEOUT);
+					oos = new ObjectOutputStream(socket.getOutputStream());
+				}
+
+				oos.writeObject(handoff);
+				oos.flush();
+
+				// Do not keep every sent handoff referenced by the stream
+				oos.reset();
+			}
+			catch(IOException e) {
+				disconnect();
+				throw e;
+			}
+		}
+
+		/**
+		 * Ferme la connexion et arrête le thread d'envoi.
+		 */
+		private void close() {
+			synchronized(queue) {
+				if(sender != null) {
+					queue.offer(CLOSE);
+					sender = null;
+				}
+			}
+
+			disconnect();
+		}
+
+		private synchronized void disconnect() {
+			try {
+				if(socket != null) {
+					socket.close();
+				}
+			}
+			catch(IOException e) {
+			}
+
+			socket = null;
+			oos = null;
+		}
+
+		public String toString() {
+			return host + ":" + radioPort + " (" + sector + ")";
+		}
+	}
+
+	/**
+	 * Un avion en attente de transmission et son état au moment où il a été
+	 * confié.
+	 */
+	private static class Pending {
+		private final TowerPlane plane;
+		private final Handoff handoff;
+
+		private Pending(TowerPlane plane, Handoff handoff) {
+			this.plane = plane;
+			this.handoff = handoff;
+		}
+	}
+
+	// - - - Handoff - - -
+
+	/**
+	 * L'état d'un avion transmis à la tour d'un secteur voisin.
+	 */
+	@SuppressWarnings("serial")
+	public static class Handoff implements Serializable {
+		private final RadioID id;
+		private final PlaneType type;
+		private final int landingID;
+		private final boolean mayDay;
+		private final long connectionTime;
+
+		/**
+		 * L'heure de réception par la tour voisine, pour oublier les avions
+		 * qui ne s'y connectent jamais.
+		 */
+		private transient long received;
+
+		/**
+		 * Copie l'état d'un avion.
+		 */
+		public Handoff(TowerPlane plane) {
+			id = plane.getID();
+			type = plane.getType();
+			landingID = plane.getLandingID();
+			mayDay = plane.isMayDay();
+			connectionTime = plane.getConnectionTime();
+		}
+
+		public RadioID getID() {
+			return id;
+		}
+
+		/**
+		 * Retourne le ticket d'atterrissage de l'avion, ou -1.
+		 */
+		public int getLandingID() {
+			return landingID;
+		}
+
+		public PlaneType getType() {
+			return type;
+		}
+
+		public boolean isMayDay() {
+			return mayDay;
+		}
+
+		public long getConnectionTime() {
+			return connectionTime;
+		}
+
+		/**
+		 * Indique si l'avion avait demandé à atterrir.
+		 */
+		public boolean isLandingRequested() {
+			return landingID != -1;
+		}
+
+		long getReceived() {
+			return received;
+		}
+
+		void setReceived(long received) {
+			this.received = received;
+		}
+
+		/**
+		 * Applique cet état à l'avion connecté à la nouvelle tour. L'avion
+		 * doit être retiré de la file d'attente pendant cette modification.
+		 */
+		void applyTo(TowerPlane plane) {
+			if(type != null) {
+				plane.setType(type);
+			}
+
+			if(isLandingRequested()) {
+				plane.setLandingID(landingID);
+			}
+
+			plane.setMayDay(plane.isMayDay() || mayDay);
+			plane.setConnectionTime(connectionTime);
+		}
+	}
+}
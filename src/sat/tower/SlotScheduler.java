@@ -0,0 +1,332 @@
+package sat.tower;
+
+import java.util.ArrayList;
+
+import sat.plane.PlaneType;
+import sat.utils.routes.RouteGeometry;
+
+/**
+ * Estimation des heures d'arrivée aux pistes et répartition des avions entre
+ * les pistes.
+ * <p>
+ * Chaque route d'atterrissage chargée mène à une piste, avec sa propre
+ * capacité et son propre créneau. Le temps d'arrivée d'un avion à une piste
+ * est estimé à partir de sa dernière position connue et de sa vitesse: un
+ * avion envoyé sur la route d'atterrissage quitte immédiatement son circuit
+ * d'attente, rejoint le premier point de la route puis la parcourt jusqu'à la
+ * piste. La longueur de ce parcours est donnée par la géométrie de la route.
+ * Le temps d'arrivée retenu pour le mode de routage {@link RoutingMode#SLOT}
+ * est celui de la piste la plus proche.
+ * <p>
+ * Les avions sont ordonnés par temps d'arrivée croissant et reçoivent les
+ * créneaux de piste dans cet ordre, deux atterrissages sur une même piste
+ * étant séparés d'au moins <code>separation</code> secondes. Un avion admis
+ * sur les routes d'atterrissage est assigné à la piste, parmi celles qui ont
+ * encore de la place, qui lui offre le créneau le plus tôt. Il ne quitte son
+ * circuit d'attente qu'à l'heure de départ de ce créneau: deux avions ne sont
+ * ainsi jamais envoyés sur une même piste à moins d'une séparation
+ * d'intervalle.
+ * <p>
+ * Un avion n'est reclassé que lorsque son estimation s'écarte de plus d'une
+ * demi-séparation de celle qui a servi à le classer. Les avions en circuit
+ * d'attente, dont la distance à la piste oscille, ne changent ainsi pas de
+ * créneau à chaque position reçue.
+ */
+public class SlotScheduler {
+	/**
+	 * Les pistes, dans l'ordre de chargement de leurs routes.
+	 */
+	private ArrayList<Runway> runways = new ArrayList<Runway>();
+
+	/**
+	 * La séparation entre deux atterrissages sur une même piste, en secondes.
+	 */
+	private float separation = 10;
+
+	/**
+	 * Ajoute une piste.
+	 *
+	 * @param route
+	 *            L'index de la route d'atterrissage dans la tour.
+	 * @param geometry
+	 *            La géométrie de la route d'atterrissage.
+	 * @param capacity
+	 *            Le nombre d'avions simultanément sur la route.
+	 */
+	public void addRunway(int route, RouteGeometry geometry, int capacity) {
+		runways.add(new Runway(route, geometry, capacity));
+	}
+
+	/**
+	 * Indique si une route d'atterrissage est définie.
+	 */
+	public boolean hasRunway() {
+		return !runways.isEmpty();
+	}
+
+	/**
+	 * Retourne le nombre de pistes.
+	 */
+	public int getRunwayCount() {
+		return runways.size();
+	}
+
+	/**
+	 * Retourne une piste, dans l'ordre de chargement.
+	 */
+	public Runway getRunway(int i) {
+		return runways.get(i);
+	}
+
+	/**
+	 * Retourne le nombre total d'avions pouvant être simultanément sur les
+	 * routes d'atterrissage.
+	 */
+	public int getCapacity() {
+		int capacity = 0;
+
+		for(Runway runway : runways) {
+			capacity += runway.capacity;
+		}
+
+		return capacity;
+	}
+
+	/**
+	 * Retourne la séparation entre deux atterrissages, en secondes.
+	 */
+	public float getSeparation() {
+		return separation;
+	}
+
+	/**
+	 * Modifie la séparation entre deux atterrissages.
+	 */
+	public void setSeparation(float separation) {
+		this.separation = Math.max(separation, 0);
+	}
+
+	/**
+	 * Estime le temps nécessaire à un avion pour atteindre la piste la plus
+	 * proche.
+	 *
+	 * @return Le temps estimé en secondes, ou l'infini si aucune route
+	 *         d'atterrissage n'est chargée ou si la position ou le type de
+	 *         l'avion est inconnu.
+	 */
+	public float estimate(float x, float y, PlaneType type) {
+		float best = Float.POSITIVE_INFINITY;
+
+		for(Runway runway : runways) {
+			best = Math.min(best, runway.estimate(x, y, type));
+		}
+
+		return best;
+	}
+
+	/**
+	 * Assigne une piste à un avion admis sur les routes d'atterrissage: parmi
+	 * les pistes qui ont encore de la place, celle dont le premier créneau
+	 * libre après l'arrivée estimée de l'avion est le plus tôt. La place sur
+	 * la piste est réservée jusqu'à l'appel de {@link #release(int)}.
+	 *
+	 * @param now
+	 *            L'heure actuelle, en millisecondes.
+	 * @return Le créneau assigné, ou <code>null</code> si toutes les pistes
+	 *         sont pleines.
+	 */
+	public Slot assign(float x, float y, PlaneType type, long now) {
+		Runway best = null;
+		long bestSlot = Long.MAX_VALUE;
+		long bestFlight = 0;
+
+		for(Runway runway : runways) {
+			if(runway.load >= runway.capacity) {
+				continue;
+			}
+
+			// Unknown position: the plane is assumed to be at the runway
+			float eta = runway.estimate(x, y, type);
+			long flight = Float.isInfinite(eta) ? 0 : (long) (eta * 1000);
+			long slot = Math.max(now + flight, runway.nextSlot);
+
+			if(best == null || slot < bestSlot || (slot == bestSlot && runway.load < best.load)) {
+				best = runway;
+				bestSlot = slot;
+				bestFlight = flight;
+			}
+		}
+
+		if(best == null) {
+			return null;
+		}
+
+		best.load++;
+		best.nextSlot = bestSlot + (long) (separation * 1000);
+
+		return new Slot(best, bestSlot, bestSlot - bestFlight);
+	}
+
+	/**
+	 * Réserve la place d'un avion déjà engagé sur une route d'atterrissage,
+	 * par exemple repris d'une tour principale. La piste est réservée même
+	 * si elle est pleine.
+	 *
+	 * @param route
+	 *            L'index de la route d'atterrissage dans la tour.
+	 */
+	public void reserve(int route) {
+		for(Runway runway : runways) {
+			if(runway.route == route) {
+				runway.load++;
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Libère la place d'un avion qui a quitté une route d'atterrissage.
+	 *
+	 * @param route
+	 *            L'index de la route d'atterrissage dans la tour.
+	 */
+	public void release(int route) {
+		for(Runway runway : runways) {
+			if(runway.route == route && runway.load > 0) {
+				runway.load--;
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Indique si un avion doit être reclassé avec une nouvelle estimation.
+	 */
+	public boolean isOutdated(TowerPlane plane, float estimate) {
+		float current = plane.getTimeToRunway();
+
+		if(Float.isInfinite(current) || Float.isInfinite(estimate)) {
+			return current != estimate;
+		}
+
+		return Math.abs(estimate - current) > separation / 2;
+	}
+
+	/**
+	 * Un créneau assigné à un avion sur une piste.
+	 */
+	public static class Slot {
+		private final Runway runway;
+
+		/**
+		 * L'heure d'arrivée prévue à la piste, en millisecondes.
+		 */
+		private final long time;
+
+		/**
+		 * L'heure à laquelle l'avion doit quitter son circuit d'attente pour
+		 * arriver à la piste à l'heure prévue, en millisecondes.
+		 */
+		private final long departure;
+
+		private Slot(Runway runway, long time, long departure) {
+			this.runway = runway;
+			this.time = time;
+			this.departure = departure;
+		}
+
+		public Runway getRunway() {
+			return runway;
+		}
+
+		public long getTime() {
+			return time;
+		}
+
+		public long getDeparture() {
+			return departure;
+		}
+	}
+
+	/**
+	 * Une piste: sa route d'atterrissage, sa capacité et son prochain créneau
+	 * libre.
+	 */
+	public static class Runway {
+		/**
+		 * L'index de la route d'atterrissage dans la tour.
+		 */
+		private final int route;
+
+		/**
+		 * Le premier point de la route d'atterrissage.
+		 */
+		private final float entryX;
+		private final float entryY;
+
+		/**
+		 * La longueur de la route d'atterrissage depuis son premier point.
+		 */
+		private final float approachLength;
+
+		/**
+		 * Le nombre d'avions simultanément sur la route, et le nombre
+		 * d'avions qui y sont actuellement assignés.
+		 */
+		private final int capacity;
+		private int load = 0;
+
+		/**
+		 * L'heure du prochain créneau libre, en millisecondes.
+		 */
+		private long nextSlot = Long.MIN_VALUE;
+
+		private Runway(int route, RouteGeometry geometry, int capacity) {
+			this.route = route;
+			this.capacity = Math.max(capacity, 1);
+
+			if(geometry == null || geometry.size() == 0) {
+				entryX = Float.NaN;
+				entryY = Float.NaN;
+				approachLength = 0;
+			}
+			else {
+				entryX = geometry.getEndX(0);
+				entryY = geometry.getEndY(0);
+				approachLength = geometry.getRemainingLength(0);
+			}
+		}
+
+		/**
+		 * Retourne l'index de la route d'atterrissage dans la tour.
+		 */
+		public int getRoute() {
+			return route;
+		}
+
+		public int getCapacity() {
+			return capacity;
+		}
+
+		public int getLoad() {
+			return load;
+		}
+
+		/**
+		 * Estime le temps nécessaire à un avion pour atteindre cette piste.
+		 *
+		 * @return Le temps estimé en secondes, ou l'infini si la position ou
+		 *         le type de l'avion est inconnu.
+		 */
+		public float estimate(float x, float y, PlaneType type) {
+			if(type == null || Float.isNaN(entryX) || Float.isNaN(x) || Float.isNaN(y)) {
+				return Float.POSITIVE_INFINITY;
+			}
+
+			float dx = x - entryX;
+			float dy = y - entryY;
+
+			return ((float) Math.sqrt(dx * dx + dy * dy) + approachLength) / type.speedAsPxPerSec();
+		}
+	}
+}
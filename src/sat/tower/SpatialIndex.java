@@ -0,0 +1,461 @@
+package sat.tower;
+
+import java.util.Arrays;
+
+/**
+ * Index spatial des positions des avions.
+ * <p>
+ * L'espace (horizontal) de la carte est découpé en une grille uniforme de
+ * cellules carrées. Comme la carte n'est pas bornée, les cellules sont
+ * hachées dans un nombre fixe de compartiments; chaque compartiment contient
+ * une liste chaînée des avions, représentée par des tableaux indexés par leur
+ * emplacement dans le registre de la tour. Le déplacement d'un avion ne coûte
+ * rien tant qu'il reste dans la même cellule et n'alloue jamais d'objet.
+ * <p>
+ * Les distances sont mesurées dans le plan horizontal (x, y), l'altitude
+ * n'est pas prise en compte.
+ * <p>
+ * Toutes les méthodes sont synchronisées: l'index est mis à jour par le
+ * thread de dispatch de la tour et peut être interrogé depuis d'autres
+ * threads.
+ */
+public class SpatialIndex {
+	/**
+	 * Un visiteur appelé pour chaque avion trouvé par une requête.
+	 */
+	public interface Visitor {
+		/**
+		 * @param slot
+		 *            L'emplacement de l'avion.
+		 * @param distance
+		 *            Sa distance au point de la requête.
+		 */
+		void visit(int slot, float distance);
+	}
+
+	/**
+	 * Valeur indiquant l'absence d'avion (fin de liste, emplacement vide).
+	 */
+	private static final int NONE = -1;
+
+	/**
+	 * Nombre d'emplacements alloués initialement.
+	 */
+	private static final int INITIAL_CAPACITY = 64;
+
+	/**
+	 * Le côté d'une cellule.
+	 */
+	private float cellSize;
+
+	/**
+	 * Le premier avion de chaque compartiment.
+	 */
+	private int[] heads;
+
+	/**
+	 * Masque appliqué au hash d'une cellule pour obtenir son compartiment.
+	 */
+	private int mask;
+
+	// Per slot
+	private float[] xs = new float[INITIAL_CAPACITY];
+	private float[] ys = new float[INITIAL_CAPACITY];
+	private int[] cellXs = new int[INITIAL_CAPACITY];
+	private int[] cellYs = new int[INITIAL_CAPACITY];
+	private int[] buckets = new int[INITIAL_CAPACITY];
+	private int[] nexts = new int[INITIAL_CAPACITY];
+	private int[] prevs = new int[INITIAL_CAPACITY];
+
+	/**
+	 * Nombre d'avions indexés.
+	 */
+	private int size = 0;
+
+	/**
+	 * Crée un index.
+	 *
+	 * @param cellSize
+	 *            Le côté d'une cellule. Idéalement de l'ordre du rayon des
+	 *            requêtes les plus fréquentes.
+	 * @param bucketCount
+	 *            Le nombre de compartiments, arrondi à la puissance de 2
+	 *            supérieure.
+	 */
+	public SpatialIndex(float cellSize, int bucketCount) {
+		int n = Integer.highestOneBit(Math.max(bucketCount, 1));
+		if(n < bucketCount) {
+			n <<= 1;
+		}
+
+		this.heads = new int[n];
+		this.mask = n - 1;
+		this.cellSize = (cellSize > 0) ? cellSize : 1;
+
+		Arrays.fill(heads, NONE);
+		Arrays.fill(buckets, NONE);
+	}
+
+	/**
+	 * Retourne le côté d'une cellule.
+	 */
+	public synchronized float getCellSize() {
+		return cellSize;
+	}
+
+	/**
+	 * Modifie le côté des cellules et reconstruit l'index.
+	 */
+	public synchronized void setCellSize(float cellSize) {
+		if(cellSize <= 0 || cellSize == this.cellSize) {
+			return;
+		}
+
+		this.cellSize = cellSize;
+
+		Arrays.fill(heads, NONE);
+
+		for(int slot = 0; slot < buckets.length; slot++) {
+			if(buckets[slot] != NONE) {
+				buckets[slot] = NONE;
+				link(slot);
+			}
+		}
+	}
+
+	/**
+	 * Retourne le nombre d'avions indexés.
+	 */
+	public synchronized int size() {
+		return size;
+	}
+
+	/**
+	 * Indique si un emplacement est indexé.
+	 */
+	public synchronized boolean contains(int slot) {
+		return slot >= 0 && slot < buckets.length && buckets[slot] != NONE;
+	}
+
+	/**
+	 * Met à jour la position d'un avion, en l'ajoutant à l'index si
+	 * nécessaire.
+	 *
+	 * @return <code>true</code> si l'avion a changé de cellule (ou vient
+	 *         d'être ajouté), <code>false</code> sinon.
+	 */
+	public synchronized boolean update(int slot, float x, float y) {
+		ensureCapacity(slot);
+
+		xs[slot] = x;
+		ys[slot] = y;
+
+		int cx = cell(x);
+		int cy = cell(y);
+
+		if(buckets[slot] != NONE) {
+			if(cellXs[slot] == cx && cellYs[slot] == cy) {
+				return false;
+			}
+
+			unlink(slot);
+		}
+		else {
+			size++;
+		}
+
+		link(slot);
+
+		return true;
+	}
+
+	/**
+	 * Retire un avion de l'index.
+	 */
+	public synchronized void remove(int slot) {
+		if(contains(slot)) {
+			unlink(slot);
+			buckets[slot] = NONE;
+			size--;
+		}
+	}
+
+	/**
+	 * Retourne la dernière position x connue d'un avion indexé.
+	 */
+	public synchronized float getX(int slot) {
+		return xs[slot];
+	}
+
+	/**
+	 * Retourne la dernière position y connue d'un avion indexé.
+	 */
+	public synchronized float getY(int slot) {
+		return ys[slot];
+	}
+
+	/**
+	 * Retourne la cellule (abscisse) d'un avion indexé.
+	 */
+	public synchronized int getCellX(int slot) {
+		return cellXs[slot];
+	}
+
+	/**
+	 * Retourne la cellule (ordonnée) d'un avion indexé.
+	 */
+	public synchronized int getCellY(int slot) {
+		return cellYs[slot];
+	}
+
+	/**
+	 * Visite tous les avions situés à une distance inférieure ou égale à
+	 * <code>radius</code> du point (x, y). Seules les cellules recouvrant le
+	 * cercle sont examinées.
+	 *
+	 * @return Le nombre d'avions visités.
+	 */
+	public synchronized int query(float x, float y, float radius, Visitor visitor) {
+		int minX = cell(x - radius);
+		int maxX = cell(x + radius);
+		int minY = cell(y - radius);
+		int maxY = cell(y + radius);
+
+		long cells = (long) (maxX - minX + 1) * (maxY - minY + 1);
+
+		// Larger than the whole table: a plain scan is cheaper
+		if(cells > heads.length) {
+			return scan(x, y, radius, visitor);
+		}
+
+		int found = 0;
+
+		for(int cx = minX; cx <= maxX; cx++) {
+			for(int cy = minY; cy <= maxY; cy++) {
+				found += visitCell(cx, cy, x, y, radius, visitor);
+			}
+		}
+
+		return found;
+	}
+
+	/**
+	 * Retourne l'avion le plus proche du point (x, y).
+	 * <p>
+	 * Les cellules sont examinées par anneaux concentriques autour de celle
+	 * du point, jusqu'à ce qu'aucune cellule restante ne puisse contenir un
+	 * avion plus proche que le meilleur trouvé.
+	 *
+	 * @param exclude
+	 *            Un emplacement à ignorer (typiquement l'avion qui fait la
+	 *            requête), ou -1.
+	 *
+	 * @return L'emplacement de l'avion le plus proche, ou -1 si l'index ne
+	 *         contient aucun autre avion.
+	 */
+	public synchronized int nearest(float x, float y, int exclude) {
+		int others = contains(exclude) ? size - 1 : size;
+
+		if(others <= 0) {
+			return NONE;
+		}
+
+		int cx = cell(x);
+		int cy = cell(y);
+
+		int best = NONE;
+		float bestDistance = Float.POSITIVE_INFINITY;
+
+		for(int ring = 0;; ring++) {
+			// The ring no longer fits in the table: finish with a plain scan
+			if((long) (2 * ring + 1) * (2 * ring + 1) > heads.length) {
+				return nearestScan(x, y, exclude);
+			}
+
+			for(int i = cx - ring; i <= cx + ring; i++) {
+				for(int j = cy - ring; j <= cy + ring; j++) {
+					// Only the border of the square is new
+					if(i != cx - ring && i != cx + ring && j != cy - ring && j != cy + ring) {
+						continue;
+					}
+
+					for(int slot = heads[hash(i, j)]; slot != NONE; slot = nexts[slot]) {
+						if(slot == exclude || cellXs[slot] != i || cellYs[slot] != j) {
+							continue;
+						}
+
+						float d = distance(slot, x, y);
+
+						if(d < bestDistance) {
+							bestDistance = d;
+							best = slot;
+						}
+					}
+				}
+			}
+
+			// Any plane outside this ring is at least ring * cellSize away
+			if(best != NONE && bestDistance <= ring * cellSize) {
+				return best;
+			}
+		}
+	}
+
+	// - - - Internals - - -
+
+	/**
+	 * Retourne la cellule contenant une coordonnée.
+	 */
+	private int cell(float v) {
+		return (int) Math.floor(v / cellSize);
+	}
+
+	/**
+	 * Retourne le compartiment d'une cellule.
+	 */
+	private int hash(int cx, int cy) {
+		return ((cx * 73856093) ^ (cy * 19349663)) & mask;
+	}
+
+	/**
+	 * Distance horizontale entre un avion indexé et un point.
+	 */
+	private float distance(int slot, float x, float y) {
+		float dx = xs[slot] - x;
+		float dy = ys[slot] - y;
+
+		return (float) Math.sqrt(dx * dx + dy * dy);
+	}
+
+	/**
+	 * Visite les avions d'une cellule situés à moins de <code>radius</code>
+	 * du point (x, y).
+	 */
+	private int visitCell(int cx, int cy, float x, float y, float radius, Visitor visitor) {
+		int found = 0;
+
+		for(int slot = heads[hash(cx, cy)]; slot != NONE; slot = nexts[slot]) {
+			// Buckets are shared between cells
+			if(cellXs[slot] != cx || cellYs[slot] != cy) {
+				continue;
+			}
+
+			float d = distance(slot, x, y);
+
+			if(d <= radius) {
+				visitor.visit(slot, d);
+				found++;
+			}
+		}
+
+		return found;
+	}
+
+	/**
+	 * Requête de rayon par parcours de tous les avions.
+	 */
+	private int scan(float x, float y, float radius, Visitor visitor) {
+		int found = 0;
+
+		for(int slot = 0; slot < buckets.length; slot++) {
+			if(buckets[slot] != NONE) {
+				float d = distance(slot, x, y);
+
+				if(d <= radius) {
+					visitor.visit(slot, d);
+					found++;
+				}
+			}
+		}
+
+		return found;
+	}
+
+	/**
+	 * Recherche du plus proche voisin par parcours de tous les avions.
+	 */
+	private int nearestScan(float x, float y, int exclude) {
+		int best = NONE;
+		float bestDistance = Float.POSITIVE_INFINITY;
+
+		for(int slot = 0; slot < buckets.length; slot++) {
+			if(buckets[slot] != NONE && slot != exclude) {
+				float d = distance(slot, x, y);
+
+				if(d < bestDistance) {
+					bestDistance = d;
+					best = slot;
+				}
+			}
+		}
+
+		return best;
+	}
+
+	/**
+	 * Ajoute un avion en tête du compartiment de sa cellule actuelle.
+	 */
+	private void link(int slot) {
+		int cx = cell(xs[slot]);
+		int cy = cell(ys[slot]);
+		int bucket = hash(cx, cy);
+
+		cellXs[slot] = cx;
+		cellYs[slot] = cy;
+		buckets[slot] = bucket;
+
+		prevs[slot] = NONE;
+		nexts[slot] = heads[bucket];
+
+		if(heads[bucket] != NONE) {
+			prevs[heads[bucket]] = slot;
+		}
+
+		heads[bucket] = slot;
+	}
+
+	/**
+	 * Retire un avion de son compartiment, sans le marquer absent.
+	 */
+	private void unlink(int slot) {
+		int prev = prevs[slot];
+		int next = nexts[slot];
+
+		if(prev != NONE) {
+			nexts[prev] = next;
+		}
+		else {
+			heads[buckets[slot]] = next;
+		}
+
+		if(next != NONE) {
+			prevs[next] = prev;
+		}
+	}
+
+	/**
+	 * Agrandit les tableaux pour pouvoir indexer <code>slot</code>.
+	 */
+	private void ensureCapacity(int slot) {
+		if(slot < buckets.length) {
+			return;
+		}
+
+		int capacity = buckets.length;
+		while(capacity <= slot) {
+			capacity *= 2;
+		}
+
+		int previous = buckets.length;
+
+		xs = Arrays.copyOf(xs, capacity);
+		ys = Arrays.copyOf(ys, capacity);
+		cellXs = Arrays.copyOf(cellXs, capacity);
+		cellYs = Arrays.copyOf(cellYs, capacity);
+		buckets = Arrays.copyOf(buckets, capacity);
+		nexts = Arrays.copyOf(nexts, capacity);
+		prevs = Arrays.copyOf(prevs, capacity);
+
+		Arrays.fill(buckets, previous, capacity, NONE);
+	}
+}
@@ -0,0 +1,412 @@
+package sat.tower;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.net.SocketTimeoutException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import sat.radio.RadioID;
+
+/**
+ * La réplication de l'état d'une tour principale vers des tours de secours.
+ * <p>
+ * La tour principale publie l'état de chaque avion modifié (connexion,
+ * demande d'atterrissage, identification, MayDay, route assignée) sous forme
+ * d'un {@link PlaneRecord}, et l'identifiant d'un avion déconnecté. Une tour
+ * de secours qui se connecte reçoit d'abord l'état de tous les avions
+ * connectés, puis les modifications dans l'ordre. Chaque tour de secours a sa
+ * propre file d'envoi: la tour principale ne bloque jamais sur le réseau.
+ * <p>
+ * En l'absence de modification, la tour principale envoie un battement toutes
+ * les <code>timeout / 4</code> millisecondes. La tour de secours prend le
+ * relais lorsque le lien est fermé ou reste silencieux plus de
+ * <code>timeout</code> millisecondes.
+ * <p>
+ * Comme le lien entre secteurs, ce lien n'a pas de sécurité intégrée et
+ * n'écoute que sur localhost.
+ */
+public class StandbyLink {
+	/**
+	 * Objet envoyé pour fermer proprement le lien vers une tour de secours.
+	 */
+	private static final Object CLOSE = new Object();
+
+	/**
+	 * La tour dont l'état est publié ou répliqué.
+	 */
+	private final Tower tower;
+
+	/**
+	 * Les tours de secours connectées à cette tour.
+	 */
+	private final CopyOnWriteArrayList<Follower> followers = new CopyOnWriteArrayList<Follower>();
+
+	/**
+	 * Le serveur acceptant les tours de secours, s'il est actif.
+	 */
+	private ServerSocket server;
+
+	/**
+	 * La connexion à la tour principale, si cette tour est une tour de
+	 * secours.
+	 */
+	private Socket primary;
+
+	/**
+	 * Indique si le lien a été fermé par cette tour: la perte de la tour
+	 * principale n'est alors plus surveillée.
+	 */
+	private volatile boolean closed = false;
+
+	StandbyLink(Tower tower) {
+		this.tower = tower;
+	}
+
+	// - - - Primary - - -
+
+	/**
+	 * Accepte les tours de secours.
+	 *
+	 * @param port
+	 *            Le port d'écoute, 0 pour un port libre quelconque.
+	 * @param timeout
+	 *            Le silence, en millisecondes, après lequel les tours de
+	 *            secours prennent le relais.
+	 * @throws IOException
+	 *             Si le port ne peut pas être ouvert ou si le lien est déjà
+	 *             actif.
+	 */
+	public synchronized void serve(int port, final int timeout) throws IOException {
+		if(server != null) {
+			throw new IOException("Standby link is already listening on port " + server.getLocalPort());
+		}
+
+		final ServerSocket server = new ServerSocket(port, 50, InetAddress.getByName("localhost"));
+		this.server = server;
+
+		Thread thread = new Thread("Standby link " + tower.getName()) {
+			public void run() {
+				while(!server.isClosed()) {
+					try {
+						Follower follower = new Follower(server.accept(), Math.max(timeout / 4, 1));
+
+						// The snapshot and the follower registration happen
+						// under the tower lock: no change can be missed
+						tower.attachStandby(follower);
+						follower.start();
+					}
+					catch(IOException e) {
+						// Closed, or bad standby: ignore
+					}
+				}
+			}
+		};
+
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	/**
+	 * Retourne le port d'écoute, ou -1 si le lien n'accepte pas de tours de
+	 * secours.
+	 */
+	public synchronized int getPort() {
+		return (server == null) ? -1 : server.getLocalPort();
+	}
+
+	/**
+	 * Indique si au moins une tour de secours est connectée.
+	 */
+	public boolean hasFollowers() {
+		return !followers.isEmpty();
+	}
+
+	/**
+	 * Ajoute une tour de secours, après lui avoir envoyé l'état initial. Si
+	 * le lien a été fermé entre-temps, la tour de secours reçoit l'état
+	 * initial puis la fermeture.
+	 */
+	synchronized void addFollower(Follower follower) {
+		if(server == null) {
+			follower.queue(CLOSE);
+			return;
+		}
+
+		followers.add(follower);
+	}
+
+	/**
+	 * Publie l'état d'un avion à toutes les tours de secours.
+	 */
+	void publish(PlaneRecord record) {
+		for(Follower follower : followers) {
+			follower.queue(record);
+		}
+	}
+
+	/**
+	 * Publie la déconnexion d'un avion à toutes les tours de secours.
+	 */
+	void publishRemoval(RadioID id) {
+		for(Follower follower : followers) {
+			follower.queue(id);
+		}
+	}
+
+	// - - - Standby - - -
+
+	/**
+	 * Suit une tour principale. L'état reçu est transmis à la tour, qui prend
+	 * le relais à la perte du lien: fin du flux (tour principale arrêtée),
+	 * connexion réinitialisée, ou silence de plus de <code>timeout</code>
+	 * millisecondes. Un état illisible est ignoré, et une erreur du flux de
+	 * réplication arrête le suivi sans prise de relais.
+	 *
+	 * @param timeout
+	 *            Le silence, en millisecondes, après lequel la tour
+	 *            principale est considérée comme perdue.
+	 * @throws IOException
+	 *             Si la tour principale n'est pas joignable.
+	 */
+	public synchronized void follow(String host, int port, int timeout) throws IOException {
+		if(primary != null) {
+			throw new IOException("This tower already follows a primary tower");
+		}
+
+		final Socket socket = new Socket(host, port);
+		socket.setSoTimeout(timeout);
+		socket.setTcpNoDelay(true);
+		primary = socket;
+
+		final ObjectInputStream ois = new ObjectInputStream(socket.getInputStream());
+
+		Thread thread = new Thread("Standby " + tower.getName()) {
+			public void run() {
+				boolean lost = false;
+
+				try {
+					while(true) {
+						Object o;
+
+						try {
+							o = ois.readObject();
+						}
+						catch(ClassNotFoundException e) {
+							// The object has been read: the stream is
+							// still usable
+							tower.emitDebug("[STANDBY] Unreadable replica: " + e.getMessage());
+							continue;
+						}
+
+						if(o instanceof PlaneRecord) {
+							tower.receiveReplica((PlaneRecord) o);
+						}
+						else if(o instanceof RadioID) {
+							tower.receiveRemoval((RadioID) o);
+						}
+					}
+				}
+				catch(SocketTimeoutException e) {
+					// Silent primary
+					lost = true;
+				}
+				catch(EOFException e) {
+					// Closed primary
+					lost = true;
+				}
+				catch(SocketException e) {
+					// Reset by a dead primary, or closed by this tower
+					lost = !closed;
+				}
+				catch(Exception e) {
+					// Corrupted replication stream: the primary may still
+					// be alive, taking over could start a second primary
+					tower.emitDebug("[STANDBY] Replication stopped: " + e);
+				}
+
+				try {
+					socket.close();
+				}
+				catch(IOException e) {
+				}
+
+				if(lost && !closed) {
+					tower.takeOver();
+				}
+			}
+		};
+
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	/**
+	 * Ferme le lien: les tours de secours reçoivent les modifications en
+	 * attente puis la fermeture, et prennent le relais. Si cette tour est une
+	 * tour de secours, elle cesse de suivre la tour principale.
+	 */
+	public synchronized void close() {
+		closed = true;
+
+		if(primary != null) {
+			try {
+				primary.close();
+			}
+			catch(IOException e) {
+			}
+		}
+
+		if(server != null) {
+			try {
+				server.close();
+			}
+			catch(IOException e) {
+			}
+
+			server = null;
+		}
+
+		for(Follower follower : followers) {
+			follower.queue(CLOSE);
+		}
+
+		followers.clear();
+	}
+
+	// - - - Follower - - -
+
+	/**
+	 * Une tour de secours connectée: sa file d'envoi et le thread qui la
+	 * vide. Les objets en attente sont écrits à la suite et envoyés en un
+	 * seul paquet.
+	 */
+	class Follower extends Thread {
+		private final Socket socket;
+		private final ObjectOutputStream oos;
+		private final long heartbeat;
+
+		private final LinkedBlockingQueue<Object> queue = new LinkedBlockingQueue<Object>();
+
+		private Follower(Socket socket, long heartbeat) throws IOException {
+			super("Standby link " + tower.getName() + " " + socket.getRemoteSocketAddress());
+			setDaemon(true);
+
+			this.socket = socket;
+			this.heartbeat = heartbeat;
+
+			socket.setTcpNoDelay(true);
+			oos = new ObjectOutputStream(socket.getOutputStream());
+		}
+
+		void queue(Object o) {
+			queue.offer(o);
+		}
+
+		public void run() {
+			try {
+				while(true) {
+					Object o = queue.poll(heartbeat, TimeUnit.MILLISECONDS);
+
+					if(o == CLOSE) {
+						break;
+					}
+
+					// Nothing to send: null is the heartbeat
+					oos.writeObject(o);
+
+					if(queue.isEmpty()) {
+						oos.flush();
+
+						// Do not keep every sent record referenced by the
+						// stream
+						oos.reset();
+					}
+				}
+
+				oos.flush();
+			}
+			catch(Exception e) {
+				// Standby lost
+			}
+
+			followers.remove(this);
+
+			try {
+				socket.close();
+			}
+			catch(IOException e) {
+			}
+		}
+	}
+
+	// - - - Plane Record - - -
+
+	/**
+	 * L'état d'un avion répliqué vers les tours de secours: l'état transmis
+	 * entre secteurs, ainsi que la route assignée à l'avion par cette tour.
+	 */
+	@SuppressWarnings("serial")
+	public static class PlaneRecord extends SectorLink.Handoff {
+		private final int currentRoute;
+		private final boolean landing;
+		private final boolean queued;
+
+		/**
+		 * Copie l'état d'un avion.
+		 *
+		 * @param queued
+		 *            Si l'avion est dans la file d'attente.
+		 */
+		public PlaneRecord(TowerPlane plane, boolean queued) {
+			super(plane);
+
+			currentRoute = plane.getCurrentRoute();
+			landing = plane.isLanding();
+			this.queued = queued;
+		}
+
+		/**
+		 * Retourne la route assignée à l'avion, ou -1.
+		 */
+		public int getCurrentRoute() {
+			return currentRoute;
+		}
+
+		/**
+		 * Indique si l'avion était sur une route d'atterrissage.
+		 */
+		public boolean isLanding() {
+			return landing;
+		}
+
+		/**
+		 * Indique si l'avion était dans la file d'attente.
+		 */
+		public boolean isQueued() {
+			return queued;
+		}
+
+		/**
+		 * Applique cet état à l'avion reconnecté à la tour de secours.
+		 * L'avion doit être retiré de la file d'attente pendant cette
+		 * modification.
+		 */
+		void applyTo(TowerPlane plane) {
+			super.applyTo(plane);
+
+			plane.setCurrentRoute(currentRoute);
+
+			if(landing) {
+				plane.setLanding();
+			}
+		}
+	}
+}
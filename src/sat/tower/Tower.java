@@ -1,26 +1,41 @@
 package sat.tower;
 
-import java.io.BufferedReader;
-import java.io.FileReader;
 import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
-import java.util.TreeSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Timer;
+import java.util.TimerTask;
 
 import sat.DebugEvent;
 import sat.events.AsyncEventEmitter;
 import sat.events.Event;
 import sat.events.EventListener;
+import sat.events.metrics.EventMetrics;
 
 import sat.plane.PlaneType;
+import sat.radio.PlaneRegistry;
 import sat.radio.RadioDelegate;
 import sat.radio.RadioEvent;
 
 import sat.radio.RadioID;
 import sat.radio.engine.server.RadioServerEngine;
 import sat.radio.message.*;
+import sat.radio.record.EventLogReader;
+import sat.radio.record.EventLogWriter;
+import sat.radio.record.EventRecorder;
+import sat.radio.record.EventReplayer;
 import sat.radio.server.RadioServer;
+import sat.radio.server.RadioServer.PlaneAgent;
 import sat.utils.cli.Config;
 import sat.utils.crypto.RSAException;
 import sat.utils.crypto.RSAKeyPair;
@@ -31,15 +46,33 @@ import sat.utils.pftp.FileTransferDelegate;
 import sat.utils.routes.*;
 
 /**
- * Une tour de contrôle. Cette classe est un Singleton.
+ * Une tour de contrôle.
+ * <p>
+ * Plusieurs tours peuvent fonctionner dans la même JVM, chacune avec sa
+ * configuration, sa radio, sa clé et ses routes (par exemple une tour par
+ * secteur). Chaque tour a un nom unique sous lequel elle est enregistrée à sa
+ * création, et peut être retrouvée avec {@link #get(String)}.
  */
 public class Tower extends AsyncEventEmitter implements EventListener, RadioDelegate {
-	// - - - Singleton Tools - - -
+	// - - - Registry - - -
 
 	/**
-	 * L'instance unique de la classe Tower.
+	 * Le nom de la tour créée par <code>./sat tower</code>.
 	 */
-	private static Tower instance;
+	public static final String DEFAULT_NAME = "tower";
+
+	/**
+	 * Le délai avant de chercher à nouveau une piste pour un avion admis sur
+	 * les routes d'atterrissage alors que toutes les pistes sont pleines, en
+	 * millisecondes.
+	 */
+	private static final int RUNWAY_RETRY_DELAY = 1000;
+
+	/**
+	 * Les tours existantes, par nom, dans l'ordre de création. Sert aussi de
+	 * verrou pour l'initialisation de <code>defaults</code>.
+	 */
+	private static final LinkedHashMap<String, Tower> registry = new LinkedHashMap<String, Tower>();
 
 	/**
 	 * La configuration par défaut d'une tour. Sert de modèle à la contruction
@@ -57,23 +90,58 @@ public class Tower extends AsyncEventEmitter implements EventListener, RadioDele
 		defaults.setProperty("tower.prefix", "TWR");
 		defaults.setProperty("tower.downloads", "downloads/");
 		defaults.setProperty("tower.routing", "chronos");
+		defaults.setProperty("tower.routing.window", "50");
+		defaults.setProperty("tower.runway.separation", "10");
+		defaults.setProperty("tower.planner.budget", "20");
+		defaults.setProperty("tower.planner.period", "5000");
 		defaults.setProperty("tower.graveyard", "600,100,-1");
+		defaults.setProperty("tower.metrics", "no");
+		defaults.setProperty("tower.grid.cell", "100");
+		defaults.setProperty("tower.separation", "20");
+		defaults.setProperty("tower.conflict.horizon", "5");
+		defaults.setProperty("tower.congestion", "no");
+		defaults.setProperty("tower.congestion.period", "500");
+		defaults.setProperty("tower.congestion.queue", "1000");
+		defaults.setProperty("tower.congestion.lag", "500");
+		defaults.setProperty("tower.congestion.cpu", "0");
+		defaults.setProperty("tower.congestion.hold", "3000");
+		defaults.setProperty("tower.congestion.heaviest", "0");
+		defaults.setProperty("tower.sector", "");
+		defaults.setProperty("tower.handoff.timeout", "30000");
+		defaults.setProperty("tower.standby.timeout", "2000");
+		defaults.setProperty("tower.journal.snapshot", "10000");
 
 		defaults.setProperty("radio.ciphered", "yes");
 		defaults.setProperty("radio.legacy", "no");
 		defaults.setProperty("radio.keylength", "1024");
+		defaults.setProperty("radio.timeout", "5000");
+		defaults.setProperty("radio.timeout.legacy", "10000");
 	}
 
 	/**
-	 * Constructeur privé. Impossible de créer une instance de cette classe
-	 * directement. Utiliser <code>Tower.getInstance()</code> pour obtenir
-	 * l'instance-unique de la tour.
+	 * Crée une nouvelle tour et l'enregistre sous le nom donné.
+	 * 
+	 * @param name
+	 *            Le nom de la tour, unique dans la JVM.
+	 * @throws IllegalArgumentException
+	 *             Si une tour de ce nom existe déjà.
 	 */
-	private Tower() {
-		config = new Config(defaults);
+	public Tower(String name) {
+		synchronized(registry) {
+			if(defaults == null) {
+				initDefaults();
+			}
+
+			config = new Config(defaults);
+		}
+
+		this.name = name;
+
+		setMetrics(new EventMetrics(), "tower");
 
 		dataDispatcher = new FileTransferAgentDispatcher(new FileTransferDelegate() {
 			public void planeIdentified(RadioID id, PlaneType type) {
+				identifyPlane(id, type);
 				emit(new TowerEvent.PlaneIdentified(id, type));
 			}
 
@@ -89,25 +157,43 @@ public class Tower extends AsyncEventEmitter implements EventListener, RadioDele
 				emit(new TowerEvent.TransferComplete(path));
 			}
 		});
+
+		synchronized(registry) {
+			if(registry.containsKey(name)) {
+				throw new IllegalArgumentException("A tower named " + name + " already exists");
+			}
+
+			registry.put(name, this);
+		}
 	}
 
 	/**
-	 * Retourne l'unique instance de la classe Tower. Si cette instance n'existe
-	 * pas encore, elle est automatiquement créée.
+	 * Retourne la tour enregistrée sous un nom.
 	 * 
-	 * @return L'instance unique de la classe Tower.
+	 * @return La tour, ou <code>null</code> si aucune tour ne porte ce nom.
 	 */
-	public static Tower getInstance() {
-		if(instance == null) {
-			initDefaults();
-			instance = new Tower();
+	public static Tower get(String name) {
+		synchronized(registry) {
+			return registry.get(name);
 		}
+	}
 
-		return instance;
+	/**
+	 * Retourne toutes les tours existantes, dans l'ordre de création.
+	 */
+	public static ArrayList<Tower> getTowers() {
+		synchronized(registry) {
+			return new ArrayList<Tower>(registry.values());
+		}
 	}
 
 	// - - - Class methods - - -
 
+	/**
+	 * Le nom de la tour dans le registre.
+	 */
+	private final String name;
+
 	/**
 	 * Le serveur-radio de la tour. Le serveur radio est chargé de toute la
 	 * gestion technique de la communication avec le monde extérieur.
@@ -115,8 +201,7 @@ public class Tower extends AsyncEventEmitter implements EventListener, RadioDele
 	private RadioServer radio = null;
 
 	/**
-	 * La configuration spécifique à une instance de la tour (même si en
-	 * pratique, la tour est un singleton).
+	 * La configuration spécifique à cette tour.
 	 */
 	private Config config;
 
@@ -141,9 +226,41 @@ public class Tower extends AsyncEventEmitter implements EventListener, RadioDele
 	private FileTransferAgentDispatcher dataDispatcher;
 
 	/**
-	 * Avions connectés à cette tour.
+	 * Avions connectés à cette tour. Leurs emplacements indexent la table
+	 * <code>states</code>.
+	 * <p>
+	 * Ce registre est distinct de celui des gestionnaires de la radio: la
+	 * tour suit aussi des avions sans gestionnaire (rejeu d'un journal,
+	 * avions repris d'une tour principale), et n'apprend les connexions
+	 * qu'à la distribution asynchrone des événements de la radio, après que
+	 * l'emplacement radio a pu être réattribué. Les deux numérotations sont
+	 * donc indépendantes; le gestionnaire et l'avion de la tour sont reliés
+	 * directement (<code>PlaneAgent.attach()</code>,
+	 * <code>TowerPlane.getAgent()</code>).
+	 */
+	private PlaneRegistry<TowerPlane> planes = new PlaneRegistry<TowerPlane>();
+
+	/**
+	 * L'état des avions connectés (position, boucle, routage), indexé par
+	 * leur emplacement dans <code>planes</code>.
+	 */
+	private PlaneStateTable states = new PlaneStateTable();
+
+	/**
+	 * Index spatial des positions des avions connectés, indexé par leur
+	 * emplacement dans <code>planes</code>.
+	 */
+	private SpatialIndex grid = new SpatialIndex(100, 4096);
+
+	/**
+	 * Le détecteur de conflits entre avions.
 	 */
-	private HashMap<RadioID, TowerPlane> planes = new HashMap<RadioID, TowerPlane>();
+	private ConflictDetector detector = new ConflictDetector(planes, grid);
+
+	/**
+	 * Tampon des événements de conflit, réutilisé à chaque position reçue.
+	 */
+	private ArrayList<TowerEvent> conflictEvents = new ArrayList<TowerEvent>();
 
 	/**
 	 * Liste des routes (circuits d'attente et piste d'atterissage)
@@ -151,91 +268,250 @@ public class Tower extends AsyncEventEmitter implements EventListener, RadioDele
 	private ArrayList<Route> routes = new ArrayList<Route>();
 
 	/**
-	 * Charge un fichier de route, le lit, le parse et ajoute une route à
+	 * Les messages de routage pré-encodés de chaque route, dans l'ordre de
 	 * <code>routes</code>.
-	 * 
-	 * @param path
-	 *            Le fichier contenant la route.
-	 * @param capacity
-	 *            Le nombre d'avion maximum sur la route.
-	 * @throws Exception
 	 */
-	public void loadRoute(String path, int capacity) throws Exception {
-		StringBuffer fileData = new StringBuffer();
-		BufferedReader reader = new BufferedReader(new FileReader(path));
+	private ArrayList<MessageRoutingBatch.Template> templates = new ArrayList<MessageRoutingBatch.Template>();
 
-		char[] buf = new char[1024];
-		int numRead = 0;
+	/**
+	 * La géométrie de chaque route, dans l'ordre de <code>routes</code>.
+	 */
+	private ArrayList<RouteGeometry> geometries = new ArrayList<RouteGeometry>();
 
-		while((numRead = reader.read(buf)) > 0) {
-			String readData = String.valueOf(buf, 0, numRead);
-			fileData.append(readData);
-		}
+	/**
+	 * Les index des circuits d'attente dans <code>routes</code>. Dans la file
+	 * d'attente, toutes les routes d'atterrissage forment la première route,
+	 * suivie des circuits d'attente dans cet ordre.
+	 */
+	private ArrayList<Integer> holdingRoutes = new ArrayList<Integer>();
 
-		reader.close();
-		String data = fileData.toString();
+	/**
+	 * La route vers le cimetière et ses messages pré-encodés, reconstruits
+	 * lorsque la clé <code>tower.graveyard</code> change.
+	 */
+	private Route graveyard;
+	private MessageRoutingBatch.Template graveyardTemplate;
+	private String graveyardKey;
 
-		Route route = new Route(capacity);
+	/**
+	 * La file d'attente d'atterrissage, qui assigne une route à chaque avion
+	 * ayant demandé à atterrir.
+	 */
+	private LandingQueue landingQueue = new LandingQueue(RoutingMode.CHRONOS);
 
-		for(String instruction : data.split(";")) {
-			if(instruction.matches("\\s*")) {
-				continue;
-			}
+	/**
+	 * Les pistes: estimation des temps d'arrivée (mode de routage SLOT) et
+	 * répartition des avions entre les routes d'atterrissage.
+	 */
+	private SlotScheduler scheduler = new SlotScheduler();
 
-			char t = instruction.toUpperCase().charAt(0);
-			String[] coords = instruction.substring(1).split(",");
-			float[] floatCoords = new float[coords.length];
+	/**
+	 * Tampon des avions déplacés par une nouvelle estimation de leur temps
+	 * d'arrivée, réutilisé à chaque position reçue.
+	 */
+	private ArrayList<TowerPlane> rescheduled = new ArrayList<TowerPlane>();
 
-			for(int i = 0; i < coords.length; i++) {
-				floatCoords[i] = Float.parseFloat(coords[i]);
-			}
+	/**
+	 * Le planificateur qui évalue les modes de routage, créé à la première
+	 * évaluation.
+	 */
+	private RoutingPlanner planner;
 
-			MoveType type;
-			float[] args;
+	/**
+	 * L'heure de la dernière sélection automatique du mode de routage.
+	 */
+	private long lastPlanTime = 0;
 
-			switch(t) {
-				case 'S':
-					type = MoveType.STRAIGHT;
-					args = new float[] { floatCoords[0], floatCoords[1], -1 };
-					break;
+	/**
+	 * Indique si une sélection automatique du mode de routage est en cours
+	 * d'évaluation sur le pool du planificateur.
+	 */
+	private boolean planning = false;
 
-				case 'C':
-					type = MoveType.CIRCULAR;
-					args = new float[] { floatCoords[0], floatCoords[1], -1, floatCoords[2] };
-					break;
+	/**
+	 * La valeur du paramètre <code>tower.routing</code> correspondant au mode
+	 * actuel de la file d'attente.
+	 */
+	private String routingModeRaw;
 
-				case 'L':
-					type = MoveType.LANDING;
-					args = new float[] { floatCoords[0], floatCoords[1], -1 };
-					route.setLanding();
-					break;
+	/**
+	 * Avions déplacés dans la file d'attente depuis le dernier envoi des
+	 * routes.
+	 */
+	private ArrayList<TowerPlane> pendingRouting = new ArrayList<TowerPlane>();
 
-				case 'N':
-					type = MoveType.NONE;
-					args = new float[] {};
-					break;
+	/**
+	 * Indique si un envoi différé des routes est planifié.
+	 */
+	private boolean routingScheduled = false;
 
-				case 'D':
-					type = MoveType.DESTRUCTION;
-					args = new float[] { floatCoords[0], floatCoords[1], -1 };
-					break;
+	/**
+	 * Le timer utilisé pour différer l'envoi des routes.
+	 */
+	private Timer routingTimer;
 
-				default:
-					continue;
+	/**
+	 * Le contrôleur de congestion.
+	 */
+	private CongestionController congestion = new CongestionController();
+
+	/**
+	 * Le timer d'échantillonnage de la charge, si le contrôle de congestion
+	 * est actif.
+	 */
+	private Timer congestionTimer;
+
+	/**
+	 * Pourcentage des avions étouffés en cas de congestion, les plus actifs
+	 * en premier. 0 étouffe tous les avions.
+	 */
+	private int congestionHeaviest = 0;
+
+	/**
+	 * Les avions étouffés par le contrôleur de congestion, ou
+	 * <code>null</code> s'ils l'ont tous été.
+	 */
+	private ArrayList<PlaneAgent> autoChoked;
+
+	/**
+	 * L'enregistreur des événements de la radio, s'il est actif.
+	 */
+	private EventRecorder recorder;
+
+	/**
+	 * Le secteur de la tour, ou <code>null</code> si la tour contrôle tout
+	 * l'espace aérien.
+	 */
+	private Sector sector;
+
+	/**
+	 * Le lien avec les tours des secteurs voisins.
+	 */
+	private SectorLink link = new SectorLink(this);
+
+	/**
+	 * Les avions confiés par une tour voisine et pas encore connectés, dans
+	 * l'ordre de réception.
+	 */
+	private LinkedHashMap<RadioID, SectorLink.Handoff> pendingHandoffs = new LinkedHashMap<RadioID, SectorLink.Handoff>();
+
+	/**
+	 * Le lien de réplication vers les tours de secours, ou depuis la tour
+	 * principale.
+	 */
+	private StandbyLink standby = new StandbyLink(this);
+
+	/**
+	 * L'état des avions répliqué depuis la tour principale, appliqué à leur
+	 * reconnexion après la prise de relais.
+	 */
+	private HashMap<RadioID, StandbyLink.PlaneRecord> replicas = new HashMap<RadioID, StandbyLink.PlaneRecord>();
+
+	/**
+	 * Le moteur de radio démarré à la prise de relais.
+	 */
+	private RadioServerEngine takeOverEngine;
+
+	/**
+	 * La durée de la prise de relais en nanosecondes, ou -1 si cette tour n'a
+	 * pas pris le relais d'une tour principale.
+	 */
+	private volatile long failoverTime = -1;
+
+	/**
+	 * Indique si la tour a été arrêtée par <code>shutdown()</code>.
+	 */
+	private volatile boolean stopped = false;
+
+	/**
+	 * Le journal de l'état de la tour, s'il est ouvert.
+	 */
+	private TowerJournal journal;
+
+	/**
+	 * Charge un fichier de route, le lit, le parse et ajoute une route à
+	 * <code>routes</code>.
+	 * 
+	 * @param path
+	 *            Le fichier contenant la route.
+	 * @param capacity
+	 *            Le nombre d'avion maximum sur la route.
+	 * @throws Exception
+	 */
+	public void loadRoute(String path, int capacity) throws Exception {
+		Route route = RouteParser.parse(path, capacity);
+		addRoute(route, new RouteGeometry(route));
+	}
+
+	/**
+	 * Ajoute une route déjà construite, par exemple avec
+	 * {@link RouteParser#parseString(String, int)}.
+	 * 
+	 * @throws IOException
+	 *             Si la route ne peut pas être encodée.
+	 */
+	public void addRoute(Route route) throws IOException {
+		addRoute(route, new RouteGeometry(route));
+	}
+
+	/**
+	 * Charge toutes les routes d'un catalogue compilé (voir
+	 * {@link RouteCatalog}).
+	 * 
+	 * @param path
+	 *            Le fichier du catalogue.
+	 * @throws Exception
+	 *             Si le catalogue est invalide ou si le fichier source d'une
+	 *             de ses routes a changé depuis sa compilation.
+	 */
+	public void loadCatalog(String path) throws Exception {
+		RouteCatalog catalog = new RouteCatalog(path);
+
+		for(int i = 0; i < catalog.size(); i++) {
+			if(catalog.isStale(i)) {
+				throw new Exception("Route " + catalog.getSource(i) + " has changed since the catalog was compiled.");
 			}
+		}
 
-			route.add(new Waypoint(type, args));
+		for(int i = 0; i < catalog.size(); i++) {
+			addRoute(catalog.getRoute(i), catalog.getGeometry(i));
 		}
+	}
 
+	/**
+	 * Ajoute une route à <code>routes</code> et met à jour le routage.
+	 */
+	private synchronized void addRoute(Route route, RouteGeometry geometry) throws IOException {
 		if(route.isLanding()) {
-			for(Route otherRoute : routes) {
-				if(!otherRoute.isLanding()) {
-					throw new Exception("Cannot load a landing route when a not-landing route is already loaded.");
-				}
-			}
+			scheduler.addRunway(routes.size(), geometry, route.getCapacity());
+		}
+		else {
+			holdingRoutes.add(routes.size());
 		}
 
+		templates.add(new MessageRoutingBatch.Template(route));
+		geometries.add(geometry);
 		routes.add(route);
+
+		if(journal != null) {
+			journal.appendRoute(route);
+		}
+
+		refreshRouting();
+	}
+
+	/**
+	 * Retourne la géométrie pré-calculée d'une route chargée.
+	 */
+	public synchronized RouteGeometry getGeometry(int route) {
+		return geometries.get(route);
+	}
+
+	/**
+	 * Retourne le nom de la tour dans le registre.
+	 */
+	public String getName() {
+		return name;
 	}
 
 	/**
@@ -245,6 +521,19 @@ public class Tower extends AsyncEventEmitter implements EventListener, RadioDele
 		return config;
 	}
 
+	/**
+	 * Modifie une clé de configuration. Contrairement à une modification
+	 * directe de <code>getConfig()</code>, la modification est conservée par
+	 * le journal.
+	 */
+	public synchronized void setConfig(String key, String value) {
+		config.setProperty(key, value);
+
+		if(journal != null) {
+			journal.appendConfig(key, value);
+		}
+	}
+
 	public void choke() {
 		radio.sendChoke();
 	}
@@ -253,6 +542,37 @@ public class Tower extends AsyncEventEmitter implements EventListener, RadioDele
 		radio.sendUnchoke();
 	}
 
+	/**
+	 * Envoie un message Choke aux avions situés dans une région.
+	 *
+	 * @return Le nombre d'avions concernés.
+	 * @see #getAgentsNear(float, float, float, PlaneFilter)
+	 */
+	public int choke(float x, float y, float radius, PlaneFilter filter) {
+		return radio.sendChoke(getAgentsNear(x, y, radius, filter));
+	}
+
+	/**
+	 * Envoie un message Unchoke aux avions situés dans une région.
+	 *
+	 * @return Le nombre d'avions concernés.
+	 * @see #getAgentsNear(float, float, float, PlaneFilter)
+	 */
+	public int unchoke(float x, float y, float radius, PlaneFilter filter) {
+		return radio.sendUnchoke(getAgentsNear(x, y, radius, filter));
+	}
+
+	/**
+	 * Envoie un message aux avions situés dans une région. Le message n'est
+	 * encodé qu'une fois.
+	 *
+	 * @return Le nombre d'avions concernés.
+	 * @see #getAgentsNear(float, float, float, PlaneFilter)
+	 */
+	public int broadcast(Message m, float x, float y, float radius, PlaneFilter filter) {
+		return radio.broadcast(m, getAgentsNear(x, y, radius, filter));
+	}
+
 	/**
 	 * Initialise la tour de contrôle en fonction de paramètre de configuration
 	 * actifs à ce moment.
@@ -267,170 +587,1272 @@ public class Tower extends AsyncEventEmitter implements EventListener, RadioDele
 
 		// Radio
 		radio = new RadioServer(this, id);
+		radio.setMetrics(metrics, "radio");
 		radio.addListener(this);
 
+		metrics.setEnabled(config.getBoolean("tower.metrics"));
+		grid.setCellSize(config.getInt("tower.grid.cell"));
+		detector.setLimits(config.getInt("tower.separation"), config.getInt("tower.conflict.horizon"));
+		sector = Sector.parse(config.getString("tower.sector"));
+
 		radio.setCiphered(config.getBoolean("radio.ciphered"));
 		radio.setLegacy(config.getBoolean("radio.legacy"));
+		radio.setTimeout(config.getInt("radio.timeout"));
+		radio.setLegacyTimeout(config.getInt("radio.timeout.legacy"));
 
-		initDone = true;
-	}
+		if(config.getBoolean("tower.congestion")) {
+			startCongestionControl();
+		}
 
-	/**
-	 * Ajoute un moteur de radio à la radio de la tour et l'initialise.
-	 * 
-	 * @param engine
-	 *            Le moteur de radio à ajouter.
-	 * 
-	 * @throws IOException
-	 *             L'initilisation du moteur peut provoquer une
-	 *             <code>IOException</code> qui est passée au code appelant.
-	 */
-	public void listen(RadioServerEngine engine) throws IOException {
-		radio.listen(engine);
+		initDone = true;
 	}
 
 	/**
-	 * Actualise les routes des avions et les notifie des éventuels changement.
+	 * Retire la tour du registre et arrête ses tâches périodiques (envoi
+	 * différé des routes, contrôle de congestion, planificateur). Les
+	 * moteurs de la radio restent actifs.
 	 */
-	public void refreshRouting() {
-		String routingModeRaw = config.getString("tower.routing").toLowerCase();
+	public void shutdown() {
+		// The journal writer may need the tower lock for a snapshot
+		try {
+			closeJournal();
+		}
+		catch(IOException e) {
+			emitDebug("[JOURNAL] " + e.getMessage());
+		}
 
-		emitDebug("[ROUTING] Refreshing routes");
+		synchronized(this) {
+			stop();
+		}
+	}
 
-		final RoutingMode routingMode;
+	private void stop() {
+		stopped = true;
 
-		if(routingModeRaw.equals("fuel")) {
-			routingMode = RoutingMode.FUEL;
-		}
-		else if(routingModeRaw.equals("time")) {
-			routingMode = RoutingMode.TIME;
+		synchronized(registry) {
+			if(registry.get(name) == this) {
+				registry.remove(name);
+			}
 		}
-		else {
-			routingMode = RoutingMode.CHRONOS;
+
+		if(routingTimer != null) {
+			routingTimer.cancel();
+			routingTimer = null;
 		}
 
-		emitDebug("[ROUTING] Route mode is " + routingMode);
+		if(congestionTimer != null) {
+			congestionTimer.cancel();
+			congestionTimer = null;
+		}
 
-		TreeSet<TowerPlane> planes = new TreeSet<TowerPlane>(new Comparator<TowerPlane>() {
-			public int compare(TowerPlane p1, TowerPlane p2) {
-				if(p1.isLanding() != p2.isLanding()) {
-					return (p1.isLanding()) ? -1 : 1;
-				}
-				else if(p1.isMayDay() != p2.isMayDay()) {
-					return (p1.isMayDay()) ? -1 : 1;
-				}
-				else {
-					RoutingMode localRoutingMode = routingMode;
+		if(planner != null) {
+			planner.shutdown();
+			planner = null;
+		}
 
-					if(p1.getType() == null && p2.getType() == null) {
-						localRoutingMode = RoutingMode.CHRONOS;
-					}
-					else if(p1.getType() == null || p2.getType() == null) {
-						return (p1.getType() == null) ? 1 : -1;
-					}
-					else if(p1.isMayDay()) { // and p2.isMayDay()
-						if(p1.getType().passengers == p2.getType().passengers) {
-							localRoutingMode = RoutingMode.CHRONOS; // Saving passengers
-						}
-						else {
-							localRoutingMode = RoutingMode.TIME; // Saving passengers
-						}
-					}
+		link.close();
+		standby.close();
+	}
 
-					switch(localRoutingMode) {
-						case FUEL:
-							return (p1.getType().consumption > p2.getType().consumption) ? -1 : 1;
+	/**
+	 * Démarre l'échantillonnage périodique de la charge de la tour. Les avions
+	 * sont étouffés automatiquement lorsqu'un seuil est dépassé et libérés
+	 * lorsque la charge est redescendue.
+	 */
+	private void startCongestionControl() {
+		congestion.setThresholds(config.getInt("tower.congestion.queue"), config.getInt("tower.congestion.lag"), config.getInt("tower.congestion.cpu") / 100f, config.getInt("tower.congestion.hold"));
+		congestionHeaviest = config.getInt("tower.congestion.heaviest");
 
-						case TIME:
-							return (p1.getType().passengers > p2.getType().passengers) ? -1 : 1;
+		final OperatingSystemMXBean os = ManagementFactory.getOperatingSystemMXBean();
+		final com.sun.management.OperatingSystemMXBean process = getProcessCpuBean(os);
 
-						default: // CHRONOS
-							return (p1.getLandingID() < p2.getLandingID()) ? -1 : 1;
-					}
-				}
+		congestionTimer = new Timer("Tower congestion", true);
+		congestionTimer.scheduleAtFixedRate(new TimerTask() {
+			public void run() {
+				sampleCongestion(System.currentTimeMillis(), sampleCpu(os, process));
 			}
-		});
+		}, 0, Math.max(config.getInt("tower.congestion.period"), 10));
+	}
 
-		// Add planes to waiting list
-		for(TowerPlane plane : this.planes.values()) {
-			// We ignore plane without landing requested
-			if(plane.getLandingID() != -1) {
-				planes.add(plane);
+	/**
+	 * Retourne l'interface de la JVM donnant l'utilisation processeur du
+	 * processus, ou <code>null</code> si elle n'est pas disponible.
+	 */
+	private static com.sun.management.OperatingSystemMXBean getProcessCpuBean(OperatingSystemMXBean os) {
+		try {
+			if(os instanceof com.sun.management.OperatingSystemMXBean) {
+				return (com.sun.management.OperatingSystemMXBean) os;
 			}
 		}
+		catch(NoClassDefFoundError e) {
+			// Not a HotSpot-compatible JVM
+		}
 
-		emitDebug("[ROUTING] Step 1/2, done");
+		return null;
+	}
 
-		int currentRoute = 0;
-		int planesAssigned = 0;
+	/**
+	 * Mesure l'utilisation processeur du processus depuis l'échantillon
+	 * précédent, entre 0 et 1. A défaut, la charge moyenne du système sur une
+	 * minute par processeur est utilisée: elle réagit bien plus lentement.
+	 *
+	 * @return L'utilisation processeur, ou -1 si elle n'est pas connue.
+	 */
+	private static float sampleCpu(OperatingSystemMXBean os, com.sun.management.OperatingSystemMXBean process) {
+		if(process != null) {
+			double load = process.getProcessCpuLoad();
 
-		// Assign routes
-		for(TowerPlane plane : planes) {
-			if(currentRoute >= routes.size()) {
-				currentRoute = -1;
+			if(load >= 0) {
+				return (float) load;
 			}
+		}
 
-			if(plane.getCurrentRoute() != currentRoute) {
-				if(currentRoute < 0) {
-					Route highwayToHell = new Route();
+		double load = os.getSystemLoadAverage();
+		return (load < 0) ? -1 : (float) (load / os.getAvailableProcessors());
+	}
 
-					try {
-						highwayToHell.add(new Waypoint(MoveType.DESTRUCTION, Coordinates.parseCoordinates(config.getProperty("tower.graveyard")).toFloats()));
-					}
-					catch(InvalidCoordinatesException e) {
-						radio.kick(plane.getID());
-						continue;
-					}
+	/**
+	 * Traite un échantillon de charge et applique la décision du contrôleur.
+	 */
+	private void sampleCongestion(long now, float cpu) {
+		radio.sampleSendRates();
+
+		int depth = Math.max(radio.getQueueDepth(), getQueueDepth());
+		long lag = Math.max(radio.getDispatchLag(), getDispatchLag()) / 1000000;
+
+		int count;
+
+		switch(congestion.update(now, depth, lag, cpu)) {
+			case CHOKE:
+				if(congestionHeaviest > 0) {
+					int heaviest = (int) Math.ceil(radio.getAgentsCount() * congestionHeaviest / 100.0);
 
-					defineRoute(plane, highwayToHell, true);
+					autoChoked = radio.getHeaviestSenders(heaviest);
+					count = radio.sendChoke(autoChoked);
 				}
 				else {
-					try {
-						defineRoute(plane, routes.get(currentRoute), true);
-					}
-					catch(Exception e) {
-						e.printStackTrace();
-					}
+					autoChoked = null;
+					count = radio.getAgentsCount();
+					radio.sendChoke();
 				}
 
-				plane.setCurrentRoute(currentRoute);
-			}
+				emit(new TowerEvent.CongestionChoked(congestion.getReason(), depth, lag, count));
+				break;
+
+			case UNCHOKE:
+				if(autoChoked != null) {
+					count = radio.sendUnchoke(autoChoked);
+					autoChoked = null;
+				}
+				else {
+					count = radio.getAgentsCount();
+					radio.sendUnchoke();
+				}
 
-			planesAssigned++;
+				emit(new TowerEvent.CongestionUnchoked(count));
+				break;
 
-			if(currentRoute != -1 && planesAssigned >= routes.get(currentRoute).getCapacity()) {
-				currentRoute++;
-				planesAssigned = 0;
-			}
+			default:
+				break;
 		}
-
-		emitDebug("[ROUTING] Step 2/2, done");
 	}
 
 	/**
-	 * Défini la route d'un avion en lui envoyant les instructions de routage
-	 * appropriées.
+	 * Indique si le contrôleur de congestion a actuellement étouffé des
+	 * avions.
 	 */
-	private void defineRoute(TowerPlane plane, Route route, boolean replace) {
-		RadioID id = plane.getID();
+	public boolean isCongested() {
+		return congestion.isCongested();
+	}
+
+	/**
+	 * Démarre l'enregistrement des événements de la radio (connexions,
+	 * déconnexions et messages reçus) dans un journal binaire. La tour doit
+	 * être initialisée.
+	 * 
+	 * @param path
+	 *            Le dossier du journal, qui ne doit pas déjà contenir de
+	 *            journal.
+	 * 
+	 * @throws IOException
+	 *             Si le journal ne peut pas être créé.
+	 */
+	public synchronized void startRecording(String path) throws IOException {
+		stopRecording();
+
+		recorder = new EventRecorder(new EventLogWriter(path));
+		radio.addListener(recorder);
+	}
+
+	/**
+	 * Arrête l'enregistrement en cours, s'il y en a un.
+	 * 
+	 * @throws IOException
+	 *             Si la fermeture du journal a échoué.
+	 */
+	public synchronized void stopRecording() throws IOException {
+		if(recorder == null) {
+			return;
+		}
+
+		radio.removeListener(recorder);
+		recorder.close();
+		recorder = null;
+	}
+
+	/**
+	 * Rejoue un journal enregistré avec <code>startRecording()</code> comme
+	 * si les événements provenaient de la radio de cette tour. Le rejeu
+	 * s'execute dans son propre thread, déjà démarré au retour de cette
+	 * méthode.
+	 * 
+	 * @param path
+	 *            Le dossier du journal.
+	 * @param speed
+	 *            Facteur de vitesse par rapport au temps réel, 0 pour rejouer
+	 *            aussi vite que possible.
+	 * 
+	 * @throws IOException
+	 *             Si le journal ne peut pas être ouvert.
+	 */
+	public EventReplayer replay(String path, float speed) throws IOException {
+		init();
+
+		EventReplayer replayer = new EventReplayer(new EventLogReader(path), this, radio, speed);
+		replayer.start();
+
+		return replayer;
+	}
+
+	/**
+	 * Ajoute un moteur de radio à la radio de la tour et l'initialise.
+	 * 
+	 * @param engine
+	 *            Le moteur de radio à ajouter.
+	 * 
+	 * @throws IOException
+	 *             L'initilisation du moteur peut provoquer une
+	 *             <code>IOException</code> qui est passée au code appelant.
+	 */
+	public void listen(RadioServerEngine engine) throws IOException {
+		radio.listen(engine);
+	}
+
+	// - - - Sectors - - -
+
+	/**
+	 * Démarre la réception des avions confiés par les tours des secteurs
+	 * voisins (voir {@link SectorLink}).
+	 * 
+	 * @param port
+	 *            Le port d'écoute, 0 pour un port libre quelconque.
+	 * @throws IOException
+	 *             Si le port ne peut pas être ouvert.
+	 */
+	public void listenLink(int port) throws IOException {
+		link.listen(port);
+	}
+
+	/**
+	 * Retourne le port de réception des avions confiés par les tours
+	 * voisines, ou -1 s'il n'est pas ouvert.
+	 */
+	public int getLinkPort() {
+		return link.getPort();
+	}
+
+	/**
+	 * Déclare le secteur d'une tour voisine. Les avions qui y entrent lui
+	 * sont confiés.
+	 * 
+	 * @param host
+	 *            L'adresse de la tour voisine.
+	 * @param radioPort
+	 *            Le port de sa radio, transmis aux avions.
+	 * @param linkPort
+	 *            Le port de son lien, pour lui transmettre l'état des avions.
+	 */
+	public void addNeighbour(Sector sector, String host, int radioPort, int linkPort) {
+		link.addNeighbour(new SectorLink.Neighbour(sector, host, radioPort, linkPort));
+	}
+
+	/**
+	 * Retourne un avion connecté à cette tour.
+	 * 
+	 * @return L'avion, ou <code>null</code> s'il n'est pas connecté.
+	 */
+	public TowerPlane getPlane(RadioID id) {
+		return planes.get(id);
+	}
+
+	/**
+	 * Confie un avion à la tour voisine si sa position est sortie du secteur
+	 * de cette tour. Seuls les avions du protocole étendu, qui comprennent le
+	 * message Redirect, peuvent être confiés. Un avion déjà sur la route
+	 * d'atterrissage reste sous le contrôle de cette tour jusqu'à la piste.
+	 */
+	private void checkHandoff(TowerPlane plane, float x, float y) {
+		if(sector == null || sector.contains(x, y) || plane.isLanding()) {
+			return;
+		}
+
+		PlaneAgent agent = plane.getAgent();
+
+		if(agent == null || !agent.isExtended() || states.hasFlag(plane.getSlot(), PlaneStateTable.HANDED_OFF)) {
+			return;
+		}
+
+		SectorLink.Neighbour neighbour = link.getNeighbour(x, y);
+
+		if(neighbour == null) {
+			return;
+		}
+
+		// The state is sent by the neighbour's own thread, the plane is
+		// redirected once its state has been sent (handoffDone)
+		if(neighbour.handOff(plane)) {
+			states.setFlag(plane.getSlot(), PlaneStateTable.HANDED_OFF, true);
+		}
+	}
+
+	/**
+	 * Termine le transfert d'un avion après l'envoi de son état à la tour
+	 * voisine: l'avion est redirigé vers elle, ou reste sous le contrôle de
+	 * cette tour si l'envoi a échoué. Appelé par le thread d'envoi du voisin.
+	 *
+	 * @param error
+	 *            L'erreur d'envoi, ou <code>null</code> si l'état a été
+	 *            transmis.
+	 */
+	synchronized void handoffDone(TowerPlane plane, SectorLink.Neighbour neighbour, IOException error) {
+		// Disconnected in the meantime
+		if(planes.get(plane.getID()) != plane) {
+			return;
+		}
+
+		if(error != null) {
+			states.setFlag(plane.getSlot(), PlaneStateTable.HANDED_OFF, false);
+			emitDebug("[SECTOR] Cannot hand " + plane.getID() + " off to " + neighbour + ": " + error.getMessage());
+			return;
+		}
+
+		PlaneAgent agent = plane.getAgent();
+
+		if(agent != null) {
+			agent.send(new MessageRedirect(plane.getID(), getLocation(), neighbour.getHost(), neighbour.getRadioPort()));
+		}
+
+		metrics.count("handoff.sent", 1);
+		emitDebug("[SECTOR] " + plane.getID() + " handed off to " + neighbour);
+	}
+
+	/**
+	 * Reçoit l'état d'un avion confié par une tour voisine. L'état est
+	 * appliqué dès que l'avion est connecté à cette tour, et oublié s'il ne
+	 * s'y connecte pas dans les <code>tower.handoff.timeout</code>
+	 * millisecondes.
+	 */
+	synchronized void receiveHandoff(SectorLink.Handoff handoff) {
+		long now = System.currentTimeMillis();
+		long timeout = config.getInt("tower.handoff.timeout");
+
+		Iterator<SectorLink.Handoff> it = pendingHandoffs.values().iterator();
+		while(it.hasNext() && now - it.next().getReceived() > timeout) {
+			it.remove();
+		}
+
+		metrics.count("handoff.received", 1);
+
+		TowerPlane plane = planes.get(handoff.getID());
+
+		if(plane != null) {
+			applyHandoff(plane, handoff);
+			return;
+		}
+
+		handoff.setReceived(now);
+		pendingHandoffs.remove(handoff.getID());
+		pendingHandoffs.put(handoff.getID(), handoff);
+	}
+
+	/**
+	 * Applique l'état transmis par une tour voisine à un avion connecté, qui
+	 * retrouve sa place dans la file d'attente.
+	 */
+	private void applyHandoff(TowerPlane plane, SectorLink.Handoff handoff) {
+		ArrayList<TowerPlane> changed = new ArrayList<TowerPlane>();
+
+		boolean queued = landingQueue.contains(plane);
+		landingQueue.remove(plane, changed);
+		handoff.applyTo(plane);
+		plane.setTimeToRunway(estimateTimeToRunway(plane));
+		states.store(plane);
+
+		if(queued || handoff.isLandingRequested()) {
+			landingQueue.add(plane, changed);
+		}
+
+		emitDebug("[SECTOR] " + plane.getID() + " taken over from a neighbour");
+		replicate(plane);
+		requestRouting(changed, false);
+	}
+
+	// - - - Standby - - -
+
+	/**
+	 * Accepte les tours de secours, qui reçoivent l'état des avions de cette
+	 * tour (voir {@link StandbyLink}).
+	 * 
+	 * @param port
+	 *            Le port d'écoute, 0 pour un port libre quelconque.
+	 * @throws IOException
+	 *             Si le port ne peut pas être ouvert.
+	 */
+	public void replicate(int port) throws IOException {
+		standby.serve(port, config.getInt("tower.standby.timeout"));
+	}
+
+	/**
+	 * Retourne le port accepté par les tours de secours, ou -1.
+	 */
+	public int getStandbyPort() {
+		return standby.getPort();
+	}
+
+	/**
+	 * Fait de cette tour la tour de secours d'une tour principale. L'état
+	 * des avions est répliqué en mémoire; à la perte de la tour principale,
+	 * cette tour démarre le moteur de radio donné et reprend les avions qui
+	 * s'y reconnectent avec leur ticket d'atterrissage et leur route.
+	 * <p>
+	 * Les routes de la tour principale doivent être chargées dans le même
+	 * ordre.
+	 * 
+	 * @param engine
+	 *            Le moteur de radio à démarrer à la prise de relais,
+	 *            typiquement sur le port de la tour principale.
+	 * @throws IOException
+	 *             Si la tour principale n'est pas joignable.
+	 */
+	public void follow(String host, int port, RadioServerEngine engine) throws IOException {
+		init();
+
+		takeOverEngine = engine;
+		standby.follow(host, port, config.getInt("tower.standby.timeout"));
+	}
+
+	/**
+	 * Retourne la durée, en nanosecondes, de la prise de relais depuis la
+	 * perte de la tour principale, ou -1 si cette tour n'a pas pris le
+	 * relais.
+	 */
+	public long getFailoverTime() {
+		return failoverTime;
+	}
+
+	/**
+	 * Envoie le même état initial à une nouvelle tour de secours: l'état de
+	 * tous les avions connectés. Les modifications suivantes lui sont
+	 * publiées dans l'ordre.
+	 */
+	synchronized void attachStandby(StandbyLink.Follower follower) {
+		for(TowerPlane plane : planes) {
+			follower.queue(new StandbyLink.PlaneRecord(plane, landingQueue.contains(plane)));
+		}
+
+		standby.addFollower(follower);
+	}
+
+	/**
+	 * Publie l'état d'un avion aux tours de secours et au journal. Doit être
+	 * appelée sous
+	 * le verrou de la tour, pour que l'ordre des publications soit celui des
+	 * modifications.
+	 */
+	private void replicate(TowerPlane plane) {
+		if(!standby.hasFollowers() && journal == null) {
+			return;
+		}
+
+		StandbyLink.PlaneRecord record = new StandbyLink.PlaneRecord(plane, landingQueue.contains(plane));
+
+		standby.publish(record);
+
+		if(journal != null) {
+			journal.appendPlane(record);
+		}
+	}
+
+	/**
+	 * Reçoit l'état d'un avion de la tour principale.
+	 */
+	synchronized void receiveReplica(StandbyLink.PlaneRecord record) {
+		// New tickets after the take over must follow the primary's
+		if(record.isLandingRequested()) {
+			TowerPlane.reserveLandingID(record.getLandingID());
+		}
+
+		replicas.put(record.getID(), record);
+		metrics.count("standby.received", 1);
+	}
+
+	/**
+	 * Reçoit la déconnexion d'un avion de la tour principale.
+	 */
+	synchronized void receiveRemoval(RadioID id) {
+		replicas.remove(id);
+	}
+
+	/**
+	 * Prend le relais de la tour principale perdue: démarre le moteur de
+	 * radio. Le démarrage est retenté jusqu'à ce qu'il réussisse ou que la
+	 * tour soit arrêtée, le port de la tour principale pouvant ne pas être
+	 * encore libéré. Les avions retrouvent leur état à leur reconnexion.
+	 */
+	void takeOver() {
+		long start = System.nanoTime();
+
+		if(takeOverEngine != null) {
+			long delay = 50;
+
+			while(true) {
+				if(stopped) {
+					return;
+				}
+
+				try {
+					listen(takeOverEngine);
+					break;
+				}
+				catch(IOException e) {
+					emitDebug("[STANDBY] Cannot take over yet: " + e.getMessage());
+				}
+
+				try {
+					Thread.sleep(delay);
+				}
+				catch(InterruptedException e) {
+					return;
+				}
+
+				delay = Math.min(delay * 2, 1000);
+			}
+		}
+
+		failoverTime = System.nanoTime() - start;
+
+		int count;
+		synchronized(this) {
+			count = replicas.size();
+		}
+
+		emit(new TowerEvent.TookOver(count, failoverTime / 1000000));
+	}
+
+	/**
+	 * Applique l'état répliqué à un avion reconnecté après la prise de
+	 * relais. L'avion reprend sa route: il n'est notifié que si la file
+	 * d'attente de cette tour lui en assigne une autre.
+	 */
+	private void applyReplica(TowerPlane plane, StandbyLink.PlaneRecord record) {
+		ArrayList<TowerPlane> changed = new ArrayList<TowerPlane>();
+
+		landingQueue.remove(plane, changed);
+		record.applyTo(plane);
+		plane.setTimeToRunway(estimateTimeToRunway(plane));
+
+		int route = plane.getCurrentRoute();
+
+		if(route >= 0 && route < routes.size()) {
+			states.setLoopPoint(plane.getSlot(), routes.get(route).getLoopPoint());
+
+			if(plane.isLanding()) {
+				scheduler.reserve(route);
+				plane.setRunway(route, 0);
+			}
+		}
+
+		states.store(plane);
+
+		if(record.isQueued()) {
+			landingQueue.add(plane, changed);
+		}
+
+		emitDebug("[STANDBY] " + plane.getID() + " resumed on route " + route);
+		replicate(plane);
+		requestRouting(changed, false);
+	}
+
+	// - - - Journal - - -
+
+	/**
+	 * Ouvre le journal de la tour (voir {@link TowerJournal}). Si le dossier
+	 * contient le journal d'une exécution précédente, son état est d'abord
+	 * restauré: configuration, routes (si aucune route n'est chargée) et état
+	 * des avions, appliqué à leur reconnexion comme après la prise de relais
+	 * d'une tour de secours. Le journal doit être ouvert avant
+	 * l'initialisation de la tour pour que toute la configuration restaurée
+	 * soit prise en compte.
+	 * 
+	 * @param path
+	 *            Le dossier du journal.
+	 * @return Le nombre d'avions restaurés.
+	 * @throws IOException
+	 *             Si le journal ne peut pas être lu ou écrit.
+	 */
+	public synchronized int openJournal(String path) throws IOException {
+		if(journal != null) {
+			throw new IOException("The journal is already open");
+		}
+
+		TowerJournal opened = new TowerJournal(this, path, config.getInt("tower.journal.snapshot"), metrics);
+		TowerJournal.State state = opened.recover();
+
+		for(Map.Entry<String, String> entry : state.getConfig().entrySet()) {
+			config.setProperty(entry.getKey(), entry.getValue());
+		}
+
+		if(routes.isEmpty()) {
+			for(Route route : state.getRoutes()) {
+				addRoute(route);
+			}
+		}
+
+		for(StandbyLink.PlaneRecord record : state.getPlanes().values()) {
+			TowerPlane plane = planes.get(record.getID());
+
+			if(plane != null) {
+				applyReplica(plane, record);
+			}
+			else {
+				replicas.put(record.getID(), record);
+			}
+		}
+
+		opened.start(captureJournalState(opened));
+		journal = opened;
+
+		metrics.count("journal.recovered", state.getPlanes().size());
+
+		return state.getPlanes().size();
+	}
+
+	/**
+	 * Écrit les modifications en attente et ferme le journal, s'il est
+	 * ouvert.
+	 * 
+	 * @throws IOException
+	 *             Si une écriture du journal a échoué.
+	 */
+	public void closeJournal() throws IOException {
+		TowerJournal closed;
+
+		synchronized(this) {
+			closed = journal;
+			journal = null;
+		}
+
+		if(closed != null) {
+			closed.close();
+		}
+	}
+
+	/**
+	 * Capture l'état de la tour pour un instantané du journal: la
+	 * configuration propre à la tour, les routes et l'état des avions, ceux
+	 * de la file d'attente en premier et dans son ordre.
+	 */
+	synchronized TowerJournal.State captureJournalState(TowerJournal from) {
+		TowerJournal.State state = new TowerJournal.State(from.getSequence());
+
+		for(Object key : config.keySet()) {
+			state.getConfig().put((String) key, config.getProperty((String) key));
+		}
+
+		state.getRoutes().addAll(routes);
+
+		for(TowerPlane plane : landingQueue.snapshot()) {
+			state.getPlanes().put(plane.getID(), new StandbyLink.PlaneRecord(plane, true));
+		}
+
+		for(TowerPlane plane : planes) {
+			if(!state.getPlanes().containsKey(plane.getID())) {
+				state.getPlanes().put(plane.getID(), new StandbyLink.PlaneRecord(plane, landingQueue.contains(plane)));
+			}
+		}
+
+		// Planes restored or taken over, not reconnected yet
+		for(StandbyLink.PlaneRecord record : replicas.values()) {
+			if(!state.getPlanes().containsKey(record.getID())) {
+				state.getPlanes().put(record.getID(), record);
+			}
+		}
+
+		return state;
+	}
+
+	/**
+	 * Reconstruit entièrement la file d'attente d'atterrissage à partir des
+	 * routes chargées et notifie les avions dont la route a changé.
+	 */
+	public synchronized void refreshRouting() {
+		emitDebug("[ROUTING] Rebuilding landing queue");
+
+		// The landing routes share the first queue route
+		int landing = scheduler.hasRunway() ? 1 : 0;
+
+		int[] capacities = new int[landing + holdingRoutes.size()];
+		for(int i = 0; i < holdingRoutes.size(); i++) {
+			capacities[landing + i] = routes.get(holdingRoutes.get(i)).getCapacity();
+		}
+
+		if(landing > 0) {
+			capacities[0] = scheduler.getCapacity();
+		}
+
+		ArrayList<TowerPlane> changed = new ArrayList<TowerPlane>();
+		landingQueue.setCapacities(capacities, changed);
+
+		requestRouting(changed, true);
+	}
+
+	/**
+	 * Demande l'envoi des routes aux avions déplacés dans la file d'attente.
+	 * <p>
+	 * Sauf demande explicite, l'envoi est différé et regroupé avec les autres
+	 * demandes reçues pendant une fenêtre de <code>tower.routing.window</code>
+	 * millisecondes. Une rafale d'événements (déconnexions en masse, demandes
+	 * d'atterrissage simultanées) ne provoque ainsi qu'un seul envoi, adressé
+	 * uniquement aux avions dont la route finale a changé.
+	 * 
+	 * @param changed
+	 *            Les avions déplacés dans la file.
+	 * @param immediate
+	 *            Si <code>true</code>, les routes en attente sont envoyées
+	 *            immédiatement (MayDay).
+	 */
+	private void requestRouting(Collection<TowerPlane> changed, boolean immediate) {
+		metrics.count("routing.requested", 1);
+		pendingRouting.addAll(changed);
+
+		int window = config.getInt("tower.routing.window");
+
+		if(immediate || window <= 0) {
+			flushRouting();
+			return;
+		}
+
+		if(!routingScheduled) {
+			routingScheduled = true;
+
+			if(routingTimer == null) {
+				routingTimer = new Timer("Tower routing", true);
+			}
+
+			routingTimer.schedule(new TimerTask() {
+				public void run() {
+					synchronized(Tower.this) {
+						flushRouting();
+					}
+				}
+			}, window);
+		}
+	}
+
+	/**
+	 * Planifie un nouvel envoi de la route d'un avion après un délai, par
+	 * exemple à l'heure de départ de son créneau de piste.
+	 */
+	private void scheduleRouting(final TowerPlane plane, long delay) {
+		if(routingTimer == null) {
+			routingTimer = new Timer("Tower routing", true);
+		}
+
+		routingTimer.schedule(new TimerTask() {
+			public void run() {
+				synchronized(Tower.this) {
+					requestRouting(Collections.singletonList(plane), true);
+				}
+			}
+		}, Math.max(delay, 0));
+	}
+
+	/**
+	 * Envoie immédiatement les routes en attente.
+	 */
+	private void flushRouting() {
+		routingScheduled = false;
+
+		if(pendingRouting.isEmpty()) {
+			return;
+		}
+
+		ArrayList<TowerPlane> changed = pendingRouting;
+		pendingRouting = new ArrayList<TowerPlane>();
+
+		int messages = applyRouting(changed);
+
+		metrics.count("routing.executed", 1);
+		metrics.count("routing.messages", messages);
+		metrics.countMax("routing.messages.max", messages);
+	}
+
+	/**
+	 * Met à jour le mode de routage de la file d'attente si le paramètre
+	 * <code>tower.routing</code> a été modifié depuis la dernière mise à jour.
+	 */
+	private void updateRoutingMode(Collection<TowerPlane> changed) {
+		scheduler.setSeparation(config.getInt("tower.runway.separation"));
+
+		String raw = config.getString("tower.routing").toLowerCase();
+
+		if(raw.equals("auto")) {
+			routingModeRaw = raw;
+			selectRoutingMode();
+			return;
+		}
+
+		if(raw.equals(routingModeRaw)) {
+			return;
+		}
+
+		routingModeRaw = raw;
+
+		RoutingMode routingMode;
+
+		if(raw.equals("fuel")) {
+			routingMode = RoutingMode.FUEL;
+		}
+		else if(raw.equals("time")) {
+			routingMode = RoutingMode.TIME;
+		}
+		else if(raw.equals("slot")) {
+			routingMode = RoutingMode.SLOT;
+		}
+		else {
+			routingMode = RoutingMode.CHRONOS;
+		}
+
+		emitDebug("[ROUTING] Route mode is " + routingMode);
+
+		if(routingMode != landingQueue.getMode()) {
+			landingQueue.setMode(routingMode, changed);
+		}
+	}
+
+	/**
+	 * Sélectionne automatiquement le mode de routage dont la projection est
+	 * la meilleure, au plus une fois par <code>tower.planner.period</code>
+	 * millisecondes.
+	 * <p>
+	 * Appelé sous le verrou de la tour. L'évaluation est faite sur le pool du
+	 * planificateur, hors du verrou: le mode choisi est appliqué par un
+	 * passage ultérieur du routage.
+	 */
+	private void selectRoutingMode() {
+		long now = System.currentTimeMillis();
+
+		if(stopped || planning || now - lastPlanTime < config.getInt("tower.planner.period")) {
+			return;
+		}
+
+		lastPlanTime = now;
+		planning = true;
+
+		if(planner == null) {
+			planner = new RoutingPlanner(Runtime.getRuntime().availableProcessors());
+		}
+
+		planner.execute(new Runnable() {
+			public void run() {
+				RoutingMode routingMode = null;
+
+				try {
+					routingMode = RoutingPlanner.getBestMode(plan(false));
+				}
+				finally {
+					synchronized(Tower.this) {
+						planning = false;
+						applySelectedMode(routingMode);
+					}
+				}
+			}
+		});
+	}
+
+	/**
+	 * Applique le mode de routage sélectionné automatiquement, si la tour est
+	 * toujours en mode <code>auto</code>. Appelé sous le verrou de la tour.
+	 */
+	private void applySelectedMode(RoutingMode routingMode) {
+		if(stopped || routingMode == null || !"auto".equals(routingModeRaw) || routingMode == landingQueue.getMode()) {
+			return;
+		}
+
+		emitDebug("[ROUTING] Route mode is " + routingMode + " (auto)");
+		metrics.count("routing.auto.switch", 1);
+
+		ArrayList<TowerPlane> changed = new ArrayList<TowerPlane>();
+		landingQueue.setMode(routingMode, changed);
+
+		requestRouting(changed, false);
+	}
+
+	/**
+	 * Évalue chaque mode de routage, ainsi que d'autres ordres
+	 * d'atterrissage, sur une copie de la file d'attente actuelle (voir
+	 * {@link RoutingPlanner}).
+	 *
+	 * @return Les projections, de la meilleure à la moins bonne.
+	 */
+	public List<RoutingPlanner.Plan> plan() {
+		return plan(true);
+	}
 
-		emitDebug("[ROUTING] Redefining route for " + id);
+	private List<RoutingPlanner.Plan> plan(boolean reorderings) {
+		ArrayList<TowerPlane> snapshot;
+		int capacity;
+		float separation;
 
-		plane.setLoopPoint(route.getLoopPoint());
+		synchronized(this) {
+			snapshot = landingQueue.snapshot();
 
-		if(route.isLanding()) {
-			plane.setLanding();
+			// The runways are projected as a single runway with as many
+			// landings per separation as there are runways
+			capacity = scheduler.getCapacity();
+			separation = scheduler.getSeparation() / Math.max(scheduler.getRunwayCount(), 1);
+
+			if(planner == null) {
+				planner = new RoutingPlanner(Runtime.getRuntime().availableProcessors());
+			}
+		}
+
+		long budget = config.getInt("tower.planner.budget");
+
+		return planner.evaluate(snapshot, capacity, separation, System.currentTimeMillis(), budget, reorderings);
+	}
+
+	/**
+	 * Envoie leur nouvelle route aux avions déplacés dans la file d'attente.
+	 * Seuls les avions dont la route assignée diffère de leur route actuelle
+	 * sont notifiés.
+	 * 
+	 * @param changed
+	 *            Les avions déplacés par les dernières opérations sur la file.
+	 * 
+	 * @return Le nombre de messages de routage envoyés.
+	 */
+	private int applyRouting(Collection<TowerPlane> changed) {
+		ArrayDeque<TowerPlane> work = new ArrayDeque<TowerPlane>(changed);
+		updateRoutingMode(work);
+
+		int rerouted = 0;
+		int messages = 0;
+
+		while(!work.isEmpty()) {
+			TowerPlane plane = work.poll();
+
+			// Removed from queue by a previous step
+			if(!landingQueue.contains(plane)) {
+				continue;
+			}
+
+			int queueRoute = landingQueue.getRoute(plane);
+			int currentRoute;
+
+			if(plane.getRunway() >= 0 && !plane.isLanding() && (queueRoute != 0 || !scheduler.hasRunway())) {
+				// Moved back by a plane with a higher priority before leaving
+				// its circuit: its runway is released
+				scheduler.release(plane.getRunway());
+				plane.setRunway(-1, 0);
+			}
+
+			if(queueRoute == LandingQueue.GRAVEYARD) {
+				currentRoute = LandingQueue.GRAVEYARD;
+			}
+			else if(scheduler.hasRunway() && queueRoute == 0) {
+				if(plane.isLanding()) {
+					// Already on its runway
+					continue;
+				}
+
+				long now = System.currentTimeMillis();
+
+				if(plane.getRunway() < 0 && !assignRunway(plane, now)) {
+					// Every runway is full, for instance after a take-over:
+					// the plane keeps holding until a place is released
+					emitDebug("[ROUTING] No runway available for " + plane.getID());
+					scheduleRouting(plane, RUNWAY_RETRY_DELAY);
+				}
+
+				int holding = getHoldingRoute(plane);
+
+				if((plane.getRunway() < 0 || now < plane.getDepartureTime()) && holding >= 0) {
+					// Holds until the departure time of its slot
+					currentRoute = holding;
+				}
+				else if(plane.getRunway() < 0) {
+					continue;
+				}
+				else {
+					// Landing planes are ordered first, the plane must be
+					// re-inserted once its state has changed. It stays on
+					// the landing routes.
+					landingQueue.remove(plane, work);
+					plane.setLanding();
+					landingQueue.add(plane, work);
+
+					currentRoute = plane.getRunway();
+				}
+			}
+			else {
+				currentRoute = holdingRoutes.get(queueRoute - (scheduler.hasRunway() ? 1 : 0));
+			}
+
+			if(plane.getCurrentRoute() == currentRoute) {
+				continue;
+			}
+
+			if(currentRoute == LandingQueue.GRAVEYARD) {
+				try {
+					updateGraveyard();
+				}
+				catch(Exception e) {
+					kick(plane);
+					continue;
+				}
+
+				messages += defineRoute(plane, graveyard, graveyardTemplate, true);
+			}
+			else {
+				Route route = routes.get(currentRoute);
+				messages += defineRoute(plane, route, templates.get(currentRoute), true);
+			}
+
+			plane.setCurrentRoute(currentRoute);
+			states.store(plane);
+			replicate(plane);
+			rerouted++;
+		}
+
+		emitDebug("[ROUTING] " + rerouted + " plane(s) rerouted");
+
+		return messages;
+	}
+
+	/**
+	 * Assigne une piste et un créneau à un avion admis sur les routes
+	 * d'atterrissage, et planifie son départ si le créneau est plus tard.
+	 *
+	 * @return <code>false</code> si toutes les pistes sont pleines.
+	 */
+	private boolean assignRunway(TowerPlane plane, long now) {
+		int slot = plane.getSlot();
+		SlotScheduler.Slot assigned = scheduler.assign(states.getX(slot), states.getY(slot), plane.getType(), now);
+
+		if(assigned == null) {
+			return false;
+		}
+
+		plane.setRunway(assigned.getRunway().getRoute(), assigned.getDeparture());
+
+		emitDebug("[ROUTING] " + plane.getID() + " assigned to runway " + plane.getRunway() + " in " + (assigned.getDeparture() - now) + " ms");
+
+		if(assigned.getDeparture() > now) {
+			scheduleRouting(plane, assigned.getDeparture() - now);
+		}
+
+		return true;
+	}
+
+	/**
+	 * Retourne le circuit d'attente sur lequel un avion attend son créneau:
+	 * son circuit actuel, ou à défaut le premier circuit chargé.
+	 *
+	 * @return L'index de la route, ou -1 si aucun circuit n'est chargé.
+	 */
+	private int getHoldingRoute(TowerPlane plane) {
+		if(holdingRoutes.contains(plane.getCurrentRoute())) {
+			return plane.getCurrentRoute();
 		}
 
-		route = (Route) route.clone();
+		return holdingRoutes.isEmpty() ? -1 : holdingRoutes.get(0);
+	}
+
+	/**
+	 * Défini la route d'un avion en lui envoyant les instructions de routage
+	 * appropriées.
+	 * 
+	 * @return Le nombre de messages de routage envoyés.
+	 */
+	private int defineRoute(TowerPlane plane, Route route, MessageRoutingBatch.Template template, boolean replace) {
+		RadioID id = plane.getID();
+
+		emitDebug("[ROUTING] Redefining route for " + id);
+
+		states.setLoopPoint(plane.getSlot(), route.getLoopPoint());
 
 		if(replace) {
-			radio.sendRouting(id, route.remove(0), RoutingType.REPLACEALL);
+			detector.resetRoute(plane.getSlot());
+		}
+
+		send(plane, new MessageRoutingBatch(id, template, replace));
+
+		return template.size();
+	}
+
+	/**
+	 * Reconstruit la route vers le cimetière si la clé
+	 * <code>tower.graveyard</code> a changé.
+	 */
+	private void updateGraveyard() throws InvalidCoordinatesException, IOException {
+		String key = config.getProperty("tower.graveyard");
+
+		if(graveyard != null && key.equals(graveyardKey)) {
+			return;
+		}
+
+		Route route = new Route();
+		route.add(new Waypoint(MoveType.DESTRUCTION, Coordinates.parseCoordinates(key).toFloats()));
+
+		graveyardTemplate = new MessageRoutingBatch.Template(route);
+		graveyard = route;
+		graveyardKey = key;
+	}
+
+	/**
+	 * Envoie un message à un avion par son gestionnaire radio, sans passer
+	 * par le registre de la radio.
+	 */
+	private void send(TowerPlane plane, Message m) {
+		PlaneAgent agent = plane.getAgent();
+
+		if(agent != null) {
+			agent.send(m);
+		}
+	}
+
+	/**
+	 * Déconnecte de force un avion.
+	 */
+	private void kick(TowerPlane plane) {
+		PlaneAgent agent = plane.getAgent();
+
+		if(agent != null) {
+			agent.kick();
+		}
+	}
+
+	/**
+	 * Retourne l'avion émetteur d'un message. L'avion est retrouvé
+	 * directement par l'emplacement de son gestionnaire radio, le registre de
+	 * la tour n'est consulté que si le message ne provient pas de la radio
+	 * (rejeu d'un journal).
+	 * 
+	 * @return L'avion, ou <code>null</code> s'il n'est pas connecté.
+	 */
+	private TowerPlane getPlane(Message m) {
+		PlaneAgent agent = radio.getAgent(m.getSlot());
+
+		if(agent != null) {
+			Object attachment = agent.attachment();
+
+			// The slot may have been reused since the message was received
+			if(attachment instanceof TowerPlane) {
+				TowerPlane plane = (TowerPlane) attachment;
+
+				if(plane.getID().equals(m.getID())) {
+					return plane;
+				}
+			}
+		}
+
+		return planes.get(m.getID());
+	}
+
+	// - - - Proximity - - -
+
+	/**
+	 * Retourne les gestionnaires radio des avions situés à une distance
+	 * inférieure ou égale à <code>radius</code> du point (x, y), résolus par
+	 * l'index spatial.
+	 *
+	 * @param filter
+	 *            Un filtre supplémentaire sur les avions trouvés, ou
+	 *            <code>null</code>.
+	 */
+	public ArrayList<PlaneAgent> getAgentsNear(float x, float y, float radius, final PlaneFilter filter) {
+		final ArrayList<PlaneAgent> found = new ArrayList<PlaneAgent>();
+
+		grid.query(x, y, radius, new SpatialIndex.Visitor() {
+			public void visit(int slot, float distance) {
+				TowerPlane plane = planes.get(slot);
+
+				if(plane != null && plane.getAgent() != null && (filter == null || filter.accept(plane, distance))) {
+					found.add(plane.getAgent());
+				}
+			}
+		});
+
+		return found;
+	}
+
+	/**
+	 * Retourne les avions situés à une distance (horizontale) inférieure ou
+	 * égale à <code>radius</code> d'un point, du plus proche au plus éloigné.
+	 * 
+	 * @return Les identifiants des avions, associés à leur distance.
+	 */
+	public LinkedHashMap<RadioID, Float> getPlanesNear(float x, float y, float radius) {
+		final ArrayList<TowerPlane> found = new ArrayList<TowerPlane>();
+		final HashMap<TowerPlane, Float> distances = new HashMap<TowerPlane, Float>();
+
+		grid.query(x, y, radius, new SpatialIndex.Visitor() {
+			public void visit(int slot, float distance) {
+				TowerPlane plane = planes.get(slot);
+
+				if(plane != null) {
+					found.add(plane);
+					distances.put(plane, distance);
+				}
+			}
+		});
+
+		Collections.sort(found, new Comparator<TowerPlane>() {
+			public int compare(TowerPlane a, TowerPlane b) {
+				return Float.compare(distances.get(a), distances.get(b));
+			}
+		});
+
+		LinkedHashMap<RadioID, Float> result = new LinkedHashMap<RadioID, Float>();
+
+		for(TowerPlane plane : found) {
+			result.put(plane.getID(), distances.get(plane));
 		}
 
-		for(Waypoint waypoint : route) {
-			radio.sendRouting(id, waypoint, RoutingType.LAST);
+		return result;
+	}
+
+	/**
+	 * Retourne l'avion le plus proche d'un point.
+	 * 
+	 * @return L'identifiant de l'avion associé à sa distance, ou une table
+	 *         vide si aucun avion n'a encore envoyé sa position.
+	 */
+	public LinkedHashMap<RadioID, Float> getNearestPlane(float x, float y) {
+		LinkedHashMap<RadioID, Float> result = new LinkedHashMap<RadioID, Float>();
+
+		int slot = grid.nearest(x, y, -1);
+		TowerPlane plane = planes.get(slot);
+
+		if(plane != null) {
+			float dx = grid.getX(slot) - x;
+			float dy = grid.getY(slot) - y;
+
+			result.put(plane.getID(), (float) Math.sqrt(dx * dx + dy * dy));
 		}
+
+		return result;
 	}
 
 	// - - - Radio Delegate - - -
@@ -462,56 +1884,263 @@ public class Tower extends AsyncEventEmitter implements EventListener, RadioDele
 	// - - - Radio Events - - -
 
 	public void on(MessageKeepalive m) {
-		emit(new TowerEvent.PlaneMoved(m.getID(), m.getCoordinates()));
+		// Position updates are the bulk of the tower's own events: shed them
+		// while congested rather than letting the queue grow. Without any
+		// listener, the event is not even built
+		if(hasListeners() && !congestion.isCongested()) {
+			emit(new TowerEvent.PlaneMoved(m.getID(), m.getX(), m.getY(), m.getZ()));
+		}
 
-		TowerPlane plane = planes.get(m.getID());
+		// The plane state, the grid and the conflict detector are also
+		// changed under the tower lock by disconnections, routing and the
+		// state table growth
+		synchronized(this) {
+			TowerPlane plane = getPlane(m);
 
-		float d = plane.distanceToLoopPoint(m.getCoordinates());
-		if(!Float.isNaN(d) && d < 10) {
-			if(!plane.isLoopSent()) {
-				defineRoute(plane, routes.get(plane.getCurrentRoute()), false);
-				plane.setLoopSent(true);
+			if(plane == null) {
+				return;
+			}
+
+			int slot = plane.getSlot();
+			float x = m.getX();
+			float y = m.getY();
+			states.updatePosition(slot, x, y, m.getZ(), System.currentTimeMillis());
+			boolean cellChanged = grid.update(slot, x, y);
+
+			updateTimeToRunway(plane, x, y);
+
+			if(detector.isEnabled()) {
+				int currentRoute = plane.getCurrentRoute();
+				Route route = (currentRoute >= 0 && currentRoute < routes.size()) ? routes.get(currentRoute) : null;
+
+				detector.update(plane, route, x, y, System.currentTimeMillis(), cellChanged, conflictEvents);
+				emitConflicts();
+			}
+
+			checkHandoff(plane, x, y);
+
+			float d = states.distanceToLoopPoint(slot);
+			if(!Float.isNaN(d) && d < 10) {
+				if(!states.hasFlag(slot, PlaneStateTable.LOOP_SENT)) {
+					defineRoute(plane, routes.get(plane.getCurrentRoute()), templates.get(plane.getCurrentRoute()), false);
+					states.setFlag(slot, PlaneStateTable.LOOP_SENT, true);
+				}
+			}
+			else {
+				states.setFlag(slot, PlaneStateTable.LOOP_SENT, false);
 			}
-		}
-		else {
-			plane.setLoopSent(false);
 		}
 
 		emit(m);
 	}
 
+	/**
+	 * Met à jour le temps d'arrivée estimé d'un avion après la réception de
+	 * sa position. En mode SLOT, l'avion est reclassé dans la file d'attente
+	 * si l'estimation a suffisamment changé. Appelé sous le verrou de la tour.
+	 */
+	private void updateTimeToRunway(TowerPlane plane, float x, float y) {
+		// The approach of a landing plane cannot be changed anymore
+		if(plane.isLanding()) {
+			return;
+		}
+
+		float estimate = scheduler.estimate(x, y, plane.getType());
+
+		if(!scheduler.isOutdated(plane, estimate)) {
+			return;
+		}
+
+		if(landingQueue.getMode() != RoutingMode.SLOT || !landingQueue.contains(plane)) {
+			plane.setTimeToRunway(estimate);
+			return;
+		}
+
+		landingQueue.remove(plane, rescheduled);
+		plane.setTimeToRunway(estimate);
+		landingQueue.add(plane, rescheduled);
+
+		metrics.count("routing.rescheduled", 1);
+		requestRouting(rescheduled, false);
+		rescheduled.clear();
+	}
+
 	public void on(MessageData m) {
 		// TODO: something asynchronous?
 		dataDispatcher.dispatchMessageToAgent(m);
 	}
 
 	public synchronized void on(MessageLanding m) {
-		planes.get(m.getID()).landingRequested();
-		refreshRouting();
+		TowerPlane plane = getPlane(m);
+
+		if(plane == null) {
+			return;
+		}
+
+		plane.landingRequested();
+
+		// Already queued, e.g. handed off by a neighbour tower
+		if(landingQueue.contains(plane)) {
+			return;
+		}
+
+		plane.setTimeToRunway(estimateTimeToRunway(plane));
+		states.store(plane);
+
+		ArrayList<TowerPlane> changed = new ArrayList<TowerPlane>();
+		landingQueue.add(plane, changed);
+		replicate(plane);
+		requestRouting(changed, false);
 	}
 
 	public void on(MessageBye m) {
-		radio.kick(m.getID());
+		TowerPlane plane = getPlane(m);
+
+		if(plane != null) {
+			kick(plane);
+		}
 	}
 
 	public synchronized void on(MessageMayDay m) {
-		planes.get(m.getID()).setMayDay(true);
+		TowerPlane plane = getPlane(m);
+
+		if(plane == null) {
+			return;
+		}
+
+		ArrayList<TowerPlane> changed = new ArrayList<TowerPlane>();
+
+		// Priority change: take the plane out of the queue while updating it
+		boolean queued = landingQueue.contains(plane);
+		landingQueue.remove(plane, changed);
+		plane.setMayDay(true);
+		states.store(plane);
+
+		if(queued) {
+			landingQueue.add(plane, changed);
+		}
+
+		replicate(plane);
 		emit(new TowerEvent.PlaneDistress(m.getID()));
-		refreshRouting();
+		requestRouting(changed, true);
+	}
+
+	/**
+	 * Défini le type d'un avion nouvellement identifié et met à jour sa
+	 * position dans la file d'attente.
+	 */
+	private synchronized void identifyPlane(RadioID id, PlaneType type) {
+		TowerPlane plane = planes.get(id);
+
+		if(plane == null) {
+			return;
+		}
+
+		ArrayList<TowerPlane> changed = new ArrayList<TowerPlane>();
+
+		boolean queued = landingQueue.contains(plane);
+		landingQueue.remove(plane, changed);
+		plane.setType(type);
+		plane.setTimeToRunway(estimateTimeToRunway(plane));
+		states.store(plane);
+
+		if(queued) {
+			landingQueue.add(plane, changed);
+		}
+
+		replicate(plane);
+		requestRouting(changed, false);
+	}
+
+	/**
+	 * Estime le temps d'arrivée d'un avion depuis sa dernière position
+	 * connue.
+	 */
+	private float estimateTimeToRunway(TowerPlane plane) {
+		int slot = plane.getSlot();
+		return scheduler.estimate(states.getX(slot), states.getY(slot), plane.getType());
 	}
 
 	public void on(Message m) {
 		emitDebug(m.toString());
 	}
 
+	/**
+	 * Relaie les événements de débuggage de la radio, en mode débug.
+	 */
+	public void on(DebugEvent e) {
+		emitDebug(e);
+	}
+
 	public void on(RadioEvent.PlaneConnected e) {
-		planes.put(e.getID(), new TowerPlane(e.getID()));
+		TowerPlane plane = new TowerPlane(e.getID());
+
+		synchronized(this) {
+			int slot = planes.register(e.getID(), plane);
+
+			if(slot < 0) {
+				emitDebug("[TOWER] " + e.getID() + " is already connected");
+				return;
+			}
+
+			plane.setSlot(slot);
+			states.init(slot);
+		}
+
+		// The radio slot avoids a second lookup by identifier, but may have
+		// been reused since the event was emitted
+		PlaneAgent agent = (e.getSlot() >= 0) ? radio.getAgent(e.getSlot()) : null;
+
+		if(agent != null && agent.getID().equals(e.getID())) {
+			plane.setAgent(agent);
+			agent.attach(plane);
+		}
+
+		synchronized(this) {
+			SectorLink.Handoff handoff = pendingHandoffs.remove(e.getID());
+
+			StandbyLink.PlaneRecord record = replicas.remove(e.getID());
+
+			if(handoff != null) {
+				applyHandoff(plane, handoff);
+			}
+			else if(record != null) {
+				applyReplica(plane, record);
+			}
+			else {
+				replicate(plane);
+			}
+		}
+
 		emit(e);
 	}
 
 	public synchronized void on(RadioEvent.PlaneDisconnected e) {
-		planes.remove(e.getID());
-		refreshRouting();
+		TowerPlane plane = planes.unregister(e.getID());
+
+		if(plane != null) {
+			states.release(plane.getSlot());
+			grid.remove(plane.getSlot());
+
+			detector.remove(plane, conflictEvents);
+			emitConflicts();
+
+			if(plane.getRunway() >= 0) {
+				scheduler.release(plane.getRunway());
+			}
+
+			ArrayList<TowerPlane> changed = new ArrayList<TowerPlane>();
+			landingQueue.remove(plane, changed);
+
+			standby.publishRemoval(plane.getID());
+
+			if(journal != null) {
+				journal.appendRemoval(plane.getID());
+			}
+
+			requestRouting(changed, false);
+		}
+
 		emit(e); // reemit
 	}
 
@@ -520,10 +2149,25 @@ public class Tower extends AsyncEventEmitter implements EventListener, RadioDele
 		emit(e);
 	}
 
+	/**
+	 * Emet les événements de conflit en attente.
+	 */
+	private void emitConflicts() {
+		if(conflictEvents.isEmpty()) {
+			return;
+		}
+
+		for(TowerEvent event : conflictEvents) {
+			emit(event);
+		}
+
+		conflictEvents.clear();
+	}
+
 	/**
 	 * Emet un message de debug contenant le message donné.
 	 */
-	private void emitDebug(String msg) {
+	void emitDebug(String msg) {
 		emitDebug(new DebugEvent(msg));
 	}
 
@@ -8,18 +8,23 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.PrintStream;
 import java.net.InetAddress;
+import java.util.Map;
 
 import sat.DebugEvent;
 import sat.GlobalCLI;
 import sat.events.EventListener;
 import sat.gui.GUI;
 import sat.radio.RadioEvent;
+import sat.radio.RadioID;
 import sat.radio.engine.server.RadioServerEngine;
 import sat.radio.engine.server.RadioServerTCPEngine;
+import sat.radio.record.EventReplayer;
 import sat.tower.agent.AgentResult;
 import sat.tower.agent.AgentServer;
 import sat.tower.agent.TowerAgent;
 import sat.utils.crypto.RSAKey;
+import sat.utils.geo.Coordinates;
+import sat.utils.geo.InvalidCoordinatesException;
 
 /**
  * Interface CLI de la tour de contrôle.
@@ -30,15 +35,25 @@ public class TowerCLI extends GlobalCLI implements EventListener {
 	 */
 	private TowerAgent agent;
 
-	public TowerCLI(InputStream i, PrintStream o) {
-		this(i, o, new TowerAgent());
+	/**
+	 * Crée un nouveau CLI contrôlant une tour de cette JVM.
+	 * 
+	 * @param tower
+	 *            La tour de contrôle contrôlée par ce CLI
+	 * @param i
+	 *            Le flux d'entrée du CLI
+	 * @param o
+	 *            Le flux de sortie du CLI
+	 */
+	public TowerCLI(Tower tower, InputStream i, PrintStream o) {
+		this(i, o, new TowerAgent(tower));
 	}
 
 	/**
 	 * Crée un nouveau CLI de tour de contrôle.
 	 * 
-	 * @param tower
-	 *            La tour de contrôle contrôlée par ce CLI
+	 * @param agent
+	 *            L'agent de la tour contrôlée par ce CLI, local ou distant
 	 * @param i
 	 *            Le flux d'entrée du CLI
 	 * @param o
@@ -56,7 +71,7 @@ public class TowerCLI extends GlobalCLI implements EventListener {
 			throw new RuntimeException("This command cannot be used in a remote CLI");
 		}
 
-		return Tower.getInstance();
+		return agent.getTower();
 	}
 
 	public void init() {
@@ -106,6 +121,76 @@ public class TowerCLI extends GlobalCLI implements EventListener {
 		agent.requestConfigSetKey(key, value);
 	}
 
+	/**
+	 * Affiche les mesures du pipeline d'événements de la tour: profondeur des
+	 * files d'attente, temps d'attente et durée de distribution par type
+	 * d'événement et durée de traitement par listener.
+	 * 
+	 * @param action
+	 *            "on" / "off" pour activer ou désactiver les mesures, "reset"
+	 *            pour les remettre à zéro (optionel).
+	 */
+	public void metrics(String action) {
+		setPaused(true);
+		agent.requestMetrics(action, new EventListener() {
+			@SuppressWarnings("unused")
+			public void on(AgentResult.MetricsResult ev) {
+				ev.getMetrics().list(out);
+				setPaused(false);
+			}
+		});
+	}
+
+	/**
+	 * Affiche les avions proches d'un point, du plus proche au plus éloigné.
+	 * 
+	 * @param coords
+	 *            Le point, sous la forme "x,y".
+	 * @param radius
+	 *            Le rayon de la recherche (optionel). Sans rayon, seul l'avion
+	 *            le plus proche est affiché.
+	 * 
+	 * @throws InvalidCoordinatesException
+	 *             Si le point n'est pas valide.
+	 */
+	public void near(String coords, String radius) throws InvalidCoordinatesException {
+		Coordinates c = Coordinates.parseCoordinates(coords);
+
+		setPaused(true);
+		agent.requestNear(c.getX(), c.getY(), radius.isEmpty() ? 0 : Float.parseFloat(radius), new EventListener() {
+			@SuppressWarnings("unused")
+			public void on(AgentResult.NearResult ev) {
+				for(Map.Entry<RadioID, Float> plane : ev.getPlanes().entrySet()) {
+					println(plane.getKey() + " " + plane.getValue());
+				}
+
+				if(ev.getPlanes().isEmpty()) {
+					println("No plane found");
+				}
+
+				setPaused(false);
+			}
+		});
+	}
+
+	/**
+	 * Évalue chaque mode de routage sur la file d'attente actuelle et
+	 * affiche les projections, de la meilleure à la moins bonne.
+	 */
+	public void plan() {
+		setPaused(true);
+		agent.requestPlan(new EventListener() {
+			@SuppressWarnings("unused")
+			public void on(AgentResult.PlanResult ev) {
+				for(RoutingPlanner.Plan plan : ev.getPlans()) {
+					println(plan.toString());
+				}
+
+				setPaused(false);
+			}
+		});
+	}
+
 	/**
 	 * Enregistre la configuration de la tour dans un fichier.
 	 * 
@@ -146,6 +231,18 @@ public class TowerCLI extends GlobalCLI implements EventListener {
 		getTower().loadRoute(path, Integer.parseInt(capacity));
 	}
 
+	/**
+	 * Charge toutes les routes d'un catalogue compilé avec
+	 * <code>./sat routes</code>.
+	 * 
+	 * @param path
+	 *            Le fichier du catalogue.
+	 * @throws Exception
+	 */
+	public void loadcatalog(String path) throws Exception {
+		getTower().loadCatalog(path);
+	}
+
 	/**
 	 * Ajoute un moteur à la radio de la tour.
 	 * <p>
@@ -203,6 +300,160 @@ public class TowerCLI extends GlobalCLI implements EventListener {
 		tower.listen(engine);
 	}
 
+	/**
+	 * Démarre la réception des avions confiés par les tours des secteurs
+	 * voisins. Le lien n'écoute que sur localhost.
+	 *
+	 * @param port
+	 *            Le port d'écoute (par défaut 6970).
+	 *
+	 * @throws IOException
+	 *             Si le port ne peut pas être ouvert.
+	 */
+	public void linklisten(String port) throws IOException {
+		Tower tower = getTower();
+
+		tower.listenLink(port.isEmpty() ? 6970 : Integer.parseInt(port));
+		println("Sector link listening on port " + tower.getLinkPort());
+	}
+
+	/**
+	 * Déclare le secteur d'une tour voisine, à qui sont confiés les avions
+	 * qui y entrent.
+	 *
+	 * @param sector
+	 *            Le secteur voisin, "x1,y1,x2,y2".
+	 * @param host
+	 *            L'adresse de la tour voisine.
+	 * @param radioPort
+	 *            Le port de sa radio.
+	 * @param linkPort
+	 *            Le port de son lien (voir <code>linklisten</code>).
+	 */
+	public void neighbour(String sector, String host, String radioPort, String linkPort) {
+		Sector parsed = Sector.parse(sector);
+
+		if(parsed == null || host.isEmpty() || radioPort.isEmpty() || linkPort.isEmpty()) {
+			println("Usage: neighbour <x1,y1,x2,y2> <host> <radioport> <linkport>");
+			return;
+		}
+
+		getTower().addNeighbour(parsed, host, Integer.parseInt(radioPort), Integer.parseInt(linkPort));
+		println("Neighbour sector " + parsed + " is " + host + ":" + radioPort);
+	}
+
+	/**
+	 * Accepte les tours de secours, qui reçoivent l'état des avions de cette
+	 * tour. Le lien n'écoute que sur localhost.
+	 *
+	 * @param port
+	 *            Le port d'écoute (par défaut 6971).
+	 *
+	 * @throws IOException
+	 *             Si le port ne peut pas être ouvert.
+	 */
+	public void replicate(String port) throws IOException {
+		Tower tower = getTower();
+
+		tower.replicate(port.isEmpty() ? 6971 : Integer.parseInt(port));
+		println("Standby link listening on port " + tower.getStandbyPort());
+	}
+
+	/**
+	 * Fait de cette tour la tour de secours d'une tour principale. À la
+	 * perte de la tour principale, cette tour écoute sur le port radio
+	 * donné.
+	 *
+	 * @param host
+	 *            L'adresse de la tour principale.
+	 * @param port
+	 *            Le port de son lien (voir <code>replicate</code>).
+	 * @param radioPort
+	 *            Le port radio à reprendre (par défaut 6969).
+	 *
+	 * @throws IOException
+	 *             Si la tour principale n'est pas joignable.
+	 */
+	public void standby(String host, String port, String radioPort) throws IOException {
+		if(host.isEmpty() || port.isEmpty()) {
+			println("Usage: standby <host> <port> [radioport]");
+			return;
+		}
+
+		int radio = radioPort.isEmpty() ? 6969 : Integer.parseInt(radioPort);
+
+		getTower().follow(host, Integer.parseInt(port), new RadioServerTCPEngine(radio));
+		println("Standing by for " + host + ":" + port);
+	}
+
+	/**
+	 * Restaure l'état enregistré dans le journal de la tour, puis y enregistre
+	 * chaque modification de cet état.
+	 *
+	 * @param path
+	 *            Le dossier du journal.
+	 *
+	 * @throws IOException
+	 *             Si le journal ne peut pas être lu ou créé.
+	 */
+	public void journal(String path) throws IOException {
+		if(path.isEmpty()) {
+			println("Usage: journal <dir>");
+			return;
+		}
+
+		long start = System.nanoTime();
+		int restored = getTower().openJournal(path);
+
+		println("Journal " + path + " opened, " + restored + " planes restored in " + (System.nanoTime() - start) / 1000000 + " ms");
+	}
+
+	/**
+	 * Démarre l'enregistrement des événements de la radio dans un journal
+	 * binaire. Sans paramètre, arrête l'enregistrement en cours.
+	 * 
+	 * @param path
+	 *            Le dossier du journal (optionel).
+	 * 
+	 * @throws IOException
+	 *             Si le journal ne peut pas être créé ou fermé.
+	 */
+	public void record(String path) throws IOException {
+		if(path.isEmpty()) {
+			getTower().stopRecording();
+			println("Recording stopped");
+		}
+		else {
+			getTower().startRecording(path);
+			println("Recording to " + path);
+		}
+	}
+
+	/**
+	 * Rejoue un journal enregistré avec <code>record</code> dans la tour,
+	 * sans passer par les sockets. Cette commande attend la fin du rejeu.
+	 * 
+	 * @param path
+	 *            Le dossier du journal.
+	 * @param speed
+	 *            Facteur de vitesse (par défaut 1, 0 pour rejouer aussi vite
+	 *            que possible).
+	 * 
+	 * @throws IOException
+	 *             Si le journal ne peut pas être lu.
+	 * @throws InterruptedException
+	 */
+	public void replay(String path, String speed) throws IOException, InterruptedException {
+		EventReplayer replayer = getTower().replay(path, speed.isEmpty() ? 1 : Float.parseFloat(speed));
+		replayer.join();
+
+		if(replayer.getError() != null) {
+			println("Replay failed: " + replayer.getError().getMessage());
+		}
+
+		println("Replayed " + replayer.getCount() + " events in " + (replayer.getDuration() / 1000000) + " ms");
+	}
+
 	/**
 	 * Affiche la fenêtre du GUI.
 	 */
@@ -240,7 +491,7 @@ public class TowerCLI extends GlobalCLI implements EventListener {
 			println("AgentServer is already running");
 		}
 		else {
-			AgentServer.start();
+			AgentServer.start(agent.getTower());
 			println("AgentServer started");
 		}
 	}
@@ -296,6 +547,48 @@ public class TowerCLI extends GlobalCLI implements EventListener {
 		println("Plane " + ev.getID() + " disconnected");
 	}
 
+	/**
+	 * Le contrôleur de congestion a étouffé des avions.
+	 */
+	public void on(TowerEvent.CongestionChoked ev) {
+		println("[CONGESTION] Choked " + ev.getPlanes() + " planes (" + ev.getReason() + ": queue " + ev.getDepth() + ", lag " + ev.getLag() + " ms)");
+	}
+
+	/**
+	 * Le contrôleur de congestion a libéré des avions.
+	 */
+	public void on(TowerEvent.CongestionUnchoked ev) {
+		println("[CONGESTION] Unchoked " + ev.getPlanes() + " planes");
+	}
+
+	/**
+	 * Cette tour a pris le relais de la tour principale.
+	 */
+	public void on(TowerEvent.TookOver ev) {
+		println("[STANDBY] Took over " + ev.getPlanes() + " planes in " + ev.getDuration() + " ms");
+	}
+
+	/**
+	 * Deux avions sont plus proches que la séparation minimale.
+	 */
+	public void on(TowerEvent.SeparationLost ev) {
+		println(String.format("[CONFLICT] Separation lost between %s and %s (%.1f)", ev.getID(), ev.getOther(), ev.getDistance()));
+	}
+
+	/**
+	 * Deux avions vont perdre la séparation minimale.
+	 */
+	public void on(TowerEvent.ConflictPredicted ev) {
+		println(String.format("[CONFLICT] %s and %s will lose separation in %.1f s", ev.getID(), ev.getOther(), ev.getTime()));
+	}
+
+	/**
+	 * Le conflit entre deux avions a disparu.
+	 */
+	public void on(TowerEvent.ConflictResolved ev) {
+		println("[CONFLICT] Resolved between " + ev.getID() + " and " + ev.getOther());
+	}
+
 	/**
 	 * Un événement de debug envoyé par la tour. Cet événement n'est pas émis si
 	 * la tour de contrôle n'est pas en mode debug.
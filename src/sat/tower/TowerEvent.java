@@ -41,15 +41,37 @@ public abstract class TowerEvent extends Event {
 		/**
 		 * Les nouvelles coordonnées de cet avion.
 		 */
-		private Coordinates where;
+		private float x, y, z;
 
-		public PlaneMoved(RadioID id, Coordinates where) {
+		public PlaneMoved(RadioID id, float x, float y, float z) {
 			super(id);
-			this.where = where;
+			this.x = x;
+			this.y = y;
+			this.z = z;
+		}
+
+		public PlaneMoved(RadioID id, Coordinates where) {
+			this(id, where.getX(), where.getY(), where.getZ());
 		}
 
+		public float getX() {
+			return x;
+		}
+
+		public float getY() {
+			return y;
+		}
+
+		public float getZ() {
+			return z;
+		}
+
+		/**
+		 * Retourne les nouvelles coordonnées de cet avion. Un nouvel objet est
+		 * créé à chaque appel.
+		 */
 		public Coordinates getWhere() {
-			return where;
+			return new Coordinates(x, y, z);
 		}
 	}
 
@@ -83,6 +105,150 @@ public abstract class TowerEvent extends Event {
 		}
 	}
 
+	/**
+	 * Le contrôleur de congestion a étouffé des avions.
+	 */
+	public static class CongestionChoked extends TowerEvent {
+		private String reason;
+		private int depth;
+		private long lag;
+		private int planes;
+
+		public CongestionChoked(String reason, int depth, long lag, int planes) {
+			this.reason = reason;
+			this.depth = depth;
+			this.lag = lag;
+			this.planes = planes;
+		}
+
+		/**
+		 * L'indicateur ayant dépassé son seuil ("queue", "lag" ou "cpu").
+		 */
+		public String getReason() {
+			return reason;
+		}
+
+		/**
+		 * La profondeur des files d'événements au moment de la décision.
+		 */
+		public int getDepth() {
+			return depth;
+		}
+
+		/**
+		 * Le retard de distribution au moment de la décision, en
+		 * millisecondes.
+		 */
+		public long getLag() {
+			return lag;
+		}
+
+		/**
+		 * Le nombre d'avions étouffés.
+		 */
+		public int getPlanes() {
+			return planes;
+		}
+	}
+
+	/**
+	 * Le contrôleur de congestion a libéré les avions qu'il avait étouffés.
+	 */
+	public static class CongestionUnchoked extends TowerEvent {
+		private int planes;
+
+		public CongestionUnchoked(int planes) {
+			this.planes = planes;
+		}
+
+		/**
+		 * Le nombre d'avions libérés.
+		 */
+		public int getPlanes() {
+			return planes;
+		}
+	}
+
+	/**
+	 * Evenement de conflit entre deux avions.
+	 */
+	public static abstract class ConflictEvent extends PlaneTowerEvent {
+		/**
+		 * L'id de l'autre avion de la paire.
+		 */
+		private RadioID other;
+
+		public ConflictEvent(RadioID id, RadioID other) {
+			super(id);
+			this.other = other;
+		}
+
+		/**
+		 * Retourne l'identifiant de l'autre avion de la paire.
+		 */
+		public RadioID getOther() {
+			return other;
+		}
+	}
+
+	/**
+	 * Deux avions sont plus proches que la séparation minimale.
+	 */
+	public static class SeparationLost extends ConflictEvent {
+		/**
+		 * La distance entre les deux avions.
+		 */
+		private float distance;
+
+		public SeparationLost(RadioID id, RadioID other, float distance) {
+			super(id, other);
+			this.distance = distance;
+		}
+
+		public float getDistance() {
+			return distance;
+		}
+	}
+
+	/**
+	 * Les trajectoires projetées de deux avions les rapprocheront à moins de
+	 * la séparation minimale.
+	 */
+	public static class ConflictPredicted extends ConflictEvent {
+		/**
+		 * La distance actuelle entre les deux avions.
+		 */
+		private float distance;
+
+		/**
+		 * Le temps avant la perte de séparation, en secondes.
+		 */
+		private float time;
+
+		public ConflictPredicted(RadioID id, RadioID other, float distance, float time) {
+			super(id, other);
+			this.distance = distance;
+			this.time = time;
+		}
+
+		public float getDistance() {
+			return distance;
+		}
+
+		public float getTime() {
+			return time;
+		}
+	}
+
+	/**
+	 * Le conflit entre deux avions a disparu.
+	 */
+	public static class ConflictResolved extends ConflictEvent {
+		public ConflictResolved(RadioID id, RadioID other) {
+			super(id, other);
+		}
+	}
+
 	public static class TransferComplete extends TowerEvent {
 		/**
 		 * Chemin vers le fichier téléchargé.
@@ -97,4 +263,33 @@ public abstract class TowerEvent extends Event {
 			return path;
 		}
 	}
+
+	/**
+	 * La tour de secours a pris le relais de la tour principale.
+	 */
+	public static class TookOver extends TowerEvent {
+		/**
+		 * Le nombre d'avions dont l'état a été répliqué.
+		 */
+		private int planes;
+
+		/**
+		 * La durée de la prise de relais depuis la perte du lien, en
+		 * millisecondes.
+		 */
+		private long duration;
+
+		public TookOver(int planes, long duration) {
+			this.planes = planes;
+			this.duration = duration;
+		}
+
+		public int getPlanes() {
+			return planes;
+		}
+
+		public long getDuration() {
+			return duration;
+		}
+	}
 }
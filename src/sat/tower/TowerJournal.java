@@ -0,0 +1,860 @@
+package sat.tower;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+
+import sat.events.metrics.EventMetrics;
+import sat.plane.PlaneType;
+import sat.radio.RadioID;
+import sat.radio.message.stream.Serializer;
+import sat.utils.routes.MoveType;
+import sat.utils.routes.Route;
+import sat.utils.routes.Waypoint;
+
+/**
+ * Le journal de la tour: l'état de la tour (configuration, routes chargées,
+ * état des avions dans l'ordre de la file d'attente) est conservé sur disque
+ * pour qu'une tour redémarrée le retrouve en quelques millisecondes.
+ * <p>
+ * Le journal est un dossier contenant un instantané compact de l'état
+ * (<code>snapshot</code>) et les modifications suivantes, ajoutées à la fin
+ * d'un fichier de journal (<code>00000.log</code>, <code>00001.log</code>,
+ * ...). Chaque modification reçoit un numéro de séquence croissant;
+ * l'instantané indique le dernier numéro qu'il contient. Au redémarrage,
+ * l'instantané est projeté en mémoire, puis les modifications suivantes sont
+ * rejouées. Toutes les <code>interval</code> modifications, un nouvel
+ * instantané est écrit (dans un fichier temporaire renommé une fois complet)
+ * et les fichiers de journal qu'il couvre sont supprimés.
+ * <p>
+ * Les modifications sont publiées par la tour sous son verrou, dans l'ordre,
+ * et placées dans une file. Un thread d'écriture les encode, les écrit par
+ * lots et force l'écriture sur disque une fois par lot: la publication ne
+ * coûte à la tour qu'une insertion dans la file.
+ * <p>
+ * Format d'une modification (big-endian):
+ *
+ * <pre>
+ * int   longueur (des champs suivants le CRC)
+ * int   CRC32 des champs suivants
+ * long  numéro de séquence (0 pour DEFINE_ID)
+ * byte  type
+ * ...   données spécifiques au type
+ * </pre>
+ *
+ * Une modification tronquée ou dont le CRC est invalide termine la lecture
+ * d'un fichier (écriture interrompue par un arrêt de la tour). Comme dans
+ * les journaux d'événements radio, les RadioID ne sont écrits qu'une fois
+ * par fichier (<code>DEFINE_ID</code>).
+ * <p>
+ * Format de l'instantané:
+ *
+ * <pre>
+ * int magic, short version, long séquence
+ * int nombre de clés, (string clé, string valeur)*
+ * int nombre de routes, route*
+ * int nombre d'avions, (byte[] RadioID sérialisé, avion)*
+ * </pre>
+ */
+public class TowerJournal {
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	/**
+	 * Signature des instantanés ("SATJ").
+	 */
+	static final int MAGIC = 0x5341544A;
+
+	/**
+	 * Version du format.
+	 */
+	static final short VERSION = 1;
+
+	// - - - Record types - - -
+
+	/**
+	 * Association d'un numéro à un RadioID sérialisé.
+	 */
+	private static final byte DEFINE_ID = 0;
+
+	/**
+	 * Nouvel état d'un avion.
+	 */
+	private static final byte PLANE = 1;
+
+	/**
+	 * Déconnexion d'un avion.
+	 */
+	private static final byte REMOVE = 2;
+
+	/**
+	 * Route chargée.
+	 */
+	private static final byte ROUTE = 3;
+
+	/**
+	 * Clé de configuration modifiée.
+	 */
+	private static final byte CONFIG = 4;
+
+	/**
+	 * Fermeture du journal, jamais écrite.
+	 */
+	private static final byte CLOSE = -1;
+
+	/**
+	 * Nombre maximal de modifications écrites par lot.
+	 */
+	private static final int MAX_BATCH = 4096;
+
+	private static final PlaneType[] PLANE_TYPES = PlaneType.values();
+	private static final MoveType[] MOVE_TYPES = MoveType.values();
+
+	/**
+	 * La tour journalisée.
+	 */
+	private final Tower tower;
+
+	/**
+	 * Le dossier du journal.
+	 */
+	private final File dir;
+
+	/**
+	 * Nombre de modifications entre deux instantanés, 0 pour n'écrire un
+	 * instantané qu'à l'ouverture.
+	 */
+	private final int interval;
+
+	/**
+	 * Les mesures de la tour.
+	 */
+	private final EventMetrics metrics;
+
+	/**
+	 * Le numéro de la dernière modification publiée.
+	 */
+	private final AtomicLong sequence = new AtomicLong();
+
+	/**
+	 * Les modifications publiées et pas encore écrites.
+	 */
+	private final LinkedBlockingQueue<Entry> queue = new LinkedBlockingQueue<Entry>();
+
+	/**
+	 * Le thread d'écriture.
+	 */
+	private Thread writer;
+
+	/**
+	 * L'erreur qui a arrêté l'écriture, s'il y en a une.
+	 */
+	private volatile IOException failure;
+
+	// Writer state
+
+	private int generation = 0;
+	private RandomAccessFile file;
+	private FileChannel log;
+	private HashMap<RadioID, Integer> ids = new HashMap<RadioID, Integer>();
+	private ByteBuffer batch = ByteBuffer.allocate(64 * 1024);
+	private ByteBuffer record = ByteBuffer.allocate(4096);
+	private CRC32 crc = new CRC32();
+	private int sinceSnapshot = 0;
+
+	/**
+	 * Crée le journal d'une tour dans un dossier, qui peut contenir le
+	 * journal d'une exécution précédente.
+	 *
+	 * @throws IOException
+	 *             Si le dossier ne peut être créé.
+	 */
+	TowerJournal(Tower tower, String path, int interval, EventMetrics metrics) throws IOException {
+		this.tower = tower;
+		this.dir = new File(path);
+		this.interval = interval;
+		this.metrics = metrics;
+
+		if(!dir.isDirectory() && !dir.mkdirs()) {
+			throw new IOException("Unable to create journal directory " + path);
+		}
+	}
+
+	// - - - Recovery - - -
+
+	/**
+	 * Lit l'état conservé par le journal: l'instantané, puis les
+	 * modifications suivantes.
+	 *
+	 * @throws IOException
+	 *             Si l'instantané est invalide.
+	 */
+	State recover() throws IOException {
+		State state = new State(0);
+		File snapshot = new File(dir, "snapshot");
+
+		if(snapshot.exists()) {
+			try {
+				readSnapshot(map(snapshot), state);
+			}
+			catch(RuntimeException e) {
+				throw new IOException("Invalid journal snapshot " + snapshot, e);
+			}
+		}
+
+		long last = state.sequence;
+
+		for(int g : logGenerations()) {
+			last = Math.max(last, readLog(map(logFile(g)), state));
+			generation = g + 1;
+		}
+
+		sequence.set(last);
+
+		return state;
+	}
+
+	/**
+	 * Projette un fichier en mémoire, en lecture seule.
+	 */
+	private static MappedByteBuffer map(File f) throws IOException {
+		RandomAccessFile raf = new RandomAccessFile(f, "r");
+
+		try {
+			return raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, raf.length());
+		}
+		finally {
+			// The mapping remains valid after closing the file
+			raf.close();
+		}
+	}
+
+	private void readSnapshot(ByteBuffer buffer, State state) throws IOException {
+		if(buffer.remaining() < 14 || buffer.getInt() != MAGIC) {
+			throw new IOException("Not a journal snapshot");
+		}
+
+		if(buffer.getShort() != VERSION) {
+			throw new IOException("Unsupported journal version");
+		}
+
+		state.sequence = buffer.getLong();
+
+		int count = buffer.getInt();
+		for(int i = 0; i < count; i++) {
+			state.config.put(getString(buffer), getString(buffer));
+		}
+
+		count = buffer.getInt();
+		for(int i = 0; i < count; i++) {
+			state.routes.add(getRoute(buffer));
+		}
+
+		count = buffer.getInt();
+		for(int i = 0; i < count; i++) {
+			RadioID id = (RadioID) Serializer.deserialize(getBytes(buffer));
+			state.planes.put(id, getPlane(buffer, id));
+		}
+	}
+
+	/**
+	 * Rejoue un fichier de journal sur l'état lu.
+	 *
+	 * @return Le numéro de la dernière modification lue.
+	 */
+	private long readLog(ByteBuffer buffer, State state) {
+		HashMap<Integer, RadioID> handles = new HashMap<Integer, RadioID>();
+		CRC32 check = new CRC32();
+		long last = 0;
+
+		while(buffer.remaining() >= 8) {
+			int length = buffer.getInt();
+			int expected = buffer.getInt();
+
+			// Truncated record: the tower stopped while writing it
+			if(length < 9 || length > buffer.remaining()) {
+				break;
+			}
+
+			byte[] data = new byte[length];
+			buffer.get(data);
+
+			check.reset();
+			check.update(data, 0, length);
+
+			if((int) check.getValue() != expected) {
+				break;
+			}
+
+			ByteBuffer r = ByteBuffer.wrap(data);
+			long seq = r.getLong();
+			byte type = r.get();
+
+			if(type == DEFINE_ID) {
+				int handle = r.getInt();
+				handles.put(handle, (RadioID) Serializer.deserialize(getBytes(r)));
+				continue;
+			}
+
+			last = Math.max(last, seq);
+
+			// Already in the snapshot
+			if(seq <= state.sequence) {
+				continue;
+			}
+
+			switch(type) {
+				case PLANE:
+					RadioID id = handles.get(r.getInt());
+					state.planes.put(id, getPlane(r, id));
+					break;
+
+				case REMOVE:
+					state.planes.remove(handles.get(r.getInt()));
+					break;
+
+				case ROUTE:
+					state.routes.add(getRoute(r));
+					break;
+
+				case CONFIG:
+					state.config.put(getString(r), getString(r));
+					break;
+			}
+		}
+
+		return last;
+	}
+
+	// - - - Writer - - -
+
+	/**
+	 * Écrit l'état actuel de la tour comme nouvel instantané, puis démarre
+	 * l'écriture des modifications publiées.
+	 */
+	void start(State state) throws IOException {
+		compact(state);
+
+		writer = new Thread("Journal " + tower.getName()) {
+			public void run() {
+				write();
+			}
+		};
+
+		writer.setDaemon(true);
+		writer.start();
+	}
+
+	/**
+	 * Retourne le numéro de la dernière modification publiée.
+	 */
+	long getSequence() {
+		return sequence.get();
+	}
+
+	/**
+	 * Publie le nouvel état d'un avion.
+	 */
+	void appendPlane(StandbyLink.PlaneRecord plane) {
+		append(PLANE, plane);
+	}
+
+	/**
+	 * Publie la déconnexion d'un avion.
+	 */
+	void appendRemoval(RadioID id) {
+		append(REMOVE, id);
+	}
+
+	/**
+	 * Publie une route chargée.
+	 */
+	void appendRoute(Route route) {
+		append(ROUTE, route);
+	}
+
+	/**
+	 * Publie la modification d'une clé de configuration.
+	 */
+	void appendConfig(String key, String value) {
+		append(CONFIG, new String[] { key, value });
+	}
+
+	private void append(byte type, Object value) {
+		// Nobody is writing anymore
+		if(failure != null) {
+			return;
+		}
+
+		queue.offer(new Entry(sequence.incrementAndGet(), type, value));
+	}
+
+	/**
+	 * Écrit les modifications en attente et ferme le journal.
+	 *
+	 * @throws IOException
+	 *             Si une écriture a échoué depuis l'ouverture du journal.
+	 */
+	void close() throws IOException {
+		if(writer != null) {
+			queue.offer(new Entry(0, CLOSE, null));
+
+			try {
+				writer.join();
+			}
+			catch(InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+
+			writer = null;
+		}
+
+		if(failure != null) {
+			throw failure;
+		}
+	}
+
+	/**
+	 * Boucle du thread d'écriture: chaque lot de modifications est écrit puis
+	 * forcé sur disque en une fois.
+	 */
+	private void write() {
+		ArrayList<Entry> entries = new ArrayList<Entry>();
+		boolean closing = false;
+
+		try {
+			while(!closing) {
+				entries.clear();
+
+				try {
+					entries.add(queue.take());
+				}
+				catch(InterruptedException e) {
+					break;
+				}
+
+				queue.drainTo(entries, MAX_BATCH - 1);
+				batch.clear();
+
+				int written = 0;
+
+				for(Entry entry : entries) {
+					if(entry.type == CLOSE) {
+						closing = true;
+						break;
+					}
+
+					encode(entry);
+					written++;
+				}
+
+				if(written == 0) {
+					continue;
+				}
+
+				batch.flip();
+				while(batch.hasRemaining()) {
+					log.write(batch);
+				}
+
+				// Group commit: a single sync for the whole batch
+				log.force(false);
+
+				metrics.count("journal.records", written);
+				metrics.count("journal.batches", 1);
+				metrics.countMax("journal.batch.max", written);
+
+				sinceSnapshot += written;
+
+				if(!closing && interval > 0 && sinceSnapshot >= interval) {
+					compact(tower.captureJournalState(this));
+				}
+			}
+		}
+		catch(IOException e) {
+			failure = e;
+			queue.clear();
+		}
+
+		try {
+			if(file != null) {
+				file.close();
+			}
+		}
+		catch(IOException e) {
+		}
+	}
+
+	/**
+	 * Écrit un instantané, puis passe à un nouveau fichier de journal et
+	 * supprime ceux que l'instantané couvre.
+	 * <p>
+	 * Les modifications publiées avant la capture de l'instantané mais pas
+	 * encore écrites le sont dans le nouveau fichier: leur numéro de séquence
+	 * les fait ignorer au redémarrage.
+	 */
+	private void compact(State state) throws IOException {
+		File tmp = new File(dir, "snapshot.tmp");
+		File snapshot = new File(dir, "snapshot");
+
+		ByteBuffer buffer = encodeSnapshot(state);
+		RandomAccessFile raf = new RandomAccessFile(tmp, "rw");
+
+		try {
+			raf.setLength(0);
+			raf.write(buffer.array(), 0, buffer.limit());
+			raf.getFD().sync();
+		}
+		finally {
+			raf.close();
+		}
+
+		if(!tmp.renameTo(snapshot)) {
+			// Platforms refusing to replace an existing file
+			if(!snapshot.delete() || !tmp.renameTo(snapshot)) {
+				throw new IOException("Unable to replace journal snapshot " + snapshot);
+			}
+		}
+
+		if(file != null) {
+			file.close();
+		}
+
+		file = new RandomAccessFile(logFile(generation), "rw");
+		file.setLength(0);
+		log = file.getChannel();
+		ids.clear();
+
+		for(int g : logGenerations()) {
+			if(g < generation) {
+				logFile(g).delete();
+			}
+		}
+
+		generation++;
+		sinceSnapshot = 0;
+
+		metrics.count("journal.snapshots", 1);
+	}
+
+	private ByteBuffer encodeSnapshot(State state) {
+		ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+
+		buffer.putInt(MAGIC);
+		buffer.putShort(VERSION);
+		buffer.putLong(state.sequence);
+
+		buffer = ensure(buffer, 4);
+		buffer.putInt(state.config.size());
+		for(String key : state.config.keySet()) {
+			buffer = putString(buffer, key);
+			buffer = putString(buffer, state.config.get(key));
+		}
+
+		buffer = ensure(buffer, 4);
+		buffer.putInt(state.routes.size());
+		for(Route route : state.routes) {
+			buffer = putRoute(buffer, route);
+		}
+
+		buffer = ensure(buffer, 4);
+		buffer.putInt(state.planes.size());
+		for(StandbyLink.PlaneRecord plane : state.planes.values()) {
+			buffer = putBytes(buffer, Serializer.serialize(plane.getID()));
+			buffer = putPlane(buffer, plane);
+		}
+
+		buffer.flip();
+		return buffer;
+	}
+
+	/**
+	 * Encode une modification à la fin du lot.
+	 */
+	private void encode(Entry entry) {
+		switch(entry.type) {
+			case PLANE:
+				StandbyLink.PlaneRecord plane = (StandbyLink.PlaneRecord) entry.value;
+				int handle = handle(plane.getID());
+
+				begin(entry.seq, PLANE);
+				record.putInt(handle);
+				record = putPlane(record, plane);
+				break;
+
+			case REMOVE:
+				handle = handle((RadioID) entry.value);
+
+				begin(entry.seq, REMOVE);
+				record.putInt(handle);
+				break;
+
+			case ROUTE:
+				begin(entry.seq, ROUTE);
+				record = putRoute(record, (Route) entry.value);
+				break;
+
+			case CONFIG:
+				String[] config = (String[]) entry.value;
+
+				begin(entry.seq, CONFIG);
+				record = putString(record, config[0]);
+				record = putString(record, config[1]);
+				break;
+		}
+
+		commit();
+	}
+
+	/**
+	 * Retourne le numéro associé à un identifiant dans le fichier actuel, en
+	 * écrivant sa définition s'il n'est pas encore connu.
+	 */
+	private int handle(RadioID id) {
+		Integer handle = ids.get(id);
+
+		if(handle == null) {
+			handle = ids.size();
+			ids.put(id, handle);
+
+			begin(0, DEFINE_ID);
+			record.putInt(handle);
+			record = putBytes(record, Serializer.serialize(id));
+			commit();
+		}
+
+		return handle;
+	}
+
+	private void begin(long seq, byte type) {
+		record.clear();
+		record.putInt(0); // Length, set by commit()
+		record.putInt(0); // CRC, set by commit()
+		record.putLong(seq);
+		record.put(type);
+	}
+
+	/**
+	 * Termine l'enregistrement construit et l'ajoute au lot.
+	 */
+	private void commit() {
+		int length = record.position() - 8;
+
+		crc.reset();
+		crc.update(record.array(), 8, length);
+
+		record.putInt(0, length);
+		record.putInt(4, (int) crc.getValue());
+		record.flip();
+
+		batch = ensure(batch, record.remaining());
+		batch.put(record);
+	}
+
+	// - - - Encoding - - -
+
+	private static ByteBuffer ensure(ByteBuffer buffer, int size) {
+		if(buffer.remaining() >= size) {
+			return buffer;
+		}
+
+		ByteBuffer larger = ByteBuffer.allocate(buffer.capacity() * 2 + size);
+		buffer.flip();
+		larger.put(buffer);
+
+		return larger;
+	}
+
+	private static ByteBuffer putBytes(ByteBuffer buffer, byte[] bytes) {
+		buffer = ensure(buffer, bytes.length + 4);
+		buffer.putInt(bytes.length);
+		buffer.put(bytes);
+
+		return buffer;
+	}
+
+	private static byte[] getBytes(ByteBuffer buffer) {
+		byte[] bytes = new byte[buffer.getInt()];
+		buffer.get(bytes);
+
+		return bytes;
+	}
+
+	private static ByteBuffer putString(ByteBuffer buffer, String s) {
+		return putBytes(buffer, s.getBytes(UTF8));
+	}
+
+	private static String getString(ByteBuffer buffer) {
+		return new String(getBytes(buffer), UTF8);
+	}
+
+	/**
+	 * Encode l'état d'un avion, sans son identifiant.
+	 */
+	private static ByteBuffer putPlane(ByteBuffer buffer, StandbyLink.PlaneRecord plane) {
+		buffer = ensure(buffer, 23);
+
+		buffer.put((byte) ((plane.getType() == null) ? -1 : plane.getType().ordinal()));
+		buffer.putInt(plane.getLandingID());
+		buffer.putLong(plane.getConnectionTime());
+		buffer.putInt(plane.getCurrentRoute());
+		buffer.put((byte) ((plane.isMayDay() ? 1 : 0) | (plane.isLanding() ? 2 : 0) | (plane.isQueued() ? 4 : 0)));
+
+		return buffer;
+	}
+
+	private static StandbyLink.PlaneRecord getPlane(ByteBuffer buffer, RadioID id) {
+		TowerPlane plane = new TowerPlane(id);
+
+		byte type = buffer.get();
+		if(type >= 0) {
+			plane.setType(PLANE_TYPES[type]);
+		}
+
+		plane.setLandingID(buffer.getInt());
+		plane.setConnectionTime(buffer.getLong());
+		plane.setCurrentRoute(buffer.getInt());
+
+		byte flags = buffer.get();
+		plane.setMayDay((flags & 1) != 0);
+
+		if((flags & 2) != 0) {
+			plane.setLanding();
+		}
+
+		return new StandbyLink.PlaneRecord(plane, (flags & 4) != 0);
+	}
+
+	/**
+	 * Encode une route: capacité, atterrissage et étapes, comme dans un
+	 * catalogue de routes.
+	 */
+	private static ByteBuffer putRoute(ByteBuffer buffer, Route route) {
+		buffer = ensure(buffer, 9);
+
+		buffer.putInt(route.getCapacity());
+		buffer.put((byte) (route.isLanding() ? 1 : 0));
+		buffer.putInt(route.size());
+
+		for(Waypoint waypoint : route) {
+			float[] args = RouteCatalog.argsOf(waypoint);
+
+			buffer = ensure(buffer, 2 + 4 * args.length);
+			buffer.put((byte) waypoint.getType().ordinal());
+			buffer.put((byte) args.length);
+
+			for(float arg : args) {
+				buffer.putFloat(arg);
+			}
+		}
+
+		return buffer;
+	}
+
+	private static Route getRoute(ByteBuffer buffer) {
+		Route route = new Route(buffer.getInt());
+
+		if(buffer.get() != 0) {
+			route.setLanding();
+		}
+
+		int size = buffer.getInt();
+
+		for(int w = 0; w < size; w++) {
+			MoveType type = MOVE_TYPES[buffer.get()];
+			float[] args = new float[buffer.get()];
+
+			for(int a = 0; a < args.length; a++) {
+				args[a] = buffer.getFloat();
+			}
+
+			route.add(new Waypoint(type, args));
+		}
+
+		return route;
+	}
+
+	// - - - Files - - -
+
+	private File logFile(int generation) {
+		return new File(dir, String.format("%05d.log", generation));
+	}
+
+	/**
+	 * Retourne les numéros des fichiers de journal présents, dans l'ordre.
+	 */
+	private int[] logGenerations() {
+		String[] names = dir.list();
+		int[] generations = new int[names.length];
+		int count = 0;
+
+		for(String name : names) {
+			if(name.matches("\\d{5}\\.log")) {
+				generations[count++] = Integer.parseInt(name.substring(0, 5));
+			}
+		}
+
+		generations = Arrays.copyOf(generations, count);
+		Arrays.sort(generations);
+
+		return generations;
+	}
+
+	// - - - State - - -
+
+	/**
+	 * Une modification publiée.
+	 */
+	private static class Entry {
+		private final long seq;
+		private final byte type;
+		private final Object value;
+
+		private Entry(long seq, byte type, Object value) {
+			this.seq = seq;
+			this.type = type;
+			this.value = value;
+		}
+	}
+
+	/**
+	 * L'état conservé par le journal: configuration, routes et état des
+	 * avions dans l'ordre de la file d'attente.
+	 */
+	static class State {
+		/**
+		 * Le numéro de la dernière modification contenue.
+		 */
+		private long sequence;
+
+		private final LinkedHashMap<String, String> config = new LinkedHashMap<String, String>();
+		private final ArrayList<Route> routes = new ArrayList<Route>();
+		private final LinkedHashMap<RadioID, StandbyLink.PlaneRecord> planes = new LinkedHashMap<RadioID, StandbyLink.PlaneRecord>();
+
+		State(long sequence) {
+			this.sequence = sequence;
+		}
+
+		LinkedHashMap<String, String> getConfig() {
+			return config;
+		}
+
+		ArrayList<Route> getRoutes() {
+			return routes;
+		}
+
+		LinkedHashMap<RadioID, StandbyLink.PlaneRecord> getPlanes() {
+			return planes;
+		}
+	}
+}
@@ -2,7 +2,7 @@ package sat.tower;
 
 import sat.plane.PlaneType;
 import sat.radio.RadioID;
-import sat.utils.geo.Coordinates;
+import sat.radio.server.RadioServer.PlaneAgent;
 
 /**
  * Un avion interne à la tour. Il maintient une série d'informations nécessaires
@@ -26,21 +26,48 @@ public class TowerPlane {
 		return nextLandingID++;
 	}
 
+	/**
+	 * Garantit que les prochains ID d'atterrissage seront supérieurs à un ID
+	 * attribué par une autre tour.
+	 */
+	synchronized static void reserveLandingID(int landingID) {
+		if(landingID >= nextLandingID) {
+			nextLandingID = landingID + 1;
+		}
+	}
+
 	/**
 	 * L'ID de cet avion.
 	 */
 	private RadioID id;
 
+	/**
+	 * L'emplacement de cet avion dans le registre de la tour.
+	 */
+	private int slot = -1;
+
+	/**
+	 * Le gestionnaire radio de cet avion, ou <code>null</code> s'il n'est pas
+	 * connecté à la radio (rejeu d'un journal).
+	 */
+	private PlaneAgent agent;
+
 	/**
 	 * Son numéro d'atterrissage, ou -1 si cet avion n'a pas demandé à atterrir.
 	 */
 	private int landingID = -1;
 
 	/**
-	 * La route actuelle de cet avion, ou -1 s'il n'a jamais été routé ou s'il
-	 * est envoyé au cimetierre.
+	 * La route actuelle de cet avion, -1 s'il est envoyé au cimetierre ou -2
+	 * s'il n'a jamais été routé.
+	 */
+	private int currentRoute = LandingQueue.NOT_QUEUED;
+
+	/**
+	 * Le compartiment de la file d'attente d'atterrissage contenant cet
+	 * avion. Géré par LandingQueue.
 	 */
-	private int currentRoute = -1;
+	int queueIndex = LandingQueue.NOT_QUEUED;
 
 	/**
 	 * Indique si cet avion est en situation critique.
@@ -59,14 +86,28 @@ public class TowerPlane {
 	private boolean landing;
 
 	/**
-	 * Point de boucle du circuit.
+	 * La route d'atterrissage de la piste assignée à cet avion, ou -1. Un
+	 * avion peut avoir une piste sans être encore en cours d'atterrissage: il
+	 * attend alors l'heure de départ de son créneau sur son circuit.
 	 */
-	private Coordinates loopPoint;
+	private int runway = -1;
 
 	/**
-	 * Indique si la boucle a déjà été envoyée.
+	 * L'heure à laquelle cet avion doit quitter son circuit d'attente pour
+	 * rejoindre sa piste, en millisecondes.
 	 */
-	private boolean loopSent = false;
+	private long departureTime;
+
+	/**
+	 * Le temps estimé pour atteindre la piste, en secondes, utilisé pour
+	 * ordonner la file d'attente en mode {@link RoutingMode#SLOT}.
+	 */
+	private float timeToRunway = Float.POSITIVE_INFINITY;
+
+	/**
+	 * L'heure de connexion de cet avion.
+	 */
+	private long connectionTime = System.currentTimeMillis();
 
 	/**
 	 * Crée un nouvel avion interne à la tour.
@@ -75,6 +116,24 @@ public class TowerPlane {
 		this.id = id;
 	}
 
+	/**
+	 * Crée une copie de l'état de routage d'un avion, hors de toute file
+	 * d'attente et sans gestionnaire radio.
+	 */
+	TowerPlane(TowerPlane plane) {
+		this.id = plane.id;
+		this.slot = plane.slot;
+		this.landingID = plane.landingID;
+		this.currentRoute = plane.currentRoute;
+		this.mayDay = plane.mayDay;
+		this.type = plane.type;
+		this.landing = plane.landing;
+		this.runway = plane.runway;
+		this.departureTime = plane.departureTime;
+		this.timeToRunway = plane.timeToRunway;
+		this.connectionTime = plane.connectionTime;
+	}
+
 	/**
 	 * La route actuelle.
 	 */
@@ -113,6 +172,34 @@ public class TowerPlane {
 		return id;
 	}
 
+	/**
+	 * Retourne l'emplacement de cet avion dans le registre de la tour.
+	 */
+	public int getSlot() {
+		return slot;
+	}
+
+	/**
+	 * Défini l'emplacement de cet avion dans le registre de la tour.
+	 */
+	public void setSlot(int slot) {
+		this.slot = slot;
+	}
+
+	/**
+	 * Retourne le gestionnaire radio de cet avion, ou <code>null</code>.
+	 */
+	public PlaneAgent getAgent() {
+		return agent;
+	}
+
+	/**
+	 * Défini le gestionnaire radio de cet avion.
+	 */
+	public void setAgent(PlaneAgent agent) {
+		this.agent = agent;
+	}
+
 	/**
 	 * L'ID d'atterrissage de cet avion.
 	 */
@@ -130,6 +217,14 @@ public class TowerPlane {
 		}
 	}
 
+	/**
+	 * Reprend le ticket d'atterrissage attribué par une autre tour.
+	 */
+	void setLandingID(int landingID) {
+		this.landingID = landingID;
+		reserveLandingID(landingID);
+	}
+
 	/**
 	 * Retourne le type de l'avion.
 	 */
@@ -162,32 +257,57 @@ public class TowerPlane {
 	}
 
 	/**
-	 * Retourne la
-	 * 
-	 * @param coords
-	 * @return
+	 * Retourne la route d'atterrissage de la piste assignée à cet avion, ou -1
+	 * si aucune piste ne lui est assignée.
 	 */
-	public float distanceToLoopPoint(Coordinates coords) {
-		if(loopPoint == null) {
-			return Float.NaN;
-		}
+	public int getRunway() {
+		return runway;
+	}
 
-		float dx = coords.getX() - loopPoint.getX();
-		float dy = coords.getY() - loopPoint.getY();
-		float dz = coords.getZ() - loopPoint.getZ();
+	/**
+	 * Retourne l'heure à laquelle cet avion doit quitter son circuit
+	 * d'attente pour rejoindre sa piste, en millisecondes.
+	 */
+	public long getDepartureTime() {
+		return departureTime;
+	}
 
-		return (float) Math.sqrt(dx * dx + dy * dy + dz * dz);
-	};
+	/**
+	 * Assigne une piste à cet avion, ou la lui retire si <code>runway</code>
+	 * vaut -1.
+	 */
+	void setRunway(int runway, long departureTime) {
+		this.runway = runway;
+		this.departureTime = departureTime;
+	}
 
-	public void setLoopPoint(Coordinates loopPoint) {
-		this.loopPoint = loopPoint;
+	/**
+	 * Retourne l'heure de connexion de cet avion.
+	 */
+	public long getConnectionTime() {
+		return connectionTime;
 	}
 
-	public boolean isLoopSent() {
-		return loopSent;
+	/**
+	 * Reprend l'heure de connexion de cet avion à une autre tour.
+	 */
+	void setConnectionTime(long connectionTime) {
+		this.connectionTime = connectionTime;
 	}
 
-	public void setLoopSent(boolean loopSent) {
-		this.loopSent = loopSent;
+	/**
+	 * Retourne le temps estimé pour atteindre la piste, ou l'infini s'il
+	 * n'est pas connu.
+	 */
+	public float getTimeToRunway() {
+		return timeToRunway;
+	}
+
+	/**
+	 * Défini le temps estimé pour atteindre la piste. L'avion doit être
+	 * retiré de la file d'attente pendant cette modification.
+	 */
+	public void setTimeToRunway(float timeToRunway) {
+		this.timeToRunway = timeToRunway;
 	}
 }
@@ -64,9 +64,104 @@ public abstract class AgentRequest extends Event {
 	public static class TowerKey extends AgentRequest {
 	}
 
-	public static class Choke extends AgentRequest {
+	/**
+	 * Requête restreinte à une région circulaire. Un rayon nul ou négatif
+	 * désigne tous les avions.
+	 */
+	public static abstract class RegionRequest extends AgentRequest {
+		private float x;
+		private float y;
+		private float radius;
+
+		public RegionRequest() {
+			this(0, 0, 0);
+		}
+
+		public RegionRequest(float x, float y, float radius) {
+			this.x = x;
+			this.y = y;
+			this.radius = radius;
+		}
+
+		public boolean isRegion() {
+			return radius > 0;
+		}
+
+		public float getX() {
+			return x;
+		}
+
+		public float getY() {
+			return y;
+		}
+
+		public float getRadius() {
+			return radius;
+		}
+	}
+
+	public static class Choke extends RegionRequest {
+		public Choke() {
+		}
+
+		public Choke(float x, float y, float radius) {
+			super(x, y, radius);
+		}
+	}
+
+	public static class Unchoke extends RegionRequest {
+		public Unchoke() {
+		}
+
+		public Unchoke(float x, float y, float radius) {
+			super(x, y, radius);
+		}
+	}
+
+	public static class Metrics extends AgentRequest {
+		private String action;
+
+		public Metrics(String action) {
+			this.action = action;
+		}
+
+		/**
+		 * L'action à effectuer avant de retourner les mesures: "on", "off",
+		 * "reset" ou une chaine vide.
+		 */
+		public String getAction() {
+			return action;
+		}
+	}
+
+	public static class Near extends AgentRequest {
+		private float x;
+		private float y;
+		private float radius;
+
+		public Near(float x, float y, float radius) {
+			this.x = x;
+			this.y = y;
+			this.radius = radius;
+		}
+
+		public float getX() {
+			return x;
+		}
+
+		public float getY() {
+			return y;
+		}
+
+		/**
+		 * Le rayon de la recherche, ou une valeur négative ou nulle pour
+		 * rechercher l'avion le plus proche.
+		 */
+		public float getRadius() {
+			return radius;
+		}
 	}
 
-	public static class Unchoke extends AgentRequest {
+	public static class Plan extends AgentRequest {
 	}
 }
@@ -1,6 +1,13 @@
 package sat.tower.agent;
 
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+
 import sat.events.Event;
+import sat.events.metrics.MetricsSnapshot;
+import sat.radio.RadioID;
+import sat.tower.RoutingPlanner;
 import sat.utils.cli.Config;
 import sat.utils.crypto.RSAKey;
 
@@ -51,6 +58,68 @@ public abstract class AgentResult extends Event {
 		}
 	}
 
+	public static class MetricsResult extends AgentResult {
+		private MetricsSnapshot metrics;
+
+		public MetricsResult(MetricsSnapshot metrics) {
+			this.metrics = metrics;
+		}
+
+		public MetricsSnapshot getMetrics() {
+			return metrics;
+		}
+	}
+
+	public static class NearResult extends AgentResult {
+		private LinkedHashMap<RadioID, Float> planes;
+
+		public NearResult(LinkedHashMap<RadioID, Float> planes) {
+			this.planes = planes;
+		}
+
+		/**
+		 * Les avions trouvés, du plus proche au plus éloigné, associés à leur
+		 * distance.
+		 */
+		public LinkedHashMap<RadioID, Float> getPlanes() {
+			return planes;
+		}
+	}
+
+	public static class PlanResult extends AgentResult {
+		private ArrayList<RoutingPlanner.Plan> plans;
+
+		public PlanResult(List<RoutingPlanner.Plan> plans) {
+			this.plans = new ArrayList<RoutingPlanner.Plan>(plans);
+		}
+
+		/**
+		 * Les projections de chaque mode de routage et ordre d'atterrissage,
+		 * de la meilleure à la moins bonne.
+		 */
+		public List<RoutingPlanner.Plan> getPlans() {
+			return plans;
+		}
+	}
+
+	/**
+	 * Résultat d'un Choke ou Unchoke restreint à une région.
+	 */
+	public static class ChokeResult extends AgentResult {
+		private int count;
+
+		public ChokeResult(int count) {
+			this.count = count;
+		}
+
+		/**
+		 * Le nombre d'avions auxquels le message a été envoyé.
+		 */
+		public int getCount() {
+			return count;
+		}
+	}
+
 	public static class TowerKeyResult extends AgentResult {
 		private RSAKey key;
 
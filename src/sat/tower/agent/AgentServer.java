@@ -9,12 +9,22 @@ import java.net.Socket;
 
 import sat.events.Event;
 import sat.events.EventListener;
+import sat.tower.Tower;
 
 public class AgentServer implements Runnable {
 	private static final int PORT = 4242;
 	private static Thread serverThread = null;
 	private static boolean running = false;
 
+	/**
+	 * La tour contrôlée par les agents distants.
+	 */
+	private Tower tower;
+
+	public AgentServer(Tower tower) {
+		this.tower = tower;
+	}
+
 	public void run() {
 		ServerSocket server = null;
 
@@ -50,12 +60,16 @@ public class AgentServer implements Runnable {
 		return (serverThread != null && serverThread.isAlive());
 	}
 
-	public static void start() {
+	/**
+	 * Démarre le serveur. Un seul serveur peut fonctionner dans la JVM, il
+	 * donne accès à la tour spécifiée.
+	 */
+	public static void start(Tower tower) {
 		if(isRunning()) {
 			return;
 		}
 
-		serverThread = new Thread(new AgentServer());
+		serverThread = new Thread(new AgentServer(tower));
 		serverThread.start();
 	}
 
@@ -76,7 +90,7 @@ public class AgentServer implements Runnable {
 		public SocketManager(Socket socket) throws IOException {
 			this.socket = socket;
 
-			agent = new TowerAgent();
+			agent = new TowerAgent(tower);
 			agent.addListener(this);
 		}
 
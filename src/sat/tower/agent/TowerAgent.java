@@ -5,22 +5,49 @@ import java.util.HashMap;
 import sat.events.Event;
 import sat.events.EventEmitter;
 import sat.events.EventListener;
+import sat.events.metrics.EventMetrics;
 import sat.tower.Tower;
 
 public class TowerAgent extends EventEmitter implements EventListener {
+	/**
+	 * La tour contrôlée par cet agent, ou <code>null</code> pour un agent
+	 * distant.
+	 */
+	private Tower tower;
+
 	private TowerAgentExecutor executor;
 
 	private int requestId;
 	private HashMap<Integer, EventListener> pendingRequests;
 
-	public TowerAgent() {
+	/**
+	 * Crée un agent lié à une tour de cette JVM.
+	 */
+	public TowerAgent(Tower tower) {
+		this();
+
+		this.tower = tower;
 		executor = new TowerAgentExecutor();
-		Tower.getInstance().addListener(this);
+		tower.addListener(this);
+	}
 
+	/**
+	 * Crée un agent sans tour locale, dont les requêtes sont exécutées
+	 * ailleurs (voir {@link RemoteTowerAgent}).
+	 */
+	protected TowerAgent() {
 		requestId = 0;
 		pendingRequests = new HashMap<Integer, EventListener>();
 	}
 
+	/**
+	 * Retourne la tour contrôlée par cet agent, ou <code>null</code> pour un
+	 * agent distant.
+	 */
+	public Tower getTower() {
+		return tower;
+	}
+
 	public void execute(AgentRequest req, EventListener handler) {
 		if(handler != null) {
 			synchronized(pendingRequests) {
@@ -57,7 +84,9 @@ public class TowerAgent extends EventEmitter implements EventListener {
 	}
 
 	public void exit() {
-		Tower.getInstance().removeListener(this);
+		if(tower != null) {
+			tower.removeListener(this);
+		}
 	}
 
 	public boolean isRemote() {
@@ -109,15 +138,37 @@ public class TowerAgent extends EventEmitter implements EventListener {
 		execute(new AgentRequest.Unchoke(), null);
 	}
 
-	// - - - Executor - - -
+	/**
+	 * Envoie un message Choke aux seuls avions situés à moins de
+	 * <code>radius</code> du point (x, y).
+	 */
+	public void requestChoke(float x, float y, float radius, EventListener handler) {
+		execute(new AgentRequest.Choke(x, y, radius), handler);
+	}
 
-	public class TowerAgentExecutor implements EventListener {
-		private Tower tower;
+	/**
+	 * Envoie un message Unchoke aux seuls avions situés à moins de
+	 * <code>radius</code> du point (x, y).
+	 */
+	public void requestUnchoke(float x, float y, float radius, EventListener handler) {
+		execute(new AgentRequest.Unchoke(x, y, radius), handler);
+	}
 
-		public TowerAgentExecutor() {
-			tower = Tower.getInstance();
-		}
+	public void requestMetrics(String action, EventListener handler) {
+		execute(new AgentRequest.Metrics(action), handler);
+	}
+
+	public void requestNear(float x, float y, float radius, EventListener handler) {
+		execute(new AgentRequest.Near(x, y, radius), handler);
+	}
+
+	public void requestPlan(EventListener handler) {
+		execute(new AgentRequest.Plan(), handler);
+	}
+
+	// - - - Executor - - -
 
+	public class TowerAgentExecutor implements EventListener {
 		public void on(AgentRequest.Init ev) {
 			tower.init();
 		}
@@ -131,7 +182,7 @@ public class TowerAgent extends EventEmitter implements EventListener {
 		}
 
 		public void on(AgentRequest.ConfigSetKey ev) {
-			tower.getConfig().setProperty(ev.getKey(), ev.getValue());
+			tower.setConfig(ev.getKey(), ev.getValue());
 		}
 
 		public void on(AgentRequest.TowerKey ev) {
@@ -139,11 +190,50 @@ public class TowerAgent extends EventEmitter implements EventListener {
 		}
 
 		public void on(AgentRequest.Choke ev) {
-			tower.choke();
+			if(ev.isRegion()) {
+				done(ev, new AgentResult.ChokeResult(tower.choke(ev.getX(), ev.getY(), ev.getRadius(), null)));
+			}
+			else {
+				tower.choke();
+			}
 		}
 
 		public void on(AgentRequest.Unchoke ev) {
-			tower.unchoke();
+			if(ev.isRegion()) {
+				done(ev, new AgentResult.ChokeResult(tower.unchoke(ev.getX(), ev.getY(), ev.getRadius(), null)));
+			}
+			else {
+				tower.unchoke();
+			}
+		}
+
+		public void on(AgentRequest.Metrics ev) {
+			EventMetrics metrics = tower.getMetrics();
+
+			if(ev.getAction().equals("on")) {
+				metrics.setEnabled(true);
+			}
+			else if(ev.getAction().equals("off")) {
+				metrics.setEnabled(false);
+			}
+			else if(ev.getAction().equals("reset")) {
+				metrics.reset();
+			}
+
+			done(ev, new AgentResult.MetricsResult(metrics.snapshot()));
+		}
+
+		public void on(AgentRequest.Near ev) {
+			if(ev.getRadius() > 0) {
+				done(ev, new AgentResult.NearResult(tower.getPlanesNear(ev.getX(), ev.getY(), ev.getRadius())));
+			}
+			else {
+				done(ev, new AgentResult.NearResult(tower.getNearestPlane(ev.getX(), ev.getY())));
+			}
+		}
+
+		public void on(AgentRequest.Plan ev) {
+			done(ev, new AgentResult.PlanResult(tower.plan()));
 		}
 
 		public void done(AgentRequest req, AgentResult ev) {
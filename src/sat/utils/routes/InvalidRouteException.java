@@ -0,0 +1,11 @@
+package sat.utils.routes;
+
+/**
+ * Exception lancée quand un fichier de route n'est pas valide.
+ */
+@SuppressWarnings("serial")
+public class InvalidRouteException extends Exception {
+	public InvalidRouteException(String message) {
+		super(message);
+	}
+}
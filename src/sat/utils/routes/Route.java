@@ -65,10 +65,10 @@ public class Route extends ArrayList<Waypoint> implements Cloneable {
 	 * Retourne la capacité de la route telle que définie lors de sa création.
 	 * Une capacité de -1 indique que la route n'a pas de capacité définie.
 	 * 
-	 * Une route de type Landing a toujours une capcité de 1 quelque soit la
-	 * capacité passée en argument lors de sa créaction.
+	 * Une route de type Landing a une capacité d'au moins 1: c'est le nombre
+	 * d'avions qui peuvent être simultanément en approche de sa piste.
 	 */
 	public int getCapacity() {
-		return (landing) ? 1 : capacity;
+		return (landing) ? Math.max(capacity, 1) : capacity;
 	}
 }
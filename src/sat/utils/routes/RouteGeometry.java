@@ -0,0 +1,299 @@
+package sat.utils.routes;
+
+import java.nio.ByteBuffer;
+
+/**
+ * La géométrie d'une route: point de départ et d'arrivée, longueur de chaque
+ * étape et, pour les étapes circulaires, le rayon et les angles de l'arc.
+ * <p>
+ * Un avion décrit un cercle autour du point de l'étape, au rayon auquel il se
+ * trouve en commençant l'étape. La géométrie d'une étape dépend donc de la
+ * fin de l'étape précédente. Les circuits d'attente bouclent: leur première
+ * étape commence à la fin de la dernière. Pour une route qui ne boucle pas
+ * (atterrissage, destruction), la position de l'avion avant la première étape
+ * n'est pas connue et la première étape est considérée comme de longueur
+ * nulle.
+ * <p>
+ * Les distances sont mesurées dans le plan horizontal.
+ */
+public class RouteGeometry {
+	// Per waypoint record
+	private static final int START_X = 0;
+	private static final int START_Y = 1;
+	private static final int END_X = 2;
+	private static final int END_Y = 3;
+	private static final int LENGTH = 4;
+	private static final int RADIUS = 5;
+	private static final int START_ANGLE = 6;
+	private static final int SWEEP = 7;
+	private static final int REMAINING = 8;
+
+	/**
+	 * Nombre de floats par étape.
+	 */
+	public static final int STRIDE = 9;
+
+	/**
+	 * Les enregistrements des étapes.
+	 */
+	private final float[] data;
+
+	/**
+	 * Indique si la route boucle.
+	 */
+	private final boolean cyclic;
+
+	/**
+	 * Calcule la géométrie d'une route.
+	 */
+	public RouteGeometry(Route route) {
+		this.cyclic = isCyclic(route);
+		this.data = new float[route.size() * STRIDE];
+
+		float[] position = initialPosition(route);
+
+		// A loop starts where it ends: one pass to find the end of the last
+		// waypoint, a second one to record
+		if(cyclic) {
+			trace(route, position);
+		}
+
+		trace(route, position);
+
+		float remaining = 0;
+
+		for(int i = route.size() - 1; i >= 0; i--) {
+			remaining += data[i * STRIDE + LENGTH];
+			data[i * STRIDE + REMAINING] = remaining;
+		}
+	}
+
+	/**
+	 * Crée une géométrie à partir de ses enregistrements.
+	 */
+	private RouteGeometry(float[] data, boolean cyclic) {
+		this.data = data;
+		this.cyclic = cyclic;
+	}
+
+	/**
+	 * Indique si une route boucle (circuit d'attente).
+	 */
+	public static boolean isCyclic(Route route) {
+		if(route.isLanding()) {
+			return false;
+		}
+
+		for(Waypoint waypoint : route) {
+			if(waypoint.getType() == MoveType.DESTRUCTION) {
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	/**
+	 * Retourne la position de départ du tracé: le point de la première étape
+	 * en ligne droite pour un circuit, le point de la première étape sinon.
+	 */
+	private static float[] initialPosition(Route route) {
+		for(Waypoint waypoint : route) {
+			if(hasPoint(waypoint) && waypoint.getType() != MoveType.CIRCULAR) {
+				return new float[] { waypoint.getCoordiates().getX(), waypoint.getCoordiates().getY() };
+			}
+		}
+
+		for(Waypoint waypoint : route) {
+			if(hasPoint(waypoint)) {
+				return new float[] { waypoint.getCoordiates().getX(), waypoint.getCoordiates().getY() };
+			}
+		}
+
+		return new float[] { 0, 0 };
+	}
+
+	private static boolean hasPoint(Waypoint waypoint) {
+		return waypoint.getType() != MoveType.NONE;
+	}
+
+	/**
+	 * Parcourt la route depuis une position, en enregistrant chaque étape.
+	 * La position est mise à jour à la fin de la route.
+	 */
+	private void trace(Route route, float[] position) {
+		boolean first = !cyclic;
+
+		for(int i = 0; i < route.size(); i++) {
+			Waypoint waypoint = route.get(i);
+			int base = i * STRIDE;
+
+			float x = position[0];
+			float y = position[1];
+
+			data[base + START_X] = x;
+			data[base + START_Y] = y;
+			data[base + LENGTH] = 0;
+			data[base + RADIUS] = 0;
+			data[base + START_ANGLE] = 0;
+			data[base + SWEEP] = 0;
+
+			if(waypoint.getType() == MoveType.CIRCULAR) {
+				float cx = waypoint.getCoordiates().getX();
+				float cy = waypoint.getCoordiates().getY();
+				float r = (float) Math.hypot(x - cx, y - cy);
+				float theta = (float) Math.atan2(y - cy, x - cx);
+				float sweep = (float) Math.toRadians(waypoint.getAngle());
+
+				data[base + RADIUS] = r;
+				data[base + START_ANGLE] = theta;
+				data[base + SWEEP] = sweep;
+				data[base + LENGTH] = r * Math.abs(sweep);
+
+				position[0] = cx + r * (float) Math.cos(theta + sweep);
+				position[1] = cy + r * (float) Math.sin(theta + sweep);
+			}
+			else if(hasPoint(waypoint)) {
+				float tx = waypoint.getCoordiates().getX();
+				float ty = waypoint.getCoordiates().getY();
+
+				// Unknown approach to the first waypoint of a route that
+				// does not loop
+				if(first) {
+					data[base + START_X] = tx;
+					data[base + START_Y] = ty;
+				}
+				else {
+					data[base + LENGTH] = (float) Math.hypot(tx - x, ty - y);
+				}
+
+				position[0] = tx;
+				position[1] = ty;
+			}
+
+			data[base + END_X] = position[0];
+			data[base + END_Y] = position[1];
+
+			first = false;
+		}
+	}
+
+	/**
+	 * Retourne le nombre d'étapes.
+	 */
+	public int size() {
+		return data.length / STRIDE;
+	}
+
+	/**
+	 * Indique si la route boucle.
+	 */
+	public boolean isCyclic() {
+		return cyclic;
+	}
+
+	public float getStartX(int i) {
+		return data[i * STRIDE + START_X];
+	}
+
+	public float getStartY(int i) {
+		return data[i * STRIDE + START_Y];
+	}
+
+	public float getEndX(int i) {
+		return data[i * STRIDE + END_X];
+	}
+
+	public float getEndY(int i) {
+		return data[i * STRIDE + END_Y];
+	}
+
+	/**
+	 * Retourne la longueur parcourue pendant une étape.
+	 */
+	public float getLength(int i) {
+		return data[i * STRIDE + LENGTH];
+	}
+
+	/**
+	 * Retourne le rayon d'une étape circulaire, 0 pour les autres étapes.
+	 */
+	public float getRadius(int i) {
+		return data[i * STRIDE + RADIUS];
+	}
+
+	/**
+	 * Retourne l'angle (en radians) de la position de départ autour du centre
+	 * d'une étape circulaire.
+	 */
+	public float getStartAngle(int i) {
+		return data[i * STRIDE + START_ANGLE];
+	}
+
+	/**
+	 * Retourne l'angle (en radians, signé) parcouru pendant une étape
+	 * circulaire.
+	 */
+	public float getSweep(int i) {
+		return data[i * STRIDE + SWEEP];
+	}
+
+	/**
+	 * Retourne la longueur restant à parcourir depuis le début d'une étape
+	 * jusqu'à la fin de la route.
+	 */
+	public float getRemainingLength(int i) {
+		return data[i * STRIDE + REMAINING];
+	}
+
+	/**
+	 * Retourne la longueur totale de la route (un tour pour un circuit).
+	 */
+	public float getTotalLength() {
+		return data.length == 0 ? 0 : data[REMAINING];
+	}
+
+	/**
+	 * Retourne le temps nécessaire pour parcourir la route à une vitesse
+	 * donnée, en secondes.
+	 */
+	public float getTime(float speed) {
+		return (speed > 0) ? getTotalLength() / speed : Float.POSITIVE_INFINITY;
+	}
+
+	// - - - Binary form - - -
+
+	/**
+	 * Retourne la taille de la forme binaire, en bytes.
+	 */
+	public int getBinarySize() {
+		return 4 + data.length * 4;
+	}
+
+	/**
+	 * Écrit la forme binaire de cette géométrie.
+	 */
+	public void write(ByteBuffer buffer) {
+		buffer.putInt(cyclic ? 1 : 0);
+
+		for(float value : data) {
+			buffer.putFloat(value);
+		}
+	}
+
+	/**
+	 * Lit une géométrie écrite par <code>write()</code>.
+	 *
+	 * @param size
+	 *            Le nombre d'étapes de la route.
+	 */
+	public static RouteGeometry read(ByteBuffer buffer, int size) {
+		boolean cyclic = buffer.getInt() != 0;
+		float[] data = new float[size * STRIDE];
+
+		buffer.asFloatBuffer().get(data);
+		buffer.position(buffer.position() + data.length * 4);
+
+		return new RouteGeometry(data, cyclic);
+	}
+}
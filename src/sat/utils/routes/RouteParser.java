@@ -0,0 +1,183 @@
+package sat.utils.routes;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.Charset;
+
+/**
+ * Lit et valide les fichiers de route.
+ * <p>
+ * Un fichier de route est une suite d'instructions séparées par des
+ * points-virgules. Chaque instruction est une lettre suivie d'arguments
+ * séparés par des virgules:
+ * <ul>
+ * <li><code>Sx,y</code>: ligne droite vers (x, y);</li>
+ * <li><code>Cx,y,angle</code>: cercle de centre (x, y), sur un angle en
+ * degrés (positif dans le sens trigonométrique);</li>
+ * <li><code>Lx,y</code>: atterrissage en (x, y), dernière instruction
+ * d'une route d'atterrissage;</li>
+ * <li><code>Dx,y</code>: destruction en (x, y);</li>
+ * <li><code>N</code>: aucun mouvement.</li>
+ * </ul>
+ * Les espaces et retours à la ligne entre les instructions sont ignorés.
+ */
+public final class RouteParser {
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	/**
+	 * Cette classe est une classe utilitaire et ne peut pas être instanciée.
+	 */
+	private RouteParser() {
+	}
+
+	/**
+	 * Lit un fichier de route.
+	 *
+	 * @param path
+	 *            Le chemin du fichier.
+	 * @param capacity
+	 *            La capacité de la route, en nombre d'avions.
+	 * @throws IOException
+	 *             Si le fichier ne peut pas être lu.
+	 * @throws InvalidRouteException
+	 *             Si le fichier n'est pas une route valide.
+	 */
+	public static Route parse(String path, int capacity) throws IOException, InvalidRouteException {
+		RandomAccessFile file = new RandomAccessFile(new File(path), "r");
+		byte[] data;
+
+		try {
+			data = new byte[(int) file.length()];
+			file.readFully(data);
+		}
+		finally {
+			file.close();
+		}
+
+		try {
+			return parseData(new String(data, UTF8), capacity);
+		}
+		catch(InvalidRouteException e) {
+			throw new InvalidRouteException(path + ": " + e.getMessage());
+		}
+	}
+
+	/**
+	 * Lit le contenu d'un fichier de route.
+	 *
+	 * @see #parse(String, int)
+	 */
+	public static Route parseString(String data, int capacity) throws InvalidRouteException {
+		return parseData(data, capacity);
+	}
+
+	private static Route parseData(String data, int capacity) throws InvalidRouteException {
+		Route route = new Route(capacity);
+
+		int index = 0;
+		int start = 0;
+
+		while(start < data.length()) {
+			int end = data.indexOf(';', start);
+			if(end < 0) {
+				end = data.length();
+			}
+
+			String instruction = data.substring(start, end).trim();
+			start = end + 1;
+
+			if(instruction.isEmpty()) {
+				continue;
+			}
+
+			index++;
+
+			if(route.isLanding()) {
+				throw new InvalidRouteException("instruction " + index + " follows the landing instruction");
+			}
+
+			route.add(parseInstruction(route, instruction, index));
+		}
+
+		if(route.isEmpty()) {
+			throw new InvalidRouteException("empty route");
+		}
+
+		return route;
+	}
+
+	/**
+	 * Lit une instruction.
+	 */
+	private static Waypoint parseInstruction(Route route, String instruction, int index) throws InvalidRouteException {
+		char t = Character.toUpperCase(instruction.charAt(0));
+		float[] a = parseArguments(instruction.substring(1), index);
+
+		switch(t) {
+			case 'S':
+				expect(a, 2, instruction, index);
+				return new Waypoint(MoveType.STRAIGHT, new float[] { a[0], a[1], -1 });
+
+			case 'C':
+				expect(a, 3, instruction, index);
+
+				if(a[2] == 0) {
+					throw new InvalidRouteException("instruction " + index + " (" + instruction + "): null angle");
+				}
+
+				return new Waypoint(MoveType.CIRCULAR, new float[] { a[0], a[1], -1, a[2] });
+
+			case 'L':
+				expect(a, 2, instruction, index);
+				route.setLanding();
+				return new Waypoint(MoveType.LANDING, new float[] { a[0], a[1], -1 });
+
+			case 'D':
+				expect(a, 2, instruction, index);
+				return new Waypoint(MoveType.DESTRUCTION, new float[] { a[0], a[1], -1 });
+
+			case 'N':
+				expect(a, 0, instruction, index);
+				return new Waypoint(MoveType.NONE, new float[] {});
+
+			default:
+				throw new InvalidRouteException("instruction " + index + " (" + instruction + "): unknown type " + t);
+		}
+	}
+
+	/**
+	 * Lit les arguments numériques d'une instruction.
+	 */
+	private static float[] parseArguments(String arguments, int index) throws InvalidRouteException {
+		arguments = arguments.trim();
+
+		if(arguments.isEmpty()) {
+			return new float[0];
+		}
+
+		String[] parts = arguments.split(",");
+		float[] values = new float[parts.length];
+
+		for(int i = 0; i < parts.length; i++) {
+			try {
+				values[i] = Float.parseFloat(parts[i].trim());
+			}
+			catch(NumberFormatException e) {
+				throw new InvalidRouteException("instruction " + index + ": invalid number " + parts[i].trim());
+			}
+
+			if(Float.isNaN(values[i]) || Float.isInfinite(values[i])) {
+				throw new InvalidRouteException("instruction " + index + ": invalid number " + parts[i].trim());
+			}
+		}
+
+		return values;
+	}
+
+	private static void expect(float[] arguments, int count, String instruction, int index) throws InvalidRouteException {
+		if(arguments.length != count) {
+			throw new InvalidRouteException("instruction " + index + " (" + instruction + "): expected " + count + " arguments, got " + arguments.length);
+		}
+	}
+}